@@ -0,0 +1,125 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Push and pop operations on the byte queue, which underlies all encoding and decoding.
+ *
+ * @author Matthew
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteQueueBenchmark {
+    /**
+     * The number of bytes pushed and popped per invocation. The default queue size is 1024, so the larger value
+     * also measures growth of the buffer.
+     */
+    @Param({ "64", "1476" })
+    public int length;
+
+    private byte[] data;
+    private byte[] buf;
+    private ByteQueue full;
+
+    @Setup
+    public void setup() {
+        data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = (byte) i;
+        buf = new byte[length];
+        full = new ByteQueue(data);
+    }
+
+    @Benchmark
+    public void pushPopBytes(final Blackhole bh) {
+        final ByteQueue queue = new ByteQueue();
+        for (int i = 0; i < length; i++)
+            queue.push(data[i]);
+        for (int i = 0; i < length; i++)
+            bh.consume(queue.pop());
+    }
+
+    @Benchmark
+    public void pushPopU2B(final Blackhole bh) {
+        final ByteQueue queue = new ByteQueue();
+        for (int i = 0; i < length / 2; i++)
+            queue.pushU2B(i);
+        for (int i = 0; i < length / 2; i++)
+            bh.consume(queue.popU2B());
+    }
+
+    @Benchmark
+    public int pushPopArray() {
+        final ByteQueue queue = new ByteQueue();
+        queue.push(data);
+        return queue.pop(buf);
+    }
+
+    @Benchmark
+    public byte[] popAll() {
+        final ByteQueue queue = new ByteQueue(data);
+        return queue.popAll();
+    }
+
+    @Benchmark
+    public ByteQueue popSlice() {
+        final ByteQueue queue = new ByteQueue(data);
+        queue.pop(4);
+        return queue.popSlice(queue.size());
+    }
+
+    @Benchmark
+    public int peek() {
+        int sum = 0;
+        for (int i = 0; i < length; i++)
+            sum += full.peek(i);
+        return sum;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.service.acknowledgement.AcknowledgementService;
+import com.serotonin.bacnet4j.service.acknowledgement.AtomicReadFileAck;
+import com.serotonin.bacnet4j.service.acknowledgement.AtomicReadFileAck.StreamAccessAck;
+import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyMultipleAck;
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedCovNotificationRequest;
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult.Result;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.constructed.StatusFlags;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.SignedInteger;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Encoding and decoding of the service payloads that dominate traffic in supervisory use: property reads, COV
+ * notifications and file transfers.
+ *
+ * @author Matthew
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    /**
+     * The number of objects in the RPM ack, each with the typical properties of an analog value.
+     */
+    @Param({ "1", "20" })
+    public int objectCount;
+
+    /**
+     * The size of the file data in the atomic read file ack.
+     */
+    @Param({ "480" })
+    public int fileDataLength;
+
+    private ReadPropertyMultipleAck rpmAck;
+    private ConfirmedCovNotificationRequest covNotification;
+    private AtomicReadFileAck fileAck;
+
+    private byte[] rpmAckData;
+    private byte[] covNotificationData;
+    private byte[] fileAckData;
+
+    @Setup
+    public void setup() {
+        final SequenceOf<ReadAccessResult> results = new SequenceOf<>();
+        for (int i = 0; i < objectCount; i++) {
+            final SequenceOf<Result> list = new SequenceOf<>();
+            list.add(new Result(PropertyIdentifier.objectName, null, new CharacterString("av" + i)));
+            list.add(new Result(PropertyIdentifier.presentValue, null, new Real(i * 1.5F)));
+            list.add(new Result(PropertyIdentifier.statusFlags, null, new StatusFlags(false, false, false, false)));
+            list.add(new Result(PropertyIdentifier.units, null, EngineeringUnits.degreesCelsius));
+            list.add(new Result(PropertyIdentifier.description, null, new CharacterString("Analog value " + i)));
+            results.add(new ReadAccessResult(new ObjectIdentifier(ObjectType.analogValue, i), list));
+        }
+        rpmAck = new ReadPropertyMultipleAck(results);
+
+        final SequenceOf<PropertyValue> values = new SequenceOf<>();
+        values.add(new PropertyValue(PropertyIdentifier.presentValue, new Real(21.5F)));
+        values.add(new PropertyValue(PropertyIdentifier.statusFlags, new StatusFlags(false, false, false, false)));
+        covNotification = new ConfirmedCovNotificationRequest(new UnsignedInteger(17),
+                new ObjectIdentifier(ObjectType.device, 1234), new ObjectIdentifier(ObjectType.analogInput, 0),
+                new UnsignedInteger(300), values);
+
+        final byte[] fileData = new byte[fileDataLength];
+        for (int i = 0; i < fileData.length; i++)
+            fileData[i] = (byte) i;
+        fileAck = new AtomicReadFileAck(Boolean.FALSE,
+                new StreamAccessAck(new SignedInteger(0), new OctetString(fileData)));
+
+        rpmAckData = encode(rpmAck);
+        covNotificationData = encode(covNotification);
+        fileAckData = encode(fileAck);
+    }
+
+    private static byte[] encode(final Encodable e) {
+        final ByteQueue queue = new ByteQueue();
+        e.write(queue);
+        return queue.popAll();
+    }
+
+    @Benchmark
+    public ByteQueue encodeReadPropertyMultipleAck() {
+        final ByteQueue queue = new ByteQueue();
+        rpmAck.write(queue);
+        return queue;
+    }
+
+    @Benchmark
+    public AcknowledgementService decodeReadPropertyMultipleAck() throws BACnetException {
+        return AcknowledgementService.createAcknowledgementService(ReadPropertyMultipleAck.TYPE_ID,
+                new ByteQueue(rpmAckData));
+    }
+
+    @Benchmark
+    public ByteQueue encodeConfirmedCovNotification() {
+        final ByteQueue queue = new ByteQueue();
+        covNotification.write(queue);
+        return queue;
+    }
+
+    @Benchmark
+    public ConfirmedRequestService decodeConfirmedCovNotification() throws BACnetException {
+        return ConfirmedRequestService.createConfirmedRequestService(ConfirmedCovNotificationRequest.TYPE_ID,
+                new ByteQueue(covNotificationData));
+    }
+
+    @Benchmark
+    public ByteQueue encodeAtomicReadFileAck() {
+        final ByteQueue queue = new ByteQueue();
+        fileAck.write(queue);
+        return queue;
+    }
+
+    @Benchmark
+    public AcknowledgementService decodeAtomicReadFileAck() throws BACnetException {
+        return AcknowledgementService.createAcknowledgementService(AtomicReadFileAck.TYPE_ID,
+                new ByteQueue(fileAckData));
+    }
+}
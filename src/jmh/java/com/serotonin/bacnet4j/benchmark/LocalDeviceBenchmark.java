@@ -0,0 +1,119 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.exception.BACnetServiceException;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.obj.AnalogValueObject;
+import com.serotonin.bacnet4j.obj.BACnetObject;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+
+/**
+ * Lookups of local objects, which are done for every incoming request that addresses an object.
+ *
+ * @author Matthew
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalDeviceBenchmark {
+    /**
+     * The number of objects in the local device in addition to the device object.
+     */
+    @Param({ "10", "1000" })
+    public int objectCount;
+
+    private LocalDevice localDevice;
+    private ObjectIdentifier first;
+    private ObjectIdentifier last;
+    private ObjectIdentifier missing;
+    private String lastName;
+
+    /**
+     * The local device is not initialized, since only its object list is used.
+     */
+    @Setup
+    public void setup() throws BACnetServiceException {
+        localDevice = new LocalDevice(1, new DefaultTransport(new TestNetwork(new TestNetworkMap(), 1, 0)));
+        for (int i = 0; i < objectCount; i++)
+            new AnalogValueObject(localDevice, i, "av" + i, i, EngineeringUnits.noUnits, false);
+
+        first = new ObjectIdentifier(ObjectType.analogValue, 0);
+        last = new ObjectIdentifier(ObjectType.analogValue, objectCount - 1);
+        missing = new ObjectIdentifier(ObjectType.analogValue, objectCount);
+        lastName = "av" + (objectCount - 1);
+    }
+
+    @Benchmark
+    public BACnetObject getFirstById() {
+        return localDevice.getObject(first);
+    }
+
+    @Benchmark
+    public BACnetObject getLastById() {
+        return localDevice.getObject(last);
+    }
+
+    @Benchmark
+    public BACnetObject getMissingById() {
+        return localDevice.getObject(missing);
+    }
+
+    @Benchmark
+    public BACnetObject getLastByName() {
+        return localDevice.getObject(lastName);
+    }
+
+    @Benchmark
+    public ObjectIdentifier getNextInstanceObjectIdentifier() {
+        return localDevice.getNextInstanceObjectIdentifier(ObjectType.analogValue);
+    }
+}
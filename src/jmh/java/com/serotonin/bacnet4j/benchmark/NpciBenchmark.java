@@ -0,0 +1,138 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.serotonin.bacnet4j.apdu.APDU;
+import com.serotonin.bacnet4j.apdu.ConfirmedRequest;
+import com.serotonin.bacnet4j.enums.MaxApduLength;
+import com.serotonin.bacnet4j.enums.MaxSegments;
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.NPCI;
+import com.serotonin.bacnet4j.npdu.NPDU;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.constructed.ServicesSupported;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Parsing of the network layer header, and of the APDU that follows it, as done for every incoming message.
+ *
+ * @author Matthew
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NpciBenchmark {
+    private static final Address FROM = new Address(new byte[] { 10, 0, 0, 2, (byte) 0xba, (byte) 0xc0 });
+    private static final OctetString LINK_SERVICE = FROM.getMacAddress();
+
+    private final ServicesSupported servicesSupported = new ServicesSupported();
+
+    private byte[] local;
+    private byte[] routed;
+    private byte[] networkMessage;
+    private byte[] readProperty;
+
+    @Setup
+    public void setup() {
+        servicesSupported.setAll(true);
+
+        local = encode(new NPCI(null, null, true));
+        routed = encode(new NPCI(new Address(5, new byte[] { 7 }), new Address(3, new byte[] { 1, 2, 3, 4 }), true));
+        networkMessage = encode(new NPCI(null, null, false, 0x1, 0));
+
+        final ByteQueue queue = new ByteQueue();
+        new NPCI(null, null, true).write(queue);
+        new ConfirmedRequest(false, false, true, MaxSegments.UP_TO_8, MaxApduLength.UP_TO_1476, (byte) 1, 0, 0,
+                new ReadPropertyRequest(new ObjectIdentifier(ObjectType.analogInput, 1),
+                        PropertyIdentifier.presentValue)).write(queue);
+        readProperty = queue.popAll();
+    }
+
+    private static byte[] encode(final NPCI npci) {
+        final ByteQueue queue = new ByteQueue();
+        npci.write(queue);
+        return queue.popAll();
+    }
+
+    @Benchmark
+    public NPCI parseLocal() {
+        return new NPCI(new ByteQueue(local));
+    }
+
+    @Benchmark
+    public NPCI parseRouted() {
+        return new NPCI(new ByteQueue(routed));
+    }
+
+    @Benchmark
+    public NPCI parseNetworkMessage() {
+        return new NPCI(new ByteQueue(networkMessage));
+    }
+
+    @Benchmark
+    public ByteQueue writeRouted() {
+        final ByteQueue queue = new ByteQueue();
+        new NPCI(new Address(5, new byte[] { 7 }), FROM, true).write(queue);
+        return queue;
+    }
+
+    /**
+     * Parses the NPCI and the confirmed request that follows it, as the transport does before dispatching.
+     */
+    @Benchmark
+    public APDU parseConfirmedRequest() throws BACnetException {
+        final ByteQueue queue = new ByteQueue(readProperty);
+        new NPCI(queue);
+        final NPDU npdu = new NPDU(FROM, LINK_SERVICE, queue);
+        final ConfirmedRequest request = (ConfirmedRequest) npdu.getAPDU(servicesSupported);
+        request.parseServiceData();
+        return request;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.RemoteDevice;
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.obj.AnalogValueObject;
+import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyAck;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.util.PropertyReferences;
+import com.serotonin.bacnet4j.util.PropertyValues;
+import com.serotonin.bacnet4j.util.RequestUtils;
+
+/**
+ * Request/response round trips between two local devices over the test network. This covers the full stack:
+ * encoding, the transport, the network, request handling in the responding device and decoding of the response.
+ * The test network hands messages over on its own thread, so the results include that thread handoff.
+ *
+ * @author Matthew
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestNetworkBenchmark {
+    private static final int OBJECT_COUNT = 20;
+
+    private final TestNetworkMap map = new TestNetworkMap();
+    private LocalDevice client;
+    private LocalDevice server;
+    private RemoteDevice remote;
+    private ObjectIdentifier oid;
+    private PropertyReferences refs;
+
+    @Setup
+    public void setup() throws Exception {
+        client = new LocalDevice(1, new DefaultTransport(new TestNetwork(map, 1, 0))).initialize();
+        server = new LocalDevice(2, new DefaultTransport(new TestNetwork(map, 2, 0))).initialize();
+        for (int i = 0; i < OBJECT_COUNT; i++)
+            new AnalogValueObject(server, i, "av" + i, i, EngineeringUnits.noUnits, false);
+        remote = client.getRemoteDeviceBlocking(2);
+
+        oid = new ObjectIdentifier(ObjectType.analogValue, 0);
+        refs = new PropertyReferences();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            final ObjectIdentifier id = new ObjectIdentifier(ObjectType.analogValue, i);
+            refs.add(id, PropertyIdentifier.objectName);
+            refs.add(id, PropertyIdentifier.presentValue);
+            refs.add(id, PropertyIdentifier.statusFlags);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        client.terminate();
+        server.terminate();
+    }
+
+    @Benchmark
+    public ReadPropertyAck readProperty() throws BACnetException {
+        return client.send(remote, new ReadPropertyRequest(oid, PropertyIdentifier.presentValue)).get();
+    }
+
+    @Benchmark
+    public PropertyValues readPropertyMultiple() throws BACnetException {
+        return RequestUtils.readProperties(client, remote, refs, null);
+    }
+}
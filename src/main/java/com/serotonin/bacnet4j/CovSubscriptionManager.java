@@ -0,0 +1,730 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.CovSubscriptionRegistry.CovConsumer;
+import com.serotonin.bacnet4j.exception.AbortAPDUException;
+import com.serotonin.bacnet4j.exception.ErrorAPDUException;
+import com.serotonin.bacnet4j.exception.RejectAPDUException;
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.service.confirmed.SubscribeCOVPropertyMultipleRequest;
+import com.serotonin.bacnet4j.service.confirmed.SubscribeCOVPropertyMultipleRequest.CovSubscriptionSpecification;
+import com.serotonin.bacnet4j.service.confirmed.SubscribeCOVPropertyMultipleRequest.CovSubscriptionSpecification.CovReference;
+import com.serotonin.bacnet4j.service.confirmed.SubscribeCOVPropertyRequest;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.error.BaseError;
+import com.serotonin.bacnet4j.type.error.SubscribeCovPropertyMultipleError;
+import com.serotonin.bacnet4j.type.error.SubscribeCovPropertyMultipleError.FirstFailedSubscription;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.Unsigned32;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.PropertyReferences;
+import com.serotonin.bacnet4j.util.PropertyValues;
+import com.serotonin.bacnet4j.util.RequestUtils;
+
+/**
+ * Manages client COV subscriptions to the properties of remote devices, so that large numbers of points can be
+ * monitored without each user subscribing and renewing on its own.
+ *
+ * Subscriptions are grouped per remote device. If the device supports SubscribeCOVPropertyMultiple, new subscriptions
+ * are sent in batches of up to the max references per request, and otherwise with one SubscribeCOVProperty per
+ * point. Each batch is kept in an index ordered by renewal time, and is renewed at a random time between half and
+ * three quarters of the lifetime. Subscriptions that were created together therefore drift apart rather than being
+ * renewed in a burst every lifetime, and at most the max requests per tick are sent in any tick. Points for which the
+ * subscription is rejected are polled instead, until they are cancelled.
+ *
+ * The notifications of all of the subscriptions use the same subscriber process id, and are routed to the points of
+ * the monitored object by the CovSubscriptionRegistry.
+ *
+ * Listeners are called in the transport thread, and so should not block.
+ *
+ * @author Matthew
+ */
+public class CovSubscriptionManager {
+    static final Logger LOG = LoggerFactory.getLogger(CovSubscriptionManager.class);
+
+    public static final int DEFAULT_LIFETIME = 300;
+    public static final int DEFAULT_MAX_REQUESTS_PER_TICK = 20;
+    public static final int DEFAULT_MAX_REFERENCES_PER_REQUEST = 25;
+    public static final long DEFAULT_POLL_PERIOD = TimeUnit.MINUTES.toMillis(1);
+    public static final long DEFAULT_TICK = TimeUnit.SECONDS.toMillis(1);
+
+    // The delay after which a subscription that got no response is sent again.
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+    // A conservative estimate of the encoded size of a reference in a SubscribeCOVPropertyMultiple request.
+    private static final int REFERENCE_SIZE = 20;
+
+    private final LocalDevice localDevice;
+
+    private int lifetime = DEFAULT_LIFETIME;
+    private boolean confirmedNotifications = true;
+    private int maxRequestsPerTick = DEFAULT_MAX_REQUESTS_PER_TICK;
+    private int maxReferencesPerRequest = DEFAULT_MAX_REFERENCES_PER_REQUEST;
+    private long pollPeriod = DEFAULT_POLL_PERIOD;
+    private long tick = DEFAULT_TICK;
+
+    private Unsigned32 subscriberProcessId;
+    private final Map<Integer, Device> devices = new HashMap<>();
+    private final PriorityQueue<Batch> renewals = new PriorityQueue<>(Comparator.comparingLong(b -> b.due));
+    private ScheduledFuture<?> tickFuture;
+
+    private final LongAdder requestsSent = new LongAdder();
+    private final LongAdder pollsSent = new LongAdder();
+    private final LongAdder notificationsReceived = new LongAdder();
+
+    CovSubscriptionManager(final LocalDevice localDevice) {
+        this.localDevice = localDevice;
+    }
+
+    /**
+     * Sets the lifetime in seconds of the subscriptions. Changes apply to subscriptions as they are renewed.
+     */
+    public synchronized void setLifetime(final int lifetime) {
+        if (lifetime < 1)
+            throw new IllegalArgumentException("lifetime must be greater than 0");
+        this.lifetime = lifetime;
+    }
+
+    public synchronized int getLifetime() {
+        return lifetime;
+    }
+
+    public synchronized void setConfirmedNotifications(final boolean confirmedNotifications) {
+        this.confirmedNotifications = confirmedNotifications;
+    }
+
+    public synchronized boolean isConfirmedNotifications() {
+        return confirmedNotifications;
+    }
+
+    /**
+     * Sets the maximum number of subscription requests, new or renewals, that are sent in a tick.
+     */
+    public synchronized void setMaxRequestsPerTick(final int maxRequestsPerTick) {
+        if (maxRequestsPerTick < 1)
+            throw new IllegalArgumentException("maxRequestsPerTick must be greater than 0");
+        this.maxRequestsPerTick = maxRequestsPerTick;
+    }
+
+    public synchronized int getMaxRequestsPerTick() {
+        return maxRequestsPerTick;
+    }
+
+    /**
+     * Sets the maximum number of points in a SubscribeCOVPropertyMultiple request. Fewer are sent if the request would
+     * not otherwise fit in the max APDU of the device.
+     */
+    public synchronized void setMaxReferencesPerRequest(final int maxReferencesPerRequest) {
+        if (maxReferencesPerRequest < 1)
+            throw new IllegalArgumentException("maxReferencesPerRequest must be greater than 0");
+        this.maxReferencesPerRequest = maxReferencesPerRequest;
+    }
+
+    public synchronized int getMaxReferencesPerRequest() {
+        return maxReferencesPerRequest;
+    }
+
+    /**
+     * Sets the period at which points whose subscriptions were rejected are polled.
+     */
+    public synchronized void setPollPeriod(final long pollPeriod, final TimeUnit unit) {
+        if (pollPeriod < 1)
+            throw new IllegalArgumentException("pollPeriod must be greater than 0");
+        this.pollPeriod = unit.toMillis(pollPeriod);
+    }
+
+    public synchronized long getPollPeriod(final TimeUnit unit) {
+        return unit.convert(pollPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the period at which subscriptions, renewals and polls are sent.
+     */
+    public synchronized void setTick(final long tick, final TimeUnit unit) {
+        if (tick < 1)
+            throw new IllegalArgumentException("tick must be greater than 0");
+        this.tick = unit.toMillis(tick);
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = localDevice.scheduleWithFixedDelay(this::tick, this.tick, this.tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized long getTick(final TimeUnit unit) {
+        return unit.convert(tick, TimeUnit.MILLISECONDS);
+    }
+
+    public long getRequestsSent() {
+        return requestsSent.sum();
+    }
+
+    public long getPollsSent() {
+        return pollsSent.sum();
+    }
+
+    public long getNotificationsReceived() {
+        return notificationsReceived.sum();
+    }
+
+    /**
+     * @return the number of points that are managed.
+     */
+    public synchronized int getPointCount() {
+        int count = 0;
+        for (final Device device : devices.values())
+            count += device.size();
+        return count;
+    }
+
+    /**
+     * @return the number of points that are currently subscribed.
+     */
+    public synchronized int getSubscribedCount() {
+        int count = 0;
+        for (final Device device : devices.values()) {
+            for (final Map<PropertyReference, Point> points : device.points.values()) {
+                for (final Point point : points.values()) {
+                    if (point.subscribed)
+                        count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of points that are polled because their subscriptions were rejected.
+     */
+    public synchronized int getPolledCount() {
+        int count = 0;
+        for (final Device device : devices.values())
+            count += device.polled.size();
+        return count;
+    }
+
+    public Subscription subscribe(final RemoteDevice rd, final ObjectIdentifier oid, final PropertyIdentifier pid,
+            final Listener listener) {
+        return subscribe(rd, oid, new PropertyReference(pid), null, listener);
+    }
+
+    /**
+     * Subscribes to changes of value of the given property. The subscription is sent in a following tick, and renewed
+     * until it is cancelled. If there is already a subscription to the property the listener is added to it, and the
+     * given COV increment is ignored.
+     *
+     * @param covIncrement
+     *            the COV increment, or null to use the one of the monitored object.
+     */
+    public synchronized Subscription subscribe(final RemoteDevice rd, final ObjectIdentifier oid,
+            final PropertyReference property, final Real covIncrement, final Listener listener) {
+        start();
+
+        final Device device = devices.computeIfAbsent(rd.getInstanceNumber(), k -> new Device(rd));
+        Map<PropertyReference, Point> points = device.points.get(oid);
+        if (points == null) {
+            points = new HashMap<>();
+            device.points.put(oid, points);
+            register(device, oid, points);
+        }
+        Point point = points.get(property);
+        if (point == null) {
+            point = new Point(device, oid, property, covIncrement);
+            points.put(property, point);
+            device.pending.add(point);
+        }
+        point.listeners.add(listener);
+
+        return new Subscription(point, listener);
+    }
+
+    synchronized void cancel(final Subscription subscription) {
+        final Point point = subscription.point;
+        if (!point.listeners.remove(subscription.listener) || !point.listeners.isEmpty())
+            return;
+
+        // That was the last listener, so remove the point.
+        final Device device = point.device;
+        final Map<PropertyReference, Point> points = device.points.get(point.oid);
+        points.remove(point.property);
+        if (points.isEmpty()) {
+            device.points.remove(point.oid);
+            localDevice.getCovSubscriptionRegistry().unregister(device.rd.getInstanceNumber(), point.oid,
+                    subscriberProcessId.longValue(), device.consumers.remove(point.oid));
+        }
+        if (device.points.isEmpty())
+            devices.remove(device.rd.getInstanceNumber());
+        device.pending.remove(point);
+        device.polled.remove(point);
+
+        final Batch batch = point.batch;
+        point.batch = null;
+        if (batch != null && point.subscribed) {
+            // The point is removed from the batch when it is next renewed, but cancel the subscription now.
+            final ConfirmedRequestService cancellation = batch.multiple ? multipleRequest(singletonList(point), null)
+                    : singleRequest(point, null);
+            requestsSent.increment();
+            localDevice.send(device.rd, cancellation, null);
+        }
+        point.subscribed = false;
+    }
+
+    private void start() {
+        if (tickFuture != null)
+            return;
+
+        if (subscriberProcessId == null)
+            subscriberProcessId = new Unsigned32(localDevice.getNextProcessId());
+
+        tickFuture = localDevice.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void terminate() {
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+
+        // The remote devices end the subscriptions when their lifetimes expire.
+        for (final Device device : devices.values()) {
+            for (final Map.Entry<ObjectIdentifier, CovConsumer> e : device.consumers.entrySet())
+                localDevice.getCovSubscriptionRegistry().unregister(device.rd.getInstanceNumber(), e.getKey(),
+                        subscriberProcessId.longValue(), e.getValue());
+        }
+        devices.clear();
+        renewals.clear();
+    }
+
+    synchronized void tick() {
+        try {
+            final long now = localDevice.getClock().millis();
+            int budget = maxRequestsPerTick;
+
+            // Renewals go first so that existing subscriptions don't lapse while new ones are added.
+            while (budget > 0 && !renewals.isEmpty() && renewals.peek().due <= now) {
+                final Batch batch = renewals.poll();
+                if (batch.prune()) {
+                    send(batch);
+                    budget--;
+                }
+            }
+
+            for (final Device device : new ArrayList<>(devices.values())) {
+                while (budget > 0 && !device.pending.isEmpty()) {
+                    send(device.nextBatch(maxReferencesPerRequest));
+                    budget--;
+                }
+
+                if (!device.polled.isEmpty() && !device.polling && device.nextPoll <= now)
+                    poll(device);
+            }
+        } catch (final RuntimeException e) {
+            // Don't let an exception end the scheduled task.
+            LOG.error("Error in COV subscription tick", e);
+        }
+    }
+
+    private void send(final Batch batch) {
+        final UnsignedInteger lifetime = new UnsignedInteger(this.lifetime);
+        final ConfirmedRequestService request = batch.multiple ? multipleRequest(batch.points, lifetime)
+                : singleRequest(batch.points.get(0), lifetime);
+
+        requestsSent.increment();
+        try {
+            localDevice.sendAsync(batch.device.rd, request).whenComplete((ack, e) -> completed(batch, e));
+        } catch (final RuntimeException e) {
+            completed(batch, e);
+        }
+    }
+
+    private SubscribeCOVPropertyRequest singleRequest(final Point point, final UnsignedInteger lifetime) {
+        return new SubscribeCOVPropertyRequest(subscriberProcessId, point.oid,
+                lifetime == null ? null : Boolean.valueOf(confirmedNotifications), lifetime, point.property,
+                point.covIncrement);
+    }
+
+    private SubscribeCOVPropertyMultipleRequest multipleRequest(final List<Point> points,
+            final UnsignedInteger lifetime) {
+        // Group the references by object.
+        final Map<ObjectIdentifier, SequenceOf<CovReference>> refs = new LinkedHashMap<>();
+        for (final Point point : points)
+            refs.computeIfAbsent(point.oid, k -> new SequenceOf<>())
+                    .add(new CovReference(point.property, point.covIncrement, Boolean.FALSE));
+
+        final SequenceOf<CovSubscriptionSpecification> specs = new SequenceOf<>(refs.size());
+        for (final Map.Entry<ObjectIdentifier, SequenceOf<CovReference>> e : refs.entrySet())
+            specs.add(new CovSubscriptionSpecification(e.getKey(), e.getValue()));
+
+        return new SubscribeCOVPropertyMultipleRequest(subscriberProcessId,
+                lifetime == null ? null : Boolean.valueOf(confirmedNotifications), lifetime, null, specs);
+    }
+
+    synchronized void completed(final Batch batch, final Throwable e) {
+        final long now = localDevice.getClock().millis();
+        if (!batch.prune())
+            return;
+
+        if (e == null) {
+            for (final Point point : batch.points)
+                point.subscribed = true;
+            batch.expires = now + TimeUnit.SECONDS.toMillis(lifetime);
+            schedule(batch, now + renewalDelay());
+            return;
+        }
+
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (!(cause instanceof ErrorAPDUException || cause instanceof RejectAPDUException
+                || cause instanceof AbortAPDUException)) {
+            // No answer from the device, so try again. The subscription may lapse in the meantime.
+            LOG.debug("COV subscription request to {} failed, retrying", batch.device.rd, cause);
+            if (now >= batch.expires) {
+                for (final Point point : batch.points)
+                    point.subscribed = false;
+            }
+            schedule(batch, now + RETRY_DELAY);
+        } else if (batch.multiple) {
+            final Point failed = firstFailed(batch, cause);
+            if (failed != null) {
+                // Poll the point that failed, and subscribe to the rest again. Those before it were subscribed
+                // already, so this is no more than a renewal for them.
+                batch.points.remove(failed);
+                pollInstead(failed, cause);
+                final Batch rest = new Batch(batch.device, batch.points, batch.points.size() > 1);
+                for (final Point point : rest.points)
+                    point.batch = rest;
+                if (!rest.points.isEmpty())
+                    schedule(rest, now);
+            } else {
+                // Subscribe to the points one at a time to find out which fail.
+                LOG.info("SubscribeCOVPropertyMultiple to {} failed, subscribing to the {} points one at a time: {}",
+                        batch.device.rd, batch.points.size(), cause.getMessage());
+                if (cause instanceof RejectAPDUException)
+                    batch.device.multipleRejected = true;
+                for (final Point point : batch.points) {
+                    final Batch single = new Batch(batch.device, singletonList(point), false);
+                    point.batch = single;
+                    point.subscribed = false;
+                    schedule(single, now);
+                }
+            }
+        } else
+            pollInstead(batch.points.get(0), cause);
+    }
+
+    /**
+     * @return the point named as the first failed subscription of a SubscribeCOVPropertyMultiple error, if any.
+     */
+    private static Point firstFailed(final Batch batch, final Throwable cause) {
+        if (!(cause instanceof ErrorAPDUException))
+            return null;
+        final BaseError error = ((ErrorAPDUException) cause).getApdu().getError();
+        if (!(error instanceof SubscribeCovPropertyMultipleError)
+                || !((SubscribeCovPropertyMultipleError) error).isFirstFailedSubscription())
+            return null;
+
+        final FirstFailedSubscription first = ((SubscribeCovPropertyMultipleError) error).getFirstFailedSubscription();
+        for (final Point point : batch.points) {
+            if (point.oid.equals(first.getMonitoredObjectIdentifier())
+                    && point.property.equals(first.getMonitoredPropertyReference()))
+                return point;
+        }
+        return null;
+    }
+
+    private void pollInstead(final Point point, final Throwable cause) {
+        LOG.info("COV subscription to {} {} in {} was rejected, polling instead: {}", point.oid,
+                point.property.getPropertyIdentifier(), point.device.rd, cause.getMessage());
+        point.batch = null;
+        point.subscribed = false;
+        point.device.polled.add(point);
+    }
+
+    private void schedule(final Batch batch, final long due) {
+        batch.due = due;
+        renewals.add(batch);
+    }
+
+    private long renewalDelay() {
+        final long millis = TimeUnit.SECONDS.toMillis(lifetime);
+        return millis / 2 + ThreadLocalRandom.current().nextLong(millis / 4 + 1);
+    }
+
+    private void poll(final Device device) {
+        final List<Point> points = new ArrayList<>(device.polled);
+        final PropertyReferences refs = new PropertyReferences();
+        for (final Point point : points)
+            refs.addIndex(point.oid, point.property.getPropertyIdentifier(), point.property.getPropertyArrayIndex());
+
+        device.polling = true;
+        pollsSent.increment();
+        RequestUtils.readPropertiesAsync(localDevice, device.rd, refs, null)
+                .whenComplete((values, e) -> polled(device, points, values, e).forEach(Runnable::run));
+    }
+
+    private synchronized List<Runnable> polled(final Device device, final List<Point> points,
+            final PropertyValues values, final Throwable e) {
+        device.polling = false;
+        device.nextPoll = localDevice.getClock().millis() + pollPeriod;
+        if (e != null) {
+            LOG.warn("Failed to poll {} points in {}", points.size(), device.rd, e);
+            return Collections.emptyList();
+        }
+
+        // Call the listeners of the points that changed once the lock has been released.
+        final List<Runnable> changes = new ArrayList<>();
+        for (final Point point : points) {
+            if (!device.polled.contains(point))
+                // Cancelled while the poll was outstanding.
+                continue;
+
+            final Encodable value = PropertyValues.getNullOnError(values.getNoErrorCheck(point.oid, point.property));
+            if (value == null || value.equals(point.lastPolled))
+                continue;
+            point.lastPolled = value;
+
+            final SequenceOf<PropertyValue> listOfValues = new SequenceOf<>(new PropertyValue(
+                    point.property.getPropertyIdentifier(), point.property.getPropertyArrayIndex(), value, null));
+            changes.add(() -> point.fire(listOfValues));
+        }
+        return changes;
+    }
+
+    /**
+     * Routes the notifications of an object's subscribed properties straight to its points.
+     */
+    private void register(final Device device, final ObjectIdentifier oid,
+            final Map<PropertyReference, Point> objectPoints) {
+        final CovConsumer consumer = (processId, deviceId, monitoredOid, timeRemaining,
+                listOfValues) -> received(objectPoints, listOfValues);
+        device.consumers.put(oid, consumer);
+        localDevice.getCovSubscriptionRegistry().register(device.rd.getInstanceNumber(), oid,
+                subscriberProcessId.longValue(), consumer);
+    }
+
+    void received(final Map<PropertyReference, Point> objectPoints, final SequenceOf<PropertyValue> listOfValues) {
+        final List<Point> points;
+        synchronized (this) {
+            points = new ArrayList<>(objectPoints.values());
+        }
+
+        notificationsReceived.increment();
+        for (final Point point : points) {
+            for (final PropertyValue pv : listOfValues) {
+                if (pv.getPropertyIdentifier().equals(point.property.getPropertyIdentifier())) {
+                    point.fire(listOfValues);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static List<Point> singletonList(final Point point) {
+        final List<Point> list = new ArrayList<>(1);
+        list.add(point);
+        return list;
+    }
+
+    /**
+     * Receives the values of the subscribed properties.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called with the values of a COV notification, or with the value of a poll if it changed.
+         */
+        void covReceived(ObjectIdentifier deviceIdentifier, ObjectIdentifier monitoredObjectIdentifier,
+                SequenceOf<PropertyValue> listOfValues);
+    }
+
+    /**
+     * The handle of a listener's subscription to a point.
+     */
+    public class Subscription {
+        final Point point;
+        final Listener listener;
+
+        Subscription(final Point point, final Listener listener) {
+            this.point = point;
+            this.listener = listener;
+        }
+
+        /**
+         * Removes the listener. The subscription to the point is cancelled when it has no more listeners.
+         */
+        public void cancel() {
+            CovSubscriptionManager.this.cancel(this);
+        }
+
+        public boolean isSubscribed() {
+            synchronized (CovSubscriptionManager.this) {
+                return point.subscribed;
+            }
+        }
+
+        public boolean isPolled() {
+            synchronized (CovSubscriptionManager.this) {
+                return point.device.polled.contains(point);
+            }
+        }
+    }
+
+    /**
+     * The points that are managed in a remote device.
+     */
+    static class Device {
+        final RemoteDevice rd;
+        final Map<ObjectIdentifier, Map<PropertyReference, Point>> points = new HashMap<>();
+        final Map<ObjectIdentifier, CovConsumer> consumers = new HashMap<>();
+        final Deque<Point> pending = new ArrayDeque<>();
+        final Set<Point> polled = new LinkedHashSet<>();
+        boolean multipleRejected;
+        boolean polling;
+        long nextPoll;
+
+        Device(final RemoteDevice rd) {
+            this.rd = rd;
+        }
+
+        int size() {
+            int size = 0;
+            for (final Map<PropertyReference, Point> m : points.values())
+                size += m.size();
+            return size;
+        }
+
+        boolean isMultipleSupported() {
+            return !multipleRejected && rd.getServicesSupported() != null
+                    && rd.getServicesSupported().isSubscribeCovPropertyMultiple();
+        }
+
+        Batch nextBatch(final int maxReferencesPerRequest) {
+            int size = 1;
+            if (isMultipleSupported())
+                size = Math.min(maxReferencesPerRequest,
+                        Math.max(1, (rd.getMaxAPDULengthAccepted() - REFERENCE_SIZE) / REFERENCE_SIZE));
+
+            final List<Point> batchPoints = new ArrayList<>(size);
+            while (batchPoints.size() < size && !pending.isEmpty())
+                batchPoints.add(pending.poll());
+
+            final Batch batch = new Batch(this, batchPoints, batchPoints.size() > 1);
+            for (final Point point : batchPoints)
+                point.batch = batch;
+            return batch;
+        }
+    }
+
+    /**
+     * A point, i.e. a property of an object in a remote device.
+     */
+    static class Point {
+        final Device device;
+        final ObjectIdentifier oid;
+        final PropertyReference property;
+        final Real covIncrement;
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        // The batch in which the point is subscribed, or null if it is pending, polled or cancelled.
+        Batch batch;
+        boolean subscribed;
+        Encodable lastPolled;
+
+        Point(final Device device, final ObjectIdentifier oid, final PropertyReference property,
+                final Real covIncrement) {
+            this.device = device;
+            this.oid = oid;
+            this.property = property;
+            this.covIncrement = covIncrement;
+        }
+
+        void fire(final SequenceOf<PropertyValue> listOfValues) {
+            for (final Listener listener : listeners) {
+                try {
+                    listener.covReceived(device.rd.getObjectIdentifier(), oid, listOfValues);
+                } catch (final RuntimeException e) {
+                    LOG.warn("Error in COV listener", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The points that are subscribed, and renewed, with a single request.
+     */
+    static class Batch {
+        final Device device;
+        final List<Point> points;
+        final boolean multiple;
+        long due;
+        long expires;
+
+        Batch(final Device device, final List<Point> points, final boolean multiple) {
+            this.device = device;
+            this.points = points;
+            this.multiple = multiple;
+        }
+
+        /**
+         * Removes the points that are no longer in this batch.
+         *
+         * @return whether there are any points left.
+         */
+        boolean prune() {
+            points.removeIf(point -> point.batch != this);
+            return !points.isEmpty();
+        }
+    }
+}
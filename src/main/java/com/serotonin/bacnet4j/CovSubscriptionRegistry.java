@@ -0,0 +1,177 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+
+/**
+ * Routes the COV notifications that the local device receives as a client to the consumers of its subscriptions.
+ *
+ * A consumer is registered with the remote device, monitored object and subscriber process id of its subscription,
+ * so that each notification is handed straight to its consumer with a single lookup, rather than every device event
+ * listener having to check every notification against its own subscriptions. The notifications are still given to
+ * the device event listeners as well.
+ *
+ * Consumers are called in the transport thread, and so should not block.
+ *
+ * @author Matthew
+ */
+public class CovSubscriptionRegistry {
+    static final Logger LOG = LoggerFactory.getLogger(CovSubscriptionRegistry.class);
+
+    private final LocalDevice localDevice;
+    private final Map<Key, CovConsumer> consumers = new ConcurrentHashMap<>();
+
+    private final LongAdder routed = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+
+    CovSubscriptionRegistry(final LocalDevice localDevice) {
+        this.localDevice = localDevice;
+    }
+
+    /**
+     * Registers the consumer of the notifications of a subscription, replacing any consumer that was already
+     * registered for it.
+     */
+    public void register(final int deviceInstanceNumber, final ObjectIdentifier monitoredObjectIdentifier,
+            final long subscriberProcessIdentifier, final CovConsumer consumer) {
+        consumers.put(new Key(deviceInstanceNumber, monitoredObjectIdentifier, subscriberProcessIdentifier),
+                consumer);
+    }
+
+    /**
+     * Removes the consumer of the notifications of a subscription, if it is still the one that is registered.
+     *
+     * @return whether the consumer was removed.
+     */
+    public boolean unregister(final int deviceInstanceNumber, final ObjectIdentifier monitoredObjectIdentifier,
+            final long subscriberProcessIdentifier, final CovConsumer consumer) {
+        return consumers.remove(new Key(deviceInstanceNumber, monitoredObjectIdentifier, subscriberProcessIdentifier),
+                consumer);
+    }
+
+    public int size() {
+        return consumers.size();
+    }
+
+    /**
+     * @return the number of notifications that were handed to a registered consumer.
+     */
+    public long getRoutedCount() {
+        return routed.sum();
+    }
+
+    /**
+     * @return the number of notifications for which no consumer was registered.
+     */
+    public long getUnroutedCount() {
+        return unrouted.sum();
+    }
+
+    /**
+     * Called by the COV notification services. Hands the notification to the consumer that is registered for it, if
+     * any, and then fires it to the device event listeners.
+     */
+    public void fireCovNotification(final UnsignedInteger subscriberProcessIdentifier,
+            final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
+            final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues) {
+        final CovConsumer consumer = consumers.get(new Key(initiatingDeviceIdentifier.getInstanceNumber(),
+                monitoredObjectIdentifier, subscriberProcessIdentifier.longValue()));
+        if (consumer == null) {
+            unrouted.increment();
+        } else {
+            routed.increment();
+            try {
+                consumer.covReceived(subscriberProcessIdentifier, initiatingDeviceIdentifier,
+                        monitoredObjectIdentifier, timeRemaining, listOfValues);
+            } catch (final RuntimeException e) {
+                LOG.warn("Error in COV consumer", e);
+            }
+        }
+
+        localDevice.getEventHandler().fireCovNotification(subscriberProcessIdentifier, initiatingDeviceIdentifier,
+                monitoredObjectIdentifier, timeRemaining, listOfValues);
+    }
+
+    /**
+     * Receives the notifications of a subscription.
+     */
+    @FunctionalInterface
+    public interface CovConsumer {
+        void covReceived(UnsignedInteger subscriberProcessIdentifier, ObjectIdentifier initiatingDeviceIdentifier,
+                ObjectIdentifier monitoredObjectIdentifier, UnsignedInteger timeRemaining,
+                SequenceOf<PropertyValue> listOfValues);
+    }
+
+    static final class Key {
+        private final int deviceInstanceNumber;
+        private final ObjectIdentifier monitoredObjectIdentifier;
+        private final long subscriberProcessIdentifier;
+        private final int hash;
+
+        Key(final int deviceInstanceNumber, final ObjectIdentifier monitoredObjectIdentifier,
+                final long subscriberProcessIdentifier) {
+            this.deviceInstanceNumber = deviceInstanceNumber;
+            this.monitoredObjectIdentifier = monitoredObjectIdentifier;
+            this.subscriberProcessIdentifier = subscriberProcessIdentifier;
+
+            int h = deviceInstanceNumber;
+            h = 31 * h + monitoredObjectIdentifier.hashCode();
+            h = 31 * h + Long.hashCode(subscriberProcessIdentifier);
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return deviceInstanceNumber == other.deviceInstanceNumber
+                    && subscriberProcessIdentifier == other.subscriberProcessIdentifier
+                    && monitoredObjectIdentifier.equals(other.monitoredObjectIdentifier);
+        }
+    }
+}
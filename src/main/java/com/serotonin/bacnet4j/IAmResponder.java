@@ -0,0 +1,185 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.service.unconfirmed.IAmRequest;
+import com.serotonin.bacnet4j.type.constructed.Address;
+
+/**
+ * Sends the I-Am responses to Who-Is requests that the local device matches.
+ *
+ * By default every Who-Is is answered immediately with a global broadcast. When a window is set, the responses are
+ * rate limited instead: the first Who-Is is answered immediately, and any others received within the window are
+ * coalesced into a single response at the end of the window. If the number of requesters to answer is within the
+ * unicast limit they are each sent a directed I-Am rather than a broadcast.
+ *
+ * @author Matthew
+ */
+public class IAmResponder {
+    static final Logger LOG = LoggerFactory.getLogger(IAmResponder.class);
+
+    private final LocalDevice localDevice;
+
+    private long window;
+    private int unicastLimit;
+
+    private final Set<Address> pending = new LinkedHashSet<>();
+    private long lastSent;
+    private ScheduledFuture<?> flushFuture;
+
+    private final LongAdder whoIsReceived = new LongAdder();
+    private final LongAdder broadcastsSent = new LongAdder();
+    private final LongAdder unicastsSent = new LongAdder();
+
+    IAmResponder(final LocalDevice localDevice) {
+        this.localDevice = localDevice;
+    }
+
+    /**
+     * Sets the window within which Who-Is requests are coalesced into a single response. 0, the default, answers
+     * every Who-Is immediately.
+     */
+    public synchronized void setWindow(final long window, final TimeUnit unit) {
+        if (window < 0)
+            throw new IllegalArgumentException("window cannot be negative");
+        this.window = unit.toMillis(window);
+    }
+
+    public synchronized long getWindow(final TimeUnit unit) {
+        return unit.convert(window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the maximum number of requesters that are answered with directed I-Ams rather than a global broadcast. 0,
+     * the default, always broadcasts.
+     */
+    public synchronized void setUnicastLimit(final int unicastLimit) {
+        if (unicastLimit < 0)
+            throw new IllegalArgumentException("unicastLimit cannot be negative");
+        this.unicastLimit = unicastLimit;
+    }
+
+    public synchronized int getUnicastLimit() {
+        return unicastLimit;
+    }
+
+    public long getWhoIsReceived() {
+        return whoIsReceived.sum();
+    }
+
+    public long getBroadcastsSent() {
+        return broadcastsSent.sum();
+    }
+
+    public long getUnicastsSent() {
+        return unicastsSent.sum();
+    }
+
+    /**
+     * @return the number of Who-Is requests that did not get a response of their own, because they were coalesced
+     *         into a broadcast.
+     */
+    public long getSuppressed() {
+        return Math.max(0, whoIsReceived.sum() - broadcastsSent.sum() - unicastsSent.sum());
+    }
+
+    /**
+     * Called for every Who-Is that the local device matches.
+     */
+    public synchronized void whoIsReceived(final Address from) {
+        whoIsReceived.increment();
+
+        if (window <= 0) {
+            send(Collections.singleton(from));
+            return;
+        }
+
+        final long now = localDevice.getClock().millis();
+        if (flushFuture == null && now - lastSent >= window) {
+            // Nothing has been sent recently, so answer right away and start a window.
+            send(Collections.singleton(from));
+            lastSent = now;
+            flushFuture = localDevice.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        } else {
+            pending.add(from);
+            if (flushFuture == null)
+                flushFuture = localDevice.schedule(this::flush, Math.max(0, lastSent + window - now),
+                        TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void flush() {
+        flushFuture = null;
+        if (pending.isEmpty())
+            return;
+
+        try {
+            send(pending);
+        } finally {
+            pending.clear();
+        }
+
+        // Start another window so that the next Who-Is is coalesced too.
+        lastSent = localDevice.getClock().millis();
+        flushFuture = localDevice.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void terminate() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        pending.clear();
+    }
+
+    private void send(final Collection<Address> requesters) {
+        final IAmRequest iam = localDevice.getIAm().withIsResponseToWhoIs(true);
+        if (requesters.size() <= unicastLimit) {
+            for (final Address address : requesters) {
+                LOG.debug("Sending I-Am to {}", address);
+                localDevice.send(address, iam);
+                unicastsSent.increment();
+            }
+        } else {
+            localDevice.sendGlobalBroadcast(iam);
+            broadcastsSent.increment();
+        }
+    }
+}
@@ -30,6 +30,7 @@ package com.serotonin.bacnet4j;
 
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +38,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
@@ -71,15 +73,18 @@ import com.serotonin.bacnet4j.obj.mixin.CovContext;
 import com.serotonin.bacnet4j.persistence.IPersistence;
 import com.serotonin.bacnet4j.persistence.NullPersistence;
 import com.serotonin.bacnet4j.service.VendorServiceKey;
+import com.serotonin.bacnet4j.service.acknowledgement.AcknowledgementService;
 import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
 import com.serotonin.bacnet4j.service.confirmed.DeviceCommunicationControlRequest.EnableDisable;
 import com.serotonin.bacnet4j.service.unconfirmed.IAmRequest;
 import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedCovNotificationRequest;
 import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedRequestService;
 import com.serotonin.bacnet4j.service.unconfirmed.WhoIsRequest;
+import com.serotonin.bacnet4j.transport.CompletableServiceFuture;
 import com.serotonin.bacnet4j.transport.Transport;
 import com.serotonin.bacnet4j.type.Encodable;
 import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.constructed.BACnetArray;
 import com.serotonin.bacnet4j.type.constructed.PropertyValue;
 import com.serotonin.bacnet4j.type.constructed.Recipient;
 import com.serotonin.bacnet4j.type.constructed.SequenceOf;
@@ -91,6 +96,7 @@ import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.enumerated.RestartReason;
 import com.serotonin.bacnet4j.type.enumerated.Segmentation;
 import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
 import com.serotonin.bacnet4j.util.RemoteDeviceDiscoverer;
@@ -116,6 +122,22 @@ public class LocalDevice {
      * The other objects contained by this device.
      */
     private final List<BACnetObject> localObjects = new CopyOnWriteArrayList<>();
+    private final List<BACnetObject> unmodifiableLocalObjects = Collections.unmodifiableList(localObjects);
+
+    /**
+     * Indexes of the local objects by identifier and by name, and of the instance numbers in use by object type.
+     * Changes to the objects and indexes are made while holding the objectLock.
+     */
+    private final Map<ObjectIdentifier, BACnetObject> objectsById = new ConcurrentHashMap<>();
+    private final Map<String, BACnetObject> objectsByName = new ConcurrentHashMap<>();
+    private final Map<ObjectType, BitSet> instanceNumbersByType = new HashMap<>();
+    private final Object objectLock = new Object();
+
+    /**
+     * The identifiers of the local objects, as read from the device's object list. Built when first needed after the
+     * objects change, and then shared by all reads until they change again.
+     */
+    private volatile BACnetArray<ObjectIdentifier> objectList;
 
     /**
      * The policies used for caching of devices, objects, and properties.
@@ -166,6 +188,13 @@ public class LocalDevice {
     private final DeviceEventHandler eventHandler = new DeviceEventHandler();
     private final ExceptionDispatcher exceptionDispatcher = new ExceptionDispatcher();
 
+    // Responses to Who-Is requests
+    private final IAmResponder iAmResponder = new IAmResponder(this);
+
+    // Routing of received COV notifications, and client COV subscriptions to remote devices
+    private final CovSubscriptionRegistry covSubscriptionRegistry = new CovSubscriptionRegistry(this);
+    private final CovSubscriptionManager covSubscriptionManager = new CovSubscriptionManager(this);
+
     // Confirmed private transfer handlers.
     private final Map<VendorServiceKey, PrivateTransferHandler> privateTransferHandlers = new HashMap<>();
 
@@ -182,6 +211,9 @@ public class LocalDevice {
      */
     private final AtomicInteger nextProcessId = new AtomicInteger(1);
 
+    // Whether objects use CompactPropertyMap for their properties.
+    private boolean compactPropertyStorage;
+
     // Default persistence to null.
     private IPersistence persistence = new NullPersistence();
 
@@ -261,6 +293,27 @@ public class LocalDevice {
         return exceptionDispatcher;
     }
 
+    /**
+     * @return the responder of I-Ams to Who-Is requests, which can be configured to rate limit the responses.
+     */
+    public IAmResponder getIAmResponder() {
+        return iAmResponder;
+    }
+
+    /**
+     * @return the registry that routes received COV notifications to the consumers of the subscriptions.
+     */
+    public CovSubscriptionRegistry getCovSubscriptionRegistry() {
+        return covSubscriptionRegistry;
+    }
+
+    /**
+     * @return the manager of client COV subscriptions, which batches and renews subscriptions to remote devices.
+     */
+    public CovSubscriptionManager getCovSubscriptionManager() {
+        return covSubscriptionManager;
+    }
+
     public int getNextProcessId() {
         return nextProcessId.getAndIncrement();
     }
@@ -392,6 +445,8 @@ public class LocalDevice {
     }
 
     public synchronized void terminate() {
+        iAmResponder.terminate();
+        covSubscriptionManager.terminate();
         if (timer != null) {
             timer.shutdown();
             try {
@@ -462,6 +517,20 @@ public class LocalDevice {
         return password;
     }
 
+    /**
+     * Sets whether objects created from now on store their properties in arrays laid out by object type, rather than
+     * in hash maps. This saves memory on devices with many objects. The device object itself is created with the local
+     * device, and so always uses a hash map.
+     */
+    public LocalDevice withCompactPropertyStorage(final boolean compactPropertyStorage) {
+        this.compactPropertyStorage = compactPropertyStorage;
+        return this;
+    }
+
+    public boolean isCompactPropertyStorage() {
+        return compactPropertyStorage;
+    }
+
     public LocalDevice withPassword(final String password) {
         this.password = password;
         return this;
@@ -505,8 +574,11 @@ public class LocalDevice {
         return o;
     }
 
+    /**
+     * @return an unmodifiable view of the local objects. Use addObject and removeObject to change them.
+     */
     public List<BACnetObject> getLocalObjects() {
-        return localObjects;
+        return unmodifiableLocalObjects;
     }
 
     public BACnetObject getObject(final ObjectIdentifier id) {
@@ -516,20 +588,13 @@ public class LocalDevice {
             oidToFind = new ObjectIdentifier(ObjectType.device, getInstanceNumber());
         }
 
-        for (final BACnetObject obj : localObjects) {
-            if (obj.getId().equals(oidToFind))
-                return obj;
-        }
-
-        return null;
+        return objectsById.get(oidToFind);
     }
 
     public BACnetObject getObject(final String name) {
-        for (final BACnetObject obj : localObjects) {
-            if (name.equals(obj.getObjectName()))
-                return obj;
-        }
-        return null;
+        if (name == null)
+            return null;
+        return objectsByName.get(name);
     }
 
     public void addObject(final BACnetObject obj) throws BACnetServiceException {
@@ -541,12 +606,18 @@ public class LocalDevice {
                 throw new BACnetServiceException(ErrorClass.object, ErrorCode.dynamicCreationNotSupported);
             }
         }
-        if (getObject(obj.getId()) != null)
-            throw new BACnetServiceException(ErrorClass.object, ErrorCode.objectIdentifierAlreadyExists);
-        if (getObject(obj.getObjectName()) != null)
-            throw new BACnetServiceException(ErrorClass.object, ErrorCode.duplicateName);
-
-        localObjects.add(obj);
+        synchronized (objectLock) {
+            if (objectsById.containsKey(obj.getId()))
+                throw new BACnetServiceException(ErrorClass.object, ErrorCode.objectIdentifierAlreadyExists);
+            if (getObject(obj.getObjectName()) != null)
+                throw new BACnetServiceException(ErrorClass.object, ErrorCode.duplicateName);
+
+            localObjects.add(obj);
+            indexId(obj, obj.getId());
+            objectList = null;
+            if (obj.getObjectName() != null)
+                objectsByName.put(obj.getObjectName(), obj);
+        }
 
         if (initialized) {
             // If the local device is already initialized, initialize the object.
@@ -559,42 +630,92 @@ public class LocalDevice {
     }
 
     public int getNextInstanceObjectNumber(final ObjectType objectType) {
-        // Make a list of existing ids.
-        final List<Integer> ids = new ArrayList<>();
-        final int type = objectType.intValue();
-        ObjectIdentifier id;
-        for (final BACnetObject obj : localObjects) {
-            id = obj.getId();
-            if (id.getObjectType().intValue() == type)
-                ids.add(id.getInstanceNumber());
-        }
-
-        // Sort the list.
-        Collections.sort(ids);
-
-        // Find the first hole in the list.
-        int i = 0;
-        for (; i < ids.size(); i++) {
-            if (ids.get(i) != i)
-                break;
+        // Find the first instance number that is not in use.
+        synchronized (objectLock) {
+            final BitSet instanceNumbers = instanceNumbersByType.get(objectType);
+            if (instanceNumbers == null)
+                return 0;
+            return instanceNumbers.nextClearBit(0);
         }
-
-        return i;
     }
 
     public BACnetObject removeObject(final ObjectIdentifier id) throws BACnetServiceException {
-        final BACnetObject obj = getObject(id);
-        if (obj != null) {
-            localObjects.remove(obj);
+        final BACnetObject obj;
+        synchronized (objectLock) {
+            obj = getObject(id);
+            if (obj != null) {
+                localObjects.remove(obj);
+                unindexId(obj, obj.getId());
+                objectList = null;
+                if (obj.getObjectName() != null)
+                    objectsByName.remove(obj.getObjectName(), obj);
+            }
+        }
 
-            // Notify the object that it was removed.
-            obj.terminate();
-        } else
+        if (obj == null)
             throw new BACnetServiceException(ErrorClass.object, ErrorCode.unknownObject);
 
+        // Notify the object that it was removed.
+        obj.terminate();
+
         return obj;
     }
 
+    /**
+     * Updates the object indexes after the identifier or name of a local object has changed. This is called by the
+     * ObjectIdAndNameMixin, and does nothing if the object has not been added to this device.
+     */
+    public void objectIdentityChanged(final BACnetObject obj, final Encodable oldValue, final Encodable newValue) {
+        synchronized (objectLock) {
+            if (oldValue instanceof ObjectIdentifier) {
+                if (objectsById.get(oldValue) != obj)
+                    return;
+                unindexId(obj, (ObjectIdentifier) oldValue);
+                indexId(obj, (ObjectIdentifier) newValue);
+                objectList = null;
+            } else if (newValue instanceof CharacterString) {
+                if (objectsById.get(obj.getId()) != obj)
+                    return;
+                if (oldValue != null)
+                    objectsByName.remove(((CharacterString) oldValue).getValue(), obj);
+                objectsByName.put(((CharacterString) newValue).getValue(), obj);
+            }
+        }
+    }
+
+    /**
+     * @return the identifiers of the local objects in the order they were added. The array is shared, and must not be
+     *         modified.
+     */
+    public BACnetArray<ObjectIdentifier> getObjectList() {
+        BACnetArray<ObjectIdentifier> list = objectList;
+        if (list == null) {
+            synchronized (objectLock) {
+                list = objectList;
+                if (list == null) {
+                    final List<ObjectIdentifier> oids = new ArrayList<>(localObjects.size());
+                    for (final BACnetObject bo : localObjects)
+                        oids.add(bo.getId());
+                    list = new BACnetArray<>(oids);
+                    objectList = list;
+                }
+            }
+        }
+        return list;
+    }
+
+    private void indexId(final BACnetObject obj, final ObjectIdentifier id) {
+        objectsById.put(id, obj);
+        instanceNumbersByType.computeIfAbsent(id.getObjectType(), k -> new BitSet()).set(id.getInstanceNumber());
+    }
+
+    private void unindexId(final BACnetObject obj, final ObjectIdentifier id) {
+        objectsById.remove(id, obj);
+        final BitSet instanceNumbers = instanceNumbersByType.get(id.getObjectType());
+        if (instanceNumbers != null)
+            instanceNumbers.clear(id.getInstanceNumber());
+    }
+
     public ServicesSupported getServicesSupported() {
         return deviceObject.get(PropertyIdentifier.protocolServicesSupported);
     }
@@ -1021,6 +1142,25 @@ public class LocalDevice {
             send(d, serviceRequest, consumer);
     }
 
+    /**
+     * Sends the request and returns a future that completes with the acknowledgement, or exceptionally with the
+     * BACnetException that the blocking ServiceFuture would have thrown. Unlike ServiceFuture no thread is parked while
+     * the request is outstanding, and the method may be called from the transport thread.
+     */
+    public <T extends AcknowledgementService> CompletableFuture<T> sendAsync(final RemoteDevice d,
+            final ConfirmedRequestService serviceRequest) {
+        final CompletableServiceFuture<T> future = new CompletableServiceFuture<>();
+        send(d, serviceRequest, future);
+        return future;
+    }
+
+    public <T extends AcknowledgementService> CompletableFuture<T> sendAsync(final Address address,
+            final ConfirmedRequestService serviceRequest) {
+        final CompletableServiceFuture<T> future = new CompletableServiceFuture<>();
+        send(address, serviceRequest, future);
+        return future;
+    }
+
     public void send(final RemoteDevice d, final UnconfirmedRequestService serviceRequest) {
         ensureInitialized();
         transport.send(d.getAddress(), serviceRequest);
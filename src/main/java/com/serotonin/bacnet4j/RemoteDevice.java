@@ -42,6 +42,7 @@ import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
 import com.serotonin.bacnet4j.type.primitive.CharacterString;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.ResponseSizeEstimator;
 
 public class RemoteDevice implements Serializable {
     private static final long serialVersionUID = 6338537708566242078L;
@@ -51,6 +52,8 @@ public class RemoteDevice implements Serializable {
     private Address address;
     private Object userData;
     private int maxReadMultipleReferences = -1;
+    private int maxReadsInFlight = 1;
+    private transient ResponseSizeEstimator responseSizeEstimator;
     private final RemoteEntityCache<ObjectIdentifier, RemoteObject> remoteObjectCache;
 
     public RemoteDevice(final LocalDevice localDevice, final int instanceNumber) {
@@ -292,6 +295,30 @@ public class RemoteDevice implements Serializable {
         }
     }
 
+    /**
+     * Sets the number of read requests that RequestUtils.readProperties keeps outstanding to this device at once when
+     * reading more properties than fit into a single request. The default of 1 sends the requests one after the
+     * other. Higher values pipeline the requests, which saves round trips for large devices, but note that the
+     * transport may also limit the number of outstanding requests per peer.
+     */
+    public void setMaxReadsInFlight(final int maxReadsInFlight) {
+        this.maxReadsInFlight = Math.max(1, maxReadsInFlight);
+    }
+
+    public int getMaxReadsInFlight() {
+        return maxReadsInFlight;
+    }
+
+    /**
+     * @return the estimator of ReadPropertyMultiple response sizes from this device, which is used to partition
+     *         requests.
+     */
+    public synchronized ResponseSizeEstimator getResponseSizeEstimator() {
+        if (responseSizeEstimator == null)
+            responseSizeEstimator = new ResponseSizeEstimator(this, localDevice);
+        return responseSizeEstimator;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
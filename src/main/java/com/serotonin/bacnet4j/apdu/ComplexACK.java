@@ -202,7 +202,7 @@ public class ComplexACK extends AckAPDU implements Segmentable {
             proposedWindowSize = queue.popU1B();
         }
         serviceChoice = queue.pop();
-        serviceData = new ByteQueue(queue.popAll());
+        serviceData = queue.popSlice(queue.size());
     }
 
     @Override
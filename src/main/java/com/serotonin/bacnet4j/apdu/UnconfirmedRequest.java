@@ -80,7 +80,7 @@ public class UnconfirmedRequest extends APDU {
     UnconfirmedRequest(final ServicesSupported services, final ByteQueue queue) throws BACnetException {
         queue.pop();
         serviceChoice = queue.pop();
-        serviceData = new ByteQueue(queue.popAll());
+        serviceData = queue.popSlice(queue.size());
         UnconfirmedRequestService.checkUnconfirmedRequestService(services, serviceChoice);
     }
 
@@ -28,7 +28,21 @@
  */
 package com.serotonin.bacnet4j.event;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.serotonin.bacnet4j.RemoteDevice;
 import com.serotonin.bacnet4j.RemoteObject;
@@ -51,14 +65,105 @@ import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
 
 /**
- * Class to handle various events that occur on the local device. This class accepts 0 to many listeners, and dispatches
- * notifications synchronously.
+ * Class to handle various events that occur on the local device. This class accepts 0 to many listeners, and by
+ * default dispatches notifications synchronously, i.e. on the thread that received the message, which is usually the
+ * transport thread.
+ *
+ * If an executor is set, notifications are instead queued for each listener and delivered on the executor, so that a
+ * slow listener does not hold up the transport or the other listeners. Each listener's queue is delivered by one task
+ * at a time, so a listener receives events in the order in which they occurred. The queues are bounded, and the
+ * overflow policy determines what happens when one is full. The exception is checkAllowPropertyWrite, which needs
+ * the listeners' answers, and so is always synchronous.
  *
  * @author Matthew Lohbihler
  */
 public class DeviceEventHandler {
+    static final Logger LOG = LoggerFactory.getLogger(DeviceEventHandler.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    // The number of events a delivery task delivers before yielding its executor thread.
+    private static final int DELIVERY_BATCH = 100;
+
+    // Whether the current thread is running a delivery task.
+    private static final ThreadLocal<java.lang.Boolean> DELIVERING = ThreadLocal
+            .withInitial(() -> java.lang.Boolean.FALSE);
+
+    public enum OverflowPolicy {
+        /**
+         * The oldest event in the queue is discarded.
+         */
+        DROP_OLDEST,
+        /**
+         * The thread that fires the event waits until there is room in the queue. Note that this holds up the
+         * transport if the event came from a received message.
+         *
+         * An event that a listener fires while it is being notified - i.e. on a delivery task - discards the oldest
+         * event instead, because waiting there could stop the queue from draining. The same applies to any other
+         * task on the delivery executor, which the handler can't detect, so don't use this policy with an executor
+         * whose threads may fire events themselves, such as the local device's own executor.
+         */
+        BLOCK,
+        /**
+         * A COV notification replaces a queued notification for the same subscription, i.e. from the same device about
+         * the same object for the same subscriber process. Other events, and COV notifications that have nothing to
+         * replace, discard the oldest event.
+         */
+        COALESCE_COV,
+    }
+
     final ConcurrentLinkedQueue<DeviceEventListener> listeners = new ConcurrentLinkedQueue<>();
 
+    // Asynchronous delivery
+    private volatile Executor executor;
+    private volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private final Map<DeviceEventListener, ListenerQueue> listenerQueues = new ConcurrentHashMap<>();
+
+    // Statistics
+    private final LongAdder deliveredEvents = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder coalescedEvents = new LongAdder();
+    private final LongAdder totalLag = new LongAdder();
+    private final AtomicLong maxLag = new AtomicLong();
+
+    //
+    //
+    // Configuration
+    //
+    /**
+     * Sets the executor on which listeners are notified. If null, which is the default, listeners are notified
+     * synchronously.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the maximum number of events that can be queued for each listener when delivery is asynchronous.
+     */
+    public void setQueueCapacity(final int queueCapacity) {
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("queueCapacity cannot be less than 1");
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
     //
     //
     // Listener management
@@ -67,14 +172,74 @@ public class DeviceEventHandler {
         listeners.add(l);
     }
 
+    /**
+     * Removes the listener. Events that are queued for it are discarded.
+     */
     public void removeListener(final DeviceEventListener l) {
         listeners.remove(l);
+        if (!listeners.contains(l)) {
+            final ListenerQueue queue = listenerQueues.remove(l);
+            if (queue != null)
+                queue.clear();
+        }
     }
 
     public int getListenerCount() {
         return listeners.size();
     }
 
+    //
+    //
+    // Statistics
+    //
+    /**
+     * @return the number of events that are waiting to be delivered to listeners.
+     */
+    public int getQueuedEventCount() {
+        int count = 0;
+        for (final ListenerQueue queue : listenerQueues.values())
+            count += queue.size();
+        return count;
+    }
+
+    /**
+     * @return the number of events that were delivered asynchronously.
+     */
+    public long getDeliveredEventCount() {
+        return deliveredEvents.sum();
+    }
+
+    /**
+     * @return the number of events that were discarded because a listener's queue was full.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * @return the number of COV notifications that replaced a queued notification.
+     */
+    public long getCoalescedEventCount() {
+        return coalescedEvents.sum();
+    }
+
+    /**
+     * @return the longest time that an event waited in a queue before being delivered.
+     */
+    public long getMaxLag(final TimeUnit unit) {
+        return unit.convert(maxLag.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the average time that events waited in a queue before being delivered.
+     */
+    public long getAverageLag(final TimeUnit unit) {
+        final long delivered = deliveredEvents.sum();
+        if (delivered == 0)
+            return 0;
+        return unit.convert(totalLag.sum() / delivered, TimeUnit.NANOSECONDS);
+    }
+
     //
     //
     // Checks and notifications
@@ -92,46 +257,23 @@ public class DeviceEventHandler {
     }
 
     public void fireIAmReceived(final RemoteDevice d) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.iAmReceived(d);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(null, l -> l.iAmReceived(d));
     }
 
     public void propertyWritten(final Address from, final BACnetObject obj, final PropertyValue pv) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.propertyWritten(from, obj, pv);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(null, l -> l.propertyWritten(from, obj, pv));
     }
 
     public void fireIHaveReceived(final RemoteDevice d, final RemoteObject o) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.iHaveReceived(d, o);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(null, l -> l.iHaveReceived(d, o));
     }
 
     public void fireCovNotification(final UnsignedInteger subscriberProcessIdentifier,
             final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
             final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.covNotificationReceived(subscriberProcessIdentifier, initiatingDeviceIdentifier,
-                        monitoredObjectIdentifier, timeRemaining, listOfValues);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(Arrays.asList(initiatingDeviceIdentifier, monitoredObjectIdentifier, subscriberProcessIdentifier),
+                l -> l.covNotificationReceived(subscriberProcessIdentifier, initiatingDeviceIdentifier,
+                        monitoredObjectIdentifier, timeRemaining, listOfValues));
     }
 
     public void fireEventNotification(final UnsignedInteger processIdentifier,
@@ -140,51 +282,50 @@ public class DeviceEventHandler {
             final EventType eventType, final CharacterString messageText, final NotifyType notifyType,
             final Boolean ackRequired, final EventState fromState, final EventState toState,
             final NotificationParameters eventValues) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.eventNotificationReceived(processIdentifier, initiatingDeviceIdentifier, eventObjectIdentifier,
-                        timeStamp, notificationClass, priority, eventType, messageText, notifyType, ackRequired,
-                        fromState, toState, eventValues);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(null, l -> l.eventNotificationReceived(processIdentifier, initiatingDeviceIdentifier,
+                eventObjectIdentifier, timeStamp, notificationClass, priority, eventType, messageText, notifyType,
+                ackRequired, fromState, toState, eventValues));
     }
 
     public void fireTextMessage(final ObjectIdentifier textMessageSourceDevice, final Choice messageClass,
             final MessagePriority messagePriority, final CharacterString message) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.textMessageReceived(textMessageSourceDevice, messageClass, messagePriority, message);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(null, l -> l.textMessageReceived(textMessageSourceDevice, messageClass, messagePriority, message));
     }
 
     public void synchronizeTime(final Address from, final DateTime dateTime, final boolean utc) {
-        for (final DeviceEventListener l : listeners) {
-            try {
-                l.synchronizeTime(from, dateTime, utc);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
-        }
+        fire(null, l -> l.synchronizeTime(from, dateTime, utc));
     }
 
     public void requestReceived(final Address from, final Service service) {
+        fire(null, l -> l.requestReceived(from, service));
+    }
+
+    public void handleException(final Exception e) {
+        fire(null, l -> handleException(l, e));
+    }
+
+    /**
+     * Notifies the listeners of an event, either directly or through their queues.
+     *
+     * @param coalesceKey
+     *            the key by which queued COV notifications are coalesced, or null for other events.
+     */
+    private void fire(final Object coalesceKey, final Consumer<DeviceEventListener> event) {
+        final Executor executor = this.executor;
         for (final DeviceEventListener l : listeners) {
-            try {
-                l.requestReceived(from, service);
-            } catch (final Exception e) {
-                handleException(l, e);
-            }
+            if (executor == null)
+                deliver(l, event);
+            else
+                listenerQueues.computeIfAbsent(l, ListenerQueue::new).add(coalesceKey, event);
         }
     }
 
-    public void handleException(final Exception e) {
-        for (final DeviceEventListener l : listeners)
+    static void deliver(final DeviceEventListener l, final Consumer<DeviceEventListener> event) {
+        try {
+            event.accept(l);
+        } catch (final Exception e) {
             handleException(l, e);
+        }
     }
 
     private static void handleException(final DeviceEventListener l, final Exception e) {
@@ -194,4 +335,139 @@ public class DeviceEventHandler {
             // no op
         }
     }
+
+    private static class QueuedEvent {
+        final Object coalesceKey;
+        final long queued = System.nanoTime();
+        Consumer<DeviceEventListener> event;
+
+        QueuedEvent(final Object coalesceKey, final Consumer<DeviceEventListener> event) {
+            this.coalesceKey = coalesceKey;
+            this.event = event;
+        }
+    }
+
+    /**
+     * The events waiting for a listener. At most one task delivers them at a time.
+     */
+    private class ListenerQueue implements Runnable {
+        private final DeviceEventListener listener;
+        private final ArrayDeque<QueuedEvent> queue = new ArrayDeque<>();
+        private boolean scheduled;
+
+        ListenerQueue(final DeviceEventListener listener) {
+            this.listener = listener;
+        }
+
+        void add(final Object coalesceKey, final Consumer<DeviceEventListener> event) {
+            synchronized (this) {
+                while (queue.size() >= queueCapacity) {
+                    final OverflowPolicy policy = overflowPolicy;
+                    if (policy == OverflowPolicy.COALESCE_COV && coalesceKey != null && coalesce(coalesceKey, event))
+                        return;
+                    if (policy == OverflowPolicy.BLOCK && !DELIVERING.get()) {
+                        try {
+                            wait();
+                        } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            droppedEvents.increment();
+                            return;
+                        }
+                    } else {
+                        queue.poll();
+                        droppedEvents.increment();
+                    }
+                }
+
+                queue.add(new QueuedEvent(coalesceKey, event));
+                if (scheduled)
+                    return;
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        private boolean coalesce(final Object coalesceKey, final Consumer<DeviceEventListener> event) {
+            // Replace the event in place. The listener sees the latest values, but in the position of the first, and
+            // the lag of the event counts from when the first was queued.
+            for (final QueuedEvent e : queue) {
+                if (coalesceKey.equals(e.coalesceKey)) {
+                    e.event = event;
+                    coalescedEvents.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void schedule() {
+            final Executor executor = DeviceEventHandler.this.executor;
+            try {
+                if (executor == null)
+                    // Asynchronous delivery was turned off in the meantime.
+                    run();
+                else
+                    executor.execute(this);
+            } catch (final RejectedExecutionException e) {
+                LOG.warn("Event delivery was rejected by the executor. Discarding {} events", size(), e);
+                synchronized (this) {
+                    droppedEvents.add(queue.size());
+                    queue.clear();
+                    scheduled = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            final boolean nested = DELIVERING.get();
+            DELIVERING.set(true);
+            boolean yield = false;
+            try {
+                for (int i = 0; i < DELIVERY_BATCH; i++) {
+                    final QueuedEvent e;
+                    synchronized (this) {
+                        e = queue.poll();
+                        if (e == null)
+                            return;
+                        notifyAll();
+                    }
+
+                    final long lag = System.nanoTime() - e.queued;
+                    totalLag.add(lag);
+                    maxLag.accumulateAndGet(lag, Math::max);
+                    deliver(listener, e.event);
+                    deliveredEvents.increment();
+                }
+                yield = true;
+            } finally {
+                if (!nested)
+                    DELIVERING.remove();
+
+                // Also reached if a listener throws an Error, so that the listener isn't left without a task. Events
+                // that were added after the queue was found to be empty are picked up here too.
+                if (!yield) {
+                    synchronized (this) {
+                        if (queue.isEmpty())
+                            scheduled = false;
+                        else
+                            yield = true;
+                    }
+                }
+                if (yield)
+                    // Give other tasks a turn on the executor.
+                    schedule();
+            }
+        }
+
+        synchronized int size() {
+            return queue.size();
+        }
+
+        synchronized void clear() {
+            queue.clear();
+            notifyAll();
+        }
+    }
 }
@@ -41,27 +41,45 @@ public class NPDU {
     private final boolean networkMessage;
     private final int networkMessageType;
     private final ByteQueue queue;
+    private final int networkPriority;
 
     /**
      * Constructor for APDU messages.
      */
     public NPDU(Address from, OctetString linkService, ByteQueue queue) {
+        this(from, linkService, queue, 0);
+    }
+
+    /**
+     * Constructor for APDU messages with the network priority from the NPCI.
+     */
+    public NPDU(Address from, OctetString linkService, ByteQueue queue, int networkPriority) {
         this.from = from;
         this.linkService = linkService;
         this.networkMessage = false;
         this.networkMessageType = -1;
         this.queue = queue;
+        this.networkPriority = networkPriority;
     }
 
     /**
      * Constructor for network messages.
      */
     public NPDU(Address from, OctetString linkService, int networkMessageType, ByteQueue queue) {
+        this(from, linkService, networkMessageType, queue, 0);
+    }
+
+    /**
+     * Constructor for network messages with the network priority from the NPCI.
+     */
+    public NPDU(Address from, OctetString linkService, int networkMessageType, ByteQueue queue,
+            int networkPriority) {
         this.from = from;
         this.linkService = linkService;
         this.networkMessage = true;
         this.networkMessageType = networkMessageType;
         this.queue = queue;
+        this.networkPriority = networkPriority;
     }
 
     public Address getFrom() {
@@ -80,6 +98,13 @@ public class NPDU {
         return networkMessageType;
     }
 
+    /**
+     * @return the network priority value from the NPCI. See NPCI.NetworkPriority.
+     */
+    public int getNetworkPriority() {
+        return networkPriority;
+    }
+
     public ByteQueue getNetworkMessageData() {
         return queue;
     }
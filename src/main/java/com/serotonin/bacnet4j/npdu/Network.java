@@ -42,9 +42,18 @@ import com.serotonin.bacnet4j.util.sero.ByteQueue;
 abstract public class Network {
     static final Logger LOG = LoggerFactory.getLogger(Network.class);
 
+    /**
+     * The number of bytes that are reserved in front of NPDUs given to sendNPDU, so that link layer headers can be
+     * prepended without moving the NPDU.
+     */
+    public static final int LINK_HEADROOM = 16;
+
     private final int localNetworkNumber;
     private Transport transport;
 
+    // Encoding buffers for NPDUs, reused by the sending thread across networks.
+    private static final ThreadLocal<ByteQueue> NPDU_BUFFERS = new ThreadLocal<>();
+
     public Network() {
         this(0);
     }
@@ -91,7 +100,16 @@ abstract public class Network {
 
     public final void sendAPDU(final Address recipient, final OctetString router, final APDU apdu,
             final boolean broadcast) throws BACnetException {
-        final ByteQueue npdu = new ByteQueue();
+        final ByteQueue npdu = acquireBuffer();
+        try {
+            sendAPDU(recipient, router, apdu, broadcast, npdu);
+        } finally {
+            releaseBuffer(npdu);
+        }
+    }
+
+    private void sendAPDU(final Address recipient, final OctetString router, final APDU apdu,
+            final boolean broadcast, final ByteQueue npdu) throws BACnetException {
 
         NPCI npci;
         if (recipient.isGlobal())
@@ -120,7 +138,17 @@ abstract public class Network {
 
     public final void sendNetworkMessage(final Address recipient, final OctetString router, final int messageType,
             final byte[] msg, final boolean broadcast, final boolean expectsReply) throws BACnetException {
-        final ByteQueue npdu = new ByteQueue();
+        final ByteQueue npdu = acquireBuffer();
+        try {
+            sendNetworkMessage(recipient, router, messageType, msg, broadcast, expectsReply, npdu);
+        } finally {
+            releaseBuffer(npdu);
+        }
+    }
+
+    private void sendNetworkMessage(final Address recipient, final OctetString router, final int messageType,
+            final byte[] msg, final boolean broadcast, final boolean expectsReply, final ByteQueue npdu)
+            throws BACnetException {
 
         NPCI npci;
         if (recipient.isGlobal())
@@ -143,6 +171,42 @@ abstract public class Network {
         sendNPDU(recipient, router, npdu, broadcast, expectsReply);
     }
 
+    /**
+     * Whether the NPDU queues given to sendNPDU may be reused for later sends. Networks that are done with the queue
+     * when sendNPDU returns should return true, so that sending does not allocate new buffers.
+     */
+    protected boolean isNpduBufferReusable() {
+        return false;
+    }
+
+    /**
+     * Returns an empty NPDU buffer with LINK_HEADROOM bytes of headroom. If buffers are reusable this is the buffer of
+     * the sending thread, unless the thread is already using it, e.g. because a send caused another send.
+     */
+    private ByteQueue acquireBuffer() {
+        ByteQueue npdu = null;
+        if (isNpduBufferReusable()) {
+            npdu = NPDU_BUFFERS.get();
+            NPDU_BUFFERS.remove();
+        }
+        if (npdu == null)
+            npdu = new ByteQueue(512);
+        else
+            npdu.clear();
+        npdu.reserveHeadroom(LINK_HEADROOM);
+        return npdu;
+    }
+
+    private void releaseBuffer(final ByteQueue npdu) {
+        if (isNpduBufferReusable())
+            NPDU_BUFFERS.set(npdu);
+    }
+
+    /**
+     * Sends the NPDU to the recipient. The NPDU queue may be consumed or modified, e.g. by prepending the link layer
+     * header into its headroom. If isNpduBufferReusable returns true, the queue is reused for the next send, so it must
+     * not be retained after the call returns.
+     */
     abstract public void sendNPDU(Address recipient, OctetString router, ByteQueue npdu, boolean broadcast,
             boolean expectsReply) throws BACnetException;
 
@@ -212,10 +276,10 @@ abstract public class Network {
 
         if (npci.isNetworkMessage())
             // Network message
-            return new NPDU(from, ls, npci.getMessageType(), queue);
+            return new NPDU(from, ls, npci.getMessageType(), queue, npci.getNetworkPriority());
 
         // APDU message
-        return new NPDU(from, ls, queue);
+        return new NPDU(from, ls, queue, npci.getNetworkPriority());
     }
 
     @Override
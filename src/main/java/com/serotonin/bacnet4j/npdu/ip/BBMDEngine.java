@@ -0,0 +1,245 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.npdu.ip.IpNetwork.BDTEntry;
+import com.serotonin.bacnet4j.npdu.ip.IpNetwork.FDTEntry;
+
+/**
+ * Holds the broadcast distribution table (BDT) and foreign device table (FDT) of a BBMD, along with the sets of
+ * addresses to which broadcasts are forwarded. The address sets are recomputed whenever either table changes, so that
+ * forwarding a broadcast - which happens far more often than table changes - needs no locking, table scans or address
+ * creation. FDT entries are indexed by their expiry time, so that expiring registrations only looks at the entries
+ * that have actually expired.
+ *
+ * @author Matthew
+ */
+class BBMDEngine {
+    static final Logger LOG = LoggerFactory.getLogger(BBMDEngine.class);
+
+    private static final InetSocketAddress[] NONE = new InetSocketAddress[0];
+
+    private final int localAddress;
+    private final int subnetMask;
+
+    // Guards changes to the tables and the recomputation of the target sets.
+    private final Object lock = new Object();
+
+    private volatile List<BDTEntry> broadcastDistributionTable = Collections.emptyList();
+    private final Map<InetSocketAddress, FDTEntry> foreignDeviceTable = new ConcurrentHashMap<>();
+    private final TreeSet<FDTEntry> expiries = new TreeSet<>(
+            Comparator.<FDTEntry> comparingLong(e -> e.endTime).thenComparingLong(e -> e.sequence));
+    private long nextSequence;
+
+    // Precomputed fan-out.
+    private volatile boolean forwardToLocalBroadcast;
+    private volatile InetSocketAddress[] bdtTargets = NONE;
+    private volatile InetSocketAddress[] fdtTargets = NONE;
+    private volatile InetSocketAddress[] broadcastTargets = NONE;
+
+    BBMDEngine(final byte[] localAddress, final byte[] subnetMask) {
+        this.localAddress = toInt(localAddress, 0);
+        this.subnetMask = toInt(subnetMask, 0);
+    }
+
+    //
+    // Broadcast distribution table
+    //
+    List<BDTEntry> getBroadcastDistributionTable() {
+        return broadcastDistributionTable;
+    }
+
+    void setBroadcastDistributionTable(final List<BDTEntry> list) throws UnknownHostException {
+        final List<InetSocketAddress> targets = new ArrayList<>(list.size());
+        BDTEntry thisEntry = null;
+        for (final BDTEntry e : list) {
+            if (toInt(e.address, 0) == localAddress) {
+                thisEntry = e;
+                continue;
+            }
+
+            // J.4.5: The B/IP address to which the Forwarded-NPDU message is sent is formed by inverting the broadcast
+            // distribution mask in the BDT entry and logically ORing it with the BBMD address of the same entry.
+            final byte[] target = new byte[4];
+            for (int i = 0; i < 4; i++)
+                target[i] = (byte) (e.address[i] | ~e.distributionMask[i]);
+            targets.add(InetAddrCache.get(InetAddress.getByAddress(target), e.port));
+        }
+
+        if (!list.isEmpty() && thisEntry == null)
+            LOG.warn("Configuration error: could not find BDT entry for this instance.");
+
+        synchronized (lock) {
+            broadcastDistributionTable = Collections.unmodifiableList(new ArrayList<>(list));
+            // Forwarded messages are only broadcast locally if the mask of the BDT entry for this BBMD is all 1s. We
+            // only need to check the last byte, because any zeros all need to be on the right.
+            forwardToLocalBroadcast = thisEntry != null && thisEntry.distributionMask[3] == (byte) 255;
+            bdtTargets = targets.toArray(NONE);
+            updateBroadcastTargets();
+        }
+    }
+
+    //
+    // Foreign device table
+    //
+    Collection<FDTEntry> getForeignDeviceTable() {
+        return foreignDeviceTable.values();
+    }
+
+    FDTEntry getForeignDevice(final InetSocketAddress address) {
+        return foreignDeviceTable.get(address);
+    }
+
+    int getForeignDeviceCount() {
+        return foreignDeviceTable.size();
+    }
+
+    /**
+     * Adds the foreign device, or renews its registration if it is already in the table.
+     */
+    void registerForeignDevice(final InetSocketAddress address, final int timeToLive, final long now) {
+        synchronized (lock) {
+            FDTEntry e = foreignDeviceTable.get(address);
+            if (e == null) {
+                e = new FDTEntry();
+                e.address = address;
+                foreignDeviceTable.put(address, e);
+                updateForeignDeviceTargets();
+            } else
+                expiries.remove(e);
+
+            e.timeToLive = timeToLive;
+            // Adds a 30-second grace period, as per J.5.2.3
+            e.endTime = now + (timeToLive + 30) * 1000L;
+            e.sequence = nextSequence++;
+            expiries.add(e);
+        }
+    }
+
+    boolean deleteForeignDevice(final byte[] address, final int port) {
+        synchronized (lock) {
+            for (final FDTEntry e : foreignDeviceTable.values()) {
+                if (Arrays.equals(e.address.getAddress().getAddress(), address) && e.address.getPort() == port) {
+                    remove(e);
+                    updateForeignDeviceTargets();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes the registrations that ended before the given time.
+     */
+    void expire(final long now) {
+        synchronized (lock) {
+            boolean changed = false;
+            while (!expiries.isEmpty() && expiries.first().endTime < now) {
+                final FDTEntry e = expiries.first();
+                LOG.debug("Removing expired foreign device: {}", e.address);
+                remove(e);
+                changed = true;
+            }
+            if (changed)
+                updateForeignDeviceTargets();
+        }
+    }
+
+    private void remove(final FDTEntry e) {
+        expiries.remove(e);
+        foreignDeviceTable.remove(e.address);
+    }
+
+    //
+    // Fan-out
+    //
+    /**
+     * @return true if Forwarded-NPDUs from the given origin are to be broadcast on the local subnet.
+     */
+    boolean isForwardToLocalBroadcast(final byte[] origin) {
+        // Don't broadcast messages from the same subnet, since they will already have been seen there.
+        return forwardToLocalBroadcast && ((toInt(origin, 0) ^ localAddress) & subnetMask) != 0;
+    }
+
+    /**
+     * @return the addresses of the other BBMDs in the BDT.
+     */
+    InetSocketAddress[] getBDTTargets() {
+        return bdtTargets;
+    }
+
+    /**
+     * @return the addresses of the registered foreign devices.
+     */
+    InetSocketAddress[] getFDTTargets() {
+        return fdtTargets;
+    }
+
+    /**
+     * @return the addresses of the other BBMDs in the BDT followed by those of the registered foreign devices.
+     */
+    InetSocketAddress[] getBroadcastTargets() {
+        return broadcastTargets;
+    }
+
+    private void updateForeignDeviceTargets() {
+        fdtTargets = foreignDeviceTable.keySet().toArray(NONE);
+        updateBroadcastTargets();
+    }
+
+    private void updateBroadcastTargets() {
+        final InetSocketAddress[] bdt = bdtTargets;
+        final InetSocketAddress[] fdt = fdtTargets;
+        final InetSocketAddress[] all = Arrays.copyOf(bdt, bdt.length + fdt.length);
+        System.arraycopy(fdt, 0, all, bdt.length, fdt.length);
+        broadcastTargets = all;
+    }
+
+    private static int toInt(final byte[] b, final int offset) {
+        return (b[offset] & 0xff) << 24 | (b[offset + 1] & 0xff) << 16 | (b[offset + 2] & 0xff) << 8
+                | b[offset + 3] & 0xff;
+    }
+}
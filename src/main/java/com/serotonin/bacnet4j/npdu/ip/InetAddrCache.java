@@ -31,11 +31,50 @@ package com.serotonin.bacnet4j.npdu.ip;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * InetSocketAddress cache, because instantiation can take up to 10 seconds on Android, and because the conversion
+ * from link service addresses is done for every packet.
+ *
+ * The cache is bounded. Entries that have not been used within the time to live are expired, and when the cache
+ * grows beyond its maximum size the least recently used entries are evicted. Lookups do not lock; eviction is done
+ * by whichever thread finds the cache over its size, while other threads carry on.
+ */
 public class InetAddrCache {
-    private static final Map<InetAddress, Map<Integer, InetSocketAddress>> socketCache = new HashMap<>();
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * The fraction of the maximum size to which the cache is reduced when it is full, so that eviction is not needed
+     * again for every subsequent miss.
+     */
+    private static final double EVICT_TO = 0.9;
+
+    /**
+     * The number of misses between sweeps of expired entries, if a sweep isn't otherwise triggered by size.
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private static final Map<Object, Entry> cache = new ConcurrentHashMap<>();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+    private static volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private static volatile Clock clock = Clock.systemUTC();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
 
     public static InetSocketAddress get(final String host, final int port) {
         try {
@@ -45,37 +84,207 @@ public class InetAddrCache {
         }
     }
 
+    public static InetSocketAddress get(final InetAddress addr, final int port) {
+        final Object key = key(addr.getAddress(), port);
+        final Entry e = lookup(key);
+        if (e != null)
+            return e.address;
+        return add(key, new InetSocketAddress(addr, port));
+    }
+
     /**
-     * InetSocketAddress cache, because instantiation can take up to 10 seconds on Android.
-     * ??? Should there be a means of purging this?
-     *
-     * @param addr
-     * @param port
-     * @return
+     * Returns the socket address for the given raw IP address, which avoids creating an InetAddress if the socket
+     * address is already cached.
      */
-    public static InetSocketAddress get(final InetAddress addr, final int port) {
-        Map<Integer, InetSocketAddress> ports = socketCache.get(addr);
-        if (ports == null) {
-            synchronized (socketCache) {
-                ports = socketCache.get(addr);
-                if (ports == null) {
-                    ports = new HashMap<>();
-                    socketCache.put(addr, ports);
-                }
+    public static InetSocketAddress get(final byte[] ipAddress, final int port) {
+        final Object key = key(ipAddress, port);
+        final Entry e = lookup(key);
+        if (e != null)
+            return e.address;
+
+        try {
+            return add(key, new InetSocketAddress(InetAddress.getByAddress(ipAddress), port));
+        } catch (final UnknownHostException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    //
+    // Configuration and statistics
+    //
+    /**
+     * Sets the maximum number of socket addresses to cache. Default is 10000.
+     */
+    public static void setMaxSize(final int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        InetAddrCache.maxSize = maxSize;
+        if (cache.size() > maxSize)
+            evict();
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the time after its last use that a socket address is expired. 0 means never. Default is 30 minutes.
+     */
+    public static void setTimeToLive(final long timeToLive, final TimeUnit unit) {
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("timeToLive cannot be negative");
+        InetAddrCache.timeToLive = unit.toMillis(timeToLive);
+    }
+
+    public static long getTimeToLive(final TimeUnit unit) {
+        return unit.convert(timeToLive, TimeUnit.MILLISECONDS);
+    }
+
+    static void setClock(final Clock clock) {
+        InetAddrCache.clock = clock;
+    }
+
+    public static int size() {
+        return cache.size();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries removed because they expired or were evicted to make room.
+     */
+    public static long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Removes all cached socket addresses and resets the statistics.
+     */
+    public static void clear() {
+        cache.clear();
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    //
+    // Internals
+    //
+    private static Entry lookup(final Object key) {
+        final Entry e = cache.get(key);
+        if (e != null) {
+            final long now = clock.millis();
+            if (!e.isExpired(now, timeToLive)) {
+                e.lastAccess = now;
+                hits.increment();
+                return e;
             }
         }
+        misses.increment();
+        return null;
+    }
+
+    private static InetSocketAddress add(final Object key, final InetSocketAddress address) {
+        final Entry e = new Entry(address, clock.millis());
+        // The caller's array may be reused for the next datagram, so the map gets its own copy. Lookups don't copy.
+        cache.put(key instanceof ArrayKey ? ((ArrayKey) key).copy() : key, e);
+
+        if (cache.size() > maxSize || misses.sum() % SWEEP_INTERVAL == 0)
+            evict();
+
+        return address;
+    }
+
+    /**
+     * Removes expired entries, and then the least recently used entries if the cache is still too big. Only one
+     * thread evicts at a time. Others that would also evict just carry on, since the cache being over size by a few
+     * entries for a moment doesn't matter.
+     */
+    private static void evict() {
+        if (!evicting.compareAndSet(false, true))
+            return;
+
+        try {
+            final long now = clock.millis();
+            final long ttl = timeToLive;
+            cache.entrySet().removeIf(en -> {
+                if (en.getValue().isExpired(now, ttl)) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            });
 
-        InetSocketAddress socket = ports.get(port);
-        if (socket == null) {
-            synchronized (ports) {
-                socket = ports.get(port);
-                if (socket == null) {
-                    socket = new InetSocketAddress(addr, port);
-                    ports.put(port, socket);
+            final int max = maxSize;
+            if (cache.size() > max) {
+                final List<Map.Entry<Object, Entry>> entries = new ArrayList<>(cache.entrySet());
+                entries.sort(Comparator.comparingLong(en -> en.getValue().lastAccess));
+
+                final int toRemove = entries.size() - (int) (max * EVICT_TO);
+                for (int i = 0; i < toRemove; i++) {
+                    if (cache.remove(entries.get(i).getKey(), entries.get(i).getValue()))
+                        evictions.increment();
                 }
             }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * IPv4 keys are longs holding the address and port. Other keys are the address bytes and port.
+     */
+    private static Object key(final byte[] ipAddress, final int port) {
+        if (ipAddress.length == 4)
+            return ((ipAddress[0] & 0xffL) << 24 | (ipAddress[1] & 0xff) << 16 | (ipAddress[2] & 0xff) << 8
+                    | ipAddress[3] & 0xff) << 16 | port;
+        return new ArrayKey(ipAddress, port);
+    }
+
+    private static class ArrayKey {
+        private final byte[] address;
+        private final int port;
+
+        ArrayKey(final byte[] address, final int port) {
+            this.address = address;
+            this.port = port;
+        }
+
+        ArrayKey copy() {
+            return new ArrayKey(address.clone(), port);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(address) * 31 + port;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof ArrayKey))
+                return false;
+            final ArrayKey other = (ArrayKey) obj;
+            return port == other.port && Arrays.equals(address, other.address);
         }
+    }
+
+    private static class Entry {
+        final InetSocketAddress address;
+        volatile long lastAccess;
 
-        return socket;
+        Entry(final InetSocketAddress address, final long now) {
+            this.address = address;
+            lastAccess = now;
+        }
+
+        boolean isExpired(final long now, final long ttl) {
+            return ttl > 0 && now - lastAccess > ttl;
+        }
     }
 }
@@ -37,10 +37,8 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -53,6 +51,7 @@ import com.serotonin.bacnet4j.npdu.MessageValidationException;
 import com.serotonin.bacnet4j.npdu.NPDU;
 import com.serotonin.bacnet4j.npdu.Network;
 import com.serotonin.bacnet4j.npdu.NetworkIdentifier;
+import com.serotonin.bacnet4j.transport.ShardedExecutor;
 import com.serotonin.bacnet4j.transport.Transport;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.primitive.OctetString;
@@ -70,7 +69,7 @@ public class IpNetwork extends Network implements Runnable {
     public static final int DEFAULT_PORT = 0xBAC0; // == 47808
     public static final String DEFAULT_BIND_IP = "0.0.0.0";
 
-    private static final int MESSAGE_LENGTH = 2048;
+    static final int MESSAGE_LENGTH = 2048;
 
     private final int port;
     private final String localBindAddressStr;
@@ -78,9 +77,10 @@ public class IpNetwork extends Network implements Runnable {
     private final String subnetMaskStr;
     private final boolean reuseAddress;
 
+    private int receiveWorkerCount;
+
     // BBMD support
-    private List<BDTEntry> broadcastDistributionTable = new ArrayList<>();
-    final List<FDTEntry> foreignDeviceTable = new CopyOnWriteArrayList<>();
+    private BBMDEngine bbmd;
     private ScheduledFuture<?> ftdMaintenance;
     private final AtomicBoolean bbmdEnabled = new AtomicBoolean(false);
 
@@ -88,17 +88,18 @@ public class IpNetwork extends Network implements Runnable {
     final Object foreignBBMDLock = new Object();
     InetSocketAddress foreignBBMD;
     private int foreignTTL;
-    private int bbmdResponse;
+    private volatile int bbmdResponse;
     private ScheduledFuture<?> foreignRegistrationMaintenance;
 
     // Runtime
     private Thread thread;
+    private ShardedExecutor receiveWorkers;
     private DatagramSocket socket;
     private OctetString broadcastMAC;
     private InetSocketAddress localBindAddress;
-    private byte[] subnetMask;
-    private long bytesOut;
-    private long bytesIn;
+    private InetSocketAddress localBroadcastAddress;
+    long bytesOut;
+    long bytesIn;
 
     /**
      * Use an IpNetworkBuilder to create instances.
@@ -145,6 +146,21 @@ public class IpNetwork extends Network implements Runnable {
         return bytesIn;
     }
 
+    /**
+     * Sets the number of worker threads used to handle received datagrams, i.e. BVLC and NPDU parsing and BBMD
+     * forwarding. Datagrams are assigned to workers by their source address, so datagrams from the same source are
+     * still handled in the order received. The default of 0 handles datagrams in the socket listener thread.
+     */
+    public void setReceiveWorkerCount(final int receiveWorkerCount) {
+        if (thread != null)
+            throw new IllegalStateException("Receive worker count needs to be set before the network is initialized");
+        this.receiveWorkerCount = receiveWorkerCount;
+    }
+
+    public int getReceiveWorkerCount() {
+        return receiveWorkerCount;
+    }
+
     /**
      * Get the network socket, useful for routing purposes
      * @return
@@ -159,24 +175,40 @@ public class IpNetwork extends Network implements Runnable {
 
         localBindAddress = InetAddrCache.get(localBindAddressStr, port);
 
-        if (reuseAddress) {
-            socket = new DatagramSocket(null);
-            socket.setReuseAddress(true);
-            if (!socket.getReuseAddress())
-                LOG.warn("reuseAddress was set, but not supported by the underlying platform");
-            socket.bind(localBindAddress);
-        } else
-            socket = new DatagramSocket(localBindAddress);
+        socket = createSocket(localBindAddress, reuseAddress);
         socket.setBroadcast(true);
 
         //        broadcastAddress = new Address(broadcastIp, port, new Network(0xffff, new byte[0]));
         broadcastMAC = IpNetworkUtils.toOctetString(broadcastAddressStr, port);
-        subnetMask = BACnetUtils.dottedStringToBytes(subnetMaskStr);
+        localBroadcastAddress = InetAddrCache.get(broadcastAddressStr, port);
+        bbmd = new BBMDEngine(localBindAddress.getAddress().getAddress(),
+                BACnetUtils.dottedStringToBytes(subnetMaskStr));
+
+        if (receiveWorkerCount > 0)
+            receiveWorkers = new ShardedExecutor(
+                    "BACnet4J IP receive worker for " + transport.getLocalDevice().getId(), receiveWorkerCount);
 
         thread = new Thread(this, "BACnet4J IP socket listener for " + transport.getLocalDevice().getId());
         thread.start();
     }
 
+    /**
+     * Creates the socket bound to the given address. Subclasses can override to use a different socket
+     * implementation, in which case they will also likely override run and sendPacket.
+     */
+    protected DatagramSocket createSocket(final InetSocketAddress bindAddress, final boolean reuseAddress)
+            throws Exception {
+        if (reuseAddress) {
+            final DatagramSocket socket = new DatagramSocket(null);
+            socket.setReuseAddress(true);
+            if (!socket.getReuseAddress())
+                LOG.warn("reuseAddress was set, but not supported by the underlying platform");
+            socket.bind(bindAddress);
+            return socket;
+        }
+        return new DatagramSocket(bindAddress);
+    }
+
     @Override
     public void terminate() {
         unregisterAsForeignDevice();
@@ -184,6 +216,8 @@ public class IpNetwork extends Network implements Runnable {
             socket.close();
         if (ftdMaintenance != null)
             ftdMaintenance.cancel(false);
+        if (receiveWorkers != null)
+            receiveWorkers.shutdown();
     }
 
     @Override
@@ -277,40 +311,47 @@ public class IpNetwork extends Network implements Runnable {
         }
     }
 
+    @Override
+    protected boolean isNpduBufferReusable() {
+        // NPDUs are written to the socket before sendNPDU returns.
+        return true;
+    }
+
     @Override
     public void sendNPDU(final Address recipient, final OctetString router, final ByteQueue npdu,
             final boolean broadcast, final boolean expectsReply) throws BACnetException {
-        final ByteQueue queue = new ByteQueue();
-
-        // BACnet virtual link layer detail
-        queue.push(BVLC_TYPE);
-
         InetSocketAddress addr = foreignBBMD;
+        final int function;
         if (addr != null && broadcast) {
             // Distribute-Broadcast-To-Network. This device is registered as a foreign device in a BBMD, so send the
             // message as a distribute broadcast to network.
-            queue.push(9);
+            function = 9;
         } else {
             // Original-Unicast-NPDU, or Original-Broadcast-NPDU
-            queue.push(broadcast ? 0xb : 0xa);
+            function = broadcast ? 0xb : 0xa;
 
             final OctetString dest = getDestination(recipient, router);
             addr = IpNetworkUtils.getInetSocketAddress(dest);
         }
 
-        queue.pushU2B(npdu.size() + 4);
-
-        // Combine the queues
-        queue.push(npdu);
+        // BACnet virtual link layer detail, written into the headroom of the NPDU.
+        npdu.prependU2B(npdu.size() + 4);
+        npdu.prepend((byte) function);
+        npdu.prepend(BVLC_TYPE);
 
-        sendPacket(addr, queue.popAll());
+        sendPacket(addr, npdu.array(), npdu.arrayOffset(), npdu.size());
     }
 
     private void sendPacket(final InetSocketAddress addr, final byte[] data) throws BACnetException {
+        sendPacket(addr, data, 0, data.length);
+    }
+
+    protected void sendPacket(final InetSocketAddress addr, final byte[] data, final int offset, final int length)
+            throws BACnetException {
         try {
-            final DatagramPacket packet = new DatagramPacket(data, data.length, addr);
+            final DatagramPacket packet = new DatagramPacket(data, offset, length, addr);
             socket.send(packet);
-            bytesOut += data.length;
+            bytesOut += length;
         } catch (final Exception e) {
             throw new BACnetException(e);
         }
@@ -333,7 +374,7 @@ public class IpNetwork extends Network implements Runnable {
                 final ByteQueue queue = new ByteQueue(p.getData(), 0, p.getLength());
                 final OctetString link = IpNetworkUtils.toOctetString(p.getAddress().getAddress(), p.getPort());
 
-                handleIncomingData(queue, link);
+                received(queue, link);
 
                 // Reset the packet.
                 p.setData(buffer);
@@ -343,6 +384,17 @@ public class IpNetwork extends Network implements Runnable {
         }
     }
 
+    /**
+     * Handles a received datagram, either in the current thread or in the receive worker for its source.
+     */
+    protected void received(final ByteQueue queue, final OctetString linkService) {
+        final ShardedExecutor workers = receiveWorkers;
+        if (workers == null)
+            handleIncomingData(queue, linkService);
+        else
+            workers.execute(linkService, () -> handleIncomingData(queue, linkService));
+    }
+
     @Override
     protected NPDU handleIncomingDataImpl(final ByteQueue queue, final OctetString linkService) throws Exception {
         LOG.trace("Received request from {}", linkService);
@@ -560,6 +612,8 @@ public class IpNetwork extends Network implements Runnable {
         InetSocketAddress address;
         int timeToLive;
         long endTime;
+        // Orders entries with the same end time in the expiry index.
+        long sequence;
     }
 
     private void writeBDT(final ByteQueue queue, final OctetString origin) throws BACnetException {
@@ -583,7 +637,7 @@ public class IpNetwork extends Network implements Runnable {
                 }
 
                 // Successfully read. Replace the current BDT.
-                broadcastDistributionTable = list;
+                bbmd.setBroadcastDistributionTable(list);
 
                 response.pushU2B(0); // Ok
             } catch (final Exception e) {
@@ -603,7 +657,7 @@ public class IpNetwork extends Network implements Runnable {
             try {
                 final ByteQueue list = new ByteQueue();
 
-                for (final BDTEntry e : broadcastDistributionTable) {
+                for (final BDTEntry e : bbmd.getBroadcastDistributionTable()) {
                     list.push(e.address);
                     list.pushU2B(e.port);
                     list.push(e.distributionMask);
@@ -629,98 +683,52 @@ public class IpNetwork extends Network implements Runnable {
 
     private void forwardNPDU(final ByteQueue partial, final OctetString origin) throws BACnetException {
         // Determine whether to the message should be broadcast locally.
-        boolean doLocalBroadcast = !broadcastDistributionTable.isEmpty();
-
-        if (doLocalBroadcast) {
-            // 1) If the origin is on the same subnet, do not broadcast locally.
-            boolean fromSameSubnet = true;
-            for (int i = 0; i < 4; i++) {
-                final int b1 = localBindAddress.getAddress().getAddress()[i] & subnetMask[i];
-                final int b2 = origin.getBytes()[i] & subnetMask[i];
-                if (b1 != b2) {
-                    fromSameSubnet = false;
-                    break;
-                }
-            }
-
-            if (fromSameSubnet)
-                doLocalBroadcast = false;
-        }
-
-        if (doLocalBroadcast) {
-            // 2) If the mask of the BDT entry for this BBMD is not all 1s, do not broadcast locally.
-            final byte[] myAddress = localBindAddress.getAddress().getAddress();
-
-            // Find this BDT entry.
-            BDTEntry thisEntry = null;
-            for (final BDTEntry e : broadcastDistributionTable) {
-                if (Arrays.equals(e.address, myAddress)) {
-                    thisEntry = e;
-                    break;
-                }
-            }
-
-            if (thisEntry == null) {
-                // Not found. This is a configuration problem. Don't broadcast.
-                LOG.warn("Configuration error: could not find BDT entry for this instance.");
-                doLocalBroadcast = false;
-            } else {
-                // We only need to check the last byte (the last bit in actually), because any zeros all need to
-                // be on the right.
-                if (thisEntry.distributionMask[3] != (byte) 255)
-                    doLocalBroadcast = false;
-            }
-        }
+        final boolean doLocalBroadcast = bbmd.isForwardToLocalBroadcast(origin.getBytes());
+        final InetSocketAddress[] foreignDevices = bbmd.getFDTTargets();
 
         // Check if anything needs to be done.
-        if (foreignDeviceTable.isEmpty() && !doLocalBroadcast)
+        if (foreignDevices.length == 0 && !doLocalBroadcast)
             return;
 
-        // The BVLC type, function and length were removed from this queue, so recreate.
-        final ByteQueue fwd = new ByteQueue();
-        fwd.push(BVLC_TYPE);
-        fwd.push(4); // Forward
-        fwd.pushU2B(4 + partial.size()); // Length
-        fwd.push(partial);
-        final byte[] toSend = fwd.popAll();
+        // The BVLC type, function and length were removed from this queue, so recreate. The queue still contains the
+        // original source address.
+        final byte[] toSend = forwardedNPDU(null, partial);
 
         if (doLocalBroadcast)
-            sendPacket(InetAddrCache.get(broadcastAddressStr, port), toSend);
+            sendPacket(localBroadcastAddress, toSend);
 
         // Forward to all foreign devices.
-        for (final FDTEntry fd : foreignDeviceTable)
-            sendPacket(fd.address, toSend);
+        sendPackets(foreignDevices, null, toSend);
     }
 
     private void originalBroadcast(final ByteQueue partial, final OctetString originStr) throws BACnetException {
+        // Send to all subnets except own, and to all foreign devices.
+        final InetSocketAddress[] targets = bbmd.getBroadcastTargets();
+
         // Check if anything needs to be done.
-        if (foreignDeviceTable.isEmpty() && broadcastDistributionTable.isEmpty())
+        if (targets.length == 0)
             return;
 
-        final ByteQueue fwd = new ByteQueue();
-        fwd.push(BVLC_TYPE);
-        fwd.push(4); // Forward
-        fwd.pushU2B(10 + partial.size()); // Length
-        fwd.push(originStr.getBytes()); // Origin
-        fwd.push(partial);
-        final byte[] toSend = fwd.popAll();
-
-        try {
-            final byte[] myAddress = localBindAddress.getAddress().getAddress();
-
-            // Send to all subnets except own
-            for (final BDTEntry e : broadcastDistributionTable) {
-                if (Arrays.equals(e.address, myAddress))
-                    continue;
-                sendToBDT(e, toSend);
-            }
+        sendPackets(targets, null, forwardedNPDU(originStr, partial));
+    }
 
-            // Forward to all foreign devices.
-            for (final FDTEntry fd : foreignDeviceTable)
-                sendPacket(fd.address, toSend);
-        } catch (final UnknownHostException e) {
-            throw new BACnetException(e);
-        }
+    /**
+     * Encodes a Forwarded-NPDU message.
+     *
+     * @param origin
+     *            the B/IP address of the original source, or null if the given NPDU data already starts with it.
+     */
+    private static byte[] forwardedNPDU(final OctetString origin, final ByteQueue partial) {
+        final int originLength = origin == null ? 0 : 6;
+        final byte[] data = new byte[4 + originLength + partial.size()];
+        data[0] = BVLC_TYPE;
+        data[1] = 4; // Forward
+        data[2] = (byte) (data.length >> 8); // Length
+        data[3] = (byte) data.length;
+        if (origin != null)
+            System.arraycopy(origin.getBytes(), 0, data, 4, 6); // Origin
+        partial.peek(data, 4 + originLength, partial.size());
+        return data;
     }
 
     private void registerForeignDevice(final ByteQueue queue, final OctetString originStr) throws BACnetException {
@@ -737,49 +745,17 @@ public class IpNetwork extends Network implements Runnable {
             if (timeToLive < 1) {
                 response.pushU2B(0x30); // NAK
             } else {
-                // Check if the device is already in the list. If so, update its start time. Otherwise, add it.
-                FDTEntry fd = null;
-                synchronized (foreignDeviceTable) {
-                    for (final FDTEntry e : foreignDeviceTable) {
-                        if (e.address.equals(origin)) {
-                            fd = e;
-                            break;
-                        }
-                    }
-
-                    if (fd == null) {
-                        // Add the FDT entry
-                        fd = new FDTEntry();
-                        fd.address = origin;
-                        foreignDeviceTable.add(fd);
-
-                        if (ftdMaintenance == null) {
-                            // Add a job to expire foreign device registrations.
-                            ftdMaintenance = getTransport().getLocalDevice().scheduleAtFixedRate(() -> {
-                                final long now = getTransport().getLocalDevice().getClock().millis();
-
-                                synchronized (foreignDeviceTable) {
-                                    final List<FDTEntry> toRemove = new ArrayList<>();
-
-                                    for (final FDTEntry e : foreignDeviceTable) {
-                                        if (e.endTime < now) {
-                                            LOG.debug("Removing expired foreign device: " + e);
-                                            toRemove.add(e);
-                                        }
-                                    }
-
-                                    if (!toRemove.isEmpty()) {
-                                        foreignDeviceTable.removeAll(toRemove);
-                                    }
-                                }
-                            }, 10, 10, TimeUnit.SECONDS);
-                        }
+                bbmd.registerForeignDevice(origin, timeToLive, getTransport().getLocalDevice().getClock().millis());
+
+                synchronized (bbmd) {
+                    if (ftdMaintenance == null) {
+                        // Add a job to expire foreign device registrations.
+                        ftdMaintenance = getTransport().getLocalDevice().scheduleAtFixedRate(
+                                () -> bbmd.expire(getTransport().getLocalDevice().getClock().millis()), 10, 10,
+                                TimeUnit.SECONDS);
                     }
                 }
 
-                fd.timeToLive = timeToLive;
-                fd.endTime = getTransport().getLocalDevice().getClock().millis() + (timeToLive + 30) * 1000; // Adds a 30-second grace period, as per J.5.2.3
-
                 response.pushU2B(0); // Success
             }
         } else {
@@ -797,7 +773,7 @@ public class IpNetwork extends Network implements Runnable {
             try {
                 final ByteQueue list = new ByteQueue();
 
-                for (final FDTEntry e : foreignDeviceTable) {
+                for (final FDTEntry e : bbmd.getForeignDeviceTable()) {
                     pushISA(list, e.address);
                     list.pushU2B(e.timeToLive);
 
@@ -840,21 +816,10 @@ public class IpNetwork extends Network implements Runnable {
         response.push(0); // Response type
         response.pushU2B(6); // Length
 
-        synchronized (foreignDeviceTable) {
-            FDTEntry toDelete = null;
-            for (final FDTEntry fd : foreignDeviceTable) {
-                if (Arrays.equals(fd.address.getAddress().getAddress(), addr) && fd.address.getPort() == port) {
-                    toDelete = fd;
-                    break;
-                }
-            }
-
-            if (toDelete != null) {
-                foreignDeviceTable.remove(toDelete);
-                response.pushU2B(0); // Success
-            } else
-                response.pushU2B(0x50); // NAK
-        }
+        if (bbmd.deleteForeignDevice(addr, port))
+            response.pushU2B(0); // Success
+        else
+            response.pushU2B(0x50); // NAK
 
         sendPacket(IpNetworkUtils.getInetSocketAddress(origin), response.popAll());
     }
@@ -863,71 +828,52 @@ public class IpNetwork extends Network implements Runnable {
             throws BACnetException {
         final InetSocketAddress origin = IpNetworkUtils.getInetSocketAddress(originStr);
 
-        // Find the foreign device.
-        FDTEntry originFDT = null;
-        for (final FDTEntry fd : foreignDeviceTable) {
-            if (fd.address.equals(origin)) {
-                originFDT = fd;
-                break;
-            }
-        }
-
         final ByteQueue response = new ByteQueue();
         response.push(BVLC_TYPE);
         response.push(0); // Response type
         response.pushU2B(6); // Length
 
-        // If the FDT was not found, send a NAK and return false.
-        if (originFDT == null) {
+        // If the foreign device was not found, send a NAK and return false.
+        if (bbmd.getForeignDevice(origin) == null) {
             response.pushU2B(0x60); // NAK
             sendPacket(origin, response.popAll());
             return false;
         }
 
         // The FDT was found. Forward the message around.
-        final ByteQueue fwd = new ByteQueue();
-        fwd.push(BVLC_TYPE);
-        fwd.push(4); // Forward
-        fwd.pushU2B(10 + queue.size()); // Length
-        fwd.push(originStr.getBytes()); // Origin
-        fwd.push(queue);
-        final byte[] toSend = fwd.popAll();
+        final byte[] toSend = forwardedNPDU(originStr, queue);
 
         // Send locally
-        sendPacket(InetAddrCache.get(broadcastAddressStr, port), toSend);
-
-        try {
-            // Send to all BDTs except own
-            final byte[] myAddress = localBindAddress.getAddress().getAddress();
-            for (final BDTEntry e : broadcastDistributionTable) {
-                if (Arrays.equals(e.address, myAddress))
-                    continue;
-                sendToBDT(e, toSend);
-            }
-        } catch (final UnknownHostException e1) {
-            LOG.warn("Error forwarding to BDT", e1);
-        }
+        sendPacket(localBroadcastAddress, toSend);
 
-        // Forward to all foreign devices except the origin.
-        for (final FDTEntry fd : foreignDeviceTable) {
-            if (fd != originFDT)
-                sendPacket(fd.address, toSend);
-        }
+        // Send to all BDTs except own, and to all foreign devices except the origin.
+        sendPackets(bbmd.getBroadcastTargets(), origin, toSend);
 
         response.pushU2B(0); // Success
         sendPacket(origin, response.popAll());
         return true;
     }
 
-    private void sendToBDT(final BDTEntry e, final byte[] toSend) throws UnknownHostException, BACnetException {
-        // J.4.5: The B/IP address to which the Forwarded-NPDU message is sent is formed by inverting the broadcast
-        // distribution mask in the BDT entry and logically ORing it with the BBMD address of the same entry.
-        final byte[] target = new byte[4];
-        for (int i = 0; i < 4; i++)
-            target[i] = (byte) (e.address[i] | ~e.distributionMask[i]);
-
-        final InetSocketAddress to = InetAddrCache.get(InetAddress.getByAddress(target), e.port);
-        sendPacket(to, toSend);
+    /**
+     * Sends the same datagram to each of the given addresses, except for the excluded address if one is given. All
+     * addresses are attempted even if sending to one of them fails, in which case the first failure is thrown once all
+     * have been attempted. Subclasses can override to send the batch more efficiently.
+     */
+    protected void sendPackets(final InetSocketAddress[] addrs, final InetSocketAddress exclude, final byte[] data)
+            throws BACnetException {
+        BACnetException failure = null;
+        for (final InetSocketAddress addr : addrs) {
+            if (addr.equals(exclude))
+                continue;
+            try {
+                sendPacket(addr, data, 0, data.length);
+            } catch (final BACnetException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
     }
 
     private static void pushISA(final ByteQueue queue, final InetSocketAddress isa) {
@@ -40,6 +40,11 @@ public class IpNetworkBuilder {
     private int port = IpNetwork.DEFAULT_PORT;
     private int localNetworkNumber = Address.LOCAL_NETWORK;
     private boolean reuseAddress = false;
+    private boolean nio = false;
+    private int receiveWorkerCount = 0;
+    private int receiveBatchSize = NioIpNetwork.DEFAULT_RECEIVE_BATCH_SIZE;
+    private int sendBufferPoolSize = NioIpNetwork.DEFAULT_SEND_BUFFER_POOL_SIZE;
+    private long sendTimeout = NioIpNetwork.DEFAULT_SEND_TIMEOUT;
 
     public IpNetworkBuilder withLocalBindAddress(final String localBindAddress) {
         this.localBindAddress = localBindAddress;
@@ -100,6 +105,47 @@ public class IpNetworkBuilder {
         return this;
     }
 
+    /**
+     * Use a DatagramChannel based network rather than a DatagramSocket. See NioIpNetwork.
+     */
+    public IpNetworkBuilder withNio(final boolean nio) {
+        this.nio = nio;
+        return this;
+    }
+
+    /**
+     * The maximum number of datagrams that a NIO network receives before handling them. Only used with withNio.
+     */
+    public IpNetworkBuilder withReceiveBatchSize(final int receiveBatchSize) {
+        this.receiveBatchSize = receiveBatchSize;
+        return this;
+    }
+
+    /**
+     * The maximum number of direct buffers that a NIO network keeps for sending. Only used with withNio.
+     */
+    public IpNetworkBuilder withSendBufferPoolSize(final int sendBufferPoolSize) {
+        this.sendBufferPoolSize = sendBufferPoolSize;
+        return this;
+    }
+
+    /**
+     * The time in milliseconds that a NIO network waits for room in the socket's send buffer before a send fails.
+     * Only used with withNio.
+     */
+    public IpNetworkBuilder withSendTimeout(final long sendTimeout) {
+        this.sendTimeout = sendTimeout;
+        return this;
+    }
+
+    /**
+     * The number of worker threads that handle received datagrams. See IpNetwork.setReceiveWorkerCount.
+     */
+    public IpNetworkBuilder withReceiveWorkers(final int receiveWorkerCount) {
+        this.receiveWorkerCount = receiveWorkerCount;
+        return this;
+    }
+
     public String getLocalBindAddress() {
         return localBindAddress;
     }
@@ -124,11 +170,35 @@ public class IpNetworkBuilder {
         return reuseAddress;
     }
 
+    public boolean isNio() {
+        return nio;
+    }
+
+    public int getReceiveBatchSize() {
+        return receiveBatchSize;
+    }
+
+    public int getSendBufferPoolSize() {
+        return sendBufferPoolSize;
+    }
+
+    public int getReceiveWorkerCount() {
+        return receiveWorkerCount;
+    }
+
     public IpNetwork build() {
         if (broadcastAddress == null || subnetMask == null) {
             throw new IllegalArgumentException("Either withBroadcast or withSubnet must be called.");
         }
 
-        return new IpNetwork(port, localBindAddress, broadcastAddress, subnetMask, localNetworkNumber, reuseAddress);
+        final IpNetwork network;
+        if (nio)
+            network = new NioIpNetwork(port, localBindAddress, broadcastAddress, subnetMask, localNetworkNumber,
+                    reuseAddress, receiveBatchSize, sendBufferPoolSize, sendTimeout);
+        else
+            network = new IpNetwork(port, localBindAddress, broadcastAddress, subnetMask, localNetworkNumber,
+                    reuseAddress);
+        network.setReceiveWorkerCount(receiveWorkerCount);
+        return network;
     }
 }
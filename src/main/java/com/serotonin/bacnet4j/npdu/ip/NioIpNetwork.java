@@ -0,0 +1,312 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.npdu.ip;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * An IP network that uses a non-blocking DatagramChannel rather than a DatagramSocket. Datagrams are received into
+ * pooled direct buffers, and all of the datagrams that are available when the listener wakes up are drained - up to
+ * the receive batch size - before they are handled. Sends are done from pooled direct buffers, so no per packet
+ * objects are created other than the byte queue handed to the transport. If the socket's send buffer is full, a send
+ * waits until the channel is writable again, for up to the send timeout, rather than dropping the datagram.
+ *
+ * Use IpNetworkBuilder.withNio to create.
+ *
+ * @author Matthew
+ */
+public class NioIpNetwork extends IpNetwork {
+    public static final int DEFAULT_RECEIVE_BATCH_SIZE = 32;
+    public static final int DEFAULT_SEND_BUFFER_POOL_SIZE = 16;
+    public static final long DEFAULT_SEND_TIMEOUT = 1000;
+
+    private final int receiveBatchSize;
+    private final BlockingQueue<ByteBuffer> sendBuffers;
+    private final long sendTimeout;
+
+    // Runtime
+    private DatagramChannel channel;
+    private Selector selector;
+    // Only used by senders that are waiting for the channel to become writable.
+    private Selector writeSelector;
+
+    NioIpNetwork(final int port, final String localBindAddress, final String broadcastAddress,
+            final String subnetMask, final int localNetworkNumber, final boolean reuseAddress,
+            final int receiveBatchSize, final int sendBufferPoolSize, final long sendTimeout) {
+        super(port, localBindAddress, broadcastAddress, subnetMask, localNetworkNumber, reuseAddress);
+        if (receiveBatchSize < 1)
+            throw new IllegalArgumentException("receiveBatchSize must be greater than 0");
+        if (sendBufferPoolSize < 1)
+            throw new IllegalArgumentException("sendBufferPoolSize must be greater than 0");
+        if (sendTimeout < 1)
+            throw new IllegalArgumentException("sendTimeout must be greater than 0");
+        this.receiveBatchSize = receiveBatchSize;
+        sendBuffers = new ArrayBlockingQueue<>(sendBufferPoolSize);
+        this.sendTimeout = sendTimeout;
+    }
+
+    public int getReceiveBatchSize() {
+        return receiveBatchSize;
+    }
+
+    /**
+     * @return the time in milliseconds that a send waits for room in the socket's send buffer.
+     */
+    public long getSendTimeout() {
+        return sendTimeout;
+    }
+
+    /**
+     * Get the network channel, useful for routing purposes. The channel is in non-blocking mode and registered with
+     * the network's selector, so it must not be switched to blocking mode.
+     */
+    public DatagramChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the channel's socket adaptor. Options and addresses can be used as usual, but because the channel is in
+     * non-blocking mode the adaptor's send and receive throw an IllegalBlockingModeException. Use getChannel to send.
+     */
+    @Override
+    public DatagramSocket getSocket() {
+        return channel == null ? null : channel.socket();
+    }
+
+    @Override
+    protected DatagramSocket createSocket(final InetSocketAddress bindAddress, final boolean reuseAddress)
+            throws Exception {
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        if (reuseAddress)
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(bindAddress);
+        channel.configureBlocking(false);
+
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        writeSelector = Selector.open();
+        channel.register(writeSelector, SelectionKey.OP_WRITE);
+
+        // The socket adaptor, which is closed along with the channel.
+        return channel.socket();
+    }
+
+    @Override
+    public void terminate() {
+        super.terminate();
+
+        // A closed channel keeps its port until it is deregistered from the selector, so close the selector too
+        // rather than leaving it to the listener thread.
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                LOG.warn("Error closing selector", e);
+            }
+        }
+        if (writeSelector != null) {
+            try {
+                writeSelector.close();
+            } catch (final IOException e) {
+                LOG.warn("Error closing selector", e);
+            }
+        }
+    }
+
+    @Override
+    protected void sendPacket(final InetSocketAddress addr, final byte[] data, final int offset, final int length)
+            throws BACnetException {
+        final ByteBuffer buffer = acquireSendBuffer(length);
+        try {
+            buffer.put(data, offset, length).flip();
+            send(buffer, addr);
+        } finally {
+            releaseSendBuffer(buffer);
+        }
+    }
+
+    /**
+     * Copies the datagram into a direct buffer once, and sends the same buffer to each address.
+     */
+    @Override
+    protected void sendPackets(final InetSocketAddress[] addrs, final InetSocketAddress exclude, final byte[] data)
+            throws BACnetException {
+        final ByteBuffer buffer = acquireSendBuffer(data.length);
+        try {
+            buffer.put(data).flip();
+
+            BACnetException failure = null;
+            for (final InetSocketAddress addr : addrs) {
+                if (addr.equals(exclude))
+                    continue;
+                buffer.rewind();
+                try {
+                    send(buffer, addr);
+                } catch (final BACnetException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+            if (failure != null)
+                throw failure;
+        } finally {
+            releaseSendBuffer(buffer);
+        }
+    }
+
+    private void send(final ByteBuffer buffer, final InetSocketAddress addr) throws BACnetException {
+        final int length = buffer.remaining();
+        try {
+            // A non-blocking send either sends the whole datagram or nothing at all if the socket's send buffer is
+            // full. In that case wait until the channel is writable and try again, so that senders - including BBMD
+            // forwarding - are held back rather than having their datagrams dropped.
+            if (channel.send(buffer, addr) == 0)
+                awaitSend(buffer, addr);
+            bytesOut += length;
+        } catch (final IOException e) {
+            throw new BACnetException(e);
+        }
+    }
+
+    private void awaitSend(final ByteBuffer buffer, final InetSocketAddress addr) throws IOException, BACnetException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeout);
+        try {
+            // One waiting sender at a time. The others queue up behind it.
+            synchronized (writeSelector) {
+                while (channel.send(buffer, addr) == 0) {
+                    final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0)
+                        throw new BACnetException(
+                                "Datagram not sent to " + addr + ": socket send buffer still full after " + sendTimeout
+                                        + "ms");
+                    writeSelector.select(remaining);
+                    writeSelector.selectedKeys().clear();
+                }
+            }
+        } catch (@SuppressWarnings("unused") final ClosedSelectorException e) {
+            throw new BACnetException("Datagram not sent to " + addr + ": network terminated");
+        }
+    }
+
+    private ByteBuffer acquireSendBuffer(final int length) {
+        final ByteBuffer buffer = sendBuffers.poll();
+        if (buffer == null || buffer.capacity() < length)
+            return ByteBuffer.allocateDirect(Math.max(MESSAGE_LENGTH, length));
+        return buffer;
+    }
+
+    private void releaseSendBuffer(final ByteBuffer buffer) {
+        buffer.clear();
+        // Discarded if the pool is already full.
+        sendBuffers.offer(buffer);
+    }
+
+    //
+    // For receiving
+    @Override
+    public void run() {
+        final ByteBuffer[] buffers = new ByteBuffer[receiveBatchSize];
+        final InetSocketAddress[] sources = new InetSocketAddress[receiveBatchSize];
+        for (int i = 0; i < buffers.length; i++)
+            buffers[i] = ByteBuffer.allocateDirect(MESSAGE_LENGTH);
+
+        try {
+            while (channel.isOpen()) {
+                int count = 0;
+                try {
+                    selector.select();
+                    selector.selectedKeys().clear();
+
+                    // Drain the available datagrams.
+                    while (count < buffers.length && channel.isOpen()) {
+                        final SocketAddress from = channel.receive(buffers[count]);
+                        if (from == null)
+                            break;
+                        sources[count++] = (InetSocketAddress) from;
+                    }
+                } catch (final IOException e) {
+                    // Closing the channel in the terminate method causes this too.
+                    if (channel.isOpen())
+                        LOG.warn("Error receiving datagrams", e);
+                } catch (@SuppressWarnings("unused") final ClosedSelectorException e) {
+                    // The selector is closed by the terminate method.
+                    break;
+                }
+
+                try {
+                    // Handle the datagrams received before any error.
+                    for (int i = 0; i < count; i++) {
+                        final ByteBuffer buffer = buffers[i];
+                        buffer.flip();
+                        bytesIn += buffer.remaining();
+
+                        // Create a new byte queue for the message, because the queue will probably be processed in
+                        // the transport thread.
+                        final ByteQueue queue = new ByteQueue(buffer.remaining());
+                        queue.push(buffer);
+                        final OctetString link = IpNetworkUtils.toOctetString(sources[i].getAddress().getAddress(),
+                                sources[i].getPort());
+
+                        received(queue, link);
+                    }
+                } finally {
+                    // Including the buffer that a failed receive may have written to, so that the next datagram
+                    // doesn't follow stale bytes.
+                    for (int i = 0; i < Math.min(count + 1, buffers.length); i++) {
+                        buffers[i].clear();
+                        sources[i] = null;
+                    }
+                }
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                LOG.warn("Error closing selector", e);
+            }
+        }
+    }
+}
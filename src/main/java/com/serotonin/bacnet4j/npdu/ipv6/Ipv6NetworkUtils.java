@@ -54,7 +54,7 @@ public class Ipv6NetworkUtils {
     }
 
     public static InetSocketAddress getInetSocketAddress(OctetString mac) {
-        return InetAddrCache.get(getInetAddress(mac), getPort(mac));
+        return InetAddrCache.get(getIpBytes(mac), getPort(mac));
     }
 
     public static InetAddress getInetAddress(OctetString mac) {
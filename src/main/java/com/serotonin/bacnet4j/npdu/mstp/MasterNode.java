@@ -30,12 +30,11 @@ package com.serotonin.bacnet4j.npdu.mstp;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.serotonin.bacnet4j.transport.PriorityMessageQueue;
 import com.serotonin.bacnet4j.transport.Transport;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
@@ -48,7 +47,7 @@ public class MasterNode extends MstpNode {
         idle, useToken, waitForReply, doneWithToken, passToken, noToken, pollForMaster, answerDataRequest
     }
 
-    private final List<Frame> framesToSend = new ArrayList<>();
+    private final PriorityMessageQueue<Frame> framesToSend = new PriorityMessageQueue<>();
 
     /**
      * The MAC address of the node to which This Station passes the token. If the Next
@@ -168,10 +167,9 @@ public class MasterNode extends MstpNode {
                 FrameType.testRequest))
             throw new RuntimeException("Cannot send frame of type: " + type);
 
-        final Frame frame = new Frame(type, destination, thisStation, data);
-        synchronized (framesToSend) {
-            framesToSend.add(frame);
-        }
+        // The network priority is in the control octet of the NPDU.
+        final int priority = data != null && data.length > 1 && type != FrameType.testRequest ? data[1] & 0x3 : 0;
+        framesToSend.add(new Frame(type, destination, thisStation, data), priority);
     }
 
     @Override
@@ -297,11 +295,7 @@ public class MasterNode extends MstpNode {
     }
 
     protected void useToken() {
-        Frame frameToSend = null;
-        synchronized (framesToSend) {
-            if (!framesToSend.isEmpty())
-                frameToSend = framesToSend.remove(0);
-        }
+        final Frame frameToSend = framesToSend.poll();
 
         if (frameToSend == null) {
             // NothingToSend
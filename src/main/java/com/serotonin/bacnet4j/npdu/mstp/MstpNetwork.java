@@ -102,6 +102,12 @@ public class MstpNetwork extends Network {
         return node.getBytesIn();
     }
 
+    @Override
+    protected boolean isNpduBufferReusable() {
+        // The NPDU is copied into the frame.
+        return true;
+    }
+
     @Override
     public void sendNPDU(final Address recipient, final OctetString router, final ByteQueue npdu,
             final boolean broadcast, final boolean expectsReply) throws BACnetException {
@@ -153,6 +153,12 @@ public class TestNetwork extends Network implements Runnable {
         return address;
     }
 
+    @Override
+    protected boolean isNpduBufferReusable() {
+        // The NPDU is copied into the send queue.
+        return true;
+    }
+
     @Override
     public void sendNPDU(final Address recipient, final OctetString router, final ByteQueue npdu,
             final boolean broadcast, final boolean expectsReply) throws BACnetException {
@@ -91,10 +91,25 @@ public class AbstractMixin {
         return bo.getId();
     }
 
+    protected final BACnetObject getBACnetObject() {
+        return bo;
+    }
+
     //
     //
     // Methods for subclasses to override as needed.
     //
+    /**
+     * Declares the properties for which the object should call this mixin's beforeReadProperty, validateProperty,
+     * writeProperty and afterWriteProperty methods. Reads and writes of any other property skip the mixin. The
+     * object asks once, when the mixin is added, so the result must not change after construction.
+     *
+     * @return the intercepted properties, or null if the mixin needs to see all properties.
+     */
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return null;
+    }
+
     /**
      * Allow the mixin a chance to perform actions before the property is read.
      *
@@ -81,11 +81,12 @@ public class BACnetObject {
 
     private final LocalDevice localDevice;
     private final ObjectType objectType;
-    protected final Map<PropertyIdentifier, Encodable> properties = new ConcurrentHashMap<>();
+    protected final Map<PropertyIdentifier, Encodable> properties;
     private final List<BACnetObjectListener> listeners = new CopyOnWriteArrayList<>();
 
     // Mixins
     private final List<AbstractMixin> mixins = new ArrayList<>();
+    private volatile MixinDispatch mixinDispatch = MixinDispatch.EMPTY;
     private CommandableMixin commandableMixin;
     private HasStatusFlagsMixin hasStatusFlagsMixin;
     private IntrinsicReportingMixin intrinsicReportingMixin;
@@ -113,6 +114,10 @@ public class BACnetObject {
 
         this.localDevice = localDevice;
         objectType = id.getObjectType();
+        if (localDevice.isCompactPropertyStorage())
+            properties = new CompactPropertyMap(objectType);
+        else
+            properties = new ConcurrentHashMap<>();
 
         properties.put(PropertyIdentifier.objectIdentifier, id);
         properties.put(PropertyIdentifier.objectName, new CharacterString(name == null ? id.toString() : name));
@@ -203,6 +208,7 @@ public class BACnetObject {
     //
     protected final void addMixin(final AbstractMixin mixin) {
         mixins.add(mixin);
+        mixinDispatch = new MixinDispatch(mixins);
 
         if (mixin instanceof HasStatusFlagsMixin)
             hasStatusFlagsMixin = (HasStatusFlagsMixin) mixin;
@@ -342,8 +348,8 @@ public class BACnetObject {
     }
 
     /**
-     * Reads the given property. All mixins and the object are notified with beforeReadProperty prior to getting the
-     * value from the internal map.
+     * Reads the given property. The mixins that intercept the property and the object are notified with
+     * beforeReadProperty prior to getting the value from the internal map.
      *
      * @param pid
      * @return
@@ -353,7 +359,7 @@ public class BACnetObject {
     @SuppressWarnings("unchecked")
     public final <T extends Encodable> T readProperty(final PropertyIdentifier pid) throws BACnetServiceException {
         // Give the mixins notice that the property is being read.
-        for (final AbstractMixin mixin : mixins)
+        for (final AbstractMixin mixin : mixinDispatch.get(MixinDispatch.BEFORE_READ, pid))
             mixin.beforeReadProperty(pid);
         beforeReadProperty(pid);
 
@@ -477,7 +483,7 @@ public class BACnetObject {
 
         // Validation - run through the mixins
         boolean handled = false;
-        for (final AbstractMixin mixin : mixins) {
+        for (final AbstractMixin mixin : mixinDispatch.get(MixinDispatch.VALIDATE, pid)) {
             handled = mixin.validateProperty(valueSource, value);
             if (handled)
                 break;
@@ -577,7 +583,7 @@ public class BACnetObject {
 
         // Writing
         handled = false;
-        for (final AbstractMixin mixin : mixins) {
+        for (final AbstractMixin mixin : mixinDispatch.get(MixinDispatch.WRITE, pid)) {
             handled = mixin.writeProperty(valueSource, value);
             if (handled)
                 break;
@@ -612,7 +618,7 @@ public class BACnetObject {
         set(pid, value);
 
         // After writing.
-        for (final AbstractMixin mixin : mixins)
+        for (final AbstractMixin mixin : mixinDispatch.get(MixinDispatch.AFTER_WRITE, pid))
             mixin.afterWriteProperty(pid, oldValue, value);
         afterWriteProperty(pid, oldValue, value);
 
@@ -0,0 +1,248 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.obj;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+
+/**
+ * A compact map of an object's property values. The properties that ObjectProperties defines for the object type each
+ * have a slot in an array, so there are no map nodes or boxed keys for them, and gets don't allocate. Any other
+ * properties, e.g. proprietary ones, are kept in an overflow map.
+ *
+ * Like ConcurrentHashMap, which is otherwise used for properties, this is safe for concurrent use and does not allow
+ * null keys or values.
+ *
+ * @author Matthew
+ */
+class CompactPropertyMap extends AbstractMap<PropertyIdentifier, Encodable> {
+    private static final Map<ObjectType, Layout> layouts = new ConcurrentHashMap<>();
+
+    private final Layout layout;
+    private final AtomicReferenceArray<Encodable> values;
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile Map<PropertyIdentifier, Encodable> overflow;
+
+    CompactPropertyMap(final ObjectType objectType) {
+        layout = layouts.computeIfAbsent(objectType, Layout::new);
+        values = new AtomicReferenceArray<>(layout.pids.length);
+    }
+
+    @Override
+    public Encodable get(final Object key) {
+        if (!(key instanceof PropertyIdentifier))
+            return null;
+        final int slot = layout.slot((PropertyIdentifier) key);
+        if (slot != -1)
+            return values.get(slot);
+
+        final Map<PropertyIdentifier, Encodable> overflow = this.overflow;
+        return overflow == null ? null : overflow.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Encodable put(final PropertyIdentifier key, final Encodable value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+
+        final int slot = layout.slot(key);
+        if (slot != -1) {
+            final Encodable old = values.getAndSet(slot, value);
+            if (old == null)
+                count.incrementAndGet();
+            return old;
+        }
+        return overflow().put(key, value);
+    }
+
+    @Override
+    public Encodable remove(final Object key) {
+        if (!(key instanceof PropertyIdentifier))
+            return null;
+        final int slot = layout.slot((PropertyIdentifier) key);
+        if (slot != -1) {
+            final Encodable old = values.getAndSet(slot, null);
+            if (old != null)
+                count.decrementAndGet();
+            return old;
+        }
+
+        final Map<PropertyIdentifier, Encodable> overflow = this.overflow;
+        return overflow == null ? null : overflow.remove(key);
+    }
+
+    @Override
+    public int size() {
+        final Map<PropertyIdentifier, Encodable> overflow = this.overflow;
+        return count.get() + (overflow == null ? 0 : overflow.size());
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < values.length(); i++)
+            remove(layout.pids[i]);
+        final Map<PropertyIdentifier, Encodable> overflow = this.overflow;
+        if (overflow != null)
+            overflow.clear();
+    }
+
+    @Override
+    public Set<Entry<PropertyIdentifier, Encodable>> entrySet() {
+        return new AbstractSet<Entry<PropertyIdentifier, Encodable>>() {
+            @Override
+            public Iterator<Entry<PropertyIdentifier, Encodable>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactPropertyMap.this.size();
+            }
+        };
+    }
+
+    private Map<PropertyIdentifier, Encodable> overflow() {
+        Map<PropertyIdentifier, Encodable> map = overflow;
+        if (map == null) {
+            synchronized (this) {
+                map = overflow;
+                if (map == null) {
+                    map = new ConcurrentHashMap<>();
+                    overflow = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Iterates the slots in layout order, then the overflow map. Like the iterators of ConcurrentHashMap, it does not
+     * fail on concurrent modification.
+     */
+    private class EntryIterator implements Iterator<Entry<PropertyIdentifier, Encodable>> {
+        private int slot = -1;
+        private Iterator<Entry<PropertyIdentifier, Encodable>> overflowIterator;
+        private Entry<PropertyIdentifier, Encodable> next;
+        private PropertyIdentifier last;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (++slot < values.length()) {
+                final Encodable value = values.get(slot);
+                if (value != null) {
+                    next = new SimpleImmutableEntry<>(layout.pids[slot], value);
+                    return;
+                }
+            }
+
+            if (overflowIterator == null) {
+                final Map<PropertyIdentifier, Encodable> overflow = CompactPropertyMap.this.overflow;
+                if (overflow == null)
+                    return;
+                overflowIterator = overflow.entrySet().iterator();
+            }
+            if (overflowIterator.hasNext())
+                next = overflowIterator.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<PropertyIdentifier, Encodable> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            final Entry<PropertyIdentifier, Encodable> e = next;
+            last = e.getKey();
+            advance();
+            return e;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            CompactPropertyMap.this.remove(last);
+            last = null;
+        }
+    }
+
+    /**
+     * The slot layout of an object type, shared by all objects of the type.
+     */
+    static class Layout {
+        final PropertyIdentifier[] pids;
+        private final int[] slots;
+
+        Layout(final ObjectType objectType) {
+            final List<ObjectPropertyTypeDefinition> defs = ObjectProperties.getObjectPropertyTypeDefinitions(objectType);
+            pids = new PropertyIdentifier[defs.size()];
+            int max = -1;
+            for (int i = 0; i < pids.length; i++) {
+                pids[i] = defs.get(i).getPropertyTypeDefinition().getPropertyIdentifier();
+                max = Math.max(max, pids[i].intValue());
+            }
+
+            slots = new int[max + 1];
+            Arrays.fill(slots, -1);
+            for (int i = 0; i < pids.length; i++)
+                slots[pids[i].intValue()] = i;
+        }
+
+        int slot(final PropertyIdentifier pid) {
+            final int id = pid.intValue();
+            return id < slots.length ? slots[id] : -1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.obj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ValueSource;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+
+/**
+ * Per-property dispatch tables for the read and write methods of an object's mixins. A mixin is only in the table of
+ * a method if it overrides the method, and only in the entries for the properties that it intercepts, so reads and
+ * writes of properties that no mixin cares about don't go through the mixins at all. The mixins in each entry are in
+ * the order in which they were added to the object.
+ *
+ * Instances are immutable. The object builds a new one when a mixin is added.
+ *
+ * @author Matthew
+ */
+class MixinDispatch {
+    static final int BEFORE_READ = 0;
+    static final int VALIDATE = 1;
+    static final int WRITE = 2;
+    static final int AFTER_WRITE = 3;
+
+    private static final AbstractMixin[] NONE = new AbstractMixin[0];
+
+    /**
+     * Whether the class overrides each of the methods, by the indexes above.
+     */
+    private static final ClassValue<boolean[]> overrides = new ClassValue<boolean[]>() {
+        @Override
+        protected boolean[] computeValue(final Class<?> clazz) {
+            return new boolean[] { //
+                    overrides(clazz, "beforeReadProperty", PropertyIdentifier.class), //
+                    overrides(clazz, "validateProperty", ValueSource.class, PropertyValue.class), //
+                    overrides(clazz, "writeProperty", ValueSource.class, PropertyValue.class), //
+                    overrides(clazz, "afterWriteProperty", PropertyIdentifier.class, Encodable.class,
+                            Encodable.class) };
+        }
+    };
+
+    // Declared after the fields that the constructor uses.
+    static final MixinDispatch EMPTY = new MixinDispatch(new ArrayList<>());
+
+    private final List<Map<PropertyIdentifier, AbstractMixin[]>> byProperty = new ArrayList<>();
+    private final AbstractMixin[][] allProperties = new AbstractMixin[4][];
+
+    MixinDispatch(final List<AbstractMixin> mixins) {
+        for (int method = 0; method < allProperties.length; method++) {
+            final List<AbstractMixin> overriding = new ArrayList<>();
+            final List<AbstractMixin> all = new ArrayList<>();
+            final Set<PropertyIdentifier> pids = new HashSet<>();
+            for (final AbstractMixin mixin : mixins) {
+                if (!overrides.get(mixin.getClass())[method])
+                    continue;
+                overriding.add(mixin);
+                final PropertyIdentifier[] intercepted = mixin.getInterceptedProperties();
+                if (intercepted == null)
+                    all.add(mixin);
+                else
+                    pids.addAll(Arrays.asList(intercepted));
+            }
+
+            allProperties[method] = all.toArray(NONE);
+
+            final Map<PropertyIdentifier, AbstractMixin[]> map = new HashMap<>();
+            for (final PropertyIdentifier pid : pids) {
+                final List<AbstractMixin> list = new ArrayList<>();
+                for (final AbstractMixin mixin : overriding) {
+                    final PropertyIdentifier[] intercepted = mixin.getInterceptedProperties();
+                    if (intercepted == null || Arrays.asList(intercepted).contains(pid))
+                        list.add(mixin);
+                }
+                map.put(pid, list.toArray(NONE));
+            }
+            byProperty.add(map);
+        }
+    }
+
+    /**
+     * Returns the mixins to call for the given method and property. The array must not be modified.
+     */
+    AbstractMixin[] get(final int method, final PropertyIdentifier pid) {
+        final AbstractMixin[] mixins = byProperty.get(method).get(pid);
+        return mixins == null ? allProperties[method] : mixins;
+    }
+
+    private static boolean overrides(final Class<?> clazz, final String name, final Class<?>... parameterTypes) {
+        for (Class<?> c = clazz; c != AbstractMixin.class && c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (@SuppressWarnings("unused") final NoSuchMethodException e) {
+                // Keep looking in the superclass.
+            } catch (@SuppressWarnings("unused") final SecurityException e) {
+                // Can't tell, so assume that it does.
+                return true;
+            }
+        }
+        return false;
+    }
+}
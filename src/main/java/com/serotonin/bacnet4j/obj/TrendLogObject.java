@@ -7,9 +7,9 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.serotonin.bacnet4j.CovSubscriptionRegistry.CovConsumer;
 import com.serotonin.bacnet4j.LocalDevice;
 import com.serotonin.bacnet4j.RemoteDevice;
-import com.serotonin.bacnet4j.event.DeviceEventAdapter;
 import com.serotonin.bacnet4j.exception.BACnetException;
 import com.serotonin.bacnet4j.exception.BACnetServiceException;
 import com.serotonin.bacnet4j.obj.logBuffer.LinkedListLogBuffer;
@@ -29,7 +29,6 @@ import com.serotonin.bacnet4j.type.constructed.LogRecord;
 import com.serotonin.bacnet4j.type.constructed.LogStatus;
 import com.serotonin.bacnet4j.type.constructed.PropertyReference;
 import com.serotonin.bacnet4j.type.constructed.PropertyValue;
-import com.serotonin.bacnet4j.type.constructed.SequenceOf;
 import com.serotonin.bacnet4j.type.constructed.StatusFlags;
 import com.serotonin.bacnet4j.type.constructed.ValueSource;
 import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
@@ -80,7 +79,8 @@ public class TrendLogObject extends BACnetObject {
     private PollingDelegate pollingDelegate;
     private ScheduledFuture<?> pollingFuture;
     private SubscribeCOVPropertyRequest covSubscription;
-    private DeviceEventAdapter covListener;
+    private CovConsumer covConsumer;
+    private int covDeviceInstanceNumber;
     private ScheduledFuture<?> resubscriptionFuture;
 
     private boolean configurationError;
@@ -408,6 +408,13 @@ public class TrendLogObject extends BACnetObject {
     }
 
     private void cancelCov() {
+        if (covConsumer != null) {
+            getLocalDevice().getCovSubscriptionRegistry().unregister(covDeviceInstanceNumber,
+                    covSubscription.getMonitoredObjectIdentifier(),
+                    covSubscription.getSubscriberProcessIdentifier().longValue(), covConsumer);
+            covConsumer = null;
+        }
+
         if (covSubscription != null) {
             final DeviceObjectPropertyReference monitored = get(PropertyIdentifier.logDeviceObjectProperty);
 
@@ -434,11 +441,6 @@ public class TrendLogObject extends BACnetObject {
             covSubscription = null;
         }
 
-        if (covListener != null) {
-            getLocalDevice().getEventHandler().removeListener(covListener);
-            covListener = null;
-        }
-
         cancelFuture(resubscriptionFuture);
     }
 
@@ -523,41 +525,34 @@ public class TrendLogObject extends BACnetObject {
                     clientCovIncrement.isRealIncrement() ? clientCovIncrement.getRealIncrement() : null);
             covSubscription = localCovSubscription;
 
-            // Create the listener that will catch the COV notifications.
-            covListener = new DeviceEventAdapter() {
-                @Override
-                public void covNotificationReceived(final UnsignedInteger subscriberProcessIdentifier,
-                        final ObjectIdentifier initiatingDeviceIdentifier,
-                        final ObjectIdentifier monitoredObjectIdentifier, final UnsignedInteger timeRemaining,
-                        final SequenceOf<PropertyValue> listOfValues) {
-                    LOG.debug("Received COV notification");
-
-                    // Handle the COV subscription. Check if it matches the subscription.
-                    if (localCovSubscription.getSubscriberProcessIdentifier().equals(subscriberProcessIdentifier) //
-                            && deviceIdentifier.equals(initiatingDeviceIdentifier) //
-                            && localCovSubscription.getMonitoredObjectIdentifier().equals(monitoredObjectIdentifier)) {
-                        // Looks like this is for us.
-                        Encodable value = null;
-                        StatusFlags statusFlags = null;
-                        for (final PropertyValue pv : listOfValues) {
-                            if (pv.getPropertyIdentifier().equals(monitored.getPropertyIdentifier())) {
-                                value = pv.getValue();
-                            } else if (pv.getPropertyIdentifier().equals(PropertyIdentifier.statusFlags)) {
-                                statusFlags = (StatusFlags) pv.getValue();
-                            }
-                        }
-
-                        if (value == null) {
-                            LOG.warn("Requested property not found in COV notification: {}", listOfValues);
-                            updateConfigurationError(true);
-                        } else {
-                            LOG.debug("COV update: " + value);
-                            addLogRecord(LogRecord.createFromMonitoredValue(getNow(), value, statusFlags));
-                        }
+            // Register the consumer of the COV notifications. The registry only hands it the notifications of this
+            // subscription.
+            covConsumer = (subscriberProcessIdentifier, initiatingDeviceIdentifier, monitoredObjectIdentifier,
+                    timeRemaining, listOfValues) -> {
+                LOG.debug("Received COV notification");
+
+                Encodable value = null;
+                StatusFlags statusFlags = null;
+                for (final PropertyValue pv : listOfValues) {
+                    if (pv.getPropertyIdentifier().equals(monitored.getPropertyIdentifier())) {
+                        value = pv.getValue();
+                    } else if (pv.getPropertyIdentifier().equals(PropertyIdentifier.statusFlags)) {
+                        statusFlags = (StatusFlags) pv.getValue();
                     }
                 }
+
+                if (value == null) {
+                    LOG.warn("Requested property not found in COV notification: {}", listOfValues);
+                    updateConfigurationError(true);
+                } else {
+                    LOG.debug("COV update: " + value);
+                    addLogRecord(LogRecord.createFromMonitoredValue(getNow(), value, statusFlags));
+                }
             };
-            getLocalDevice().getEventHandler().addListener(covListener);
+            covDeviceInstanceNumber = deviceIdentifier.getInstanceNumber();
+            getLocalDevice().getCovSubscriptionRegistry().register(covDeviceInstanceNumber,
+                    monitored.getObjectIdentifier(), localCovSubscription.getSubscriberProcessIdentifier().longValue(),
+                    covConsumer);
 
             // Check if we're monitoring locally.
             if (monitored.getDeviceIdentifier().getInstanceNumber() == getLocalDevice().getInstanceNumber()) {
@@ -42,6 +42,11 @@ public class ActiveTimeMixin extends AbstractMixin {
         resetLastActiveTime();
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { monitoredValue, PropertyIdentifier.elapsedActiveTime };
+    }
+
     @Override
     protected void beforeReadProperty(final PropertyIdentifier pid) {
         if (pid.equals(PropertyIdentifier.elapsedActiveTime)) {
@@ -91,6 +91,12 @@ public class CommandableMixin extends AbstractMixin {
         this.pvProperty = pvProperty;
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { pvProperty, priorityArray, relinquishDefault, currentCommandPriority,
+                valueSource, valueSourceArray, lastCommandTime, commandTimeArray, minimumOffTime, minimumOnTime };
+    }
+
     public boolean isOverridden() {
         return overridden;
     }
@@ -29,12 +29,19 @@
 package com.serotonin.bacnet4j.obj.mixin;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.serotonin.bacnet4j.exception.BACnetRuntimeException;
 import com.serotonin.bacnet4j.exception.BACnetServiceException;
@@ -61,9 +68,16 @@ import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
  * @author Matthew
  */
 public class CovReportingMixin extends AbstractMixin {
+    static final Logger LOG = LoggerFactory.getLogger(CovReportingMixin.class);
+
     private final CovReportingCriteria criteria;
     private ScheduledFuture<?> covPeriodFuture;
 
+    // Notifications are sent by a task rather than by the thread that changed the property. The task sends the fan-outs
+    // in the order in which they were queued.
+    private final Queue<FanOut> pendingFanOuts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+
     public CovReportingMixin(final BACnetObject bo, final Real covIncrement, final UnsignedInteger covPeriod) {
         super(bo);
         criteria = objectTypeCriteria.get(bo.getId().getObjectType());
@@ -110,6 +124,8 @@ public class CovReportingMixin extends AbstractMixin {
         // COVs
         final List<CovContext> ctxs = getLocalDevice().getCovContexts().get(getId());
         final long now = getLocalDevice().getClock().millis();
+        final FanOut fanOut = new FanOut(now);
+        final boolean queued;
         synchronized (ctxs) {
             List<CovContext> expired = null;
             for (final CovContext ctx : ctxs) {
@@ -141,7 +157,7 @@ public class CovReportingMixin extends AbstractMixin {
                         // subscriptions where the monitored property is one of the criteria's monitored properties.
                         if (ctx.isObjectSubscription()
                                 || ctx.getMonitoredProperty().isOneOf(criteria.monitoredProperties)) {
-                            sendObjectNotification(ctx, now);
+                            addObjectNotification(fanOut, ctx);
                             sent = true;
                         }
                     }
@@ -152,10 +168,7 @@ public class CovReportingMixin extends AbstractMixin {
                             // Rows in Table 13-1a are not distinguished because currently no alternative increment
                             // value is supported.
                             if (pid.equals(PropertyIdentifier.statusFlags) || pid.equals(ctx.getMonitoredProperty())) {
-                                final SequenceOf<PropertyValue> values = new SequenceOf<>();
-                                addPropertyValues(ctx, values, ctx.getMonitoredProperty(),
-                                        PropertyIdentifier.statusFlags);
-                                sendNotification(ctx, now, values);
+                                fanOut.add(ctx, ctx.getMonitoredProperty(), PropertyIdentifier.statusFlags);
                                 sent = true;
                             }
                         }
@@ -168,13 +181,13 @@ public class CovReportingMixin extends AbstractMixin {
                             if (table13_1Met //
                                     || PropertyIdentifier.valueSource.equals(pid) //
                                     || PropertyIdentifier.currentCommandPriority.equals(pid)) {
-                                sendPropertyNotification(ctx, now);
+                                addPropertyNotification(fanOut, ctx);
                                 sent = true;
                             }
                         } else {
                             // Non-commandable
                             if (table13_1Met || PropertyIdentifier.valueSource.equals(pid)) {
-                                sendPropertyNotification(ctx, now);
+                                addPropertyNotification(fanOut, ctx);
                                 sent = true;
                             }
                         }
@@ -185,7 +198,13 @@ public class CovReportingMixin extends AbstractMixin {
             if (expired != null) {
                 ctxs.removeAll(expired);
             }
+
+            // Queued while the values are still those that were read, so a later change can't be queued first.
+            queued = enqueue(fanOut);
         }
+
+        if (queued)
+            schedulePending();
     }
 
     public void addCovSubscription(final Address from, final UnsignedInteger subscriberProcessIdentifier,
@@ -193,6 +212,7 @@ public class CovReportingMixin extends AbstractMixin {
             final PropertyReference monitoredPropertyIdentifier, final Real covIncrement)
             throws BACnetServiceException {
         final List<CovContext> ctxs = getLocalDevice().getCovContexts().get(getId());
+        final boolean queued;
         synchronized (ctxs) {
             final PropertyIdentifier monitored = monitoredPropertyIdentifier == null ? null
                     : monitoredPropertyIdentifier.getPropertyIdentifier();
@@ -227,15 +247,16 @@ public class CovReportingMixin extends AbstractMixin {
             ctx.setCovIncrement(covIncrement);
 
             // "Immediately" send a notification
-            final CovContext _ctx = ctx;
-            getLocalDevice().execute(() -> {
-                final long now = getLocalDevice().getClock().millis();
-                if (_ctx.getMonitoredProperty() != null)
-                    sendPropertyNotification(_ctx, now);
-                else
-                    sendObjectNotification(_ctx, now);
-            });
+            final FanOut fanOut = new FanOut(getLocalDevice().getClock().millis());
+            if (ctx.getMonitoredProperty() != null)
+                addPropertyNotification(fanOut, ctx);
+            else
+                addObjectNotification(fanOut, ctx);
+            queued = enqueue(fanOut);
         }
+
+        if (queued)
+            schedulePending();
     }
 
     public void removeCovSubscription(final Address from, final UnsignedInteger subscriberProcessIdentifier,
@@ -264,59 +285,151 @@ public class CovReportingMixin extends AbstractMixin {
         return null;
     }
 
-    private void sendObjectNotification(final CovContext ctx, final long now) {
-        final SequenceOf<PropertyValue> values = new SequenceOf<>();
-        addPropertyValues(ctx, values, criteria.propertiesReported);
-        sendNotification(ctx, now, values);
+    private void addObjectNotification(final FanOut fanOut, final CovContext ctx) {
+        fanOut.add(ctx, criteria.propertiesReported);
     }
 
-    private void sendPropertyNotification(final CovContext ctx, final long now) {
-        final SequenceOf<PropertyValue> values = new SequenceOf<>();
-
+    private void addPropertyNotification(final FanOut fanOut, final CovContext ctx) {
         if (PropertyIdentifier.valueSource.equals(ctx.getMonitoredProperty())) {
             // Table 13-1a-2
+            final List<PropertyIdentifier> pids = new ArrayList<>(Arrays.asList(criteria.propertiesReported));
             if (get(PropertyIdentifier.priorityArray) != null) {
-                addPropertyValues(ctx, values, criteria.propertiesReported);
-                addPropertyValues(ctx, values, PropertyIdentifier.valueSource, PropertyIdentifier.lastCommandTime,
-                        PropertyIdentifier.currentCommandPriority);
+                pids.add(PropertyIdentifier.valueSource);
+                pids.add(PropertyIdentifier.lastCommandTime);
+                pids.add(PropertyIdentifier.currentCommandPriority);
             } else {
                 // Non-commandable
-                addPropertyValues(ctx, values, criteria.propertiesReported);
-                addPropertyValues(ctx, values, PropertyIdentifier.valueSource);
+                pids.add(PropertyIdentifier.valueSource);
             }
+            fanOut.add(ctx, pids.toArray(new PropertyIdentifier[pids.size()]));
         } else {
             // Table 13-1a
-            addPropertyValues(ctx, values, ctx.getMonitoredProperty(), PropertyIdentifier.statusFlags);
+            fanOut.add(ctx, ctx.getMonitoredProperty(), PropertyIdentifier.statusFlags);
         }
+    }
+
+    /**
+     * Queues the fan-out for sending. Called while holding the lock on the COV contexts so that fan-outs are queued in
+     * the order in which their values were read.
+     *
+     * @return true if the fan-out was queued, in which case schedulePending must be called after the lock is released.
+     */
+    private boolean enqueue(final FanOut fanOut) {
+        if (fanOut.notifications.isEmpty())
+            return false;
+
+        pendingFanOuts.add(fanOut);
+        return true;
+    }
+
+    private void schedulePending() {
+        if (sending.compareAndSet(false, true))
+            getLocalDevice().execute(this::sendPending);
+    }
 
-        sendNotification(ctx, now, values);
+    private void sendPending() {
+        while (true) {
+            FanOut fanOut;
+            while ((fanOut = pendingFanOuts.poll()) != null)
+                fanOut.send();
+
+            sending.set(false);
+            // Start again if a fan-out was queued after the queue was found to be empty, unless another task has
+            // started for it already.
+            if (pendingFanOuts.isEmpty() || !sending.compareAndSet(false, true))
+                return;
+        }
     }
 
-    private void addPropertyValues(final CovContext ctx, final SequenceOf<PropertyValue> values,
-            final PropertyIdentifier... pids) {
-        for (final PropertyIdentifier pid : pids) {
-            final Encodable value = get(pid);
-            if (value != null) {
-                if (pid.equals(criteria.incrementProperty))
-                    ctx.setLastCovIncrementValue(value);
-                values.add(new PropertyValue(pid, value));
+    /**
+     * The notifications caused by a single change. Subscribers that are sent the same properties share a list of
+     * values, which is encoded only once. Only the subscriber process id and time remaining differ between their
+     * requests, and the invoke id is assigned by the transport as usual.
+     */
+    private class FanOut {
+        private final long now;
+        private final ObjectIdentifier id = get(PropertyIdentifier.objectIdentifier);
+        private final Map<List<PropertyIdentifier>, ListOfValues> lists = new HashMap<>();
+        final List<Notification> notifications = new ArrayList<>();
+
+        FanOut(final long now) {
+            this.now = now;
+        }
+
+        void add(final CovContext ctx, final PropertyIdentifier... pids) {
+            ListOfValues list = lists.get(Arrays.asList(pids));
+            if (list == null) {
+                final SequenceOf<PropertyValue> values = new SequenceOf<>();
+                for (final PropertyIdentifier pid : pids) {
+                    final Encodable value = get(pid);
+                    if (value != null)
+                        values.add(new PropertyValue(pid, value));
+                }
+                list = new ListOfValues(values);
+                lists.put(Arrays.asList(pids), list);
+            }
+
+            for (final PropertyValue pv : list.values) {
+                if (pv.getPropertyIdentifier().equals(criteria.incrementProperty))
+                    ctx.setLastCovIncrementValue(pv.getValue());
+            }
+
+            notifications.add(new Notification(ctx.getAddress(), ctx.getSubscriberProcessIdentifier(),
+                    ctx.isIssueConfirmedNotifications(), new UnsignedInteger(ctx.getSecondsRemaining(now)), list));
+        }
+
+        void send() {
+            final ObjectIdentifier deviceId = getLocalDevice().getId();
+            for (final Notification n : notifications) {
+                try {
+                    if (n.confirmed) {
+                        final ConfirmedCovNotificationRequest req = new ConfirmedCovNotificationRequest( //
+                                n.subscriberProcessIdentifier, deviceId, id, n.timeLeft, n.list.values,
+                                n.list.encoded());
+                        getLocalDevice().send(n.address, req, null);
+                    } else {
+                        final UnconfirmedCovNotificationRequest req = new UnconfirmedCovNotificationRequest(
+                                n.subscriberProcessIdentifier, deviceId, id, n.timeLeft, n.list.values,
+                                n.list.encoded());
+                        getLocalDevice().send(n.address, req);
+                    }
+                } catch (final RuntimeException e) {
+                    LOG.warn("Error sending COV notification to {}", n.address, e);
+                }
             }
         }
     }
 
-    private void sendNotification(final CovContext ctx, final long now, final SequenceOf<PropertyValue> values) {
-        final ObjectIdentifier deviceId = getLocalDevice().getId();
-        final ObjectIdentifier id = get(PropertyIdentifier.objectIdentifier);
-        final UnsignedInteger timeLeft = new UnsignedInteger(ctx.getSecondsRemaining(now));
+    private static class ListOfValues {
+        final SequenceOf<PropertyValue> values;
+        private byte[] encoded;
 
-        if (ctx.isIssueConfirmedNotifications()) {
-            final ConfirmedCovNotificationRequest req = new ConfirmedCovNotificationRequest( //
-                    ctx.getSubscriberProcessIdentifier(), deviceId, id, timeLeft, values);
-            getLocalDevice().send(ctx.getAddress(), req, null);
-        } else {
-            final UnconfirmedCovNotificationRequest req = new UnconfirmedCovNotificationRequest(
-                    ctx.getSubscriberProcessIdentifier(), deviceId, id, timeLeft, values);
-            getLocalDevice().send(ctx.getAddress(), req);
+        ListOfValues(final SequenceOf<PropertyValue> values) {
+            this.values = values;
+        }
+
+        // Only called by the sending task.
+        byte[] encoded() {
+            if (encoded == null)
+                encoded = ConfirmedCovNotificationRequest.encodeListOfValues(values);
+            return encoded;
+        }
+    }
+
+    private static class Notification {
+        final Address address;
+        final UnsignedInteger subscriberProcessIdentifier;
+        final boolean confirmed;
+        final UnsignedInteger timeLeft;
+        final ListOfValues list;
+
+        Notification(final Address address, final UnsignedInteger subscriberProcessIdentifier,
+                final boolean confirmed, final UnsignedInteger timeLeft, final ListOfValues list) {
+            this.address = address;
+            this.subscriberProcessIdentifier = subscriberProcessIdentifier;
+            this.confirmed = confirmed;
+            this.timeLeft = timeLeft;
+            this.list = list;
         }
     }
 
@@ -358,14 +471,20 @@ public class CovReportingMixin extends AbstractMixin {
 
         if (covPeriod.intValue() > 0) {
             covPeriodFuture = getLocalDevice().scheduleAtFixedRate(() -> {
-                final long now = getLocalDevice().getClock().millis();
+                final FanOut fanOut = new FanOut(getLocalDevice().getClock().millis());
                 final List<CovContext> ctxs = getLocalDevice().getCovContexts().get(getId());
-                for (final CovContext ctx : ctxs) {
-                    if (ctx.isObjectSubscription()) {
-                        // This action only applies to object subscriptions, not to property subscriptions.
-                        sendObjectNotification(ctx, now);
+                final boolean queued;
+                synchronized (ctxs) {
+                    for (final CovContext ctx : ctxs) {
+                        if (ctx.isObjectSubscription()) {
+                            // This action only applies to object subscriptions, not to property subscriptions.
+                            addObjectNotification(fanOut, ctx);
+                        }
                     }
+                    queued = enqueue(fanOut);
                 }
+                if (queued)
+                    schedulePending();
             }, covPeriod.intValue(), covPeriod.intValue(), TimeUnit.SECONDS);
         }
     }
@@ -54,6 +54,11 @@ public class HasStatusFlagsMixin extends AbstractMixin {
         super(bo);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { statusFlags, eventState, reliability, outOfService };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
@@ -23,6 +23,12 @@ public class LifeSafetyMixin extends AbstractMixin {
         super(owner);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { PropertyIdentifier.mode, PropertyIdentifier.memberOf,
+                PropertyIdentifier.zoneMembers };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
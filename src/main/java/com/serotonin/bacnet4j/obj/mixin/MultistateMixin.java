@@ -46,6 +46,12 @@ public class MultistateMixin extends AbstractMixin {
         super(bo);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { PropertyIdentifier.presentValue, PropertyIdentifier.numberOfStates,
+                PropertyIdentifier.stateText };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
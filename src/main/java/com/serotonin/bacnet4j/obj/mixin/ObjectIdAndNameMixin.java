@@ -1,5 +1,7 @@
 package com.serotonin.bacnet4j.obj.mixin;
 
+import java.util.Objects;
+
 import com.serotonin.bacnet4j.RemoteDevice;
 import com.serotonin.bacnet4j.exception.BACnetServiceException;
 import com.serotonin.bacnet4j.obj.AbstractMixin;
@@ -19,6 +21,11 @@ public class ObjectIdAndNameMixin extends AbstractMixin {
         super(owner);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { PropertyIdentifier.objectIdentifier, PropertyIdentifier.objectName };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
@@ -65,6 +72,8 @@ public class ObjectIdAndNameMixin extends AbstractMixin {
     protected void afterWriteProperty(final PropertyIdentifier pid, final Encodable oldValue,
             final Encodable newValue) {
         if (pid.isOneOf(PropertyIdentifier.objectIdentifier, PropertyIdentifier.objectName)) {
+            if (!Objects.equals(oldValue, newValue))
+                getLocalDevice().objectIdentityChanged(getBACnetObject(), oldValue, newValue);
             getLocalDevice().incrementDatabaseRevision();
         }
     }
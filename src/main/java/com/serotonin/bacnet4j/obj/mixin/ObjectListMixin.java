@@ -30,9 +30,6 @@ package com.serotonin.bacnet4j.obj.mixin;
 
 import static com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier.objectList;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.serotonin.bacnet4j.exception.BACnetServiceException;
 import com.serotonin.bacnet4j.obj.AbstractMixin;
 import com.serotonin.bacnet4j.obj.BACnetObject;
@@ -49,6 +46,11 @@ public class ObjectListMixin extends AbstractMixin {
         super(bo);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { objectList };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
@@ -60,11 +62,10 @@ public class ObjectListMixin extends AbstractMixin {
     @Override
     protected void beforeReadProperty(final PropertyIdentifier pid) {
         if (objectList.equals(pid)) {
-            final List<ObjectIdentifier> oids = new ArrayList<>();
-            for (final BACnetObject bo : getLocalDevice().getLocalObjects()) {
-                oids.add(bo.getId());
-            }
-            writePropertyInternal(objectList, new BACnetArray<>(oids));
+            // The local device only builds a new list when its objects change, so this is usually the same instance.
+            final BACnetArray<ObjectIdentifier> oids = getLocalDevice().getObjectList();
+            if (get(objectList) != oids)
+                writePropertyInternal(objectList, oids);
         }
     }
 }
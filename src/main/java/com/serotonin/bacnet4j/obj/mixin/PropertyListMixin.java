@@ -47,10 +47,17 @@ import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 
 public class PropertyListMixin extends AbstractMixin {
+    private volatile int propertiesSize = -1;
+
     public PropertyListMixin(final BACnetObject bo) {
         super(bo);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { propertyList };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
@@ -62,12 +69,17 @@ public class PropertyListMixin extends AbstractMixin {
     @Override
     protected void beforeReadProperty(final PropertyIdentifier pid) {
         if (pid.equals(PropertyIdentifier.propertyList)) {
+            // Properties are only ever added, so the list only needs to be rebuilt when the number of them changes.
+            if (properties().size() == propertiesSize)
+                return;
+
             final List<PropertyIdentifier> pids = new ArrayList<>();
             for (final PropertyIdentifier p : properties().keySet()) {
                 if (!p.isOneOf(objectName, objectType, objectIdentifier, propertyList))
                     pids.add(p);
             }
             writePropertyInternal(propertyList, new BACnetArray<>(pids));
+            propertiesSize = properties().size();
         }
     }
 }
@@ -54,6 +54,11 @@ public class ReadOnlyPropertyMixin extends AbstractMixin {
             this.pids.add(pid);
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return pids.toArray(new PropertyIdentifier[pids.size()]);
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
@@ -27,6 +27,11 @@ public class StateChangeMixin extends AbstractMixin {
         writePropertyInternal(PropertyIdentifier.timeOfStateCountReset, new DateTime(getLocalDevice()));
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { PropertyIdentifier.presentValue, PropertyIdentifier.changeOfStateCount };
+    }
+
     @Override
     protected void afterWriteProperty(final PropertyIdentifier pid, final Encodable oldValue,
             final Encodable newValue) {
@@ -108,6 +108,12 @@ public class TimeSynchronizationMixin extends AbstractMixin {
         }
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { PropertyIdentifier.timeSynchronizationInterval,
+                PropertyIdentifier.alignIntervals, PropertyIdentifier.intervalOffset };
+    }
+
     @Override
     protected void afterWriteProperty(final PropertyIdentifier pid, final Encodable oldValue,
             final Encodable newValue) {
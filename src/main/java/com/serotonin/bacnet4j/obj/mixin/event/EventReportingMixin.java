@@ -110,6 +110,13 @@ abstract public class EventReportingMixin extends AbstractMixin {
     abstract protected Reliability evaluateFaultState(Encodable oldMonitoredValue, Encodable newMonitoredValue,
             BACnetObject bo, FaultAlgorithm faultAlgo);
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        return new PropertyIdentifier[] { PropertyIdentifier.reliability, PropertyIdentifier.eventAlgorithmInhibit,
+                PropertyIdentifier.eventDetectionEnable, PropertyIdentifier.eventTimeStamps,
+                PropertyIdentifier.eventMessageTexts, PropertyIdentifier.eventAlgorithmInhibitRef };
+    }
+
     @Override
     protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value)
             throws BACnetServiceException {
@@ -28,6 +28,7 @@
  */
 package com.serotonin.bacnet4j.obj.mixin.event;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import com.serotonin.bacnet4j.obj.BACnetObject;
@@ -73,6 +74,15 @@ public class IntrinsicReportingMixin extends EventReportingMixin {
         return this;
     }
 
+    @Override
+    protected PropertyIdentifier[] getInterceptedProperties() {
+        // The properties of event reporting in general, and the triggers.
+        final PropertyIdentifier[] pids = super.getInterceptedProperties();
+        final PropertyIdentifier[] result = Arrays.copyOf(pids, pids.length + triggerProperties.length);
+        System.arraycopy(triggerProperties, 0, result, pids.length, triggerProperties.length);
+        return result;
+    }
+
     @Override
     protected synchronized void afterWriteProperty(final PropertyIdentifier pid, final Encodable oldValue,
             final Encodable newValue) {
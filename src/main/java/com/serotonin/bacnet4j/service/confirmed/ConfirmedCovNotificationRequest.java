@@ -47,15 +47,41 @@ public class ConfirmedCovNotificationRequest extends ConfirmedRequestService {
     private final ObjectIdentifier monitoredObjectIdentifier;
     private final UnsignedInteger timeRemaining;
     private final SequenceOf<PropertyValue> listOfValues;
+    private final byte[] encodedListOfValues;
 
     public ConfirmedCovNotificationRequest(final UnsignedInteger subscriberProcessIdentifier,
             final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
             final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues) {
+        this(subscriberProcessIdentifier, initiatingDeviceIdentifier, monitoredObjectIdentifier, timeRemaining,
+                listOfValues, null);
+    }
+
+    /**
+     * Creates a request that writes the given encoding of the list of values instead of encoding the list itself. This
+     * allows a notification that goes to several subscribers to be encoded once.
+     *
+     * @param encodedListOfValues
+     *            the list of values as encoded by encodeListOfValues, or null to encode the list.
+     */
+    public ConfirmedCovNotificationRequest(final UnsignedInteger subscriberProcessIdentifier,
+            final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
+            final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues,
+            final byte[] encodedListOfValues) {
         this.subscriberProcessIdentifier = subscriberProcessIdentifier;
         this.initiatingDeviceIdentifier = initiatingDeviceIdentifier;
         this.monitoredObjectIdentifier = monitoredObjectIdentifier;
         this.timeRemaining = timeRemaining;
         this.listOfValues = listOfValues;
+        this.encodedListOfValues = encodedListOfValues;
+    }
+
+    /**
+     * Encodes the list of values as it appears in both confirmed and unconfirmed COV notifications.
+     */
+    public static byte[] encodeListOfValues(final SequenceOf<PropertyValue> listOfValues) {
+        final ByteQueue queue = new ByteQueue();
+        listOfValues.write(queue, 4);
+        return queue.popAll();
     }
 
     @Override
@@ -66,8 +92,8 @@ public class ConfirmedCovNotificationRequest extends ConfirmedRequestService {
     @Override
     public AcknowledgementService handle(final LocalDevice localDevice, final Address from) {
         localDevice.updateRemoteDevice(initiatingDeviceIdentifier.getInstanceNumber(), from);
-        localDevice.getEventHandler().fireCovNotification(subscriberProcessIdentifier, initiatingDeviceIdentifier,
-                monitoredObjectIdentifier, timeRemaining, listOfValues);
+        localDevice.getCovSubscriptionRegistry().fireCovNotification(subscriberProcessIdentifier,
+                initiatingDeviceIdentifier, monitoredObjectIdentifier, timeRemaining, listOfValues);
         return null;
     }
 
@@ -77,7 +103,10 @@ public class ConfirmedCovNotificationRequest extends ConfirmedRequestService {
         initiatingDeviceIdentifier.write(queue, 1);
         monitoredObjectIdentifier.write(queue, 2);
         timeRemaining.write(queue, 3);
-        listOfValues.write(queue, 4);
+        if (encodedListOfValues == null)
+            listOfValues.write(queue, 4);
+        else
+            queue.push(encodedListOfValues);
     }
 
     ConfirmedCovNotificationRequest(final ByteQueue queue) throws BACnetException {
@@ -91,6 +120,7 @@ public class ConfirmedCovNotificationRequest extends ConfirmedRequestService {
         } finally {
             ThreadLocalObjectTypeStack.remove();
         }
+        encodedListOfValues = null;
     }
 
     @Override
@@ -32,7 +32,8 @@ import com.serotonin.bacnet4j.LocalDevice;
 import com.serotonin.bacnet4j.exception.BACnetErrorException;
 import com.serotonin.bacnet4j.exception.BACnetException;
 import com.serotonin.bacnet4j.exception.BACnetRuntimeException;
-import com.serotonin.bacnet4j.exception.NotImplementedException;
+import com.serotonin.bacnet4j.exception.BACnetServiceException;
+import com.serotonin.bacnet4j.obj.BACnetObject;
 import com.serotonin.bacnet4j.service.acknowledgement.AcknowledgementService;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.constructed.BaseType;
@@ -40,6 +41,9 @@ import com.serotonin.bacnet4j.type.constructed.PropertyReference;
 import com.serotonin.bacnet4j.type.constructed.SequenceOf;
 import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
 import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
+import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
+import com.serotonin.bacnet4j.type.error.SubscribeCovPropertyMultipleError;
+import com.serotonin.bacnet4j.type.error.SubscribeCovPropertyMultipleError.FirstFailedSubscription;
 import com.serotonin.bacnet4j.type.primitive.Boolean;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.Real;
@@ -98,19 +102,27 @@ public class SubscribeCOVPropertyMultipleRequest extends ConfirmedRequestService
         if (issueConfirmedNotifications == null != (lifetime == null))
             throw new BACnetErrorException(ErrorClass.services, ErrorCode.inconsistentParameters);
 
-        throw new NotImplementedException();
+        // The COV contexts match process ids by class, so use the same class as SubscribeCOVPropertyRequest.
+        final UnsignedInteger processId = new UnsignedInteger(subscriberProcessIdentifier.longValue());
 
-        //        try {
-        //            final BACnetObject obj = localDevice.getObjectRequired(monitoredObjectIdentifier);
-        //            if (issueConfirmedNotifications == null && lifetime == null)
-        //                obj.removeCovSubscription(from, subscriberProcessIdentifier);
-        //            else
-        //                obj.addCovSubscription(from, subscriberProcessIdentifier, issueConfirmedNotifications, lifetime,
-        //                        monitoredPropertyIdentifier, covIncrement);
-        //            return null;
-        //        } catch (final BACnetServiceException e) {
-        //            throw new BACnetErrorException(getChoiceId(), e);
-        //        }
+        for (final CovSubscriptionSpecification spec : listOfCovSubscriptionSpecifications) {
+            for (final CovSubscriptionSpecification.CovReference ref : spec.getListOfCovReferences()) {
+                try {
+                    final BACnetObject obj = localDevice.getObjectRequired(spec.getMonitoredObjectIdentifier());
+                    if (issueConfirmedNotifications == null)
+                        obj.removeCovSubscription(from, processId, ref.getMonitoredProperty());
+                    else
+                        obj.addCovSubscription(from, processId, issueConfirmedNotifications, lifetime,
+                                ref.getMonitoredProperty(), ref.getCovIncrement());
+                } catch (final BACnetServiceException e) {
+                    throw new BACnetErrorException(getChoiceId(),
+                            new SubscribeCovPropertyMultipleError(new FirstFailedSubscription(
+                                    spec.getMonitoredObjectIdentifier(), ref.getMonitoredProperty(),
+                                    new ErrorClassAndCode(e))));
+                }
+            }
+        }
+        return null;
     }
 
     @Override
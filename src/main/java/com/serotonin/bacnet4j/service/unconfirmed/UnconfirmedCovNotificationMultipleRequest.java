@@ -30,12 +30,12 @@ package com.serotonin.bacnet4j.service.unconfirmed;
 
 import com.serotonin.bacnet4j.LocalDevice;
 import com.serotonin.bacnet4j.exception.BACnetException;
-import com.serotonin.bacnet4j.exception.NotImplementedException;
 import com.serotonin.bacnet4j.type.Encodable;
 import com.serotonin.bacnet4j.type.ThreadLocalObjectTypeStack;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.constructed.BaseType;
 import com.serotonin.bacnet4j.type.constructed.DateTime;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
 import com.serotonin.bacnet4j.type.constructed.SequenceOf;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
@@ -70,10 +70,11 @@ public class UnconfirmedCovNotificationMultipleRequest extends UnconfirmedReques
 
     @Override
     public void handle(final LocalDevice localDevice, final Address from) throws BACnetException {
-        throw new NotImplementedException();
-        //        localDevice.updateRemoteDevice(initiatingDeviceIdentifier.getInstanceNumber(), from);
-        //        localDevice.getEventHandler().fireCovNotification(subscriberProcessIdentifier, initiatingDeviceIdentifier,
-        //                monitoredObjectIdentifier, timeRemaining, listOfValues);
+        localDevice.updateRemoteDevice(initiatingDeviceIdentifier.getInstanceNumber(), from);
+        for (final CovNotification notification : listOfCovNotifications)
+            localDevice.getCovSubscriptionRegistry().fireCovNotification(subscriberProcessIdentifier,
+                    initiatingDeviceIdentifier, notification.getMonitoredObjectIdentifier(), timeRemaining,
+                    notification.getPropertyValues());
     }
 
     @Override
@@ -196,6 +197,17 @@ public class UnconfirmedCovNotificationMultipleRequest extends UnconfirmedReques
             return listOfValues;
         }
 
+        /**
+         * @return the values as the list of property values of a single object COV notification.
+         */
+        public SequenceOf<PropertyValue> getPropertyValues() {
+            final SequenceOf<PropertyValue> values = new SequenceOf<>(listOfValues.size());
+            for (final CovNotificationValue value : listOfValues)
+                values.add(new PropertyValue(value.getPropertyIdentifier(), value.getPropertyArrayIndex(),
+                        value.getPropertyValue(), null));
+            return values;
+        }
+
         @Override
         public int hashCode() {
             final int prime = 31;
@@ -46,15 +46,33 @@ public class UnconfirmedCovNotificationRequest extends UnconfirmedRequestService
     private final ObjectIdentifier monitoredObjectIdentifier;
     private final UnsignedInteger timeRemaining;
     private final SequenceOf<PropertyValue> listOfValues;
+    private final byte[] encodedListOfValues;
 
     public UnconfirmedCovNotificationRequest(final UnsignedInteger subscriberProcessIdentifier,
             final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
             final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues) {
+        this(subscriberProcessIdentifier, initiatingDeviceIdentifier, monitoredObjectIdentifier, timeRemaining,
+                listOfValues, null);
+    }
+
+    /**
+     * Creates a request that writes the given encoding of the list of values instead of encoding the list itself. This
+     * allows a notification that goes to several subscribers to be encoded once.
+     *
+     * @param encodedListOfValues
+     *            the list of values as encoded by ConfirmedCovNotificationRequest.encodeListOfValues, or null to
+     *            encode the list.
+     */
+    public UnconfirmedCovNotificationRequest(final UnsignedInteger subscriberProcessIdentifier,
+            final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
+            final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues,
+            final byte[] encodedListOfValues) {
         this.subscriberProcessIdentifier = subscriberProcessIdentifier;
         this.initiatingDeviceIdentifier = initiatingDeviceIdentifier;
         this.monitoredObjectIdentifier = monitoredObjectIdentifier;
         this.timeRemaining = timeRemaining;
         this.listOfValues = listOfValues;
+        this.encodedListOfValues = encodedListOfValues;
     }
 
     @Override
@@ -65,8 +83,8 @@ public class UnconfirmedCovNotificationRequest extends UnconfirmedRequestService
     @Override
     public void handle(final LocalDevice localDevice, final Address from) {
         localDevice.updateRemoteDevice(initiatingDeviceIdentifier.getInstanceNumber(), from);
-        localDevice.getEventHandler().fireCovNotification(subscriberProcessIdentifier, initiatingDeviceIdentifier,
-                monitoredObjectIdentifier, timeRemaining, listOfValues);
+        localDevice.getCovSubscriptionRegistry().fireCovNotification(subscriberProcessIdentifier,
+                initiatingDeviceIdentifier, monitoredObjectIdentifier, timeRemaining, listOfValues);
     }
 
     @Override
@@ -75,7 +93,10 @@ public class UnconfirmedCovNotificationRequest extends UnconfirmedRequestService
         write(queue, initiatingDeviceIdentifier, 1);
         write(queue, monitoredObjectIdentifier, 2);
         write(queue, timeRemaining, 3);
-        write(queue, listOfValues, 4);
+        if (encodedListOfValues == null)
+            write(queue, listOfValues, 4);
+        else
+            queue.push(encodedListOfValues);
     }
 
     UnconfirmedCovNotificationRequest(final ByteQueue queue) throws BACnetException {
@@ -89,6 +110,7 @@ public class UnconfirmedCovNotificationRequest extends UnconfirmedRequestService
         } finally {
             ThreadLocalObjectTypeStack.remove();
         }
+        encodedListOfValues = null;
     }
 
     @Override
@@ -71,8 +71,7 @@ public class WhoIsRequest extends UnconfirmedRequestService {
             return;
 
         // Return the result in a i am message.
-        final IAmRequest iam = localDevice.getIAm().withIsResponseToWhoIs(true);
-        localDevice.sendGlobalBroadcast(iam);
+        localDevice.getIAmResponder().whoIsReceived(from);
     }
 
     @Override
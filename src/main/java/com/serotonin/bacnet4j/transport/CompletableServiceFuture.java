@@ -0,0 +1,67 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.transport;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.serotonin.bacnet4j.ResponseConsumer;
+import com.serotonin.bacnet4j.apdu.AckAPDU;
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.service.acknowledgement.AcknowledgementService;
+
+/**
+ * A response consumer that completes as a CompletableFuture, so that confirmed requests can be composed without
+ * blocking a thread per request. Failure responses complete the future exceptionally with the same exception types
+ * that ServiceFutureImpl throws, i.e. ErrorAPDUException, RejectAPDUException, AbortAPDUException or the
+ * BACnetException given by the transport.
+ *
+ * Completion happens in the transport thread. Dependent stages that block, e.g. by calling ServiceFuture.get(),
+ * must be run with one of the *Async methods on another executor.
+ *
+ * @author Matthew
+ */
+public class CompletableServiceFuture<T extends AcknowledgementService> extends CompletableFuture<T>
+        implements ResponseConsumer {
+    @SuppressWarnings("unchecked")
+    @Override
+    public void success(final AcknowledgementService ack) {
+        complete((T) ack);
+    }
+
+    @Override
+    public void fail(final AckAPDU ack) {
+        final BACnetException e = ServiceFutureImpl.toException(ack);
+        completeExceptionally(e == null ? new BACnetException("Unexpected failure response: " + ack) : e);
+    }
+
+    @Override
+    public void ex(final BACnetException e) {
+        completeExceptionally(e);
+    }
+}
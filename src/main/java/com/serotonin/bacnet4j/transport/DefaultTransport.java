@@ -28,12 +28,13 @@
  */
 package com.serotonin.bacnet4j.transport;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +62,7 @@ import com.serotonin.bacnet4j.exception.BACnetTimeoutException;
 import com.serotonin.bacnet4j.exception.CommunicationDisabledException;
 import com.serotonin.bacnet4j.exception.NotImplementedException;
 import com.serotonin.bacnet4j.exception.ServiceTooBigException;
+import com.serotonin.bacnet4j.npdu.NPCI.NetworkPriority;
 import com.serotonin.bacnet4j.npdu.NPDU;
 import com.serotonin.bacnet4j.npdu.Network;
 import com.serotonin.bacnet4j.npdu.NetworkIdentifier;
@@ -87,6 +89,7 @@ import com.serotonin.bacnet4j.util.sero.ThreadUtils;
 public class DefaultTransport implements Transport, Runnable {
     static final Logger LOG = LoggerFactory.getLogger(DefaultTransport.class);
     static final MaxSegments MAX_SEGMENTS = MaxSegments.MORE_THAN_64;
+    static final long MAX_PAUSE = 50;
 
     final Map<Integer, OctetString> networkRouters = new ConcurrentHashMap<>();
 
@@ -97,16 +100,26 @@ public class DefaultTransport implements Transport, Runnable {
     int retries = DEFAULT_RETRIES;
     int segTimeout = DEFAULT_SEG_TIMEOUT;
     int segWindow = DEFAULT_SEG_WINDOW;
+    int workerCount;
+    int maxOutstandingRequests;
+    boolean adaptiveWindows;
     ServicesSupported servicesSupported;
 
     // Message queues
-    private final Queue<Outgoing> outgoing = new ConcurrentLinkedQueue<>();
-    private final Queue<NPDU> incoming = new ConcurrentLinkedQueue<>();
+    private final PriorityMessageQueue<Outgoing> outgoing = new PriorityMessageQueue<>();
+    private final PriorityMessageQueue<NPDU> incoming = new PriorityMessageQueue<>();
+    private final IncomingFilter incomingFilter = new IncomingFilter();
     private final Queue<DelayedOutgoing> delayedOutgoing = new LinkedList<>();
 
+    // Flow control of confirmed requests per peer. A window is only kept while its peer has requests outstanding or
+    // queued, so that the map does not grow with every device ever contacted.
+    private final Map<Address, RequestWindow<OutgoingConfirmed>> windows = new ConcurrentHashMap<>();
+    private final Map<Address, Integer> peerMaxOutstandingRequests = new ConcurrentHashMap<>();
+
     // Processing
     final UnackedMessages unackedMessages = new UnackedMessages();
     private Thread thread;
+    private ShardedExecutor workers;
     private volatile boolean running = true;
     private final Object pauseLock = new Object();
 
@@ -163,6 +176,137 @@ public class DefaultTransport implements Transport, Runnable {
         return segWindow;
     }
 
+    /**
+     * Sets the number of worker threads used to decode and handle incoming messages. Messages are assigned to workers
+     * by the address of the sender, so messages from the same peer are still handled in the order received. The
+     * default of 0 handles incoming messages in the transport thread along with all outgoing messages.
+     */
+    public void setWorkerCount(final int workerCount) {
+        if (thread != null)
+            throw new IllegalStateException("Worker count needs to be set before the transport is initialized");
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Sets the maximum number of received messages that can be waiting to be handled. Messages received while the
+     * limit is reached are dropped, and discovery broadcasts (Who-Is, I-Am, Who-Has, I-Have) are dropped once half of
+     * the limit is reached. Default is 10000.
+     */
+    public void setIncomingCapacity(final int incomingCapacity) {
+        incomingFilter.setCapacity(incomingCapacity);
+    }
+
+    public int getIncomingCapacity() {
+        return incomingFilter.getCapacity();
+    }
+
+    /**
+     * @return the number of received messages waiting to be handled.
+     */
+    public int getIncomingQueueSize() {
+        return incomingFilter.getQueued();
+    }
+
+    /**
+     * @return the number of received discovery broadcasts that were dropped because an identical one from the same
+     *         source was still waiting to be handled.
+     */
+    public long getIncomingDuplicatesDropped() {
+        return incomingFilter.getDuplicatesDropped();
+    }
+
+    /**
+     * @return the number of received messages that were dropped because the incoming queue was full.
+     */
+    public long getIncomingOverflowDropped() {
+        return incomingFilter.getOverflowDropped();
+    }
+
+    /**
+     * Sets the maximum number of confirmed requests that may be outstanding to a single peer at a time. Requests over
+     * the limit are queued in the transport until earlier requests to the peer complete. The default of 0 means no
+     * limit other than the 256 available invoke ids.
+     */
+    public void setMaxOutstandingRequests(final int maxOutstandingRequests) {
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        windows.forEach((address, window) -> {
+            if (!peerMaxOutstandingRequests.containsKey(address))
+                window.setMax(getMaxOutstandingRequests(address));
+        });
+    }
+
+    public int getMaxOutstandingRequests() {
+        return maxOutstandingRequests;
+    }
+
+    /**
+     * Overrides the maximum number of outstanding confirmed requests for the given peer, e.g. for a device that is
+     * known to be slow or that sits behind an MS/TP router.
+     */
+    public void setMaxOutstandingRequests(final Address address, final int maxOutstandingRequests) {
+        peerMaxOutstandingRequests.put(address, maxOutstandingRequests);
+        final RequestWindow<OutgoingConfirmed> window = windows.get(address);
+        if (window != null)
+            window.setMax(maxOutstandingRequests);
+    }
+
+    /**
+     * Sets whether the window for each peer adapts to observed round trip times and timeouts, between 1 and the
+     * maximum number of outstanding requests. See RequestWindow.
+     */
+    public void setAdaptiveWindows(final boolean adaptiveWindows) {
+        if (thread != null)
+            throw new IllegalStateException("Adaptive windows need to be set before the transport is initialized");
+        this.adaptiveWindows = adaptiveWindows;
+    }
+
+    public boolean isAdaptiveWindows() {
+        return adaptiveWindows;
+    }
+
+    /**
+     * @return the flow control window for the given peer, or null if requests to the peer are not limited or it has no
+     *         requests outstanding or queued.
+     */
+    public RequestWindow<?> getRequestWindow(final Address address) {
+        return windows.get(address);
+    }
+
+    private int getMaxOutstandingRequests(final Address address) {
+        final Integer max = peerMaxOutstandingRequests.get(address);
+        if (max != null)
+            return max;
+        if (maxOutstandingRequests > 0)
+            return maxOutstandingRequests;
+        return InvokeIdAllocator.MAX_IDS;
+    }
+
+    private boolean isLimited(final Address address) {
+        return adaptiveWindows || maxOutstandingRequests > 0 || peerMaxOutstandingRequests.containsKey(address);
+    }
+
+    /**
+     * Takes a slot in the peer's window for the request, creating the window if the peer has none. This is done in the
+     * map so that it can't race with the removal of an idle window in releaseWindow.
+     *
+     * @return true if the request may be sent now, or false if it was queued.
+     */
+    private boolean acquireWindow(final OutgoingConfirmed ogc) {
+        final boolean[] acquired = new boolean[1];
+        windows.compute(ogc.address, (k, w) -> {
+            final RequestWindow<OutgoingConfirmed> window = w == null
+                    ? new RequestWindow<>(getMaxOutstandingRequests(k), adaptiveWindows)
+                    : w;
+            acquired[0] = window.acquire(ogc);
+            return window;
+        });
+        return acquired[0];
+    }
+
     @Override
     public Network getNetwork() {
         return network;
@@ -183,6 +327,9 @@ public class DefaultTransport implements Transport, Runnable {
         servicesSupported = localDevice.getServicesSupported();
 
         running = true;
+        if (workerCount > 0)
+            workers = new ShardedExecutor("BACnet4J transport worker for device " + localDevice.getInstanceNumber(),
+                    workerCount);
         network.initialize(this);
         thread = new Thread(this, "BACnet4J transport for device " + localDevice.getInstanceNumber());
         thread.start();
@@ -199,9 +346,11 @@ public class DefaultTransport implements Transport, Runnable {
         ThreadUtils.notifySync(pauseLock);
         if (thread != null)
             ThreadUtils.join(thread);
+        if (workers != null)
+            workers.shutdown();
 
         // Cancel any queued outgoing messages.
-        for (final Outgoing og : outgoing) {
+        for (final Outgoing og : outgoing.drain()) {
             if (og instanceof OutgoingConfirmed) {
                 final OutgoingConfirmed ogc = (OutgoingConfirmed) og;
                 if (ogc.consumer != null) {
@@ -210,6 +359,15 @@ public class DefaultTransport implements Transport, Runnable {
             }
         }
 
+        // Cancel any requests waiting for a window to open
+        for (final RequestWindow<OutgoingConfirmed> window : windows.values()) {
+            for (final OutgoingConfirmed ogc : window.drain()) {
+                if (ogc.consumer != null) {
+                    ogc.consumer.ex(new BACnetException("Cancelled due to transport shutdown"));
+                }
+            }
+        }
+
         // Cancel any unacked messages
         for (final UnackedMessageContext ctx : unackedMessages.getRequests().values()) {
             if (ctx.getConsumer() != null) {
@@ -268,7 +426,8 @@ public class DefaultTransport implements Transport, Runnable {
         }
 
         if (allowSend) {
-            outgoing.add(new OutgoingUnconfirmed(address, service, broadcast, new Exception()));
+            outgoing.add(new OutgoingUnconfirmed(address, service, broadcast, new Exception()),
+                    service.getNetworkPriority());
             ThreadUtils.notifySync(pauseLock);
         }
     }
@@ -276,7 +435,7 @@ public class DefaultTransport implements Transport, Runnable {
     @Override
     public ServiceFuture send(final Address address, final int maxAPDULengthAccepted,
             final Segmentation segmentationSupported, final ConfirmedRequestService service) {
-        if (Thread.currentThread() == thread)
+        if (isTransportThread())
             throw new IllegalStateException("Cannot send future request in the transport thread. Use a callback " //
                     + "call instead, or make this call in a new thread.");
         final ServiceFutureImpl future = new ServiceFutureImpl();
@@ -290,7 +449,7 @@ public class DefaultTransport implements Transport, Runnable {
         // 16.1.2
         if (EnableDisable.enable.equals(localDevice.getCommunicationControlState())) {
             outgoing.add(new OutgoingConfirmed(address, maxAPDULengthAccepted, segmentationSupported, service, consumer,
-                    new Exception()));
+                    new Exception()), service.getNetworkPriority());
             ThreadUtils.notifySync(pauseLock);
         } else {
             // Communication has been disabled as the result of a DeviceCommunicationControlRequest. The consumer
@@ -301,8 +460,25 @@ public class DefaultTransport implements Transport, Runnable {
 
     @Override
     public void incoming(final NPDU npdu) {
-        incoming.add(npdu);
-        ThreadUtils.notifySync(pauseLock);
+        if (!incomingFilter.admit(npdu)) {
+            LOG.debug("Dropped incoming message: {}", npdu);
+            return;
+        }
+
+        if (workers != null) {
+            // Bypass the transport thread and hand the message to the worker for its sender.
+            workers.execute(npdu.getFrom(), () -> {
+                incomingFilter.release(npdu);
+                receive(npdu);
+            });
+        } else {
+            incoming.add(npdu, npdu.getNetworkPriority());
+            ThreadUtils.notifySync(pauseLock);
+        }
+    }
+
+    private boolean isTransportThread() {
+        return Thread.currentThread() == thread || workers != null && workers.isLaneThread();
     }
 
     abstract class Outgoing {
@@ -342,6 +518,8 @@ public class DefaultTransport implements Transport, Runnable {
             }
         }
 
+        abstract protected NetworkPriority getNetworkPriority();
+
         abstract protected void sendImpl() throws BACnetException;
 
         abstract protected void handleException(BACnetException e);
@@ -353,6 +531,10 @@ public class DefaultTransport implements Transport, Runnable {
         private final ConfirmedRequestService service;
         private final ResponseConsumer consumer;
 
+        // Whether this request holds a slot in its peer's window. Once the request is entered into the unacked
+        // messages the slot belongs to the unacked message context instead.
+        boolean windowSlot;
+
         public OutgoingConfirmed(final Address address, final int maxAPDULengthAccepted,
                 final Segmentation segmentationSupported, final ConfirmedRequestService service,
                 final ResponseConsumer consumer, final Exception stack) {
@@ -363,6 +545,23 @@ public class DefaultTransport implements Transport, Runnable {
             this.consumer = consumer;
         }
 
+        @Override
+        void send() {
+            if (!windowSlot && isLimited(address)) {
+                if (!acquireWindow(this)) {
+                    LOG.debug("Request queued until the window for {} opens: {}", address, this);
+                    return;
+                }
+                windowSlot = true;
+            }
+            super.send();
+        }
+
+        @Override
+        protected NetworkPriority getNetworkPriority() {
+            return service.getNetworkPriority();
+        }
+
         @Override
         protected void sendImpl() throws BACnetException {
             final ByteQueue serviceData = new ByteQueue();
@@ -385,6 +584,7 @@ public class DefaultTransport implements Transport, Runnable {
                     throw new ServiceTooBigException("Request too big to send to device; too many segments required");
 
                 key = unackedMessages.addClient(address, linkService, ctx);
+                windowSlot = false;
                 // Prepare the segmenting session.
                 ctx.setSegmentTemplate(new ConfirmedRequest(true, true, true, MAX_SEGMENTS, network.getMaxApduLength(),
                         key.getInvokeId(), 0, segWindow, service.getChoiceId(), null, service.getNetworkPriority()));
@@ -395,6 +595,7 @@ public class DefaultTransport implements Transport, Runnable {
                 apdu = ctx.getSegmentTemplate().clone(true, 0, segWindow, ctx.getNextSegment());
             } else {
                 key = unackedMessages.addClient(address, linkService, ctx);
+                windowSlot = false;
                 // We can send the whole APDU in one shot.
                 apdu = new ConfirmedRequest(false, false, true, MAX_SEGMENTS, network.getMaxApduLength(),
                         key.getInvokeId(), (byte) 0, 0, service.getChoiceId(), serviceData,
@@ -407,6 +608,10 @@ public class DefaultTransport implements Transport, Runnable {
 
         @Override
         protected void handleException(final BACnetException e) {
+            if (windowSlot) {
+                windowSlot = false;
+                releaseWindow(address, -1, false);
+            }
             if (consumer == null) {
                 LOG.warn("Error during send", e);
                 LOG.warn("Original stack", stack);
@@ -433,6 +638,11 @@ public class DefaultTransport implements Transport, Runnable {
             this.broadcast = broadcast;
         }
 
+        @Override
+        protected NetworkPriority getNetworkPriority() {
+            return service.getNetworkPriority();
+        }
+
         @Override
         protected void sendImpl() throws BACnetException {
             network.sendAPDU(address, linkService, new UnconfirmedRequest(service), broadcast);
@@ -494,11 +704,8 @@ public class DefaultTransport implements Transport, Runnable {
             // Receive an incoming message.
             in = incoming.poll();
             if (in != null) {
-                try {
-                    receiveImpl(in);
-                } catch (final Exception e) {
-                    LOG.error("Error during receive: {}", in, e);
-                }
+                incomingFilter.release(in);
+                receive(in);
                 pause = false;
             }
 
@@ -509,7 +716,7 @@ public class DefaultTransport implements Transport, Runnable {
                     final DelayedOutgoing delayedOutgoing = iter.next();
                     if (delayedOutgoing.isReady()) {
                         iter.remove();
-                        outgoing.add(delayedOutgoing.outgoing);
+                        outgoing.add(delayedOutgoing.outgoing, delayedOutgoing.outgoing.getNetworkPriority());
                         LOG.info("Retrying delayed outgoing {}", delayedOutgoing.outgoing);
                         pause = false;
                     } else {
@@ -520,16 +727,36 @@ public class DefaultTransport implements Transport, Runnable {
                 }
             }
 
-            if (pause && running) {
+            // Expire and retry unacked messages. This only touches the messages whose deadlines have passed, so it
+            // is cheap enough to do on every pass.
+            if (running) {
                 try {
-                    pause = expire();
+                    if (!expire())
+                        pause = false;
                 } catch (final Exception e) {
                     LOG.error("Error during expire messages: ", e);
                 }
             }
 
             if (pause && running)
-                ThreadUtils.waitSync(pauseLock, 50);
+                ThreadUtils.waitSync(pauseLock, getPauseTime());
+        }
+    }
+
+    /**
+     * Pause until the next unacked message deadline, so that timeouts fire on time, but no longer than MAX_PAUSE so
+     * that delayed outgoing messages are still retried.
+     */
+    private long getPauseTime() {
+        final long untilDeadline = unackedMessages.getNextDeadline() - localDevice.getClock().millis() + 1;
+        return Math.max(1, Math.min(MAX_PAUSE, untilDeadline));
+    }
+
+    private void receive(final NPDU in) {
+        try {
+            receiveImpl(in);
+        } catch (final Exception e) {
+            LOG.error("Error during receive: {}", in, e);
         }
     }
 
@@ -689,6 +916,10 @@ public class DefaultTransport implements Transport, Runnable {
                 else
                     LOG.error("Unexpected ack from {}, APDU: {}", from, ack);
             }
+
+            // Unless the context was put back to wait for more segments, the request is done with its invoke id.
+            if (ctx != null && !unackedMessages.isPending(key, ctx))
+                complete(key, ctx, false);
         }
     }
 
@@ -934,63 +1165,89 @@ public class DefaultTransport implements Transport, Runnable {
         boolean didSomething = false;
 
         final long now = localDevice.getClock().millis();
-        final Iterator<Map.Entry<UnackedMessageKey, UnackedMessageContext>> umIter = unackedMessages.getRequests()
-                .entrySet().iterator();
 
         // Check for expired unacked messages
-        while (umIter.hasNext()) {
-            final Map.Entry<UnackedMessageKey, UnackedMessageContext> e = umIter.next();
+        Map.Entry<UnackedMessageKey, UnackedMessageContext> e;
+        while ((e = unackedMessages.pollExpired(now)) != null) {
             final UnackedMessageKey key = e.getKey();
             final UnackedMessageContext ctx = e.getValue();
-            if (ctx.isExpired(now)) {
-                if (ctx.hasMoreAttempts()) {
-                    // Resend
-                    ctx.retry(timeout);
-                    sendForResponse(key, ctx);
+            if (ctx.hasMoreAttempts()) {
+                // Resend
+                ctx.retry(timeout);
+                unackedMessages.reschedule(key, ctx);
+                sendForResponse(key, ctx);
+            } else {
+                // Timeout. If the context is no longer in the list, a worker has already taken it to handle
+                // a response.
+                if (!unackedMessages.remove(key, ctx))
+                    continue;
+                complete(key, ctx, true);
+                LOG.debug("Timeout on key {}", key);
+                if (ctx.getSegmentWindow() == null) {
+                    // Not a segmented message, at least as far as we know.
+                    ctx.useConsumer((consumer) -> consumer.ex(new BACnetTimeoutException()));
                 } else {
-                    LOG.debug("Timeout on key {}", key);
-
-                    // Timeout
-                    umIter.remove();
-                    if (ctx.getSegmentWindow() == null) {
-                        // Not a segmented message, at least as far as we know.
-                        ctx.useConsumer((consumer) -> consumer.ex(new BACnetTimeoutException()));
-                    } else {
-                        // A segmented message.
-                        if (ctx.getSegmentWindow().isEmpty()) {
-                            // No segments received. Return a timeout.
-                            ctx.useConsumer((consumer) -> consumer.ex(new BACnetTimeoutException(
-                                    "Timeout while waiting for segment part: invokeId=" + key.getInvokeId()
-                                            + ", sequenceId=" + ctx.getSegmentWindow().getFirstSequenceId())));
-                        } else if (ctx.getSegmentWindow().isEmpty())
-                            LOG.warn("No segments received for message " + ctx.getOriginalApdu());
-                        else {
-                            // Return a NAK with the last sequence id received in order and start over.
-                            try {
-                                network.sendAPDU(key.getAddress(), key.getLinkService(),
-                                        new SegmentACK(true, key.isFromServer(), key.getInvokeId(),
-                                                ctx.getSegmentWindow().getLatestSequenceId(),
-                                                ctx.getSegmentWindow().getWindowSize(), true),
-                                        false);
-                            } catch (final BACnetException ex) {
-                                ctx.useConsumer((consumer) -> consumer.ex(ex));
-                            }
+                    // A segmented message.
+                    if (ctx.getSegmentWindow().isEmpty()) {
+                        // No segments received. Return a timeout.
+                        ctx.useConsumer((consumer) -> consumer.ex(new BACnetTimeoutException(
+                                "Timeout while waiting for segment part: invokeId=" + key.getInvokeId()
+                                        + ", sequenceId=" + ctx.getSegmentWindow().getFirstSequenceId())));
+                    } else if (ctx.getSegmentWindow().isEmpty())
+                        LOG.warn("No segments received for message " + ctx.getOriginalApdu());
+                    else {
+                        // Return a NAK with the last sequence id received in order and start over.
+                        try {
+                            network.sendAPDU(key.getAddress(), key.getLinkService(),
+                                    new SegmentACK(true, key.isFromServer(), key.getInvokeId(),
+                                            ctx.getSegmentWindow().getLatestSequenceId(),
+                                            ctx.getSegmentWindow().getWindowSize(), true),
+                                    false);
+                        } catch (final BACnetException ex) {
+                            ctx.useConsumer((consumer) -> consumer.ex(ex));
                         }
                     }
                 }
-
-                didSomething = true;
             }
+
+            didSomething = true;
         }
 
         return !didSomething;
     }
 
+    /**
+     * Called when a client request is done, to release its invoke id and its slot in the peer's window.
+     */
+    private void complete(final UnackedMessageKey key, final UnackedMessageContext ctx, final boolean timedOut) {
+        if (unackedMessages.release(key, ctx))
+            releaseWindow(key.getAddress(), timedOut ? -1 : ctx.getRoundTripTime(), timedOut);
+    }
+
+    void releaseWindow(final Address address, final long rtt, final boolean timedOut) {
+        final List<OutgoingConfirmed> admitted = new ArrayList<>();
+        windows.computeIfPresent(address, (k, window) -> {
+            admitted.addAll(window.release(rtt, timedOut));
+            // Forget the window once the peer has nothing outstanding or queued. An adaptive window starts again
+            // from its initial size, much as TCP restarts slow start after an idle period.
+            return window.isIdle() ? null : window;
+        });
+
+        if (!admitted.isEmpty()) {
+            for (final OutgoingConfirmed ogc : admitted) {
+                ogc.windowSlot = true;
+                outgoing.add(ogc, ogc.getNetworkPriority());
+            }
+            ThreadUtils.notifySync(pauseLock);
+        }
+    }
+
     void sendForResponse(final UnackedMessageKey key, final UnackedMessageContext ctx) {
         try {
             network.sendAPDU(key.getAddress(), key.getLinkService(), ctx.getOriginalApdu(), false);
         } catch (final BACnetException e) {
             unackedMessages.remove(key);
+            complete(key, ctx, false);
             ctx.useConsumer((consumer) -> consumer.ex(e));
         }
     }
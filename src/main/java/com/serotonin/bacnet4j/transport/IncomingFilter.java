@@ -0,0 +1,154 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.transport;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.serotonin.bacnet4j.npdu.NPDU;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * The ingress stage of the transport, which decides whether a received NPDU is queued for handling before the APDU is
+ * decoded. Only the APDU type and service choice are looked at.
+ *
+ * The number of queued messages is bounded. Discovery broadcasts (Who-Is, I-Am, Who-Has, I-Have) are dropped once the
+ * queue is half full so that there is still room for responses, and everything is dropped once it is full. A
+ * discovery broadcast that is identical to one from the same source that is still waiting to be handled is dropped as
+ * a duplicate, since handling it again would have no effect.
+ *
+ * @author Matthew
+ */
+class IncomingFilter {
+    static final int DEFAULT_CAPACITY = 10000;
+
+    private static final int UNCONFIRMED_REQUEST = 1;
+    private static final int I_AM = 0;
+    private static final int I_HAVE = 1;
+    private static final int WHO_HAS = 7;
+    private static final int WHO_IS = 8;
+
+    private final Set<Key> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile int capacity = DEFAULT_CAPACITY;
+
+    private final LongAdder duplicatesDropped = new LongAdder();
+    private final LongAdder overflowDropped = new LongAdder();
+
+    void setCapacity(final int capacity) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("capacity must be at least 2");
+        this.capacity = capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return true if the message should be queued, in which case release must be called when it is taken from the
+     *         queue.
+     */
+    boolean admit(final NPDU npdu) {
+        final boolean discovery = isDiscovery(npdu);
+        final int limit = discovery ? capacity / 2 : capacity;
+        if (queued.incrementAndGet() > limit) {
+            queued.decrementAndGet();
+            overflowDropped.increment();
+            return false;
+        }
+
+        if (discovery && !pending.add(new Key(npdu))) {
+            queued.decrementAndGet();
+            duplicatesDropped.increment();
+            return false;
+        }
+
+        return true;
+    }
+
+    void release(final NPDU npdu) {
+        queued.decrementAndGet();
+        if (isDiscovery(npdu))
+            pending.remove(new Key(npdu));
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    long getDuplicatesDropped() {
+        return duplicatesDropped.sum();
+    }
+
+    long getOverflowDropped() {
+        return overflowDropped.sum();
+    }
+
+    private static boolean isDiscovery(final NPDU npdu) {
+        if (npdu.isNetworkMessage())
+            return false;
+
+        final ByteQueue queue = npdu.getNetworkMessageData();
+        if (queue == null || queue.size() < 2 || (queue.peek(0) & 0xff) >> 4 != UNCONFIRMED_REQUEST)
+            return false;
+
+        final int choice = queue.peek(1) & 0xff;
+        return choice == I_AM || choice == I_HAVE || choice == WHO_HAS || choice == WHO_IS;
+    }
+
+    private static class Key {
+        private final Address from;
+        private final byte[] apdu;
+        private final int hashCode;
+
+        Key(final NPDU npdu) {
+            from = npdu.getFrom();
+            apdu = npdu.getNetworkMessageData().peekAll();
+            hashCode = from.hashCode() * 31 + Arrays.hashCode(apdu);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return from.equals(other.from) && Arrays.equals(apdu, other.apdu);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.transport;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+/**
+ * Allocates invoke ids separately for each peer, so that each peer can have up to 256 requests outstanding. The ids in
+ * use by a peer are kept in a 256 bit map, so allocation and release are constant time. Allocation continues from the
+ * id after the last one given out, so that a recently released id is not immediately reused for a new request.
+ *
+ * A peer's cursor is kept while the peer is idle, so that a late or duplicate ack of its last request can't match
+ * the next one. Peers that have been idle for longer than IDLE_TIMEOUT are forgotten by a sweep every SWEEP_INTERVAL
+ * allocations, so that the map does not grow with every device ever seen.
+ *
+ * @author Matthew
+ */
+public class InvokeIdAllocator {
+    public static final int MAX_IDS = 256;
+    static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toNanos(5);
+    static final int SWEEP_INTERVAL = 1024;
+
+    private final Map<Peer, Ids> peers = new ConcurrentHashMap<>();
+    private final AtomicInteger allocations = new AtomicInteger();
+
+    /**
+     * @return the allocated id, or -1 if all ids for the peer are in use.
+     */
+    public int allocate(final Address address, final OctetString linkService) {
+        final int[] result = new int[1];
+        peers.compute(new Peer(address, linkService), (k, ids) -> {
+            final Ids v = ids == null ? new Ids() : ids;
+            result[0] = v.allocate();
+            return v;
+        });
+
+        if (allocations.incrementAndGet() % SWEEP_INTERVAL == 0)
+            evictIdle(System.nanoTime());
+
+        return result[0];
+    }
+
+    public void release(final Address address, final OctetString linkService, final int id) {
+        final long now = System.nanoTime();
+        peers.computeIfPresent(new Peer(address, linkService), (k, ids) -> {
+            ids.release(id, now);
+            return ids;
+        });
+    }
+
+    /**
+     * Forgets the peers that have had nothing outstanding since before IDLE_TIMEOUT before the given time.
+     */
+    void evictIdle(final long now) {
+        for (final Peer peer : peers.keySet())
+            peers.computeIfPresent(peer, (k, ids) -> ids.count == 0 && now - ids.idleSince > IDLE_TIMEOUT ? null : ids);
+    }
+
+    /**
+     * @return the number of peers that are remembered, including idle ones.
+     */
+    int getPeerCount() {
+        return peers.size();
+    }
+
+    /**
+     * @return the number of ids currently allocated for the peer.
+     */
+    public int getAllocated(final Address address, final OctetString linkService) {
+        final Ids ids = peers.get(new Peer(address, linkService));
+        return ids == null ? 0 : ids.count;
+    }
+
+    /**
+     * Ids are only accessed within the compute methods of the map, which lock the entry.
+     */
+    private static class Ids {
+        final long[] bits = new long[MAX_IDS / 64];
+        int next;
+        int count;
+        // When count last dropped to 0.
+        long idleSince;
+
+        int allocate() {
+            if (count == MAX_IDS)
+                return -1;
+
+            // Search from the cursor to the end of its word, then the following words, wrapping around to the start
+            // of the cursor's word.
+            int word = next >>> 6;
+            long free = ~bits[word] & -1L << (next & 63);
+            for (int i = 0; i <= bits.length; i++) {
+                if (free != 0) {
+                    final int id = (word << 6) + Long.numberOfTrailingZeros(free);
+                    bits[word] |= 1L << id;
+                    count++;
+                    next = (id + 1) % MAX_IDS;
+                    return id;
+                }
+                word = (word + 1) % bits.length;
+                free = ~bits[word];
+            }
+
+            return -1;
+        }
+
+        void release(final int id, final long now) {
+            final long mask = 1L << id;
+            if ((bits[id >>> 6] & mask) != 0) {
+                bits[id >>> 6] &= ~mask;
+                if (--count == 0)
+                    idleSince = now;
+            }
+        }
+    }
+
+    private static class Peer {
+        private final Address address;
+        private final OctetString linkService;
+
+        Peer(final Address address, final OctetString linkService) {
+            this.address = address;
+            this.linkService = linkService;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + (address == null ? 0 : address.hashCode());
+            result = prime * result + (linkService == null ? 0 : linkService.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            final Peer other = (Peer) obj;
+            if (address == null) {
+                if (other.address != null)
+                    return false;
+            } else if (!address.equals(other.address))
+                return false;
+            if (linkService == null) {
+                if (other.linkService != null)
+                    return false;
+            } else if (!linkService.equals(other.linkService))
+                return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.serotonin.bacnet4j.npdu.NPCI.NetworkPriority;
+
+/**
+ * A queue of messages ordered by network priority (6.2.2). Messages are taken from the highest priority that has any,
+ * and in FIFO order within a priority.
+ *
+ * To keep lower priorities from starving while higher priorities are busy, a lower priority that has been passed over
+ * the configured number of times is served next regardless.
+ *
+ * Any number of threads can add messages, but only one thread at a time should poll.
+ *
+ * @author Matthew
+ */
+public class PriorityMessageQueue<E> {
+    public static final int DEFAULT_MAX_SKIPS = 16;
+
+    private static final int PRIORITIES = NetworkPriority.values().length;
+
+    // Indexed by the priority value, so that the highest priority is last.
+    private final Queue<E>[] queues;
+    private final int[] skips = new int[PRIORITIES];
+    private final int maxSkips;
+
+    public PriorityMessageQueue() {
+        this(DEFAULT_MAX_SKIPS);
+    }
+
+    /**
+     * @param maxSkips
+     *            the number of times a message can be passed over for messages of higher priority before its priority
+     *            is served anyway.
+     */
+    public PriorityMessageQueue(final int maxSkips) {
+        if (maxSkips < 1)
+            throw new IllegalArgumentException("maxSkips must be at least 1");
+        this.maxSkips = maxSkips;
+
+        @SuppressWarnings("unchecked")
+        final Queue<E>[] q = (Queue<E>[]) new Queue<?>[PRIORITIES];
+        for (int i = 0; i < PRIORITIES; i++)
+            q[i] = new ConcurrentLinkedQueue<>();
+        queues = q;
+    }
+
+    /**
+     * Adds the message with the given priority. A null priority is treated as normal.
+     */
+    public void add(final E e, final NetworkPriority priority) {
+        add(e, priority == null ? NetworkPriority.normal.value : priority.value);
+    }
+
+    /**
+     * Adds the message with the given priority value, as found in the NPCI control octet.
+     */
+    public void add(final E e, final int priority) {
+        queues[priority & 0x3].add(e);
+    }
+
+    /**
+     * @return the next message, or null if there are none.
+     */
+    public E poll() {
+        // Serve any priority that has waited long enough, lowest first since it will have waited the longest.
+        for (int i = 0; i < PRIORITIES - 1; i++) {
+            if (skips[i] >= maxSkips) {
+                final E e = queues[i].poll();
+                skips[i] = 0;
+                if (e != null)
+                    return e;
+            }
+        }
+
+        for (int i = PRIORITIES - 1; i >= 0; i--) {
+            final E e = queues[i].poll();
+            if (e != null) {
+                skips[i] = 0;
+                // Count a skip for every lower priority that is waiting.
+                for (int j = i - 1; j >= 0; j--) {
+                    if (!queues[j].isEmpty())
+                        skips[j]++;
+                }
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean isEmpty() {
+        for (final Queue<E> queue : queues) {
+            if (!queue.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Queue<E> queue : queues)
+            size += queue.size();
+        return size;
+    }
+
+    public int size(final NetworkPriority priority) {
+        return queues[priority.value].size();
+    }
+
+    /**
+     * Removes and returns all messages, highest priority first.
+     */
+    public List<E> drain() {
+        final List<E> result = new ArrayList<>();
+        for (int i = PRIORITIES - 1; i >= 0; i--) {
+            E e;
+            while ((e = queues[i].poll()) != null)
+                result.add(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.transport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Limits the number of confirmed requests that are outstanding to a single peer. Requests beyond the limit are queued
+ * in order and admitted as outstanding requests complete.
+ *
+ * If adaptive, the window starts small and is sized in the manner of TCP congestion control: it doubles per round trip
+ * until the first timeout, then grows by one per round trip. A timeout halves it, and it shrinks by one per round trip
+ * while the smoothed round trip time is more than twice the minimum seen, which indicates that requests are queuing
+ * up in the peer or a router in front of it. The window never exceeds the configured maximum.
+ *
+ * @param <T>
+ *            the type of the queued requests
+ * @author Matthew
+ */
+public class RequestWindow<T> {
+    static final int INITIAL_ADAPTIVE_SIZE = 2;
+    static final double RTT_INFLATION = 2;
+
+    private final Queue<T> waiting = new ArrayDeque<>();
+    private final boolean adaptive;
+    private int max;
+    private int outstanding;
+
+    // Adaptive state
+    private double size;
+    private double threshold;
+    private long smoothedRtt = -1;
+    private long minRtt = Long.MAX_VALUE;
+
+    public RequestWindow(final int max, final boolean adaptive) {
+        if (max < 1)
+            throw new IllegalArgumentException("max must be at least 1");
+        this.max = max;
+        this.adaptive = adaptive;
+        size = adaptive ? Math.min(max, INITIAL_ADAPTIVE_SIZE) : max;
+        threshold = max;
+    }
+
+    public synchronized void setMax(final int max) {
+        if (max < 1)
+            throw new IllegalArgumentException("max must be at least 1");
+        this.max = max;
+        size = adaptive ? Math.min(size, max) : max;
+        threshold = Math.min(threshold, max);
+    }
+
+    /**
+     * Takes a slot in the window for the request if one is available. Otherwise the request is queued and will be
+     * returned from a later call to release when a slot opens for it.
+     *
+     * @return true if the request may be sent now.
+     */
+    public synchronized boolean acquire(final T request) {
+        if (waiting.isEmpty() && outstanding < getSize()) {
+            outstanding++;
+            return true;
+        }
+        waiting.add(request);
+        return false;
+    }
+
+    /**
+     * Gives back the slot of a request that has completed.
+     *
+     * @param rtt
+     *            the round trip time of the request in ms, or a negative value if it is not known
+     * @param timedOut
+     *            whether the request timed out
+     * @return the queued requests that have been given slots and should now be sent.
+     */
+    public synchronized List<T> release(final long rtt, final boolean timedOut) {
+        if (outstanding > 0)
+            outstanding--;
+
+        if (adaptive) {
+            if (timedOut) {
+                threshold = Math.max(size / 2, 1);
+                size = threshold;
+            } else if (rtt >= 0) {
+                smoothedRtt = smoothedRtt < 0 ? rtt : (7 * smoothedRtt + rtt) / 8;
+                minRtt = Math.min(minRtt, rtt);
+
+                if (smoothedRtt > RTT_INFLATION * Math.max(minRtt, 1))
+                    size = Math.max(size - 1 / size, 1);
+                else if (size < threshold)
+                    size = Math.min(size + 1, max);
+                else
+                    size = Math.min(size + 1 / size, max);
+            }
+        }
+
+        if (waiting.isEmpty())
+            return Collections.emptyList();
+
+        final List<T> admitted = new ArrayList<>();
+        while (!waiting.isEmpty() && outstanding < getSize()) {
+            outstanding++;
+            admitted.add(waiting.poll());
+        }
+        return admitted;
+    }
+
+    /**
+     * Removes and returns all queued requests.
+     */
+    public synchronized List<T> drain() {
+        final List<T> result = new ArrayList<>(waiting);
+        waiting.clear();
+        return result;
+    }
+
+    /**
+     * @return the current number of requests that may be outstanding at once.
+     */
+    public synchronized int getSize() {
+        return (int) size;
+    }
+
+    public synchronized int getMax() {
+        return max;
+    }
+
+    public synchronized int getOutstanding() {
+        return outstanding;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    /**
+     * @return true if no requests are outstanding or queued.
+     */
+    public synchronized boolean isIdle() {
+        return outstanding == 0 && waiting.isEmpty();
+    }
+
+    /**
+     * @return the smoothed round trip time in ms, or -1 if none has been measured. This is only maintained for
+     *         adaptive windows.
+     */
+    public synchronized long getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RequestWindow [size=" + getSize() + ", max=" + max + ", outstanding=" + outstanding + ", queued="
+                + waiting.size() + ", smoothedRtt=" + smoothedRtt + "]";
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.transport;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes. The lane for a task is chosen from the hash of a key, so all
+ * tasks submitted with equal keys run one at a time and in submission order, while tasks with different keys can run
+ * in parallel.
+ *
+ * @author Matthew
+ */
+public class ShardedExecutor {
+    static final Logger LOG = LoggerFactory.getLogger(ShardedExecutor.class);
+
+    private final Lane[] lanes;
+    private volatile boolean running = true;
+
+    public ShardedExecutor(final String name, final int laneCount) {
+        if (laneCount < 1)
+            throw new IllegalArgumentException("laneCount must be at least 1");
+
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(name + " lane " + i);
+            lanes[i].thread.start();
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Queues the given task on the lane for the given key. Tasks submitted after shutdown are discarded.
+     */
+    public void execute(final Object key, final Runnable task) {
+        if (!running) {
+            LOG.debug("Discarding task submitted after shutdown: {}", task);
+            return;
+        }
+        lane(key).queue.add(task);
+    }
+
+    /**
+     * @return true if the current thread is one of this executor's lane threads.
+     */
+    public boolean isLaneThread() {
+        final Thread current = Thread.currentThread();
+        for (final Lane lane : lanes) {
+            if (lane.thread == current)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the total number of tasks waiting in all lanes.
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (final Lane lane : lanes)
+            size += lane.queue.size();
+        return size;
+    }
+
+    /**
+     * Stops all lanes after the tasks that are currently queued have been run.
+     */
+    public void shutdown() {
+        running = false;
+        for (final Lane lane : lanes) {
+            if (lane.thread != Thread.currentThread())
+                ThreadUtils.join(lane.thread);
+        }
+    }
+
+    private Lane lane(final Object key) {
+        final int hash = key == null ? 0 : key.hashCode();
+        // Spread the high bits so that keys differing only there don't pile up in one lane.
+        return lanes[Math.floorMod(hash ^ hash >>> 16, lanes.length)];
+    }
+
+    private class Lane implements Runnable {
+        final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        final Thread thread;
+
+        Lane(final String name) {
+            thread = new Thread(this, name);
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Runnable task;
+                try {
+                    task = queue.poll(50, TimeUnit.MILLISECONDS);
+                } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                    break;
+                }
+
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (final Exception e) {
+                        LOG.error("Error in lane task {}", task, e);
+                    }
+                }
+            }
+        }
+    }
+}
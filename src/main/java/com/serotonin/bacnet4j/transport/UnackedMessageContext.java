@@ -30,6 +30,7 @@ package com.serotonin.bacnet4j.transport;
 
 import java.time.Clock;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.serotonin.bacnet4j.ResponseConsumer;
 import com.serotonin.bacnet4j.apdu.APDU;
@@ -38,11 +39,16 @@ import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 
 public class UnackedMessageContext {
-    private long deadline;
-    private int attemptsLeft;
+    private volatile long deadline;
+    private volatile int attemptsLeft;
+    private final long started;
+    private volatile boolean retried;
 
     private final Clock clock;
 
+    // Whether the invoke id of this context has been released for reuse.
+    private final AtomicBoolean released = new AtomicBoolean();
+
     // Temporarily add to the context for troubleshooting.
     private final ConfirmedRequestService service;
 
@@ -65,6 +71,7 @@ public class UnackedMessageContext {
     public UnackedMessageContext(final Clock clock, final int timeout, final int retries,
             final ResponseConsumer consumer, final ConfirmedRequestService service) {
         this.clock = clock;
+        started = clock.millis();
         reset(timeout, retries);
         this.consumer = consumer;
         this.service = service;
@@ -73,6 +80,7 @@ public class UnackedMessageContext {
     public void retry(final int timeout) {
         this.deadline = clock.millis() + timeout;
         attemptsLeft--;
+        retried = true;
     }
 
     public void reset(final int timeout, final int retries) {
@@ -84,6 +92,16 @@ public class UnackedMessageContext {
         return deadline;
     }
 
+    /**
+     * @return the time in ms since this context was created, or -1 if the request was resent, in which case it is
+     *         not known which attempt a response belongs to.
+     */
+    public long getRoundTripTime() {
+        if (retried)
+            return -1;
+        return clock.millis() - started;
+    }
+
     public boolean hasMoreAttempts() {
         return attemptsLeft > 0;
     }
@@ -157,6 +175,13 @@ public class UnackedMessageContext {
         this.lastIdSent = lastIdSent;
     }
 
+    /**
+     * @return true if this is the first call, and so the caller is responsible for releasing the invoke id.
+     */
+    boolean markReleased() {
+        return released.compareAndSet(false, true);
+    }
+
     public void useConsumer(final ConsumerClient client) {
         if (consumer != null) {
             client.use(consumer);
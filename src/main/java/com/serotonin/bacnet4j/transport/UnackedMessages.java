@@ -28,53 +28,56 @@
  */
 package com.serotonin.bacnet4j.transport;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.serotonin.bacnet4j.exception.BACnetRecoverableException;
+import com.serotonin.bacnet4j.exception.InvokeIdExhaustedException;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.primitive.OctetString;
 
 /**
- * This is a non-thread safe class for maintaining the list of pending requests at a local device. Access to this is
- * exclusively from Transport, which uses a single management thread.
+ * Maintains the list of pending requests at a local device. This is thread safe, since the transport may process
+ * sends, acks and timeouts on different threads. A thread that removes a context from the list owns it until it is
+ * added back.
+ *
+ * Deadlines are kept in an ordered index alongside the list, so that finding expired requests costs in proportion to
+ * the number that have expired rather than the number pending. Index entries are not removed when a request is acked
+ * or rescheduled; they are recognized as stale and discarded when they reach the head of the index.
+ *
+ * Invoke ids for client requests are allocated per peer. An id stays allocated while its request is being handled,
+ * including while the context is temporarily removed to process a response, until it is explicitly released.
  *
  * @author Matthew
  */
 public class UnackedMessages {
     static final Logger LOG = LoggerFactory.getLogger(UnackedMessages.class);
 
-    private final Map<UnackedMessageKey, UnackedMessageContext> requests = new HashMap<>();
-    private byte nextInvokeId;
+    private final Map<UnackedMessageKey, UnackedMessageContext> requests = new ConcurrentHashMap<>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>();
+    private final InvokeIdAllocator invokeIds = new InvokeIdAllocator();
 
     /**
      * Add a new client-based request to the list of pending requests.
+     *
+     * @throws InvokeIdExhaustedException
+     *             if the peer already has the maximum number of requests outstanding.
      */
     public UnackedMessageKey addClient(final Address address, final OctetString linkService,
-            final UnackedMessageContext ctx) throws BACnetRecoverableException {
-        UnackedMessageKey key;
-
-        // Loop until we find a key that is available.
-        int attempts = 256;
-        while (true) {
-            // We set the server value in the key to true so that it matches with the message from the server.
-            key = new UnackedMessageKey(address, linkService, nextInvokeId++, true);
-
-            if (requests.containsKey(key)) {
-                // Key collision. Try again unless we've tried too many times.
-                if (--attempts > 0)
-                    continue;
-                throw new BACnetRecoverableException(
-                        "Cannot enter a client into the un-acked messages list. key=" + key);
-            }
+            final UnackedMessageContext ctx) throws InvokeIdExhaustedException {
+        final int invokeId = invokeIds.allocate(address, linkService);
+        if (invokeId == -1)
+            throw new InvokeIdExhaustedException("All invoke ids are in use for address " + address);
 
-            // Found a good id. Use it and exit.
-            requests.put(key, ctx);
-            break;
-        }
+        // We set the server value in the key to true so that it matches with the message from the server.
+        final UnackedMessageKey key = new UnackedMessageKey(address, linkService, (byte) invokeId, true);
+        requests.put(key, ctx);
+        schedule(key, ctx);
 
         return key;
     }
@@ -87,27 +90,124 @@ public class UnackedMessages {
         // We set the server value in the key to false so that it matches with the message from the client.
         final UnackedMessageKey key = new UnackedMessageKey(address, linkService, id, false);
 
-        if (requests.containsKey(key))
+        if (requests.putIfAbsent(key, ctx) != null)
             throw new BACnetRecoverableException("Cannot enter a server into the un-acked messages list. key=" + key);
-        requests.put(key, ctx);
+        schedule(key, ctx);
 
         return key;
     }
 
     public void add(final UnackedMessageKey key, final UnackedMessageContext value) {
         requests.put(key, value);
+        schedule(key, value);
+    }
+
+    /**
+     * Releases the invoke id of a client request once it is complete, i.e. it was removed and will not be added again.
+     * Releasing is idempotent for a given context, so it is safe for more than one thread to attempt it.
+     *
+     * @return true if this call released the id.
+     */
+    public boolean release(final UnackedMessageKey key, final UnackedMessageContext ctx) {
+        if (key.isFromServer() && ctx.markReleased()) {
+            invokeIds.release(key.getAddress(), key.getLinkService(), key.getInvokeId() & 0xff);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the key is currently mapped to the given context.
+     */
+    public boolean isPending(final UnackedMessageKey key, final UnackedMessageContext ctx) {
+        return requests.get(key) == ctx;
+    }
+
+    /**
+     * @return the number of client requests to the peer that have been allocated an invoke id and not released.
+     */
+    public int getOutstanding(final Address address, final OctetString linkService) {
+        return invokeIds.getAllocated(address, linkService);
+    }
+
+    /**
+     * Indexes the current deadline of the context, which must be called after the deadline of a context that is in
+     * the list has been changed. Nothing is done if the key is no longer mapped to the context.
+     */
+    public void reschedule(final UnackedMessageKey key, final UnackedMessageContext ctx) {
+        if (requests.get(key) == ctx)
+            schedule(key, ctx);
+    }
+
+    /**
+     * Returns the next request in the list with a deadline before the given time, or null if there are none. The
+     * request is left in the list, so the caller needs to either remove or reschedule it.
+     */
+    public Map.Entry<UnackedMessageKey, UnackedMessageContext> pollExpired(final long now) {
+        synchronized (deadlines) {
+            Deadline next;
+            while ((next = deadlines.peek()) != null && next.deadline < now) {
+                deadlines.poll();
+                if (requests.get(next.key) == next.ctx && next.ctx.getDeadline() == next.deadline)
+                    return new AbstractMap.SimpleImmutableEntry<>(next.key, next.ctx);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return the earliest indexed deadline, or Long.MAX_VALUE if there is none. This may belong to a request that
+     *         has already been acked, so it is only suitable for deciding how long to wait.
+     */
+    public long getNextDeadline() {
+        synchronized (deadlines) {
+            final Deadline next = deadlines.peek();
+            return next == null ? Long.MAX_VALUE : next.deadline;
+        }
+    }
+
+    private void schedule(final UnackedMessageKey key, final UnackedMessageContext ctx) {
+        synchronized (deadlines) {
+            deadlines.add(new Deadline(ctx.getDeadline(), key, ctx));
+        }
     }
 
     public UnackedMessageContext remove(final UnackedMessageKey key) {
         return requests.remove(key);
     }
 
+    /**
+     * Removes the entry only if the key is still mapped to the given context.
+     *
+     * @return true if the entry was removed, meaning the caller now owns the context.
+     */
+    public boolean remove(final UnackedMessageKey key, final UnackedMessageContext ctx) {
+        return requests.remove(key, ctx);
+    }
+
     public Map<UnackedMessageKey, UnackedMessageContext> getRequests() {
         return requests;
     }
 
     @Override
     public String toString() {
-        return "UnackedMessages [requests=" + requests + ", nextInvokeId=" + nextInvokeId + "]";
+        return "UnackedMessages [requests=" + requests + "]";
+    }
+
+    private static class Deadline implements Comparable<Deadline> {
+        final long deadline;
+        final UnackedMessageKey key;
+        final UnackedMessageContext ctx;
+
+        Deadline(final long deadline, final UnackedMessageKey key, final UnackedMessageContext ctx) {
+            this.deadline = deadline;
+            this.key = key;
+            this.ctx = ctx;
+        }
+
+        @Override
+        public int compareTo(final Deadline that) {
+            return Long.compare(deadline, that.deadline);
+        }
     }
 }
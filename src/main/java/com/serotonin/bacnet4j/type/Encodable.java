@@ -31,14 +31,11 @@ package com.serotonin.bacnet4j.type;
 import static com.serotonin.bacnet4j.util.BACnetUtils.toInt;
 import static com.serotonin.bacnet4j.util.BACnetUtils.toLong;
 
-import java.lang.reflect.InvocationTargetException;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.serotonin.bacnet4j.exception.BACnetErrorException;
 import com.serotonin.bacnet4j.exception.BACnetException;
-import com.serotonin.bacnet4j.exception.ReflectionException;
 import com.serotonin.bacnet4j.obj.ObjectProperties;
 import com.serotonin.bacnet4j.obj.ObjectPropertyTypeDefinition;
 import com.serotonin.bacnet4j.obj.PropertyTypeDefinition;
@@ -221,23 +218,8 @@ abstract public class Encodable {
     // Reading
     //
 
-    @SuppressWarnings("unchecked")
     public static <T extends Encodable> T read(final ByteQueue queue, final Class<T> clazz) throws BACnetException {
-        if (clazz == Primitive.class)
-            return (T) Primitive.createPrimitive(queue);
-
-        try {
-            return clazz.getConstructor(new Class[] { ByteQueue.class }).newInstance(new Object[] { queue });
-        } catch (final NoSuchMethodException e) {
-            throw new BACnetException(e);
-        } catch (final InvocationTargetException e) {
-            // Check if there is a wrapped BACnet exception
-            if (e.getCause() instanceof BACnetException)
-                throw (BACnetException) e.getCause();
-            throw new ReflectionException(e);
-        } catch (final Exception e) {
-            throw new BACnetException(e);
-        }
+        return EncodableDecoders.decode(queue, clazz);
     }
 
     //
@@ -314,13 +296,7 @@ abstract public class Encodable {
     protected static <T extends Encodable> T readSequenceType(final ByteQueue queue, final Class<T> clazz,
             final int contextId) throws BACnetException {
         popStart(queue, contextId);
-        T result;
-        try {
-            result = clazz.getConstructor(new Class[] { ByteQueue.class, Integer.TYPE })
-                    .newInstance(new Object[] { queue, contextId });
-        } catch (final Exception e) {
-            throw new BACnetException(e);
-        }
+        final T result = EncodableDecoders.decode(queue, clazz, contextId);
         popEnd(queue, contextId);
         return result;
     }
@@ -0,0 +1,632 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.ReflectionException;
+import com.serotonin.bacnet4j.type.constructed.AccessRule;
+import com.serotonin.bacnet4j.type.constructed.AccumulatorRecord;
+import com.serotonin.bacnet4j.type.constructed.ActionCommand;
+import com.serotonin.bacnet4j.type.constructed.ActionList;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.constructed.AddressBinding;
+import com.serotonin.bacnet4j.type.constructed.AssignedAccessRights;
+import com.serotonin.bacnet4j.type.constructed.AssignedLandingCalls;
+import com.serotonin.bacnet4j.type.constructed.AuthenticationFactor;
+import com.serotonin.bacnet4j.type.constructed.AuthenticationFactorFormat;
+import com.serotonin.bacnet4j.type.constructed.AuthenticationPolicy;
+import com.serotonin.bacnet4j.type.constructed.BDTEntry;
+import com.serotonin.bacnet4j.type.constructed.CalendarEntry;
+import com.serotonin.bacnet4j.type.constructed.ChannelValue;
+import com.serotonin.bacnet4j.type.constructed.ClientCov;
+import com.serotonin.bacnet4j.type.constructed.CovMultipleSubscription;
+import com.serotonin.bacnet4j.type.constructed.CovSubscription;
+import com.serotonin.bacnet4j.type.constructed.CredentialAuthenticationFactor;
+import com.serotonin.bacnet4j.type.constructed.DailySchedule;
+import com.serotonin.bacnet4j.type.constructed.DateRange;
+import com.serotonin.bacnet4j.type.constructed.DateTime;
+import com.serotonin.bacnet4j.type.constructed.DaysOfWeek;
+import com.serotonin.bacnet4j.type.constructed.Destination;
+import com.serotonin.bacnet4j.type.constructed.DeviceObjectPropertyReference;
+import com.serotonin.bacnet4j.type.constructed.DeviceObjectPropertyValue;
+import com.serotonin.bacnet4j.type.constructed.DeviceObjectReference;
+import com.serotonin.bacnet4j.type.constructed.EventLogRecord;
+import com.serotonin.bacnet4j.type.constructed.EventNotificationSubscription;
+import com.serotonin.bacnet4j.type.constructed.EventTransitionBits;
+import com.serotonin.bacnet4j.type.constructed.FDTEntry;
+import com.serotonin.bacnet4j.type.constructed.FaultParameter;
+import com.serotonin.bacnet4j.type.constructed.GroupChannelValue;
+import com.serotonin.bacnet4j.type.constructed.HostAddress;
+import com.serotonin.bacnet4j.type.constructed.HostNPort;
+import com.serotonin.bacnet4j.type.constructed.KeyIdentifier;
+import com.serotonin.bacnet4j.type.constructed.LandingCallStatus;
+import com.serotonin.bacnet4j.type.constructed.LandingDoorStatus;
+import com.serotonin.bacnet4j.type.constructed.LiftCarCallList;
+import com.serotonin.bacnet4j.type.constructed.LightingCommand;
+import com.serotonin.bacnet4j.type.constructed.LimitEnable;
+import com.serotonin.bacnet4j.type.constructed.LogData;
+import com.serotonin.bacnet4j.type.constructed.LogMultipleRecord;
+import com.serotonin.bacnet4j.type.constructed.LogRecord;
+import com.serotonin.bacnet4j.type.constructed.LogStatus;
+import com.serotonin.bacnet4j.type.constructed.NameValue;
+import com.serotonin.bacnet4j.type.constructed.NameValueCollection;
+import com.serotonin.bacnet4j.type.constructed.NetworkSecurityPolicy;
+import com.serotonin.bacnet4j.type.constructed.ObjectPropertyReference;
+import com.serotonin.bacnet4j.type.constructed.ObjectPropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ObjectTypesSupported;
+import com.serotonin.bacnet4j.type.constructed.OptionalBinaryPV;
+import com.serotonin.bacnet4j.type.constructed.OptionalCharacterString;
+import com.serotonin.bacnet4j.type.constructed.OptionalReal;
+import com.serotonin.bacnet4j.type.constructed.OptionalUnsigned;
+import com.serotonin.bacnet4j.type.constructed.PortPermission;
+import com.serotonin.bacnet4j.type.constructed.Prescale;
+import com.serotonin.bacnet4j.type.constructed.PriorityArray;
+import com.serotonin.bacnet4j.type.constructed.PriorityValue;
+import com.serotonin.bacnet4j.type.constructed.ProcessIdSelection;
+import com.serotonin.bacnet4j.type.constructed.PropertyAccessResult;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.PropertyStates;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessSpecification;
+import com.serotonin.bacnet4j.type.constructed.Recipient;
+import com.serotonin.bacnet4j.type.constructed.RecipientProcess;
+import com.serotonin.bacnet4j.type.constructed.ResultFlags;
+import com.serotonin.bacnet4j.type.constructed.RouterEntry;
+import com.serotonin.bacnet4j.type.constructed.Scale;
+import com.serotonin.bacnet4j.type.constructed.SecurityKeySet;
+import com.serotonin.bacnet4j.type.constructed.ServicesSupported;
+import com.serotonin.bacnet4j.type.constructed.SetpointReference;
+import com.serotonin.bacnet4j.type.constructed.ShedLevel;
+import com.serotonin.bacnet4j.type.constructed.SpecialEvent;
+import com.serotonin.bacnet4j.type.constructed.StatusFlags;
+import com.serotonin.bacnet4j.type.constructed.TimeStamp;
+import com.serotonin.bacnet4j.type.constructed.TimeValue;
+import com.serotonin.bacnet4j.type.constructed.TimerStateChangeValue;
+import com.serotonin.bacnet4j.type.constructed.ValueSource;
+import com.serotonin.bacnet4j.type.constructed.VmacEntry;
+import com.serotonin.bacnet4j.type.constructed.VtSession;
+import com.serotonin.bacnet4j.type.constructed.WeekNDay;
+import com.serotonin.bacnet4j.type.constructed.WriteAccessSpecification;
+import com.serotonin.bacnet4j.type.enumerated.AbortReason;
+import com.serotonin.bacnet4j.type.enumerated.AccessAuthenticationFactorDisable;
+import com.serotonin.bacnet4j.type.enumerated.AccessCredentialDisable;
+import com.serotonin.bacnet4j.type.enumerated.AccessCredentialDisableReason;
+import com.serotonin.bacnet4j.type.enumerated.AccessEvent;
+import com.serotonin.bacnet4j.type.enumerated.AccessPassbackMode;
+import com.serotonin.bacnet4j.type.enumerated.AccessUserType;
+import com.serotonin.bacnet4j.type.enumerated.AccessZoneOccupancyState;
+import com.serotonin.bacnet4j.type.enumerated.Action;
+import com.serotonin.bacnet4j.type.enumerated.AuthenticationFactorType;
+import com.serotonin.bacnet4j.type.enumerated.AuthenticationStatus;
+import com.serotonin.bacnet4j.type.enumerated.AuthorizationExemption;
+import com.serotonin.bacnet4j.type.enumerated.AuthorizationMode;
+import com.serotonin.bacnet4j.type.enumerated.BackupState;
+import com.serotonin.bacnet4j.type.enumerated.BinaryLightingPV;
+import com.serotonin.bacnet4j.type.enumerated.BinaryPV;
+import com.serotonin.bacnet4j.type.enumerated.DeviceStatus;
+import com.serotonin.bacnet4j.type.enumerated.DoorAlarmState;
+import com.serotonin.bacnet4j.type.enumerated.DoorSecuredStatus;
+import com.serotonin.bacnet4j.type.enumerated.DoorStatus;
+import com.serotonin.bacnet4j.type.enumerated.DoorValue;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
+import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
+import com.serotonin.bacnet4j.type.enumerated.EscalatorFault;
+import com.serotonin.bacnet4j.type.enumerated.EscalatorMode;
+import com.serotonin.bacnet4j.type.enumerated.EscalatorOperationDirection;
+import com.serotonin.bacnet4j.type.enumerated.EventState;
+import com.serotonin.bacnet4j.type.enumerated.EventType;
+import com.serotonin.bacnet4j.type.enumerated.FaultType;
+import com.serotonin.bacnet4j.type.enumerated.FileAccessMethod;
+import com.serotonin.bacnet4j.type.enumerated.IPMode;
+import com.serotonin.bacnet4j.type.enumerated.LifeSafetyMode;
+import com.serotonin.bacnet4j.type.enumerated.LifeSafetyOperation;
+import com.serotonin.bacnet4j.type.enumerated.LifeSafetyState;
+import com.serotonin.bacnet4j.type.enumerated.LiftCarDirection;
+import com.serotonin.bacnet4j.type.enumerated.LiftCarDoorCommand;
+import com.serotonin.bacnet4j.type.enumerated.LiftCarDriveStatus;
+import com.serotonin.bacnet4j.type.enumerated.LiftCarMode;
+import com.serotonin.bacnet4j.type.enumerated.LiftFault;
+import com.serotonin.bacnet4j.type.enumerated.LiftGroupMode;
+import com.serotonin.bacnet4j.type.enumerated.LightingInProgress;
+import com.serotonin.bacnet4j.type.enumerated.LightingOperation;
+import com.serotonin.bacnet4j.type.enumerated.LightingTransition;
+import com.serotonin.bacnet4j.type.enumerated.LockStatus;
+import com.serotonin.bacnet4j.type.enumerated.LoggingType;
+import com.serotonin.bacnet4j.type.enumerated.Maintenance;
+import com.serotonin.bacnet4j.type.enumerated.MessagePriority;
+import com.serotonin.bacnet4j.type.enumerated.NetworkNumberQuality;
+import com.serotonin.bacnet4j.type.enumerated.NetworkPortCommand;
+import com.serotonin.bacnet4j.type.enumerated.NetworkType;
+import com.serotonin.bacnet4j.type.enumerated.NodeType;
+import com.serotonin.bacnet4j.type.enumerated.NotifyType;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.Polarity;
+import com.serotonin.bacnet4j.type.enumerated.ProgramError;
+import com.serotonin.bacnet4j.type.enumerated.ProgramRequest;
+import com.serotonin.bacnet4j.type.enumerated.ProgramState;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.enumerated.ProtocolLevel;
+import com.serotonin.bacnet4j.type.enumerated.RejectReason;
+import com.serotonin.bacnet4j.type.enumerated.Relationship;
+import com.serotonin.bacnet4j.type.enumerated.Reliability;
+import com.serotonin.bacnet4j.type.enumerated.RestartReason;
+import com.serotonin.bacnet4j.type.enumerated.SecurityLevel;
+import com.serotonin.bacnet4j.type.enumerated.SecurityPolicy;
+import com.serotonin.bacnet4j.type.enumerated.Segmentation;
+import com.serotonin.bacnet4j.type.enumerated.ShedState;
+import com.serotonin.bacnet4j.type.enumerated.SilencedState;
+import com.serotonin.bacnet4j.type.enumerated.TimerState;
+import com.serotonin.bacnet4j.type.enumerated.TimerTransition;
+import com.serotonin.bacnet4j.type.enumerated.VtClass;
+import com.serotonin.bacnet4j.type.enumerated.WriteStatus;
+import com.serotonin.bacnet4j.type.error.BACnetError;
+import com.serotonin.bacnet4j.type.error.ChangeListError;
+import com.serotonin.bacnet4j.type.error.ConfirmedPrivateTransferError;
+import com.serotonin.bacnet4j.type.error.CreateObjectError;
+import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
+import com.serotonin.bacnet4j.type.error.SubscribeCovPropertyMultipleError;
+import com.serotonin.bacnet4j.type.error.VTCloseError;
+import com.serotonin.bacnet4j.type.error.WritePropertyMultipleError;
+import com.serotonin.bacnet4j.type.eventParameter.BufferReady;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfBitString;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfCharacterString;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfDiscreteValue;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfLifeSafety;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfState;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfStatusFlags;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfTimer;
+import com.serotonin.bacnet4j.type.eventParameter.ChangeOfValue;
+import com.serotonin.bacnet4j.type.eventParameter.CommandFailure;
+import com.serotonin.bacnet4j.type.eventParameter.DoubleOutOfRange;
+import com.serotonin.bacnet4j.type.eventParameter.EventParameter;
+import com.serotonin.bacnet4j.type.eventParameter.Extended;
+import com.serotonin.bacnet4j.type.eventParameter.FloatingLimit;
+import com.serotonin.bacnet4j.type.eventParameter.OutOfRange;
+import com.serotonin.bacnet4j.type.eventParameter.SignedOutOfRange;
+import com.serotonin.bacnet4j.type.eventParameter.UnsignedOutOfRange;
+import com.serotonin.bacnet4j.type.eventParameter.UnsignedRange;
+import com.serotonin.bacnet4j.type.notificationParameters.AccessEventNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.BufferReadyNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfBitStringNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfCharacterStringNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfDiscreteValueNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfLifeSafetyNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfReliabilityNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfStateNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfStatusFlagsNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfTimerNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfValueNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.CommandFailureNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ComplexEventTypeNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.DoubleOutOfRangeNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.ExtendedNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.FloatingLimitNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.NotificationParameters;
+import com.serotonin.bacnet4j.type.notificationParameters.OutOfRangeNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.SignedOutOfRangeNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.UnsignedOutOfRangeNotif;
+import com.serotonin.bacnet4j.type.notificationParameters.UnsignedRangeNotif;
+import com.serotonin.bacnet4j.type.primitive.BitString;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.Date;
+import com.serotonin.bacnet4j.type.primitive.Double;
+import com.serotonin.bacnet4j.type.primitive.Enumerated;
+import com.serotonin.bacnet4j.type.primitive.Null;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.type.primitive.Primitive;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.SignedInteger;
+import com.serotonin.bacnet4j.type.primitive.Time;
+import com.serotonin.bacnet4j.type.primitive.Unsigned16;
+import com.serotonin.bacnet4j.type.primitive.Unsigned32;
+import com.serotonin.bacnet4j.type.primitive.Unsigned8;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Registry of the factories used to decode encodables by class. Decoding through a registered factory avoids the
+ * reflective constructor lookup and invocation that was previously done for every value read from a queue. All of
+ * the concrete types in this package are registered when the class loads. Types that are not registered, such as
+ * those defined by applications, are decoded through their (ByteQueue) constructor by reflection, with the
+ * constructor being looked up only once per class.
+ *
+ * @author Matthew
+ */
+public class EncodableDecoders {
+    @FunctionalInterface
+    public interface Decoder<T extends Encodable> {
+        T decode(ByteQueue queue) throws BACnetException;
+    }
+
+    private static final Map<Class<?>, Decoder<?>> DECODERS = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Decoder<?>> REFLECTIVE_DECODERS = new ClassValue<Decoder<?>>() {
+        @Override
+        protected Decoder<?> computeValue(final Class<?> clazz) {
+            final Constructor<?> ctor;
+            try {
+                ctor = clazz.getConstructor(ByteQueue.class);
+            } catch (final NoSuchMethodException e) {
+                return queue -> {
+                    throw new BACnetException(e);
+                };
+            }
+            return queue -> (Encodable) newInstance(ctor, queue);
+        }
+    };
+
+    private static final ClassValue<Constructor<?>> CONTEXT_CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(final Class<?> clazz) {
+            try {
+                return clazz.getConstructor(ByteQueue.class, Integer.TYPE);
+            } catch (final NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
+    /**
+     * Registers the decoder to use for the given class, replacing any existing registration. Applications can use
+     * this to avoid reflection for their own encodable types.
+     */
+    public static <T extends Encodable> void register(final Class<T> clazz, final Decoder<? extends T> decoder) {
+        DECODERS.put(clazz, decoder);
+    }
+
+    public static boolean isRegistered(final Class<?> clazz) {
+        return DECODERS.containsKey(clazz);
+    }
+
+    /**
+     * Returns the decoder for the given class, which is the registered decoder if there is one, and otherwise a
+     * reflective decoder using the class's (ByteQueue) constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Encodable> Decoder<T> getDecoder(final Class<T> clazz) {
+        final Decoder<?> decoder = DECODERS.get(clazz);
+        if (decoder != null)
+            return (Decoder<T>) decoder;
+        return (Decoder<T>) REFLECTIVE_DECODERS.get(clazz);
+    }
+
+    public static <T extends Encodable> T decode(final ByteQueue queue, final Class<T> clazz)
+            throws BACnetException {
+        try {
+            return getDecoder(clazz).decode(queue);
+        } catch (final RuntimeException e) {
+            // Maintain the exception that was thrown when all decoding was done by reflection.
+            throw new ReflectionException(e);
+        }
+    }
+
+    /**
+     * Decodes an instance of the given class using its (ByteQueue, int) constructor. This is only used for sequence
+     * types, and so is always done reflectively, but with the constructor lookup cached.
+     */
+    public static <T extends Encodable> T decode(final ByteQueue queue, final Class<T> clazz, final int contextId)
+            throws BACnetException {
+        final Constructor<?> ctor = CONTEXT_CONSTRUCTORS.get(clazz);
+        if (ctor == null)
+            throw new BACnetException("No (ByteQueue, int) constructor in " + clazz.getName());
+        return clazz.cast(newInstance(ctor, queue, contextId));
+    }
+
+    private static Object newInstance(final Constructor<?> ctor, final Object... args) throws BACnetException {
+        try {
+            return ctor.newInstance(args);
+        } catch (final InvocationTargetException e) {
+            // Check if there is a wrapped BACnet exception
+            if (e.getCause() instanceof BACnetException)
+                throw (BACnetException) e.getCause();
+            throw new ReflectionException(e);
+        } catch (final Exception e) {
+            throw new BACnetException(e);
+        }
+    }
+
+    static {
+        register(Primitive.class, Primitive::createPrimitive);
+
+        // type
+        register(AmbiguousValue.class, AmbiguousValue::new);
+
+        // constructed
+        register(AccessRule.class, AccessRule::new);
+        register(AccessRule.LocationSpecifier.class, AccessRule.LocationSpecifier::new);
+        register(AccessRule.TimeRangeSpecifier.class, AccessRule.TimeRangeSpecifier::new);
+        register(AccumulatorRecord.class, AccumulatorRecord::new);
+        register(AccumulatorRecord.AccumulatorStatus.class, AccumulatorRecord.AccumulatorStatus::new);
+        register(ActionCommand.class, ActionCommand::new);
+        register(ActionList.class, ActionList::new);
+        register(Address.class, Address::new);
+        register(AddressBinding.class, AddressBinding::new);
+        register(AssignedAccessRights.class, AssignedAccessRights::new);
+        register(AssignedLandingCalls.class, AssignedLandingCalls::new);
+        register(AssignedLandingCalls.LandingCall.class, AssignedLandingCalls.LandingCall::new);
+        register(AuthenticationFactor.class, AuthenticationFactor::new);
+        register(AuthenticationFactorFormat.class, AuthenticationFactorFormat::new);
+        register(AuthenticationPolicy.class, AuthenticationPolicy::new);
+        register(AuthenticationPolicy.Policy.class, AuthenticationPolicy.Policy::new);
+        register(BDTEntry.class, BDTEntry::new);
+        register(CalendarEntry.class, CalendarEntry::new);
+        register(ChannelValue.class, ChannelValue::new);
+        register(ClientCov.class, ClientCov::new);
+        register(CovMultipleSubscription.class, CovMultipleSubscription::new);
+        register(CovMultipleSubscription.CovSubscriptionSpecification.class,
+                CovMultipleSubscription.CovSubscriptionSpecification::new);
+        register(CovMultipleSubscription.CovSubscriptionSpecification.CovReference.class,
+                CovMultipleSubscription.CovSubscriptionSpecification.CovReference::new);
+        register(CovSubscription.class, CovSubscription::new);
+        register(CredentialAuthenticationFactor.class, CredentialAuthenticationFactor::new);
+        register(DailySchedule.class, DailySchedule::new);
+        register(DateRange.class, DateRange::new);
+        register(DateTime.class, DateTime::new);
+        register(DaysOfWeek.class, DaysOfWeek::new);
+        register(Destination.class, Destination::new);
+        register(DeviceObjectPropertyReference.class, DeviceObjectPropertyReference::new);
+        register(DeviceObjectPropertyValue.class, DeviceObjectPropertyValue::new);
+        register(DeviceObjectReference.class, DeviceObjectReference::new);
+        register(EventLogRecord.class, EventLogRecord::new);
+        register(EventNotificationSubscription.class, EventNotificationSubscription::new);
+        register(EventTransitionBits.class, EventTransitionBits::new);
+        register(FDTEntry.class, FDTEntry::new);
+        register(FaultParameter.class, FaultParameter::new);
+        register(FaultParameter.FaultCharacterString.class, FaultParameter.FaultCharacterString::new);
+        register(FaultParameter.FaultExtended.class, FaultParameter.FaultExtended::new);
+        register(FaultParameter.FaultExtended.FaultExtendedParameter.class,
+                FaultParameter.FaultExtended.FaultExtendedParameter::new);
+        register(FaultParameter.FaultLifeSafety.class, FaultParameter.FaultLifeSafety::new);
+        register(FaultParameter.FaultListed.class, FaultParameter.FaultListed::new);
+        register(FaultParameter.FaultOutOfRange.class, FaultParameter.FaultOutOfRange::new);
+        register(FaultParameter.FaultOutOfRange.FaultNormalValue.class,
+                FaultParameter.FaultOutOfRange.FaultNormalValue::new);
+        register(FaultParameter.FaultState.class, FaultParameter.FaultState::new);
+        register(FaultParameter.FaultStatusFlags.class, FaultParameter.FaultStatusFlags::new);
+        register(GroupChannelValue.class, GroupChannelValue::new);
+        register(HostAddress.class, HostAddress::new);
+        register(HostNPort.class, HostNPort::new);
+        register(KeyIdentifier.class, KeyIdentifier::new);
+        register(LandingCallStatus.class, LandingCallStatus::new);
+        register(LandingDoorStatus.class, LandingDoorStatus::new);
+        register(LandingDoorStatus.LandingDoor.class, LandingDoorStatus.LandingDoor::new);
+        register(LiftCarCallList.class, LiftCarCallList::new);
+        register(LightingCommand.class, LightingCommand::new);
+        register(LimitEnable.class, LimitEnable::new);
+        register(LogData.class, LogData::new);
+        register(LogData.LogDataElement.class, LogData.LogDataElement::new);
+        register(LogMultipleRecord.class, LogMultipleRecord::new);
+        register(LogRecord.class, LogRecord::new);
+        register(LogStatus.class, LogStatus::new);
+        register(NameValue.class, NameValue::new);
+        register(NameValueCollection.class, NameValueCollection::new);
+        register(NetworkSecurityPolicy.class, NetworkSecurityPolicy::new);
+        register(ObjectPropertyReference.class, ObjectPropertyReference::new);
+        register(ObjectPropertyValue.class, ObjectPropertyValue::new);
+        register(ObjectTypesSupported.class, ObjectTypesSupported::new);
+        register(OptionalBinaryPV.class, OptionalBinaryPV::new);
+        register(OptionalCharacterString.class, OptionalCharacterString::new);
+        register(OptionalReal.class, OptionalReal::new);
+        register(OptionalUnsigned.class, OptionalUnsigned::new);
+        register(PortPermission.class, PortPermission::new);
+        register(Prescale.class, Prescale::new);
+        register(PriorityArray.class, PriorityArray::new);
+        register(PriorityValue.class, PriorityValue::new);
+        register(ProcessIdSelection.class, ProcessIdSelection::new);
+        register(PropertyAccessResult.class, PropertyAccessResult::new);
+        register(PropertyReference.class, PropertyReference::new);
+        register(PropertyStates.class, PropertyStates::new);
+        register(PropertyValue.class, PropertyValue::new);
+        register(ReadAccessResult.class, ReadAccessResult::new);
+        register(ReadAccessResult.Result.class, ReadAccessResult.Result::new);
+        register(ReadAccessSpecification.class, ReadAccessSpecification::new);
+        register(Recipient.class, Recipient::new);
+        register(RecipientProcess.class, RecipientProcess::new);
+        register(ResultFlags.class, ResultFlags::new);
+        register(RouterEntry.class, RouterEntry::new);
+        register(RouterEntry.RouterEntryStatus.class, RouterEntry.RouterEntryStatus::new);
+        register(Scale.class, Scale::new);
+        register(SecurityKeySet.class, SecurityKeySet::new);
+        register(ServicesSupported.class, ServicesSupported::new);
+        register(SetpointReference.class, SetpointReference::new);
+        register(ShedLevel.class, ShedLevel::new);
+        register(SpecialEvent.class, SpecialEvent::new);
+        register(StatusFlags.class, StatusFlags::new);
+        register(TimeStamp.class, TimeStamp::new);
+        register(TimeValue.class, TimeValue::new);
+        register(TimerStateChangeValue.class, TimerStateChangeValue::new);
+        register(ValueSource.class, ValueSource::new);
+        register(VmacEntry.class, VmacEntry::new);
+        register(VtSession.class, VtSession::new);
+        register(WeekNDay.class, WeekNDay::new);
+        register(WeekNDay.WeekOfMonth.class, WeekNDay.WeekOfMonth::new);
+        register(WriteAccessSpecification.class, WriteAccessSpecification::new);
+
+        // enumerated
+        register(AbortReason.class, AbortReason::new);
+        register(AccessAuthenticationFactorDisable.class, AccessAuthenticationFactorDisable::new);
+        register(AccessCredentialDisable.class, AccessCredentialDisable::new);
+        register(AccessCredentialDisableReason.class, AccessCredentialDisableReason::new);
+        register(AccessEvent.class, AccessEvent::new);
+        register(AccessPassbackMode.class, AccessPassbackMode::new);
+        register(AccessUserType.class, AccessUserType::new);
+        register(AccessZoneOccupancyState.class, AccessZoneOccupancyState::new);
+        register(Action.class, Action::new);
+        register(AuthenticationFactorType.class, AuthenticationFactorType::new);
+        register(AuthenticationStatus.class, AuthenticationStatus::new);
+        register(AuthorizationExemption.class, AuthorizationExemption::new);
+        register(AuthorizationMode.class, AuthorizationMode::new);
+        register(BackupState.class, BackupState::new);
+        register(BinaryLightingPV.class, BinaryLightingPV::new);
+        register(BinaryPV.class, BinaryPV::new);
+        register(DeviceStatus.class, DeviceStatus::new);
+        register(DoorAlarmState.class, DoorAlarmState::new);
+        register(DoorSecuredStatus.class, DoorSecuredStatus::new);
+        register(DoorStatus.class, DoorStatus::new);
+        register(DoorValue.class, DoorValue::new);
+        register(EngineeringUnits.class, EngineeringUnits::new);
+        register(ErrorClass.class, ErrorClass::new);
+        register(ErrorCode.class, ErrorCode::new);
+        register(EscalatorFault.class, EscalatorFault::new);
+        register(EscalatorMode.class, EscalatorMode::new);
+        register(EscalatorOperationDirection.class, EscalatorOperationDirection::new);
+        register(EventState.class, EventState::new);
+        register(EventType.class, EventType::new);
+        register(FaultType.class, FaultType::new);
+        register(FileAccessMethod.class, FileAccessMethod::new);
+        register(IPMode.class, IPMode::new);
+        register(LifeSafetyMode.class, LifeSafetyMode::new);
+        register(LifeSafetyOperation.class, LifeSafetyOperation::new);
+        register(LifeSafetyState.class, LifeSafetyState::new);
+        register(LiftCarDirection.class, LiftCarDirection::new);
+        register(LiftCarDoorCommand.class, LiftCarDoorCommand::new);
+        register(LiftCarDriveStatus.class, LiftCarDriveStatus::new);
+        register(LiftCarMode.class, LiftCarMode::new);
+        register(LiftFault.class, LiftFault::new);
+        register(LiftGroupMode.class, LiftGroupMode::new);
+        register(LightingInProgress.class, LightingInProgress::new);
+        register(LightingOperation.class, LightingOperation::new);
+        register(LightingTransition.class, LightingTransition::new);
+        register(LockStatus.class, LockStatus::new);
+        register(LoggingType.class, LoggingType::new);
+        register(Maintenance.class, Maintenance::new);
+        register(MessagePriority.class, MessagePriority::new);
+        register(NetworkNumberQuality.class, NetworkNumberQuality::new);
+        register(NetworkPortCommand.class, NetworkPortCommand::new);
+        register(NetworkType.class, NetworkType::new);
+        register(NodeType.class, NodeType::new);
+        register(NotifyType.class, NotifyType::new);
+        register(ObjectType.class, ObjectType::new);
+        register(Polarity.class, Polarity::new);
+        register(ProgramError.class, ProgramError::new);
+        register(ProgramRequest.class, ProgramRequest::new);
+        register(ProgramState.class, ProgramState::new);
+        register(PropertyIdentifier.class, PropertyIdentifier::new);
+        register(ProtocolLevel.class, ProtocolLevel::new);
+        register(RejectReason.class, RejectReason::new);
+        register(Relationship.class, Relationship::new);
+        register(Reliability.class, Reliability::new);
+        register(RestartReason.class, RestartReason::new);
+        register(SecurityLevel.class, SecurityLevel::new);
+        register(SecurityPolicy.class, SecurityPolicy::new);
+        register(Segmentation.class, Segmentation::new);
+        register(ShedState.class, ShedState::new);
+        register(SilencedState.class, SilencedState::new);
+        register(TimerState.class, TimerState::new);
+        register(TimerTransition.class, TimerTransition::new);
+        register(VtClass.class, VtClass::new);
+        register(WriteStatus.class, WriteStatus::new);
+
+        // error
+        register(BACnetError.class, BACnetError::new);
+        register(ChangeListError.class, ChangeListError::new);
+        register(ConfirmedPrivateTransferError.class, ConfirmedPrivateTransferError::new);
+        register(CreateObjectError.class, CreateObjectError::new);
+        register(ErrorClassAndCode.class, ErrorClassAndCode::new);
+        register(SubscribeCovPropertyMultipleError.class, SubscribeCovPropertyMultipleError::new);
+        register(SubscribeCovPropertyMultipleError.FirstFailedSubscription.class,
+                SubscribeCovPropertyMultipleError.FirstFailedSubscription::new);
+        register(VTCloseError.class, VTCloseError::new);
+        register(WritePropertyMultipleError.class, WritePropertyMultipleError::new);
+
+        // eventParameter
+        register(com.serotonin.bacnet4j.type.eventParameter.AccessEvent.class,
+                com.serotonin.bacnet4j.type.eventParameter.AccessEvent::new);
+        register(BufferReady.class, BufferReady::new);
+        register(ChangeOfBitString.class, ChangeOfBitString::new);
+        register(ChangeOfCharacterString.class, ChangeOfCharacterString::new);
+        register(ChangeOfDiscreteValue.class, ChangeOfDiscreteValue::new);
+        register(ChangeOfLifeSafety.class, ChangeOfLifeSafety::new);
+        register(ChangeOfState.class, ChangeOfState::new);
+        register(ChangeOfStatusFlags.class, ChangeOfStatusFlags::new);
+        register(ChangeOfTimer.class, ChangeOfTimer::new);
+        register(ChangeOfValue.class, ChangeOfValue::new);
+        register(CommandFailure.class, CommandFailure::new);
+        register(DoubleOutOfRange.class, DoubleOutOfRange::new);
+        register(EventParameter.class, EventParameter::new);
+        register(Extended.class, Extended::new);
+        register(Extended.Parameter.class, Extended.Parameter::new);
+        register(FloatingLimit.class, FloatingLimit::new);
+        register(OutOfRange.class, OutOfRange::new);
+        register(SignedOutOfRange.class, SignedOutOfRange::new);
+        register(UnsignedOutOfRange.class, UnsignedOutOfRange::new);
+        register(UnsignedRange.class, UnsignedRange::new);
+
+        // notificationParameters
+        register(AccessEventNotif.class, AccessEventNotif::new);
+        register(BufferReadyNotif.class, BufferReadyNotif::new);
+        register(ChangeOfBitStringNotif.class, ChangeOfBitStringNotif::new);
+        register(ChangeOfCharacterStringNotif.class, ChangeOfCharacterStringNotif::new);
+        register(ChangeOfDiscreteValueNotif.class, ChangeOfDiscreteValueNotif::new);
+        register(ChangeOfLifeSafetyNotif.class, ChangeOfLifeSafetyNotif::new);
+        register(ChangeOfReliabilityNotif.class, ChangeOfReliabilityNotif::new);
+        register(ChangeOfStateNotif.class, ChangeOfStateNotif::new);
+        register(ChangeOfStatusFlagsNotif.class, ChangeOfStatusFlagsNotif::new);
+        register(ChangeOfTimerNotif.class, ChangeOfTimerNotif::new);
+        register(ChangeOfValueNotif.class, ChangeOfValueNotif::new);
+        register(CommandFailureNotif.class, CommandFailureNotif::new);
+        register(ComplexEventTypeNotif.class, ComplexEventTypeNotif::new);
+        register(DoubleOutOfRangeNotif.class, DoubleOutOfRangeNotif::new);
+        register(ExtendedNotif.class, ExtendedNotif::new);
+        register(ExtendedNotif.Parameter.class, ExtendedNotif.Parameter::new);
+        register(FloatingLimitNotif.class, FloatingLimitNotif::new);
+        register(NotificationParameters.class, NotificationParameters::new);
+        register(OutOfRangeNotif.class, OutOfRangeNotif::new);
+        register(SignedOutOfRangeNotif.class, SignedOutOfRangeNotif::new);
+        register(UnsignedOutOfRangeNotif.class, UnsignedOutOfRangeNotif::new);
+        register(UnsignedRangeNotif.class, UnsignedRangeNotif::new);
+
+        // primitive
+        register(BitString.class, BitString::new);
+        register(Boolean.class, Boolean::new);
+        register(CharacterString.class, CharacterString::new);
+        register(Date.class, Date::new);
+        register(Double.class, Double::new);
+        register(Enumerated.class, Enumerated::new);
+        register(Null.class, Null::new);
+        register(ObjectIdentifier.class, ObjectIdentifier::new);
+        register(OctetString.class, OctetString::new);
+        register(Real.class, Real::new);
+        register(SignedInteger.class, SignedInteger::new);
+        register(Time.class, Time::new);
+        register(Unsigned16.class, Unsigned16::new);
+        register(Unsigned32.class, Unsigned32::new);
+        register(Unsigned8.class, Unsigned8::new);
+        register(UnsignedInteger.class, UnsignedInteger::new);
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.util;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.RemoteDevice;
+import com.serotonin.bacnet4j.exception.AbortAPDUException;
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.BACnetTimeoutException;
+import com.serotonin.bacnet4j.exception.ErrorAPDUException;
+import com.serotonin.bacnet4j.exception.ServiceTooBigException;
+import com.serotonin.bacnet4j.service.acknowledgement.AcknowledgementService;
+import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyAck;
+import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyMultipleAck;
+import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyMultipleRequest;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult.Result;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessSpecification;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.AbortReason;
+import com.serotonin.bacnet4j.type.enumerated.ErrorClass;
+import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
+import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+
+/**
+ * Reads properties from a device without blocking. Requests are sent with LocalDevice.sendAsync, and up to
+ * RemoteDevice.getMaxReadsInFlight of them are kept outstanding, the next being sent from the completion of a previous
+ * one. Results are merged into a single PropertyValues instance as they arrive. The handling of responses is the same
+ * as in the sequential version of RequestUtils.readProperties: partitions are shrunk when the device says they are
+ * too big, partitions that fail with an error are retried one property at a time, timeouts after the first successful
+ * response become error values, and the read stops when the ReadListener cancels it.
+ *
+ * @author Matthew
+ */
+class PropertyReader {
+    static final Logger LOG = LoggerFactory.getLogger(PropertyReader.class);
+
+    private final LocalDevice localDevice;
+    private final RemoteDevice d;
+    private final PropertyValues propertyValues = new PropertyValues();
+    private final ReadListenerUpdater updater;
+    private final CompletableFuture<PropertyValues> future = new CompletableFuture<>();
+
+    // Requests that are yet to be sent. Single property references that are to be read with ReadProperty are
+    // queued as partitions of size 1 with the single flag set.
+    private final LinkedList<Pending> pending = new LinkedList<>();
+    private int inFlight;
+    private int counter;
+    private boolean done;
+
+    PropertyReader(final LocalDevice localDevice, final RemoteDevice d, final int size, final ReadListener callback) {
+        this.localDevice = localDevice;
+        this.d = d;
+        updater = new ReadListenerUpdater(callback, propertyValues, size);
+    }
+
+    /**
+     * Starts the read with ReadPropertyMultiple requests.
+     */
+    CompletableFuture<PropertyValues> readMultiple(final PropertyReferences refs) {
+        synchronized (this) {
+            for (final PropertyReferences partition : RequestUtils.partition(d, refs))
+                pending.add(new Pending(partition, false));
+        }
+        sendNext();
+        return future;
+    }
+
+    /**
+     * Starts the read with a ReadProperty request for each reference.
+     */
+    CompletableFuture<PropertyValues> readOneAtATime(final PropertyReferences refs) {
+        synchronized (this) {
+            pending.addAll(toSingles(refs));
+        }
+        sendNext();
+        return future;
+    }
+
+    private void sendNext() {
+        final List<Pending> toSend = new ArrayList<>();
+        boolean complete = false;
+        synchronized (this) {
+            if (done)
+                return;
+            if (updater.cancelled() || pending.isEmpty() && inFlight == 0) {
+                done = true;
+                complete = true;
+            } else {
+                while (inFlight < d.getMaxReadsInFlight() && !pending.isEmpty()) {
+                    toSend.add(pending.removeFirst());
+                    inFlight++;
+                }
+            }
+        }
+
+        if (complete)
+            future.complete(propertyValues);
+        for (final Pending p : toSend)
+            send(p);
+    }
+
+    private void send(final Pending p) {
+        final ConfirmedRequestService request;
+        if (p.single) {
+            final PropertyReference ref = p.refs.getProperties().get(p.oid()).get(0);
+            request = new ReadPropertyRequest(p.oid(), ref.getPropertyIdentifier(), ref.getPropertyArrayIndex());
+        } else {
+            final Map<ObjectIdentifier, List<PropertyReference>> properties = p.refs.getProperties();
+            final List<ReadAccessSpecification> specs = new ArrayList<>();
+            for (final ObjectIdentifier oid : properties.keySet())
+                specs.add(new ReadAccessSpecification(oid, new SequenceOf<>(properties.get(oid))));
+            request = new ReadPropertyMultipleRequest(new SequenceOf<>(specs));
+        }
+
+        localDevice.<AcknowledgementService> sendAsync(d, request).whenComplete((ack, t) -> {
+            BACnetException e = null;
+            synchronized (this) {
+                inFlight--;
+                if (done)
+                    return;
+                try {
+                    if (t == null)
+                        handleAck(p, ack);
+                    else
+                        handleException(p, request, unwrap(t));
+                } catch (final BACnetException ex) {
+                    done = true;
+                    e = ex;
+                }
+            }
+
+            if (e != null)
+                future.completeExceptionally(e);
+            else
+                sendNext();
+        });
+    }
+
+    private void handleAck(final Pending p, final AcknowledgementService ack) {
+        counter++;
+        if (p.single) {
+            final ReadPropertyAck rpa = (ReadPropertyAck) ack;
+            updater.increment(d.getInstanceNumber(), p.oid(), rpa.getPropertyIdentifier(),
+                    rpa.getPropertyArrayIndex(), rpa.getValue());
+            return;
+        }
+
+        for (final ReadAccessResult objectResult : ((ReadPropertyMultipleAck) ack).getListOfReadAccessResults()) {
+            final ObjectIdentifier oid = objectResult.getObjectIdentifier();
+            for (final Result result : objectResult.getListOfResults()) {
+                d.getResponseSizeEstimator().observe(oid.getObjectType(), result.getPropertyIdentifier(),
+                        result.getPropertyArrayIndex(), result.getReadResult().getDatum());
+                updater.increment(d.getInstanceNumber(), oid, result.getPropertyIdentifier(),
+                        result.getPropertyArrayIndex(), result.getReadResult().getDatum());
+                if (updater.cancelled())
+                    return;
+            }
+        }
+    }
+
+    private void handleException(final Pending p, final ConfirmedRequestService request, final Throwable t)
+            throws BACnetException {
+        if (p.single) {
+            if (t instanceof BACnetTimeoutException) {
+                if (counter == 0)
+                    throw (BACnetTimeoutException) t;
+                populateWithError(p, new ErrorClassAndCode(ErrorClass.device, ErrorCode.timeout));
+            } else if (t instanceof ErrorAPDUException)
+                populateWithError(p, ((ErrorAPDUException) t).getError());
+            else if (t instanceof BACnetException)
+                throw (BACnetException) t;
+            else
+                throw toBACnetException(request, t);
+            return;
+        }
+
+        if (t instanceof ServiceTooBigException)
+            repartition(p, (ServiceTooBigException) t);
+        else if (t instanceof AbortAPDUException) {
+            LOG.warn("Chunked request failed.");
+            final AbortAPDUException e = (AbortAPDUException) t;
+            if (AbortReason.bufferOverflow.equals(e.getApdu().getAbortReason())
+                    || AbortReason.segmentationNotSupported.equals(e.getApdu().getAbortReason()))
+                repartition(p, e);
+            else
+                throw toBACnetException(request, t);
+        } else if (t instanceof BACnetTimeoutException) {
+            // For the first request, rethrow the exception. Otherwise, populate the properties with errors.
+            if (counter == 0)
+                throw (BACnetTimeoutException) t;
+            populateWithError(p, new ErrorClassAndCode(ErrorClass.device, ErrorCode.timeout));
+        } else if (t instanceof ErrorAPDUException) {
+            // The error returned may only apply to a single reference. If there is more than one reference in
+            // the partition, send the requests one at a time.
+            if (p.refs.size() < 2)
+                populateWithError(p, ((ErrorAPDUException) t).getError());
+            else {
+                LOG.debug("Making property reference requests one at a time");
+                pending.addAll(0, toSingles(p.refs));
+            }
+        } else
+            throw toBACnetException(request, t);
+    }
+
+    private void repartition(final Pending p, final BACnetException e) throws BACnetException {
+        if (p.refs.size() < 2)
+            throw e;
+
+        // Reduce the device's max references.
+        d.reduceMaxReadMultipleReferences(p.refs.size());
+
+        // Create a new PropertyReferences instance from the failed and remaining references, and repartition them.
+        final List<PropertyReferences> remaining = new ArrayList<>();
+        remaining.add(p.refs);
+        for (final Pending q : pending)
+            remaining.add(q.refs);
+        pending.clear();
+        for (final PropertyReferences partition : RequestUtils.partition(d, new PropertyReferences(remaining)))
+            pending.add(new Pending(partition, false));
+    }
+
+    private void populateWithError(final Pending p, final ErrorClassAndCode error) {
+        RequestUtils.populateWithError(d, p.refs.getProperties(), updater, error);
+    }
+
+    private BACnetException toBACnetException(final ConfirmedRequestService request, final Throwable t) {
+        return new BACnetException("Completed " + counter + " requests. Excepted on: " + request, t);
+    }
+
+    private static List<Pending> toSingles(final PropertyReferences refs) {
+        final List<Pending> singles = new ArrayList<>(refs.size());
+        for (final Map.Entry<ObjectIdentifier, List<PropertyReference>> e : refs.getProperties().entrySet()) {
+            for (final PropertyReference ref : e.getValue())
+                singles.add(new Pending(new PropertyReferences().add(e.getKey(), ref), true));
+        }
+        return singles;
+    }
+
+    private static Throwable unwrap(final Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null)
+            return t.getCause();
+        return t;
+    }
+
+    private static class Pending {
+        final PropertyReferences refs;
+        final boolean single;
+
+        Pending(final PropertyReferences refs, final boolean single) {
+            this.refs = refs;
+            this.single = single;
+        }
+
+        ObjectIdentifier oid() {
+            return refs.getProperties().keySet().iterator().next();
+        }
+    }
+}
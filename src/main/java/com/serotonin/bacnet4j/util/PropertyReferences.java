@@ -141,6 +141,48 @@ public class PropertyReferences implements Serializable {
         return partitions;
     }
 
+    /**
+     * Partitions the references so that no partition has more than maxPartitionSize references, and the estimated
+     * size of the ReadPropertyMultiple response to each partition does not exceed the max response size of the
+     * estimator. A reference that is estimated to be too big on its own gets a partition of its own.
+     */
+    public List<PropertyReferences> getPropertiesPartitioned(final int maxPartitionSize,
+            final ResponseSizeEstimator estimator) {
+        final int maxResponseSize = estimator.getMaxResponseSize();
+        if (maxResponseSize == Integer.MAX_VALUE)
+            return getPropertiesPartitioned(maxPartitionSize);
+
+        final List<PropertyReferences> partitions = new ArrayList<>();
+        PropertyReferences partition = null;
+        int partitionSize = 0;
+        int responseSize = 0;
+        for (final Map.Entry<ObjectIdentifier, List<PropertyReference>> e : properties.entrySet()) {
+            boolean newObject = true;
+            for (final PropertyReference ref : e.getValue()) {
+                int size = estimator.estimate(e.getKey().getObjectType(), ref);
+                if (newObject)
+                    size += ResponseSizeEstimator.OBJECT_OVERHEAD;
+
+                if (partition == null || partitionSize >= maxPartitionSize
+                        || partitionSize > 0 && responseSize + size > maxResponseSize) {
+                    partition = new PropertyReferences();
+                    partitions.add(partition);
+                    partitionSize = 0;
+                    responseSize = 0;
+                    if (!newObject)
+                        size += ResponseSizeEstimator.OBJECT_OVERHEAD;
+                }
+
+                partition.add(e.getKey(), ref);
+                partitionSize++;
+                responseSize += size;
+                newObject = false;
+            }
+        }
+
+        return partitions;
+    }
+
     public int size() {
         int size = 0;
         for (final List<PropertyReference> list : properties.values())
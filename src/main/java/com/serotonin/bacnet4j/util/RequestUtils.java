@@ -32,6 +32,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -264,8 +266,17 @@ public class RequestUtils {
         return results;
     }
 
+    /**
+     * Reads the given properties from the device, using ReadPropertyMultiple if the device supports it. If more
+     * properties are requested than fit into a single request, the references are partitioned. The partitions are
+     * sent one at a time, unless the device's max reads in flight is greater than 1, in which case they are pipelined.
+     * See RemoteDevice.setMaxReadsInFlight.
+     */
     public static PropertyValues readProperties(final LocalDevice localDevice, final RemoteDevice d,
             final PropertyReferences refs, final ReadListener callback) throws BACnetException {
+        if (d.getMaxReadsInFlight() > 1)
+            return await(readPropertiesAsync(localDevice, d, refs, callback));
+
         Map<ObjectIdentifier, List<PropertyReference>> properties;
         final PropertyValues propertyValues = new PropertyValues();
         final ReadListenerUpdater updater = new ReadListenerUpdater(callback, propertyValues, refs.size());
@@ -273,31 +284,15 @@ public class RequestUtils {
         final boolean multipleSupported = d.getServicesSupported() != null
                 && d.getServicesSupported().isReadPropertyMultiple();
 
-        boolean forceMultiple = false;
-        // Check if a "special" property identifier is contained in the references.
-        for (final List<PropertyReference> prs : refs.getProperties().values()) {
-            for (final PropertyReference pr : prs) {
-                final PropertyIdentifier pi = pr.getPropertyIdentifier();
-                if (pi.equals(PropertyIdentifier.all) || pi.equals(PropertyIdentifier.required)
-                        || pi.equals(PropertyIdentifier.optional)) {
-                    forceMultiple = true;
-                    break;
-                }
-            }
-
-            if (forceMultiple)
-                break;
-        }
-
+        final boolean forceMultiple = isForceMultiple(refs);
         if (forceMultiple && !multipleSupported)
             throw new BACnetException("Cannot send request. ReadPropertyMultiple is required but not supported.");
 
         if (forceMultiple || refs.size() > 1 && multipleSupported) {
-            // Read property multiple can be used. Determine the max references
-            final int maxRef = d.getMaxReadMultipleReferences();
-
-            // If the device supports read property multiple, send them all at once, or at least in partitions.
-            List<PropertyReferences> partitions = refs.getPropertiesPartitioned(maxRef);
+            // If the device supports read property multiple, send them all at once, or at least in partitions that
+            // fit into the device's max references and max response size.
+            final ResponseSizeEstimator estimator = d.getResponseSizeEstimator();
+            List<PropertyReferences> partitions = partition(d, refs);
             int counter = 0;
             while (!partitions.isEmpty()) {
                 final PropertyReferences partition = partitions.get(0);
@@ -318,6 +313,8 @@ public class RequestUtils {
                     for (final ReadAccessResult objectResult : results) {
                         oid = objectResult.getObjectIdentifier();
                         for (final Result result : objectResult.getListOfResults().getValues()) {
+                            estimator.observe(oid.getObjectType(), result.getPropertyIdentifier(),
+                                    result.getPropertyArrayIndex(), result.getReadResult().getDatum());
                             updater.increment(d.getInstanceNumber(), oid, result.getPropertyIdentifier(),
                                     result.getPropertyArrayIndex(), result.getReadResult().getDatum());
                             if (updater.cancelled())
@@ -340,7 +337,7 @@ public class RequestUtils {
                     final PropertyReferences remaining = new PropertyReferences(partitions);
 
                     // Repartition the remaining requests.
-                    partitions = remaining.getPropertiesPartitioned(d.getMaxReadMultipleReferences());
+                    partitions = partition(d, remaining);
                 } catch (final AbortAPDUException e) {
                     LOG.warn("Chunked request failed.");
                     if (AbortReason.bufferOverflow.equals(e.getApdu().getAbortReason())
@@ -355,7 +352,7 @@ public class RequestUtils {
                         final PropertyReferences remaining = new PropertyReferences(partitions);
 
                         // Repartition the remaining requests.
-                        partitions = remaining.getPropertiesPartitioned(d.getMaxReadMultipleReferences());
+                        partitions = partition(d, remaining);
                     } else
                         throw new BACnetException("Completed " + counter + " requests. Excepted on: " + request, e);
                 } catch (final BACnetTimeoutException e) {
@@ -392,6 +389,29 @@ public class RequestUtils {
         return propertyValues;
     }
 
+    /**
+     * Partitions the references into ReadPropertyMultiple requests for the device.
+     */
+    static List<PropertyReferences> partition(final RemoteDevice d, final PropertyReferences refs) {
+        return refs.getPropertiesPartitioned(d.getMaxReadMultipleReferences(), d.getResponseSizeEstimator());
+    }
+
+    /**
+     * Checks if a "special" property identifier is contained in the references, in which case ReadPropertyMultiple
+     * must be used.
+     */
+    private static boolean isForceMultiple(final PropertyReferences refs) {
+        for (final List<PropertyReference> prs : refs.getProperties().values()) {
+            for (final PropertyReference pr : prs) {
+                final PropertyIdentifier pi = pr.getPropertyIdentifier();
+                if (pi.equals(PropertyIdentifier.all) || pi.equals(PropertyIdentifier.required)
+                        || pi.equals(PropertyIdentifier.optional))
+                    return true;
+            }
+        }
+        return false;
+    }
+
     public static void populateWithError(final RemoteDevice d,
             final Map<ObjectIdentifier, List<PropertyReference>> properties, final ReadListenerUpdater updater,
             final ErrorClassAndCode error) {
@@ -549,6 +569,159 @@ public class RequestUtils {
         }
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Asynchronous requests
+    //
+    // These are the non-blocking versions of the methods above. The returned futures complete with the same
+    // values, or exceptionally with the BACnetException that the blocking method would have thrown. Futures complete
+    // in the transport thread, so dependent stages that block must be run on another executor.
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static CompletableFuture<Encodable> readPropertyAsync(final LocalDevice localDevice, final RemoteDevice d,
+            final ObjectIdentifier oid, final PropertyIdentifier pid, final UnsignedInteger propertyArrayIndex) {
+        if (d.getServicesSupported().isReadProperty()) {
+            return localDevice.<ReadPropertyAck> sendAsync(d, new ReadPropertyRequest(oid, pid, propertyArrayIndex))
+                    .thenApply(ReadPropertyAck::getValue);
+        }
+
+        if (d.getServicesSupported().isReadPropertyMultiple()) {
+            final List<PropertyReference> refs = new ArrayList<>();
+            refs.add(new PropertyReference(pid, propertyArrayIndex));
+            final List<ReadAccessSpecification> specs = new ArrayList<>();
+            specs.add(new ReadAccessSpecification(oid, new SequenceOf<>(refs)));
+            return localDevice
+                    .<ReadPropertyMultipleAck> sendAsync(d, new ReadPropertyMultipleRequest(new SequenceOf<>(specs)))
+                    .thenApply(ack -> ack.getListOfReadAccessResults().getBase1(1).getListOfResults().getBase1(1)
+                            .getReadResult().getDatum());
+        }
+
+        return failed(new BACnetException("Device does not support readProperty nor readPropertyMultiple"));
+    }
+
+    /**
+     * This version of the readPropertiesAsync method will preserve the order of properties given in the list in the
+     * results.
+     */
+    public static CompletableFuture<List<Pair<ObjectPropertyReference, Encodable>>> readPropertiesAsync(
+            final LocalDevice localDevice, final RemoteDevice d, final List<ObjectPropertyReference> oprs,
+            final ReadListener callback) {
+        final PropertyReferences refs = new PropertyReferences();
+        for (final ObjectPropertyReference opr : oprs)
+            refs.addIndex(opr.getObjectIdentifier(), opr.getPropertyIdentifier(), opr.getPropertyArrayIndex());
+
+        return readPropertiesAsync(localDevice, d, refs, callback).thenApply(pvs -> {
+            final List<Pair<ObjectPropertyReference, Encodable>> results = new ArrayList<>();
+            for (final ObjectPropertyReference opr : oprs)
+                results.add(new ImmutablePair<>(opr, pvs.getNoErrorCheck(opr)));
+            return results;
+        });
+    }
+
+    public static CompletableFuture<PropertyValues> readPropertiesAsync(final LocalDevice localDevice,
+            final RemoteDevice d, final PropertyReferences refs, final ReadListener callback) {
+        final boolean multipleSupported = d.getServicesSupported() != null
+                && d.getServicesSupported().isReadPropertyMultiple();
+        final boolean forceMultiple = isForceMultiple(refs);
+        if (forceMultiple && !multipleSupported)
+            return failed(
+                    new BACnetException("Cannot send request. ReadPropertyMultiple is required but not supported."));
+
+        final PropertyReader reader = new PropertyReader(localDevice, d, refs.size(), callback);
+        if (forceMultiple || refs.size() > 1 && multipleSupported)
+            return reader.readMultiple(refs);
+        return reader.readOneAtATime(refs);
+    }
+
+    public static CompletableFuture<PropertyValues> readOidPresentValuesAsync(final LocalDevice localDevice,
+            final RemoteDevice d, final List<ObjectIdentifier> oids, final ReadListener callback) {
+        if (oids.size() == 0)
+            return CompletableFuture.completedFuture(new PropertyValues());
+
+        final PropertyReferences refs = new PropertyReferences();
+        for (final ObjectIdentifier oid : oids)
+            refs.add(oid, PropertyIdentifier.presentValue);
+
+        return readPropertiesAsync(localDevice, d, refs, callback);
+    }
+
+    public static CompletableFuture<Void> writePropertyAsync(final LocalDevice localDevice, final RemoteDevice d,
+            final ObjectIdentifier oid, final PropertyIdentifier pid, final Encodable value) {
+        return writePropertyAsync(localDevice, d, oid, pid, null, value, null);
+    }
+
+    public static CompletableFuture<Void> writePropertyAsync(final LocalDevice localDevice, final RemoteDevice d,
+            final ObjectIdentifier oid, final PropertyIdentifier pid, final Encodable value, final int priority) {
+        return writePropertyAsync(localDevice, d, oid, pid, null, value, new UnsignedInteger(priority));
+    }
+
+    public static CompletableFuture<Void> writePropertyAsync(final LocalDevice localDevice, final RemoteDevice d,
+            final ObjectIdentifier oid, final PropertyIdentifier pid, final UnsignedInteger propertyArrayIndex,
+            final Encodable value, final UnsignedInteger priority) {
+        return writePropertiesAsync(localDevice, d, Utils.toList(new WriteAccessSpecification(oid,
+                new SequenceOf<>(new PropertyValue(pid, propertyArrayIndex, value, priority)))));
+    }
+
+    public static CompletableFuture<Void> writePropertiesAsync(final LocalDevice localDevice, final RemoteDevice d,
+            final List<WriteAccessSpecification> specs) {
+        int sum = 0;
+        for (final WriteAccessSpecification spec : specs)
+            sum += spec.size();
+
+        if (sum == 0)
+            return CompletableFuture.completedFuture(null);
+        if (!d.getServicesSupported().isWriteProperty() && !d.getServicesSupported().isWritePropertyMultiple())
+            return failed(new BACnetException("Unable to write. Device " + d.getInstanceNumber()
+                    + " does not support writeProperty nor writePropertyMultiple"));
+
+        boolean multiple = false;
+        if (sum > 1 && d.getServicesSupported().isWritePropertyMultiple())
+            multiple = true;
+        else if (sum == 1 && !d.getServicesSupported().isWriteProperty())
+            // Only one property to write, but a single write is not supported.
+            multiple = true;
+
+        if (multiple)
+            return localDevice.sendAsync(d, new WritePropertyMultipleRequest(new SequenceOf<>(specs)))
+                    .thenApply(ack -> null);
+
+        // Write the properties one after the other.
+        CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+        for (final WriteAccessSpecification spec : specs) {
+            for (final PropertyValue pv : spec.getListOfProperties()) {
+                result = result.thenCompose(v -> localDevice
+                        .sendAsync(d,
+                                new WritePropertyRequest(spec.getObjectIdentifier(), pv.getPropertyIdentifier(),
+                                        pv.getPropertyArrayIndex(), pv.getValue(), pv.getPriority()))
+                        .thenApply(ack -> null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the future, and unwraps the BACnetException with which it failed.
+     */
+    private static <T> T await(final CompletableFuture<T> future) throws BACnetException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BACnetException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof BACnetException)
+                throw (BACnetException) e.getCause();
+            throw new BACnetException(e.getCause());
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(final BACnetException e) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // List element write requests
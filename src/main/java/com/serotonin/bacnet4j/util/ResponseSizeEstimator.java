@@ -0,0 +1,303 @@
+/*
+ * ============================================================================
+ * GNU General Public License
+ * ============================================================================
+ *
+ * Copyright (C) 2015 Infinite Automation Software. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * When signing a commercial license with Infinite Automation Software,
+ * the following extension to GPL is made. A special exception to the GPL is
+ * included to allow you to distribute a combined work that includes BAcnet4J
+ * without being obliged to provide the source code for any proprietary components.
+ *
+ * See www.infiniteautomation.com for commercial license options.
+ *
+ * @author Matthew Lohbihler
+ */
+package com.serotonin.bacnet4j.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.RemoteDevice;
+import com.serotonin.bacnet4j.npdu.Network;
+import com.serotonin.bacnet4j.obj.ObjectProperties;
+import com.serotonin.bacnet4j.obj.ObjectPropertyTypeDefinition;
+import com.serotonin.bacnet4j.obj.PropertyTypeDefinition;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.enumerated.Segmentation;
+import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
+import com.serotonin.bacnet4j.type.primitive.BitString;
+import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.CharacterString.Encodings;
+import com.serotonin.bacnet4j.type.primitive.Date;
+import com.serotonin.bacnet4j.type.primitive.Double;
+import com.serotonin.bacnet4j.type.primitive.Enumerated;
+import com.serotonin.bacnet4j.type.primitive.Null;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.SignedInteger;
+import com.serotonin.bacnet4j.type.primitive.Time;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+/**
+ * Estimates the encoded size of ReadPropertyMultiple responses from a remote device, so that requests can be
+ * partitioned to fit into the largest response the device can send without first getting a ServiceTooBig or abort.
+ *
+ * Values of fixed size types are estimated from the property type definitions in ObjectProperties. The sizes of
+ * variable types like strings and lists are learned from the values that the device actually returns, and until a
+ * value has been seen a generous default is used. Every returned value is measured, but the sizes of strings, octet
+ * and bit strings and lists are computed from their lengths rather than by encoding the value again.
+ *
+ * @author Matthew
+ */
+public class ResponseSizeEstimator {
+    // Encoded sizes of values, including the application tag, where the size is fixed or has a small upper bound.
+    private static final Map<Class<?>, Integer> BOUNDED_SIZES = new HashMap<>();
+    static {
+        BOUNDED_SIZES.put(Null.class, 1);
+        BOUNDED_SIZES.put(Boolean.class, 1);
+        BOUNDED_SIZES.put(Real.class, 5);
+        BOUNDED_SIZES.put(Double.class, 10);
+        BOUNDED_SIZES.put(Date.class, 5);
+        BOUNDED_SIZES.put(Time.class, 5);
+        BOUNDED_SIZES.put(ObjectIdentifier.class, 5);
+        BOUNDED_SIZES.put(SignedInteger.class, 5);
+    }
+
+    // Used for variable sized values that have not been seen yet.
+    static final int DEFAULT_VALUE_SIZE = 64;
+    // Used for collections that have not been seen yet, and aggregate properties like "all".
+    static final int DEFAULT_COLLECTION_SIZE = 512;
+    // The overhead of a result in the ack: the property identifier, array index and the opening and closing tags.
+    static final int RESULT_OVERHEAD = 8;
+    // The overhead of an object in the ack: the object identifier and the opening and closing tags.
+    static final int OBJECT_OVERHEAD = 7;
+    // The number of segments to assume if the device's max segments accepted is not known.
+    static final int DEFAULT_MAX_SEGMENTS = 8;
+    // The largest number of segments to pack a response into.
+    static final int MAX_SEGMENTS = 64;
+
+    private final RemoteDevice d;
+    private final LocalDevice localDevice;
+    private final Map<Key, Integer> observed = new ConcurrentHashMap<>();
+
+    public ResponseSizeEstimator(final RemoteDevice d, final LocalDevice localDevice) {
+        this.d = d;
+        this.localDevice = localDevice;
+    }
+
+    /**
+     * @return the largest number of bytes that the results in a ReadPropertyMultiple ack from the device may take,
+     *         or Integer.MAX_VALUE if the device's max APDU is not known.
+     */
+    public int getMaxResponseSize() {
+        int apdu = d.getMaxAPDULengthAccepted();
+        if (apdu <= 0)
+            return Integer.MAX_VALUE;
+
+        final Network network = localDevice == null ? null : localDevice.getNetwork();
+        if (network != null)
+            apdu = Math.min(apdu, network.getMaxApduLength().getMaxLengthInt());
+
+        final Segmentation segmentation = d.getSegmentationSupported();
+        if (segmentation == null || !segmentation.hasTransmitSegmentation())
+            // Header of an unsegmented complex ack.
+            return (apdu - 3) * 9 / 10;
+
+        int segments = d.getUnsignedIntegerProperty(PropertyIdentifier.maxSegmentsAccepted);
+        if (segments <= 0)
+            segments = DEFAULT_MAX_SEGMENTS;
+        segments = Math.min(segments, MAX_SEGMENTS);
+
+        // Header of a segmented complex ack. Leave some room for estimates that are too low.
+        return (apdu - 5) * segments * 9 / 10;
+    }
+
+    /**
+     * @return the estimated size of the result for the given reference in a ReadPropertyMultiple ack, not including
+     *         the object overhead.
+     */
+    public int estimate(final ObjectType objectType, final PropertyReference ref) {
+        return RESULT_OVERHEAD + estimateValue(objectType, ref.getPropertyIdentifier(), ref.getPropertyArrayIndex());
+    }
+
+    private int estimateValue(final ObjectType objectType, final PropertyIdentifier pid,
+            final UnsignedInteger pin) {
+        if (pin != null && pin.intValue() == 0)
+            // Array length
+            return 5;
+
+        final Integer size = observed.get(new Key(objectType, pid, pin != null));
+        if (size != null)
+            return size;
+
+        final PropertyTypeDefinition def = getDefinition(objectType, pid);
+        if (def == null)
+            return pin == null ? DEFAULT_COLLECTION_SIZE : DEFAULT_VALUE_SIZE;
+
+        final int elementSize = boundedSize(def.getClazz());
+        if (def.isCollection() && pin == null) {
+            if (elementSize != -1 && def.getArrayLength() > 0)
+                return def.getArrayLength() * elementSize;
+            return DEFAULT_COLLECTION_SIZE;
+        }
+        return elementSize == -1 ? DEFAULT_VALUE_SIZE : elementSize;
+    }
+
+    /**
+     * Records the size of a value that was returned by the device, if the size of the value's type is variable.
+     */
+    public void observe(final ObjectType objectType, final PropertyIdentifier pid, final UnsignedInteger pin,
+            final Encodable value) {
+        if (value == null || value instanceof ErrorClassAndCode || pin != null && pin.intValue() == 0)
+            return;
+
+        final PropertyTypeDefinition def = getDefinition(objectType, pid);
+        if (def != null && (!def.isCollection() || pin != null) && boundedSize(def.getClazz()) != -1)
+            // No need to learn the size of bounded types.
+            return;
+
+        // Follow growth immediately, but forget large values slowly.
+        observed.merge(new Key(objectType, pid, pin != null), sizeOf(value), (o, n) -> Math.max(n, (o * 3 + n) / 4));
+    }
+
+    /**
+     * @return the encoded size of the value including its application tag. Strings, octet and bit strings, and lists
+     *         of them are measured from their lengths. Other constructed values are encoded. The sizes of strings in
+     *         the multi-byte encodings other than UTF-8 may be overestimated slightly.
+     */
+    static int sizeOf(final Encodable value) {
+        final int bounded = boundedSize(value.getClass());
+        if (bounded != -1)
+            return bounded;
+
+        if (value instanceof CharacterString)
+            return primitiveSize(1 + stringLength((CharacterString) value));
+        if (value instanceof OctetString)
+            return primitiveSize(((OctetString) value).getBytes().length);
+        if (value instanceof BitString) {
+            final int bits = ((BitString) value).getValue().length;
+            return primitiveSize(bits == 0 ? 1 : (bits - 1) / 8 + 2);
+        }
+        if (value instanceof SequenceOf) {
+            int size = 0;
+            for (final Encodable e : (SequenceOf<?>) value)
+                size += sizeOf(e);
+            return size;
+        }
+
+        final ByteQueue queue = new ByteQueue();
+        value.write(queue);
+        return queue.size();
+    }
+
+    private static int primitiveSize(final int length) {
+        if (length < 5)
+            return 1 + length;
+        if (length < 254)
+            return 2 + length;
+        if (length < 65536)
+            return 4 + length;
+        return 6 + length;
+    }
+
+    private static int stringLength(final CharacterString cs) {
+        final String s = cs.getValue();
+        switch (cs.getEncoding()) {
+        case Encodings.ANSI_X3_4:
+            // UTF-8
+            int length = 0;
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c < 0x80)
+                    length++;
+                else if (c < 0x800 || Character.isSurrogate(c))
+                    // A surrogate pair is four bytes.
+                    length += 2;
+                else
+                    length += 3;
+            }
+            return length;
+        case Encodings.ISO_8859_1:
+            return s.length();
+        case Encodings.ISO_10646_UCS_2:
+            // Includes the byte order mark.
+            return 2 + s.length() * 2;
+        case Encodings.IBM_MS_DBCS:
+            // Includes the code page.
+            return 2 + s.length() * 2;
+        default:
+            return s.length() * 4;
+        }
+    }
+
+    private static PropertyTypeDefinition getDefinition(final ObjectType objectType, final PropertyIdentifier pid) {
+        if (PropertyIdentifier.all.equals(pid) || PropertyIdentifier.required.equals(pid)
+                || PropertyIdentifier.optional.equals(pid))
+            return null;
+        final ObjectPropertyTypeDefinition def = ObjectProperties.getObjectPropertyTypeDefinition(objectType, pid);
+        if (def == null)
+            return ObjectProperties.getPropertyTypeDefinition(pid);
+        return def.getPropertyTypeDefinition();
+    }
+
+    private static int boundedSize(final Class<?> clazz) {
+        final Integer size = BOUNDED_SIZES.get(clazz);
+        if (size != null)
+            return size;
+        if (Enumerated.class.isAssignableFrom(clazz) || UnsignedInteger.class.isAssignableFrom(clazz))
+            return 5;
+        return -1;
+    }
+
+    private static class Key {
+        private final ObjectType objectType;
+        private final PropertyIdentifier pid;
+        private final boolean indexed;
+
+        Key(final ObjectType objectType, final PropertyIdentifier pid, final boolean indexed) {
+            this.objectType = objectType;
+            this.pid = pid;
+            this.indexed = indexed;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(objectType, pid, indexed);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key that = (Key) obj;
+            return indexed == that.indexed && Objects.equals(objectType, that.objectType)
+                    && Objects.equals(pid, that.pid);
+        }
+    }
+}
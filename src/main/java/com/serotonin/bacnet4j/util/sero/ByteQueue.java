@@ -33,19 +33,32 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.Arrays;
 
 import org.apache.commons.lang3.StringUtils;
 
+/**
+ * A growable byte buffer with FIFO semantics. Bytes are pushed at the tail and popped from the head of a linear
+ * region of the backing array, so there is no wrapping: bulk operations are single array copies, and the content can
+ * be handed to I/O as an array, offset and length.
+ *
+ * Slices created with slice and popSlice share the backing array with this queue, so no copy is made to hand a part
+ * of a message to another layer. Sharing is copy-on-write: the first write to either queue after a slice was taken
+ * moves that queue's content into an array of its own.
+ *
+ * Space can be reserved at the front of an empty queue with reserveHeadroom. Lower layers can then prepend their
+ * headers into that space without moving the content.
+ */
 public class ByteQueue implements Cloneable {
     private byte[] queue;
-    private int head = -1;
-    private int tail = 0;
-    private int size = 0;
+    private int head;
+    private int tail;
 
+    // Whether the backing array may be referenced by another queue.
+    private boolean shared;
+
+    private boolean marked;
     private int markHead;
     private int markTail;
-    private int markSize;
 
     public ByteQueue() {
         this(1024);
@@ -70,6 +83,13 @@ public class ByteQueue implements Cloneable {
         push(hex);
     }
 
+    private ByteQueue(final byte[] queue, final int head, final int tail, final boolean shared) {
+        this.queue = queue;
+        this.head = head;
+        this.tail = tail;
+        this.shared = shared;
+    }
+
     public void push(final String hex) {
         if (hex.length() % 2 != 0)
             throw new IllegalArgumentException("Hex string must have an even number of characters");
@@ -80,15 +100,8 @@ public class ByteQueue implements Cloneable {
     }
 
     public void push(final byte b) {
-        if (room() == 0)
-            expand();
-
-        queue[tail] = b;
-
-        if (head == -1)
-            head = 0;
-        tail = (tail + 1) % queue.length;
-        size++;
+        ensureRoom(1);
+        queue[tail++] = b;
     }
 
     public void push(final int i) {
@@ -103,17 +116,19 @@ public class ByteQueue implements Cloneable {
      * Push unsigned 2 bytes.
      */
     public void pushU2B(final int i) {
-        push((byte) (i >> 8));
-        push((byte) i);
+        ensureRoom(2);
+        queue[tail++] = (byte) (i >> 8);
+        queue[tail++] = (byte) i;
     }
 
     /**
      * Push unsigned 3 bytes.
      */
     public void pushU3B(final int i) {
-        push((byte) (i >> 16));
-        push((byte) (i >> 8));
-        push((byte) i);
+        ensureRoom(3);
+        queue[tail++] = (byte) (i >> 16);
+        queue[tail++] = (byte) (i >> 8);
+        queue[tail++] = (byte) i;
     }
 
     /**
@@ -127,15 +142,11 @@ public class ByteQueue implements Cloneable {
      * Push unsigned 4 bytes.
      */
     public void pushU4B(final long l) {
-        push((byte) (l >> 24));
-        push((byte) (l >> 16));
-        push((byte) (l >> 8));
-        push((byte) l);
+        pushInt((int) l);
     }
 
     public void pushChar(final char c) {
-        push((byte) (c >> 8));
-        push((byte) c);
+        pushU2B(c);
     }
 
     public void pushDouble(final double d) {
@@ -147,59 +158,39 @@ public class ByteQueue implements Cloneable {
     }
 
     public void pushInt(final int i) {
-        push((byte) (i >> 24));
-        push((byte) (i >> 16));
-        push((byte) (i >> 8));
-        push((byte) i);
+        ensureRoom(4);
+        queue[tail++] = (byte) (i >> 24);
+        queue[tail++] = (byte) (i >> 16);
+        queue[tail++] = (byte) (i >> 8);
+        queue[tail++] = (byte) i;
     }
 
     public void pushLong(final long l) {
-        push((byte) (l >> 56));
-        push((byte) (l >> 48));
-        push((byte) (l >> 40));
-        push((byte) (l >> 32));
-        push((byte) (l >> 24));
-        push((byte) (l >> 16));
-        push((byte) (l >> 8));
-        push((byte) l);
+        ensureRoom(8);
+        for (int shift = 56; shift >= 0; shift -= 8)
+            queue[tail++] = (byte) (l >> shift);
     }
 
     public void pushShort(final short s) {
-        push((byte) (s >> 8));
-        push((byte) s);
+        pushU2B(s);
     }
 
     public void read(final InputStream in, final int length) throws IOException {
         if (length == 0)
             return;
 
-        while (room() < length)
-            expand();
-
-        final int tailLength = queue.length - tail;
-        if (tailLength > length)
-            readImpl(in, tail, length);
-        else
-            readImpl(in, tail, tailLength);
-
-        if (length > tailLength)
-            readImpl(in, 0, length - tailLength);
+        ensureRoom(length);
 
-        if (head == -1)
-            head = 0;
-        tail = (tail + length) % queue.length;
-        size += length;
-    }
-
-    private void readImpl(final InputStream in, final int offset, final int length) throws IOException {
-        int readcount;
-        int off = offset;
+        int off = tail;
         int len = length;
-        while (length > 0) {
-            readcount = in.read(queue, off, len);
+        while (len > 0) {
+            final int readcount = in.read(queue, off, len);
+            if (readcount == -1)
+                throw new IOException("End of stream");
             off += readcount;
             len -= readcount;
         }
+        tail += length;
     }
 
     public void push(final byte[] b) {
@@ -210,46 +201,31 @@ public class ByteQueue implements Cloneable {
         if (length == 0)
             return;
 
-        while (room() < length)
-            expand();
-
-        final int tailLength = queue.length - tail;
-        if (tailLength > length)
-            System.arraycopy(b, pos, queue, tail, length);
-        else
-            System.arraycopy(b, pos, queue, tail, tailLength);
-
-        if (length > tailLength)
-            System.arraycopy(b, tailLength + pos, queue, 0, length - tailLength);
-
-        if (head == -1)
-            head = 0;
-        tail = (tail + length) % queue.length;
-        size += length;
+        ensureRoom(length);
+        System.arraycopy(b, pos, queue, tail, length);
+        tail += length;
     }
 
     public void push(final ByteQueue source) {
-        if (source.size == 0)
+        if (source.size() == 0)
             return;
 
-        ByteQueue q = source;
-        if (q == this)
-            q = (ByteQueue) clone();
-
-        int firstCopyLen = q.queue.length - q.head;
-        if (q.size < firstCopyLen)
-            firstCopyLen = q.size;
-        push(q.queue, q.head, firstCopyLen);
-
-        if (firstCopyLen < q.size)
-            push(q.queue, 0, q.tail);
+        if (source == this) {
+            // The content is copied before the room is made, which may move it.
+            push(peekAll());
+            return;
+        }
+        push(source.queue, source.head, source.size());
     }
 
+    /**
+     * Moves the given number of bytes from the source to this queue.
+     */
     public void push(final ByteQueue source, final int len) {
-        // TODO There is certainly a more elegant way to do this...
-        int l = len;
-        while (l-- > 0)
-            push(source.pop());
+        if (len > source.size())
+            throw new ArrayIndexOutOfBoundsException(source.size());
+        push(source.queue, source.head, len);
+        source.head += len;
     }
 
     public void push(final ByteBuffer source) {
@@ -257,48 +233,78 @@ public class ByteQueue implements Cloneable {
         if (length == 0)
             return;
 
-        while (room() < length)
-            expand();
+        ensureRoom(length);
+        source.get(queue, tail, length);
+        tail += length;
+    }
 
-        final int tailLength = queue.length - tail;
-        if (tailLength > length)
-            source.get(queue, tail, length);
-        else
-            source.get(queue, tail, tailLength);
+    /**
+     * Reserves the given number of bytes at the front of the queue for prepend. The queue must be empty.
+     */
+    public void reserveHeadroom(final int length) {
+        if (size() != 0)
+            throw new IllegalStateException("Headroom can only be reserved in an empty queue");
+        if (shared || queue.length < length) {
+            queue = new byte[Math.max(queue.length, length + 64)];
+            shared = false;
+        }
+        head = tail = length;
+        marked = false;
+    }
 
-        if (length > tailLength)
-            source.get(queue, 0, length - tailLength);
+    /**
+     * @return the number of bytes that can be prepended without moving the content.
+     */
+    public int headroom() {
+        return shared || marked ? 0 : head;
+    }
 
-        if (head == -1)
-            head = 0;
-        tail = (tail + length) % queue.length;
-        size += length;
+    /**
+     * Inserts the given bytes at the head of the queue, so that they are the next to be popped. Clears the mark.
+     */
+    public void prepend(final byte[] b, final int pos, final int length) {
+        makeHeadroom(length);
+        head -= length;
+        System.arraycopy(b, pos, queue, head, length);
+    }
+
+    public void prepend(final byte[] b) {
+        prepend(b, 0, b.length);
+    }
+
+    public void prepend(final byte b) {
+        makeHeadroom(1);
+        queue[--head] = b;
+    }
+
+    /**
+     * Prepend unsigned 2 bytes.
+     */
+    public void prependU2B(final int i) {
+        makeHeadroom(2);
+        queue[--head] = (byte) i;
+        queue[--head] = (byte) (i >> 8);
     }
 
     public void mark() {
+        marked = true;
         markHead = head;
         markTail = tail;
-        markSize = size;
     }
 
     public void reset() {
-        head = markHead;
-        tail = markTail;
-        size = markSize;
+        if (marked) {
+            head = markHead;
+            tail = markTail;
+        } else {
+            head = tail = 0;
+        }
     }
 
     public byte pop() {
-        final byte retval = queue[head];
-
-        if (size == 1) {
-            head = -1;
-            tail = 0;
-        } else
-            head = (head + 1) % queue.length;
-
-        size--;
-
-        return retval;
+        if (head == tail)
+            throw new ArrayIndexOutOfBoundsException(-1);
+        return queue[head++];
     }
 
     public int popU1B() {
@@ -306,23 +312,27 @@ public class ByteQueue implements Cloneable {
     }
 
     public int popU2B() {
-        return (pop() & 0xff) << 8 | pop() & 0xff;
+        checkSize(2);
+        return (queue[head++] & 0xff) << 8 | queue[head++] & 0xff;
     }
 
     public int popU3B() {
-        return (pop() & 0xff) << 16 | (pop() & 0xff) << 8 | pop() & 0xff;
+        checkSize(3);
+        return (queue[head++] & 0xff) << 16 | (queue[head++] & 0xff) << 8 | queue[head++] & 0xff;
     }
 
     public short popS2B() {
-        return (short) ((pop() & 0xff) << 8 | pop() & 0xff);
+        return (short) popU2B();
     }
 
     public int popS4B() {
-        return (pop() & 0xff) << 24 | (pop() & 0xff) << 16 | (pop() & 0xff) << 8 | pop() & 0xff;
+        checkSize(4);
+        return (queue[head++] & 0xff) << 24 | (queue[head++] & 0xff) << 16 | (queue[head++] & 0xff) << 8
+                | queue[head++] & 0xff;
     }
 
     public long popU4B() {
-        return (long) (pop() & 0xff) << 24 | (long) (pop() & 0xff) << 16 | (long) (pop() & 0xff) << 8 | pop() & 0xff;
+        return popS4B() & 0xffffffffL;
     }
 
     public int pop(final byte[] buf) {
@@ -331,118 +341,92 @@ public class ByteQueue implements Cloneable {
 
     public int pop(final byte[] buf, final int pos, final int length) {
         final int len = peek(buf, pos, length);
-
-        size -= len;
-
-        if (size == 0) {
-            head = -1;
-            tail = 0;
-        } else
-            head = (head + len) % queue.length;
-
+        head += len;
         return len;
     }
 
     public int pop(final int length) {
         if (length == 0)
             return 0;
-        if (size == 0)
+        if (head == tail)
             throw new ArrayIndexOutOfBoundsException(-1);
 
-        int len = length;
-        if (len > size)
-            len = size;
-
-        size -= len;
-
-        if (size == 0) {
-            head = -1;
-            tail = 0;
-        } else
-            head = (head + len) % queue.length;
-
+        final int len = Math.min(length, size());
+        head += len;
         return len;
     }
 
     public String popString(final int length, final Charset charset) {
-        final byte[] b = new byte[length];
-        pop(b);
-        return new String(b, charset);
+        checkSize(length);
+        final String s = new String(queue, head, length, charset);
+        head += length;
+        return s;
     }
 
     public byte[] popAll() {
-        final byte[] data = new byte[size];
-        pop(data, 0, data.length);
+        final byte[] data = peekAll();
+        head = tail;
         return data;
     }
 
+    /**
+     * Pops the given number of bytes as a queue that shares this queue's backing array.
+     */
+    public ByteQueue popSlice(final int length) {
+        final ByteQueue slice = slice(0, length);
+        head += length;
+        return slice;
+    }
+
+    /**
+     * Returns a queue of the given range of this queue's content, sharing this queue's backing array. Neither queue
+     * is changed by the other, but the first write to either will copy its content.
+     */
+    public ByteQueue slice(final int index, final int length) {
+        if (index < 0 || length < 0 || index + length > size())
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length + ", size " + size());
+        shared = true;
+        return new ByteQueue(queue, head + index, head + index + length, true);
+    }
+
     public void write(final OutputStream out) throws IOException {
-        write(out, size);
+        write(out, size());
     }
 
     public void write(final OutputStream out, final int length) throws IOException {
         if (length == 0)
             return;
-        if (size == 0)
+        if (head == tail)
             throw new ArrayIndexOutOfBoundsException(-1);
 
-        int len = length;
-        if (len > size)
-            len = size;
-
-        int firstCopyLen = queue.length - head;
-        if (len < firstCopyLen)
-            firstCopyLen = len;
-
-        out.write(queue, head, firstCopyLen);
-        if (firstCopyLen < len)
-            out.write(queue, 0, len - firstCopyLen);
-
-        size -= len;
-
-        if (size == 0) {
-            head = -1;
-            tail = 0;
-        } else
-            head = (head + len) % queue.length;
+        final int len = Math.min(length, size());
+        out.write(queue, head, len);
+        head += len;
     }
 
     public byte tailPop() {
-        if (size == 0)
+        if (head == tail)
             throw new ArrayIndexOutOfBoundsException(-1);
-
-        tail = (tail + queue.length - 1) % queue.length;
-        final byte retval = queue[tail];
-
-        if (size == 1) {
-            head = -1;
-            tail = 0;
-        }
-
-        size--;
-
-        return retval;
+        return queue[--tail];
     }
 
     public byte peek(final int index) {
-        if (index >= size)
-            throw new IllegalArgumentException("index " + index + " is >= queue size " + size);
-
-        final int pos = (index + head) % queue.length;
-        return queue[pos];
+        if (index >= size())
+            throw new IllegalArgumentException("index " + index + " is >= queue size " + size());
+        return queue[head + index];
     }
 
     public byte[] peek(final int index, final int length) {
+        if (index + length > size())
+            throw new IllegalArgumentException("index " + (index + length - 1) + " is >= queue size " + size());
         final byte[] result = new byte[length];
-        // TODO: use System.arraycopy instead.
-        for (int i = 0; i < length; i++)
-            result[i] = peek(index + i);
+        System.arraycopy(queue, head + index, result, 0, length);
         return result;
     }
 
     public byte[] peekAll() {
-        final byte[] data = new byte[size];
-        peek(data, 0, data.length);
+        final byte[] data = new byte[size()];
+        System.arraycopy(queue, head, data, 0, data.length);
         return data;
     }
 
@@ -453,21 +437,11 @@ public class ByteQueue implements Cloneable {
     public int peek(final byte[] buf, final int pos, final int length) {
         if (length == 0)
             return 0;
-        if (size == 0)
+        if (head == tail)
             throw new ArrayIndexOutOfBoundsException(-1);
 
-        int len = length;
-        if (len > size)
-            len = size;
-
-        int firstCopyLen = queue.length - head;
-        if (len < firstCopyLen)
-            firstCopyLen = len;
-
-        System.arraycopy(queue, head, buf, pos, firstCopyLen);
-        if (firstCopyLen < len)
-            System.arraycopy(queue, 0, buf, pos + firstCopyLen, len - firstCopyLen);
-
+        final int len = Math.min(length, size());
+        System.arraycopy(queue, head, buf, pos, len);
         return len;
     }
 
@@ -476,14 +450,9 @@ public class ByteQueue implements Cloneable {
     }
 
     public int indexOf(final byte b, final int start) {
-        if (start >= size)
-            return -1;
-
-        int index = (head + start) % queue.length;
-        for (int i = start; i < size; i++) {
-            if (queue[index] == b)
-                return i;
-            index = (index + 1) % queue.length;
+        for (int i = head + start; i < tail; i++) {
+            if (queue[i] == b)
+                return i - head;
         }
         return -1;
     }
@@ -496,83 +465,93 @@ public class ByteQueue implements Cloneable {
         if (b == null || b.length == 0)
             throw new IllegalArgumentException("cannot search for empty values");
 
-        int pos = start;
-        while ((pos = indexOf(b[0], pos)) != -1 && pos < size - b.length + 1) {
-            boolean found = true;
-            for (int i = 1; i < b.length; i++) {
-                if (peek(pos + i) != b[i]) {
-                    found = false;
-                    break;
-                }
+        outer: for (int i = head + start; i <= tail - b.length; i++) {
+            for (int j = 0; j < b.length; j++) {
+                if (queue[i + j] != b[j])
+                    continue outer;
             }
-
-            if (found) {
-                return pos;
-            }
-
-            pos++;
+            return i - head;
         }
-
         return -1;
     }
 
     public int size() {
-        return size;
+        return tail - head;
     }
 
     public void clear() {
-        size = 0;
-        head = -1;
-        tail = 0;
+        head = tail = 0;
+        marked = false;
     }
 
-    private int room() {
-        return queue.length - size;
+    /**
+     * @return the backing array. The content is at arrayOffset() for size() bytes. The array must not be modified.
+     */
+    public byte[] array() {
+        return queue;
     }
 
-    private void expand() {
-        final byte[] newb = new byte[queue.length * 2];
+    public int arrayOffset() {
+        return head;
+    }
 
-        if (head == -1) {
-            queue = newb;
-            return;
+    private void checkSize(final int length) {
+        if (size() < length)
+            throw new ArrayIndexOutOfBoundsException(size());
+    }
+
+    private void makeHeadroom(final int length) {
+        if (headroom() < length) {
+            // Move the content to leave room at the front.
+            final int size = size();
+            final byte[] target = new byte[Math.max(queue.length, size + length + 64)];
+            System.arraycopy(queue, head, target, length, size);
+            queue = target;
+            head = length;
+            tail = length + size;
+            shared = false;
         }
+        marked = false;
+    }
 
-        if (tail > head) {
-            System.arraycopy(queue, head, newb, head, tail - head);
-            queue = newb;
+    private void ensureRoom(final int length) {
+        if (!shared && queue.length - tail >= length)
             return;
-        }
 
-        System.arraycopy(queue, head, newb, head + queue.length, queue.length - head);
-        System.arraycopy(queue, 0, newb, 0, tail);
-        head += queue.length;
-        queue = newb;
+        // Move the content to the front of the array, or to a new array if it is shared or too small. Keep any
+        // marked content.
+        final int start = marked ? Math.min(markHead, head) : head;
+        final int used = tail - start;
+        int capacity = queue.length;
+        if (capacity - used < length)
+            capacity = Math.max(capacity * 2, used + length);
+
+        final byte[] target = shared || capacity != queue.length ? new byte[capacity] : queue;
+        System.arraycopy(queue, start, target, 0, used);
+        queue = target;
+        shared = false;
+        head -= start;
+        tail -= start;
+        markHead -= start;
+        markTail -= start;
     }
 
     @Override
     public Object clone() {
-        try {
-            final ByteQueue clone = (ByteQueue) super.clone();
-            // Array is mutable, so make a copy of it too.
-            clone.queue = queue.clone();
-            return clone;
-        } catch (final CloneNotSupportedException e) {
-            // Will never happen because we're Cloneable
-            throw new RuntimeException(e);
-        }
+        // Don't share the array, so that the clone can be written without a copy.
+        return new ByteQueue(peekAll());
     }
 
     @Override
     public String toString() {
-        if (size == 0)
+        if (size() == 0)
             return "[]";
 
         final StringBuilder sb = new StringBuilder();
         sb.append('[');
-        sb.append(Integer.toHexString(peek(0) & 0xff));
-        for (int i = 1; i < size; i++)
-            sb.append(',').append(Integer.toHexString(peek(i) & 0xff));
+        sb.append(Integer.toHexString(queue[head] & 0xff));
+        for (int i = head + 1; i < tail; i++)
+            sb.append(',').append(Integer.toHexString(queue[i] & 0xff));
         sb.append("]");
 
         return sb.toString();
@@ -580,8 +559,8 @@ public class ByteQueue implements Cloneable {
 
     public String toHexString() {
         final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < size; i++)
-            sb.append(StringUtils.leftPad(Integer.toHexString(peek(i) & 0xff), 2, '0'));
+        for (int i = head; i < tail; i++)
+            sb.append(StringUtils.leftPad(Integer.toHexString(queue[i] & 0xff), 2, '0'));
         return sb.toString();
     }
 
@@ -600,18 +579,15 @@ public class ByteQueue implements Cloneable {
             sb.append("]");
         }
 
-        sb.append(", h=").append(head).append(", t=").append(tail).append(", s=").append(size);
+        sb.append(", h=").append(head).append(", t=").append(tail).append(", s=").append(size());
         return sb.toString();
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
         int result = 1;
-        result = prime * result + head;
-        result = prime * result + Arrays.hashCode(queue);
-        result = prime * result + size;
-        result = prime * result + tail;
+        for (int i = head; i < tail; i++)
+            result = 31 * result + queue[i];
         return result;
     }
 
@@ -625,11 +601,11 @@ public class ByteQueue implements Cloneable {
             return false;
         final ByteQueue other = (ByteQueue) obj;
 
-        if (size != other.size)
+        if (size() != other.size())
             return false;
 
-        for (int i = 0; i < size; i++) {
-            if (peek(i) != other.peek(i))
+        for (int i = 0; i < size(); i++) {
+            if (queue[head + i] != other.queue[other.head + i])
                 return false;
         }
 
@@ -0,0 +1,192 @@
+package com.serotonin.bacnet4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.CovSubscriptionManager.Subscription;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.obj.AnalogValueObject;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.util.DiscoveryUtils;
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
+
+public class CovSubscriptionManagerTest {
+    private final TestNetworkMap map = new TestNetworkMap();
+    private LocalDevice d1;
+    private LocalDevice d2;
+    private RemoteDevice rd2;
+    private CovSubscriptionManager manager;
+    private final List<AnalogValueObject> avs = new ArrayList<>();
+    private final List<Encodable> received = new ArrayList<>();
+
+    @Before
+    public void before() throws Exception {
+        d1 = new LocalDevice(1, new DefaultTransport(new TestNetwork(map, 1, 0))).initialize();
+        d2 = new LocalDevice(2, new DefaultTransport(new TestNetwork(map, 2, 0))).initialize();
+        for (int i = 0; i < 10; i++)
+            avs.add(new AnalogValueObject(d2, i, "av" + i, 0, EngineeringUnits.noUnits, false)
+                    .supportCovReporting(0.5F));
+
+        rd2 = d1.getRemoteDeviceBlocking(2);
+        DiscoveryUtils.getExtendedDeviceInformation(d1, rd2);
+
+        manager = d1.getCovSubscriptionManager();
+        manager.setTick(20, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void after() {
+        d1.terminate();
+        d2.terminate();
+    }
+
+    @Test
+    public void batched() throws Exception {
+        manager.setMaxReferencesPerRequest(4);
+
+        final List<Subscription> subscriptions = new ArrayList<>();
+        for (final AnalogValueObject av : avs)
+            subscriptions.add(subscribe(av));
+        awaitTrue(() -> manager.getSubscribedCount() == 10);
+
+        // 10 points in batches of 4.
+        assertEquals(3, manager.getRequestsSent());
+        assertEquals(10, manager.getPointCount());
+        assertEquals(0, manager.getPolledCount());
+        for (final AnalogValueObject av : avs)
+            assertEquals(1, d2.getCovContexts().get(av.getId()).size());
+
+        avs.get(7).writePropertyInternal(PropertyIdentifier.presentValue, new Real(7));
+        awaitValue(new Real(7));
+
+        subscriptions.get(7).cancel();
+        awaitTrue(() -> d2.getCovContexts().get(avs.get(7).getId()).isEmpty());
+        assertEquals(9, manager.getPointCount());
+        assertFalse(subscriptions.get(7).isSubscribed());
+    }
+
+    @Test
+    public void singlesWhenMultipleNotSupported() throws Exception {
+        rd2.getServicesSupported().setSubscribeCovPropertyMultiple(false);
+
+        for (final AnalogValueObject av : avs.subList(0, 3))
+            subscribe(av);
+        awaitTrue(() -> manager.getSubscribedCount() == 3);
+        assertEquals(3, manager.getRequestsSent());
+    }
+
+    @Test
+    public void singlesWhenPolled() throws Exception {
+        rd2.getServicesSupported().setSubscribeCovPropertyMultiple(false);
+        manager.setPollPeriod(50, TimeUnit.MILLISECONDS);
+        final AnalogValueObject noCov = new AnalogValueObject(d2, 10, "noCov", 4, EngineeringUnits.noUnits, false);
+
+        final Subscription subscription = subscribe(noCov);
+        awaitTrue(subscription::isPolled);
+        awaitValue(new Real(4));
+        assertEquals(1, manager.getRequestsSent());
+
+        subscription.cancel();
+        assertEquals(0, manager.getPolledCount());
+        assertEquals(0, manager.getPointCount());
+    }
+
+    @Test
+    public void rateLimited() throws Exception {
+        rd2.getServicesSupported().setSubscribeCovPropertyMultiple(false);
+        manager.setTick(100, TimeUnit.MILLISECONDS);
+        manager.setMaxRequestsPerTick(2);
+
+        for (final AnalogValueObject av : avs)
+            subscribe(av);
+
+        ThreadUtils.sleep(250);
+        assertTrue(manager.getRequestsSent() <= 4);
+        awaitTrue(() -> manager.getSubscribedCount() == 10);
+    }
+
+    @Test
+    public void renewal() throws Exception {
+        manager.setLifetime(2);
+
+        final Subscription subscription = subscribe(avs.get(0));
+        awaitTrue(subscription::isSubscribed);
+        assertEquals(1, manager.getRequestsSent());
+
+        // Renewed between half and three quarters of the lifetime, so before the remote subscription expires.
+        ThreadUtils.sleep(1600);
+        assertEquals(2, manager.getRequestsSent());
+        ThreadUtils.sleep(1600);
+        assertTrue(manager.getRequestsSent() >= 3);
+        assertEquals(1, d2.getCovContexts().get(avs.get(0).getId()).size());
+
+        avs.get(0).writePropertyInternal(PropertyIdentifier.presentValue, new Real(3));
+        awaitValue(new Real(3));
+    }
+
+    @Test
+    public void pollWhenRejected() throws Exception {
+        manager.setPollPeriod(50, TimeUnit.MILLISECONDS);
+        final AnalogValueObject noCov = new AnalogValueObject(d2, 10, "noCov", 4, EngineeringUnits.noUnits, false);
+
+        final Subscription a = subscribe(avs.get(0));
+        final Subscription b = subscribe(noCov);
+        final Subscription c = subscribe(avs.get(1));
+
+        // The batch fails at the second point, which is polled, and the rest are subscribed again.
+        awaitTrue(b::isPolled);
+        awaitTrue(() -> a.isSubscribed() && c.isSubscribed());
+        assertFalse(b.isSubscribed());
+        assertEquals(1, manager.getPolledCount());
+        assertEquals(2, manager.getRequestsSent());
+
+        awaitValue(new Real(4));
+        noCov.writePropertyInternal(PropertyIdentifier.presentValue, new Real(5));
+        awaitValue(new Real(5));
+        assertTrue(manager.getPollsSent() > 0);
+    }
+
+    private Subscription subscribe(final AnalogValueObject av) {
+        return manager.subscribe(rd2, av.getId(), PropertyIdentifier.presentValue, (d, oid, values) -> {
+            for (final PropertyValue pv : values) {
+                if (pv.getPropertyIdentifier().equals(PropertyIdentifier.presentValue)) {
+                    synchronized (received) {
+                        received.add(pv.getValue());
+                    }
+                }
+            }
+        });
+    }
+
+    private void awaitValue(final Encodable value) {
+        awaitTrue(() -> {
+            synchronized (received) {
+                return received.contains(value);
+            }
+        });
+    }
+
+    private static void awaitTrue(final BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            ThreadUtils.sleep(10);
+        }
+    }
+}
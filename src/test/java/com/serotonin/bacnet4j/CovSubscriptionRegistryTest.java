@@ -0,0 +1,98 @@
+package com.serotonin.bacnet4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.CovSubscriptionRegistry.CovConsumer;
+import com.serotonin.bacnet4j.event.DeviceEventAdapter;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.Unsigned32;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+
+public class CovSubscriptionRegistryTest {
+    private final LocalDevice d = new LocalDevice(1, new DefaultTransport(new TestNetwork(new TestNetworkMap(), 1, 0)));
+    private final CovSubscriptionRegistry registry = d.getCovSubscriptionRegistry();
+    private final ObjectIdentifier av0 = new ObjectIdentifier(ObjectType.analogValue, 0);
+    private final ObjectIdentifier av1 = new ObjectIdentifier(ObjectType.analogValue, 1);
+
+    @Test
+    public void route() {
+        final List<String> received = new ArrayList<>();
+        final CovConsumer c1 = consumer(received, "c1");
+        final CovConsumer c2 = consumer(received, "c2");
+        registry.register(2, av0, 7, c1);
+        registry.register(2, av1, 7, c2);
+        assertEquals(2, registry.size());
+
+        final List<ObjectIdentifier> listened = new ArrayList<>();
+        d.getEventHandler().addListener(new DeviceEventAdapter() {
+            @Override
+            public void covNotificationReceived(final UnsignedInteger subscriberProcessIdentifier,
+                    final ObjectIdentifier initiatingDeviceIdentifier,
+                    final ObjectIdentifier monitoredObjectIdentifier, final UnsignedInteger timeRemaining,
+                    final SequenceOf<PropertyValue> listOfValues) {
+                listened.add(monitoredObjectIdentifier);
+            }
+        });
+
+        fire(new UnsignedInteger(7), 2, av0, 1);
+        // The process id class doesn't matter.
+        fire(new Unsigned32(7), 2, av1, 2);
+        // Other devices and process ids aren't routed.
+        fire(new UnsignedInteger(7), 3, av0, 3);
+        fire(new UnsignedInteger(8), 2, av0, 4);
+
+        assertEquals(2, registry.getRoutedCount());
+        assertEquals(2, registry.getUnroutedCount());
+        assertEquals(4, listened.size());
+        final List<String> expected = new ArrayList<>();
+        expected.add("c1 analog-value 0 1.0");
+        expected.add("c2 analog-value 1 2.0");
+        assertEquals(expected, received);
+    }
+
+    @Test
+    public void unregister() {
+        final List<String> received = new ArrayList<>();
+        final CovConsumer c1 = consumer(received, "c1");
+        final CovConsumer c2 = consumer(received, "c2");
+        registry.register(2, av0, 7, c1);
+
+        // Replaces c1.
+        registry.register(2, av0, 7, c2);
+        assertFalse(registry.unregister(2, av0, 7, c1));
+        fire(new UnsignedInteger(7), 2, av0, 1);
+        assertEquals("c2 analog-value 0 1.0", received.get(0));
+
+        assertTrue(registry.unregister(2, av0, 7, c2));
+        assertEquals(0, registry.size());
+        fire(new UnsignedInteger(7), 2, av0, 2);
+        assertEquals(1, received.size());
+    }
+
+    private void fire(final UnsignedInteger processId, final int deviceId, final ObjectIdentifier oid,
+            final float value) {
+        registry.fireCovNotification(processId, new ObjectIdentifier(ObjectType.device, deviceId), oid,
+                new UnsignedInteger(60),
+                new SequenceOf<>(new PropertyValue(PropertyIdentifier.presentValue, new Real(value))));
+    }
+
+    private static CovConsumer consumer(final List<String> received, final String name) {
+        return (processId, deviceId, oid, timeRemaining, listOfValues) -> received
+                .add(name + " " + oid + " " + listOfValues.getBase1(1).getValue());
+    }
+}
@@ -0,0 +1,136 @@
+package com.serotonin.bacnet4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.event.DeviceEventAdapter;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkUtils;
+import com.serotonin.bacnet4j.service.unconfirmed.WhoIsRequest;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
+
+public class IAmResponderTest {
+    private final TestNetworkMap map = new TestNetworkMap();
+    private LocalDevice d1;
+    private LocalDevice d2;
+    private LocalDevice d3;
+    private final AtomicInteger d2IAms = new AtomicInteger();
+    private final AtomicInteger d3IAms = new AtomicInteger();
+    private long whoIsBase;
+    private long broadcastBase;
+
+    @Before
+    public void before() throws Exception {
+        d1 = new LocalDevice(1, new DefaultTransport(new TestNetwork(map, 1, 0))).initialize();
+        d2 = new LocalDevice(2, new DefaultTransport(new TestNetwork(map, 2, 0))).initialize();
+        d3 = new LocalDevice(3, new DefaultTransport(new TestNetwork(map, 3, 0))).initialize();
+
+        // Make sure d1 is known so that each I-Am is reported synchronously.
+        d2.getRemoteDevice(1).get();
+        d3.getRemoteDevice(1).get();
+        d2.getEventHandler().addListener(new IAmCounter(d2IAms));
+        d3.getEventHandler().addListener(new IAmCounter(d3IAms));
+        ThreadUtils.sleep(200);
+        d2IAms.set(0);
+        d3IAms.set(0);
+        whoIsBase = d1.getIAmResponder().getWhoIsReceived();
+        broadcastBase = d1.getIAmResponder().getBroadcastsSent();
+    }
+
+    @After
+    public void after() {
+        d1.terminate();
+        d2.terminate();
+        d3.terminate();
+    }
+
+    @Test
+    public void immediateByDefault() {
+        d2.sendGlobalBroadcast(new WhoIsRequest(1, 1));
+        awaitCount(d2IAms, 1);
+        d3.sendGlobalBroadcast(new WhoIsRequest(1, 1));
+        awaitCount(d2IAms, 2);
+
+        final IAmResponder responder = d1.getIAmResponder();
+        assertEquals(2, responder.getWhoIsReceived() - whoIsBase);
+        assertEquals(2, responder.getBroadcastsSent() - broadcastBase);
+        assertEquals(0, responder.getSuppressed());
+        assertEquals(2, d3IAms.get());
+    }
+
+    @Test
+    public void coalescedBroadcasts() {
+        final IAmResponder responder = d1.getIAmResponder();
+        responder.setWindow(300, TimeUnit.MILLISECONDS);
+
+        // The first is answered immediately, and the rest in one broadcast at the end of the window.
+        responder.whoIsReceived(TestNetworkUtils.toAddress(2));
+        responder.whoIsReceived(TestNetworkUtils.toAddress(3));
+        responder.whoIsReceived(TestNetworkUtils.toAddress(2));
+        responder.whoIsReceived(TestNetworkUtils.toAddress(3));
+        assertEquals(1, responder.getBroadcastsSent() - broadcastBase);
+        awaitCount(d2IAms, 1);
+
+        awaitCount(d2IAms, 2);
+        assertEquals(4, responder.getWhoIsReceived() - whoIsBase);
+        assertEquals(2, responder.getBroadcastsSent() - broadcastBase);
+        assertEquals(2, responder.getSuppressed());
+
+        // Nothing more is sent.
+        ThreadUtils.sleep(400);
+        assertEquals(2, d2IAms.get());
+        assertEquals(2, d3IAms.get());
+
+        // After a quiet window the next Who-Is is answered immediately again.
+        responder.whoIsReceived(TestNetworkUtils.toAddress(2));
+        assertEquals(3, responder.getBroadcastsSent() - broadcastBase);
+    }
+
+    @Test
+    public void unicast() {
+        final IAmResponder responder = d1.getIAmResponder();
+        responder.setWindow(300, TimeUnit.MILLISECONDS);
+        responder.setUnicastLimit(1);
+
+        responder.whoIsReceived(TestNetworkUtils.toAddress(2));
+        responder.whoIsReceived(TestNetworkUtils.toAddress(3));
+        responder.whoIsReceived(TestNetworkUtils.toAddress(3));
+        awaitCount(d3IAms, 1);
+
+        // Both were answered directly.
+        assertEquals(1, d2IAms.get());
+        assertEquals(1, d3IAms.get());
+        assertEquals(2, responder.getUnicastsSent());
+        assertEquals(0, responder.getBroadcastsSent() - broadcastBase);
+        assertEquals(1, responder.getSuppressed());
+    }
+
+    private static void awaitCount(final AtomicInteger count, final int expected) {
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (count.get() < expected && System.currentTimeMillis() < deadline)
+            ThreadUtils.sleep(10);
+        assertEquals(expected, count.get());
+    }
+
+    static class IAmCounter extends DeviceEventAdapter {
+        private final AtomicInteger count;
+
+        IAmCounter(final AtomicInteger count) {
+            this.count = count;
+        }
+
+        @Override
+        public void iAmReceived(final RemoteDevice d) {
+            if (d.getInstanceNumber() == 1)
+                count.incrementAndGet();
+        }
+    }
+}
@@ -25,9 +25,13 @@ import com.serotonin.bacnet4j.exception.BACnetServiceException;
 import com.serotonin.bacnet4j.exception.BACnetTimeoutException;
 import com.serotonin.bacnet4j.npdu.test.TestNetwork;
 import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.obj.BACnetObject;
 import com.serotonin.bacnet4j.obj.DeviceObject;
 import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.enumerated.ErrorCode;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.util.RemoteDeviceFinder.RemoteDeviceFuture;
 
@@ -147,6 +151,61 @@ public class LocalDeviceTest {
         ld.addObject(o);
     }
 
+    @Test
+    public void objectIndexes() throws BACnetServiceException {
+        final BACnetObject av0 = new BACnetObject(d1, ObjectType.analogValue, 0, "av0");
+        final BACnetObject av1 = new BACnetObject(d1, ObjectType.analogValue, 1, "av1");
+        final BACnetObject av3 = new BACnetObject(d1, ObjectType.analogValue, 3, "av3");
+        d1.addObject(av0);
+        d1.addObject(av1);
+        d1.addObject(av3);
+
+        assertTrue(av1 == d1.getObject(new ObjectIdentifier(ObjectType.analogValue, 1)));
+        assertTrue(av3 == d1.getObject("av3"));
+        assertTrue(d1.getDeviceObject() == d1.getObject(new ObjectIdentifier(ObjectType.device, 1)));
+        assertTrue(d1.getDeviceObject() == d1.getObject(new ObjectIdentifier(ObjectType.device,
+                ObjectIdentifier.UNINITIALIZED)));
+        assertEquals(2, d1.getNextInstanceObjectNumber(ObjectType.analogValue));
+        assertEquals(0, d1.getNextInstanceObjectNumber(ObjectType.binaryValue));
+
+        // Duplicates are rejected.
+        try {
+            d1.addObject(new BACnetObject(d1, ObjectType.analogValue, 1, "other"));
+            fail();
+        } catch (final BACnetServiceException e) {
+            assertEquals(ErrorCode.objectIdentifierAlreadyExists, e.getErrorCode());
+        }
+        try {
+            d1.addObject(new BACnetObject(d1, ObjectType.analogValue, 2, "av1"));
+            fail();
+        } catch (final BACnetServiceException e) {
+            assertEquals(ErrorCode.duplicateName, e.getErrorCode());
+        }
+
+        // Renames and identifier changes are followed.
+        av1.writePropertyInternal(PropertyIdentifier.objectName, new CharacterString("renamed"));
+        assertNull(d1.getObject("av1"));
+        assertTrue(av1 == d1.getObject("renamed"));
+
+        av1.writePropertyInternal(PropertyIdentifier.objectIdentifier,
+                new ObjectIdentifier(ObjectType.analogValue, 2));
+        assertNull(d1.getObject(new ObjectIdentifier(ObjectType.analogValue, 1)));
+        assertTrue(av1 == d1.getObject(new ObjectIdentifier(ObjectType.analogValue, 2)));
+        assertEquals(1, d1.getNextInstanceObjectNumber(ObjectType.analogValue));
+
+        // Removal
+        d1.removeObject(new ObjectIdentifier(ObjectType.analogValue, 0));
+        assertNull(d1.getObject("av0"));
+        assertNull(d1.getObject(new ObjectIdentifier(ObjectType.analogValue, 0)));
+        assertEquals(0, d1.getNextInstanceObjectNumber(ObjectType.analogValue));
+
+        // Objects that have not been added are not indexed.
+        final BACnetObject loose = new BACnetObject(d1, ObjectType.analogValue, 3, "loose");
+        loose.writePropertyInternal(PropertyIdentifier.objectName, new CharacterString("looser"));
+        assertNull(d1.getObject("looser"));
+        assertTrue(av3 == d1.getObject(new ObjectIdentifier(ObjectType.analogValue, 3)));
+    }
+
     @SuppressWarnings("unused")
     @Test
     public void getDeviceBlockingTimeout() throws Exception {
@@ -0,0 +1,311 @@
+package com.serotonin.bacnet4j.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.event.DeviceEventHandler.OverflowPolicy;
+import com.serotonin.bacnet4j.type.constructed.Choice;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.MessagePriority;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+
+public class DeviceEventHandlerTest {
+    private final ObjectIdentifier deviceId = new ObjectIdentifier(ObjectType.device, 1);
+    private final DeviceEventHandler handler = new DeviceEventHandler();
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void synchronousByDefault() {
+        final Listener l = new Listener();
+        handler.addListener(l);
+
+        fireText("a");
+        assertEquals(Arrays.asList("a"), l.messages);
+        assertSame(Thread.currentThread(), l.thread);
+        assertEquals(0, handler.getDeliveredEventCount());
+    }
+
+    @Test
+    public void asynchronous() throws Exception {
+        handler.setExecutor(executor);
+
+        final Listener slow = new Listener();
+        slow.block();
+        final Listener fast = new Listener();
+        handler.addListener(slow);
+        handler.addListener(fast);
+
+        for (int i = 0; i < 10; i++)
+            fireText(Integer.toString(i));
+
+        // The slow listener doesn't hold up the caller or the other listener.
+        fast.await(10);
+        assertNotSame(Thread.currentThread(), fast.thread);
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), fast.messages);
+        assertEquals(1, slow.messages.size());
+
+        slow.release();
+        slow.await(10);
+        assertEquals(fast.messages, slow.messages);
+        assertEquals(0, handler.getQueuedEventCount());
+        assertEquals(20, handler.getDeliveredEventCount());
+        assertEquals(0, handler.getDroppedEventCount());
+        assertTrue(handler.getMaxLag(TimeUnit.MICROSECONDS) > 0);
+        assertTrue(handler.getAverageLag(TimeUnit.NANOSECONDS) <= handler.getMaxLag(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void dropOldest() throws Exception {
+        handler.setExecutor(executor);
+        handler.setQueueCapacity(2);
+
+        final Listener l = new Listener();
+        l.block();
+        handler.addListener(l);
+
+        fireText("1");
+        l.awaitStarted();
+        for (int i = 2; i <= 5; i++)
+            fireText(Integer.toString(i));
+        assertEquals(2, handler.getQueuedEventCount());
+        assertEquals(2, handler.getDroppedEventCount());
+
+        l.release();
+        l.await(3);
+        assertEquals(Arrays.asList("1", "4", "5"), l.messages);
+    }
+
+    @Test
+    public void coalesceCov() throws Exception {
+        handler.setExecutor(executor);
+        handler.setQueueCapacity(2);
+        handler.setOverflowPolicy(OverflowPolicy.COALESCE_COV);
+
+        final Listener l = new Listener();
+        l.block();
+        handler.addListener(l);
+
+        final ObjectIdentifier av0 = new ObjectIdentifier(ObjectType.analogValue, 0);
+        final ObjectIdentifier av1 = new ObjectIdentifier(ObjectType.analogValue, 1);
+        fireCov(av0, 1);
+        l.awaitStarted();
+        fireCov(av0, 2);
+        fireCov(av1, 3);
+        // Replace the queued notifications of the same object.
+        fireCov(av0, 4);
+        fireCov(av1, 5);
+        fireCov(av0, 6);
+        assertEquals(3, handler.getCoalescedEventCount());
+        assertEquals(0, handler.getDroppedEventCount());
+
+        // A different object, with nothing to replace, drops the oldest.
+        final ObjectIdentifier av2 = new ObjectIdentifier(ObjectType.analogValue, 2);
+        fireCov(av2, 7);
+        assertEquals(1, handler.getDroppedEventCount());
+
+        l.release();
+        l.await(3);
+        assertEquals(Arrays.asList("analog-value 0=1.0", "analog-value 1=5.0", "analog-value 2=7.0"), l.messages);
+    }
+
+    @Test
+    public void block() throws Exception {
+        handler.setExecutor(executor);
+        handler.setQueueCapacity(1);
+        handler.setOverflowPolicy(OverflowPolicy.BLOCK);
+
+        final Listener l = new Listener();
+        l.block();
+        handler.addListener(l);
+
+        fireText("1");
+        l.awaitStarted();
+        fireText("2");
+
+        final Thread producer = new Thread(() -> fireText("3"));
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        l.release();
+        producer.join(5000);
+        l.await(3);
+        assertEquals(Arrays.asList("1", "2", "3"), l.messages);
+        assertEquals(0, handler.getDroppedEventCount());
+    }
+
+    @Test
+    public void blockReentrant() throws Exception {
+        handler.setExecutor(executor);
+        handler.setQueueCapacity(1);
+        handler.setOverflowPolicy(OverflowPolicy.BLOCK);
+
+        final List<String> messages = new ArrayList<>();
+        handler.addListener(new DeviceEventAdapter() {
+            @Override
+            public void textMessageReceived(final ObjectIdentifier textMessageSourceDevice, final Choice messageClass,
+                    final MessagePriority messagePriority, final CharacterString message) {
+                synchronized (messages) {
+                    messages.add(message.getValue());
+                }
+                // Firing events from the delivery task would wait forever for the full queue, so the oldest are
+                // dropped instead.
+                if (message.getValue().equals("1")) {
+                    for (int i = 2; i <= 4; i++)
+                        fireText(Integer.toString(i));
+                }
+            }
+        });
+
+        fireText("1");
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (handler.getDeliveredEventCount() < 2 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        synchronized (messages) {
+            assertEquals(Arrays.asList("1", "4"), messages);
+        }
+        assertEquals(2, handler.getDroppedEventCount());
+    }
+
+    @Test
+    public void listenerError() throws Exception {
+        handler.setExecutor(executor);
+
+        final Listener l = new Listener() {
+            @Override
+            public void textMessageReceived(final ObjectIdentifier textMessageSourceDevice,
+                    final Choice messageClass, final MessagePriority messagePriority, final CharacterString message) {
+                super.textMessageReceived(textMessageSourceDevice, messageClass, messagePriority, message);
+                if (message.getValue().equals("1"))
+                    throw new Error("Listener failure");
+            }
+        };
+        handler.addListener(l);
+
+        // The error escapes the delivery task, but the listener still gets later events.
+        fireText("1");
+        l.await(1);
+        Thread.sleep(50);
+        fireText("2");
+        l.await(2);
+        assertEquals(Arrays.asList("1", "2"), l.messages);
+    }
+
+    @Test
+    public void removeListener() throws Exception {
+        handler.setExecutor(executor);
+
+        final Listener l = new Listener();
+        l.block();
+        handler.addListener(l);
+
+        fireText("1");
+        l.awaitStarted();
+        fireText("2");
+        assertEquals(1, handler.getQueuedEventCount());
+
+        handler.removeListener(l);
+        assertEquals(0, handler.getQueuedEventCount());
+        l.release();
+        Thread.sleep(50);
+        assertEquals(Arrays.asList("1"), l.messages);
+    }
+
+    private void fireText(final String message) {
+        handler.fireTextMessage(deviceId, (Choice) null, MessagePriority.normal, new CharacterString(message));
+    }
+
+    private void fireCov(final ObjectIdentifier oid, final float value) {
+        handler.fireCovNotification(new UnsignedInteger(1), deviceId, oid, new UnsignedInteger(60),
+                new SequenceOf<>(new PropertyValue(PropertyIdentifier.presentValue, new Real(value))));
+    }
+
+    static class Listener extends DeviceEventAdapter {
+        final List<String> messages = new ArrayList<>();
+        volatile Thread thread;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch blocker;
+
+        void block() {
+            blocker = new CountDownLatch(1);
+        }
+
+        void release() {
+            blocker.countDown();
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+
+        void await(final int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (size() < count && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            assertEquals(count, size());
+        }
+
+        private synchronized int size() {
+            return messages.size();
+        }
+
+        private void received(final String message) {
+            thread = Thread.currentThread();
+            synchronized (this) {
+                messages.add(message);
+            }
+            started.countDown();
+            final CountDownLatch blocker = this.blocker;
+            if (blocker != null) {
+                try {
+                    blocker.await();
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        @Override
+        public void textMessageReceived(final ObjectIdentifier textMessageSourceDevice, final Choice messageClass,
+                final MessagePriority messagePriority, final CharacterString message) {
+            received(message.getValue());
+        }
+
+        @Override
+        public void covNotificationReceived(final UnsignedInteger subscriberProcessIdentifier,
+                final ObjectIdentifier initiatingDeviceIdentifier, final ObjectIdentifier monitoredObjectIdentifier,
+                final UnsignedInteger timeRemaining, final SequenceOf<PropertyValue> listOfValues) {
+            received(monitoredObjectIdentifier + "=" + listOfValues.getBase1(1).getValue());
+        }
+    }
+}
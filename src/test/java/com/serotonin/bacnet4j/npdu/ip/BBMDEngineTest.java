@@ -0,0 +1,94 @@
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.npdu.ip.IpNetwork.BDTEntry;
+
+public class BBMDEngineTest {
+    private final BBMDEngine bbmd = new BBMDEngine(new byte[] { (byte) 192, (byte) 168, 1, 10 },
+            new byte[] { (byte) 255, (byte) 255, (byte) 255, 0 });
+
+    @Test
+    public void broadcastDistributionTable() throws UnknownHostException {
+        assertFalse(bbmd.isForwardToLocalBroadcast(new byte[] { 10, 0, 0, 1, (byte) 0xBA, (byte) 0xC0 }));
+
+        bbmd.setBroadcastDistributionTable(Arrays.asList( //
+                entry(192, 168, 1, 10, 255), // This BBMD
+                entry(192, 168, 2, 10, 255), // Another BBMD, send directly
+                entry(192, 168, 3, 10, 0))); // Another BBMD, directed broadcast
+
+        assertEquals(3, bbmd.getBroadcastDistributionTable().size());
+        assertArrayEquals(new InetSocketAddress[] { new InetSocketAddress("192.168.2.10", 0xBAC0),
+                new InetSocketAddress("192.168.3.255", 0xBAC0) }, bbmd.getBDTTargets());
+        assertArrayEquals(bbmd.getBDTTargets(), bbmd.getBroadcastTargets());
+
+        // Forwards from other subnets are broadcast locally, but not those from the local subnet.
+        assertTrue(bbmd.isForwardToLocalBroadcast(new byte[] { (byte) 192, (byte) 168, 2, 10, (byte) 0xBA, 0 }));
+        assertFalse(bbmd.isForwardToLocalBroadcast(new byte[] { (byte) 192, (byte) 168, 1, 99, (byte) 0xBA, 0 }));
+
+        // No local broadcast when this BBMD's mask is not all 1s.
+        bbmd.setBroadcastDistributionTable(Arrays.asList(entry(192, 168, 1, 10, 0), entry(192, 168, 2, 10, 255)));
+        assertFalse(bbmd.isForwardToLocalBroadcast(new byte[] { (byte) 192, (byte) 168, 2, 10, (byte) 0xBA, 0 }));
+        assertEquals(1, bbmd.getBDTTargets().length);
+    }
+
+    @Test
+    public void foreignDeviceTable() throws UnknownHostException {
+        bbmd.setBroadcastDistributionTable(Arrays.asList(entry(192, 168, 1, 10, 255), entry(192, 168, 2, 10, 255)));
+
+        final InetSocketAddress fd1 = new InetSocketAddress("10.0.0.1", 0xBAC0);
+        final InetSocketAddress fd2 = new InetSocketAddress("10.0.0.2", 0xBAC0);
+        final InetSocketAddress fd3 = new InetSocketAddress("10.0.0.3", 0xBAC0);
+
+        bbmd.registerForeignDevice(fd1, 60, 0);
+        bbmd.registerForeignDevice(fd2, 30, 0);
+        bbmd.registerForeignDevice(fd3, 60, 0);
+        assertEquals(3, bbmd.getForeignDeviceCount());
+        assertEquals(3, bbmd.getFDTTargets().length);
+        assertEquals(4, bbmd.getBroadcastTargets().length);
+        assertEquals(new InetSocketAddress("192.168.2.10", 0xBAC0), bbmd.getBroadcastTargets()[0]);
+
+        // Renew fd2 with a longer time to live.
+        bbmd.registerForeignDevice(fd2, 120, 10000);
+        assertEquals(3, bbmd.getForeignDeviceCount());
+        assertEquals(120, bbmd.getForeignDevice(fd2).timeToLive);
+
+        // The grace period is 30s, so fd1 and fd3 expire after 90s.
+        bbmd.expire(90000);
+        assertEquals(3, bbmd.getForeignDeviceCount());
+        bbmd.expire(90001);
+        assertEquals(1, bbmd.getForeignDeviceCount());
+        assertNotNull(bbmd.getForeignDevice(fd2));
+        assertArrayEquals(new InetSocketAddress[] { fd2 }, bbmd.getFDTTargets());
+        assertEquals(2, bbmd.getBroadcastTargets().length);
+
+        // Delete
+        assertFalse(bbmd.deleteForeignDevice(new byte[] { 10, 0, 0, 1 }, 0xBAC0));
+        assertTrue(bbmd.deleteForeignDevice(new byte[] { 10, 0, 0, 2 }, 0xBAC0));
+        assertNull(bbmd.getForeignDevice(fd2));
+        assertEquals(0, bbmd.getFDTTargets().length);
+
+        // Nothing left to expire.
+        bbmd.expire(Long.MAX_VALUE);
+        assertEquals(0, bbmd.getForeignDeviceCount());
+    }
+
+    private static BDTEntry entry(final int a, final int b, final int c, final int d, final int mask) {
+        final BDTEntry e = new BDTEntry();
+        e.address = new byte[] { (byte) a, (byte) b, (byte) c, (byte) d };
+        e.port = 0xBAC0;
+        e.distributionMask = new byte[] { (byte) 255, (byte) 255, (byte) 255, (byte) mask };
+        return e;
+    }
+}
@@ -0,0 +1,160 @@
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+
+public class InetAddrCacheTest {
+    private MutableClock clock;
+
+    @Before
+    public void before() {
+        clock = new MutableClock();
+        InetAddrCache.setClock(clock);
+        InetAddrCache.clear();
+    }
+
+    @After
+    public void after() {
+        InetAddrCache.setClock(Clock.systemUTC());
+        InetAddrCache.setMaxSize(InetAddrCache.DEFAULT_MAX_SIZE);
+        InetAddrCache.setTimeToLive(InetAddrCache.DEFAULT_TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+        InetAddrCache.clear();
+    }
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        final InetSocketAddress a1 = InetAddrCache.get(new byte[] { (byte) 192, (byte) 168, 0, 1 }, 0xBAC0);
+        assertEquals(new InetSocketAddress(InetAddress.getByName("192.168.0.1"), 0xBAC0), a1);
+        assertEquals(0, InetAddrCache.getHits());
+        assertEquals(1, InetAddrCache.getMisses());
+
+        // All of the lookup paths share entries.
+        assertSame(a1, InetAddrCache.get(InetAddress.getByName("192.168.0.1"), 0xBAC0));
+        assertSame(a1, InetAddrCache.get("192.168.0.1", 0xBAC0));
+        assertSame(a1, IpNetworkUtils.getInetSocketAddress(IpNetworkUtils.toOctetString("192.168.0.1", 0xBAC0)));
+        assertEquals(3, InetAddrCache.getHits());
+        assertEquals(1, InetAddrCache.getMisses());
+
+        // Different port is a different entry.
+        assertNotSame(a1, InetAddrCache.get(new byte[] { (byte) 192, (byte) 168, 0, 1 }, 0xBAC1));
+        assertEquals(2, InetAddrCache.size());
+    }
+
+    @Test
+    public void ipv6() throws Exception {
+        final byte[] ip = InetAddress.getByName("fe80::1").getAddress();
+        final InetSocketAddress a1 = InetAddrCache.get(ip, 47808);
+        assertSame(a1, InetAddrCache.get(ip.clone(), 47808));
+        assertNotSame(a1, InetAddrCache.get(ip.clone(), 47809));
+        assertEquals(1, InetAddrCache.getHits());
+        assertEquals(2, InetAddrCache.size());
+
+        final OctetString mac = new OctetString(new byte[] { (byte) 0xfe, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0, 0, 0, 1, (byte) 0xBA, (byte) 0xC0 });
+        assertSame(a1, com.serotonin.bacnet4j.npdu.ipv6.Ipv6NetworkUtils.getInetSocketAddress(mac));
+
+        // Reusing the array afterwards doesn't change the cached key.
+        final byte[] buffer = InetAddress.getByName("fe80::2").getAddress();
+        final InetSocketAddress a2 = InetAddrCache.get(buffer, 47808);
+        buffer[15] = 3;
+        assertEquals(new InetSocketAddress(InetAddress.getByName("fe80::3"), 47808), InetAddrCache.get(buffer, 47808));
+        assertSame(a2, InetAddrCache.get(InetAddress.getByName("fe80::2").getAddress(), 47808));
+    }
+
+    @Test
+    public void timeToLive() {
+        InetAddrCache.setTimeToLive(10, TimeUnit.SECONDS);
+
+        final InetSocketAddress a1 = InetAddrCache.get(new byte[] { 10, 0, 0, 1 }, 1);
+        clock.add(9000);
+        // Access refreshes the entry.
+        assertSame(a1, InetAddrCache.get(new byte[] { 10, 0, 0, 1 }, 1));
+        clock.add(9000);
+        assertSame(a1, InetAddrCache.get(new byte[] { 10, 0, 0, 1 }, 1));
+
+        clock.add(10001);
+        final InetSocketAddress a2 = InetAddrCache.get(new byte[] { 10, 0, 0, 1 }, 1);
+        assertNotSame(a1, a2);
+        assertEquals(a1, a2);
+        assertEquals(2, InetAddrCache.getHits());
+        assertEquals(2, InetAddrCache.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedEviction() {
+        InetAddrCache.setMaxSize(100);
+
+        for (int i = 0; i < 100; i++) {
+            InetAddrCache.get(new byte[] { 10, 0, 0, (byte) i }, 47808);
+            clock.add(1);
+        }
+        assertEquals(100, InetAddrCache.size());
+
+        // Use the first entry so that it is the most recent.
+        final InetSocketAddress first = InetAddrCache.get(new byte[] { 10, 0, 0, 0 }, 47808);
+        clock.add(1);
+
+        // Overflow the cache.
+        InetAddrCache.get(new byte[] { 10, 0, 1, 0 }, 47808);
+        assertTrue(InetAddrCache.size() <= 100);
+        assertEquals(101 - InetAddrCache.size(), InetAddrCache.getEvictions());
+
+        // The first entry survived, the second did not.
+        final long misses = InetAddrCache.getMisses();
+        assertSame(first, InetAddrCache.get(new byte[] { 10, 0, 0, 0 }, 47808));
+        assertEquals(misses, InetAddrCache.getMisses());
+        InetAddrCache.get(new byte[] { 10, 0, 0, 1 }, 47808);
+        assertEquals(misses + 1, InetAddrCache.getMisses());
+    }
+
+    @Test
+    public void shrinkMaxSize() {
+        for (int i = 0; i < 50; i++)
+            InetAddrCache.get(new byte[] { 10, 0, 0, (byte) i }, 47808);
+        InetAddrCache.setMaxSize(10);
+        assertTrue(InetAddrCache.size() <= 10);
+    }
+
+    static class MutableClock extends Clock {
+        private long millis = 1000000;
+
+        void add(final long ms) {
+            millis += ms;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
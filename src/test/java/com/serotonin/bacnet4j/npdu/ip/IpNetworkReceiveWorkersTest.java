@@ -0,0 +1,126 @@
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.event.DeviceEventAdapter;
+import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyAck;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedTextMessageRequest;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.constructed.Choice;
+import com.serotonin.bacnet4j.type.enumerated.MessagePriority;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
+
+public class IpNetworkReceiveWorkersTest {
+    private final List<LocalDevice> devices = new ArrayList<>();
+
+    @Before
+    public void before() {
+        // On OSX 127.x.x.x are not localhost addresses
+        boolean canRun;
+        try (DatagramSocket socket = new DatagramSocket(new InetSocketAddress("127.0.5.1", 47808))) {
+            canRun = true;
+        } catch (@SuppressWarnings("unused") final SocketException e) {
+            canRun = false;
+        }
+        Assume.assumeTrue(canRun);
+    }
+
+    @After
+    public void after() {
+        for (final LocalDevice d : devices)
+            d.terminate();
+    }
+
+    @Test
+    public void classic() throws Exception {
+        test(false);
+    }
+
+    @Test
+    public void nio() throws Exception {
+        test(true);
+    }
+
+    private void test(final boolean nio) throws Exception {
+        final LocalDevice receiver = createLocalDevice(1, nio, 4);
+        final LocalDevice sender1 = createLocalDevice(2, nio, 0);
+        final LocalDevice sender2 = createLocalDevice(3, nio, 0);
+        assertEquals(4, ((IpNetwork) receiver.getNetwork()).getReceiveWorkerCount());
+
+        // Confirmed requests work as usual.
+        final ReadPropertyAck ack = sender1.send(address(1),
+                new ReadPropertyRequest(new ObjectIdentifier(ObjectType.device, 1), PropertyIdentifier.objectName))
+                .get();
+        assertEquals(receiver.getDeviceObject().getObjectName(), ((CharacterString) ack.getValue()).getValue());
+
+        // Messages from each sender are handled in the order sent.
+        final Map<Integer, List<Integer>> received = new ConcurrentHashMap<>();
+        receiver.getEventHandler().addListener(new DeviceEventAdapter() {
+            @Override
+            public void textMessageReceived(final ObjectIdentifier textMessageSourceDevice, final Choice messageClass,
+                    final MessagePriority messagePriority, final CharacterString message) {
+                received.computeIfAbsent(textMessageSourceDevice.getInstanceNumber(), k -> new ArrayList<>())
+                        .add(Integer.parseInt(message.getValue()));
+            }
+        });
+
+        final int count = 100;
+        for (int i = 0; i < count; i++) {
+            sender1.send(address(1), new UnconfirmedTextMessageRequest(sender1.getId(), MessagePriority.normal,
+                    new CharacterString(Integer.toString(i))));
+            sender2.send(address(1), new UnconfirmedTextMessageRequest(sender2.getId(), MessagePriority.normal,
+                    new CharacterString(Integer.toString(i))));
+        }
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (size(received, 2) + size(received, 3) < count * 2 && System.currentTimeMillis() < deadline)
+            ThreadUtils.sleep(10);
+
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            expected.add(i);
+        assertEquals(expected, received.get(2));
+        assertEquals(expected, received.get(3));
+    }
+
+    private static int size(final Map<Integer, List<Integer>> received, final int id) {
+        final List<Integer> list = received.get(id);
+        return list == null ? 0 : list.size();
+    }
+
+    private static Address address(final int host) {
+        return IpNetworkUtils.toAddress("127.0.5." + host, IpNetwork.DEFAULT_PORT);
+    }
+
+    private LocalDevice createLocalDevice(final int host, final boolean nio, final int receiveWorkers)
+            throws Exception {
+        final IpNetwork network = new IpNetworkBuilder().withLocalBindAddress("127.0.5." + host) //
+                .withSubnet("127.0.5.0", 24) //
+                .withNio(nio) //
+                .withReceiveWorkers(receiveWorkers) //
+                .build();
+        final LocalDevice d = new LocalDevice(host, new DefaultTransport(network)).initialize();
+        devices.add(d);
+        return d;
+    }
+}
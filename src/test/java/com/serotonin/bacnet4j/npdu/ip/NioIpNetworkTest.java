@@ -0,0 +1,134 @@
+package com.serotonin.bacnet4j.npdu.ip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.event.DeviceEventAdapter;
+import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyAck;
+import com.serotonin.bacnet4j.service.confirmed.ReadPropertyRequest;
+import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedTextMessageRequest;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.type.constructed.Choice;
+import com.serotonin.bacnet4j.type.enumerated.MessagePriority;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
+
+public class NioIpNetworkTest {
+    private LocalDevice nio1;
+    private LocalDevice nio2;
+    private LocalDevice classic;
+
+    @Before
+    public void before() throws Exception {
+        // On OSX 127.x.x.x are not localhost addresses
+        boolean canRun;
+        try (DatagramSocket socket = new DatagramSocket(new InetSocketAddress("127.0.4.1", 47808))) {
+            canRun = true;
+        } catch (@SuppressWarnings("unused") final SocketException e) {
+            canRun = false;
+        }
+        Assume.assumeTrue(canRun);
+
+        nio1 = createLocalDevice(1, true);
+        nio2 = createLocalDevice(2, true);
+        classic = createLocalDevice(3, false);
+    }
+
+    @After
+    public void after() {
+        if (nio1 != null) {
+            nio1.terminate();
+            nio2.terminate();
+            classic.terminate();
+        }
+    }
+
+    @Test
+    public void requestResponse() throws Exception {
+        assertTrue(nio1.getNetwork() instanceof NioIpNetwork);
+
+        // NIO to NIO
+        ReadPropertyAck ack = nio1.send(address(2), new ReadPropertyRequest(
+                new ObjectIdentifier(ObjectType.device, 2), PropertyIdentifier.objectName)).get();
+        assertEquals(nio2.getDeviceObject().getObjectName(), ((CharacterString) ack.getValue()).getValue());
+
+        // Classic to NIO
+        ack = classic.send(address(1), new ReadPropertyRequest(new ObjectIdentifier(ObjectType.device, 1),
+                PropertyIdentifier.objectName)).get();
+        assertEquals(nio1.getDeviceObject().getObjectName(), ((CharacterString) ack.getValue()).getValue());
+
+        // NIO to classic
+        ack = nio2.send(address(3), new ReadPropertyRequest(new ObjectIdentifier(ObjectType.device, 3),
+                PropertyIdentifier.objectName)).get();
+        assertEquals(classic.getDeviceObject().getObjectName(), ((CharacterString) ack.getValue()).getValue());
+
+        assertTrue(nio1.getNetwork().getBytesOut() > 0);
+        assertTrue(nio1.getNetwork().getBytesIn() > 0);
+    }
+
+    @Test
+    public void burst() throws Exception {
+        final AtomicInteger messages = new AtomicInteger();
+        nio1.getEventHandler().addListener(new DeviceEventAdapter() {
+            @Override
+            public void textMessageReceived(final ObjectIdentifier textMessageSourceDevice, final Choice messageClass,
+                    final MessagePriority messagePriority, final CharacterString message) {
+                messages.incrementAndGet();
+            }
+        });
+
+        // More than the receive batch size. The messages differ so that none are coalesced by the transport.
+        final int count = 100;
+        for (int i = 0; i < count; i++)
+            classic.send(address(1), new UnconfirmedTextMessageRequest(classic.getId(), MessagePriority.normal,
+                    new CharacterString(Integer.toString(i))));
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (messages.get() < count && System.currentTimeMillis() < deadline)
+            ThreadUtils.sleep(10);
+        assertEquals(count, messages.get());
+    }
+
+    @Test
+    public void socketAdaptor() {
+        final NioIpNetwork network = (NioIpNetwork) nio1.getNetwork();
+        assertTrue(network.getChannel().isOpen());
+        assertEquals(network.getChannel().socket(), network.getSocket());
+        assertEquals(network.getLocalBindAddress().getPort(), network.getSocket().getLocalPort());
+    }
+
+    @Test
+    public void rebindAfterTerminate() throws Exception {
+        // The port is released as soon as the device is terminated.
+        nio1.terminate();
+        nio1 = createLocalDevice(1, true);
+    }
+
+    private static Address address(final int host) {
+        return IpNetworkUtils.toAddress("127.0.4." + host, IpNetwork.DEFAULT_PORT);
+    }
+
+    private static LocalDevice createLocalDevice(final int host, final boolean nio) throws Exception {
+        final IpNetwork network = new IpNetworkBuilder().withLocalBindAddress("127.0.4." + host) //
+                .withSubnet("127.0.4.0", 24) //
+                .withNio(nio) //
+                .withReceiveBatchSize(8) //
+                .build();
+        return new LocalDevice(host, new DefaultTransport(network)).initialize();
+    }
+}
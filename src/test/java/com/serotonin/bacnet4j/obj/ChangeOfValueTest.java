@@ -3,6 +3,8 @@ package com.serotonin.bacnet4j.obj;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -110,6 +112,94 @@ public class ChangeOfValueTest extends AbstractTest {
                 .get();
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void fanOut() throws Exception {
+        final AnalogValueObject av = new AnalogValueObject(d1, 0, "av0", 10, EngineeringUnits.amperes, false);
+        av.supportCovReporting(4);
+
+        final CovNotifListener listener = new CovNotifListener();
+        d2.getEventHandler().addListener(listener);
+
+        // Several subscriptions from the same device, both confirmed and unconfirmed.
+        for (int i = 1; i <= 6; i++) {
+            d2.send(rd1, new SubscribeCOVRequest(new UnsignedInteger(i), av.getId(), Boolean.valueOf(i % 2 == 0),
+                    new UnsignedInteger(100))).get();
+        }
+        Thread.sleep(100);
+        listener.notifs.clear();
+
+        // A change is sent to every subscriber with its own process id.
+        av.writePropertyInternal(PropertyIdentifier.presentValue, new Real(20));
+        Thread.sleep(100);
+        assertEquals(6, listener.notifs.size());
+        final SequenceOf<PropertyValue> expected = new SequenceOf<>( //
+                new PropertyValue(PropertyIdentifier.presentValue, new Real(20)), //
+                new PropertyValue(PropertyIdentifier.statusFlags, new StatusFlags(false, false, false, false)));
+        long processIds = 0;
+        for (final Map<String, Object> notif : listener.notifs) {
+            processIds |= 1 << ((UnsignedInteger) notif.get("subscriberProcessIdentifier")).intValue();
+            assertEquals(av.getId(), notif.get("monitoredObjectIdentifier"));
+            assertEquals(new UnsignedInteger(100), notif.get("timeRemaining"));
+            assertEquals(expected, notif.get("listOfValues"));
+        }
+        assertEquals(0b1111110, processIds);
+        listener.notifs.clear();
+
+        // Notifications of consecutive changes arrive in order.
+        av.writePropertyInternal(PropertyIdentifier.presentValue, new Real(30));
+        av.writePropertyInternal(PropertyIdentifier.presentValue, new Real(40));
+        Thread.sleep(100);
+        assertEquals(12, listener.notifs.size());
+        final Map<UnsignedInteger, Real> lastValues = new HashMap<>();
+        for (final Map<String, Object> notif : listener.notifs) {
+            final SequenceOf<PropertyValue> values = (SequenceOf<PropertyValue>) notif.get("listOfValues");
+            final Real value = (Real) values.getBase1(1).getValue();
+            final Real last = lastValues.put((UnsignedInteger) notif.get("subscriberProcessIdentifier"), value);
+            assertEquals(last == null ? new Real(30) : new Real(40), value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void concurrentWriters() throws Exception {
+        final AnalogValueObject av = new AnalogValueObject(d1, 0, "av0", 0, EngineeringUnits.amperes, false);
+        av.supportCovReporting(0);
+
+        final CovNotifListener listener = new CovNotifListener();
+        d2.getEventHandler().addListener(listener);
+        d2.send(rd1, new SubscribeCOVRequest(new UnsignedInteger(1), av.getId(), Boolean.FALSE,
+                new UnsignedInteger(100))).get();
+
+        final int threads = 4;
+        final int writes = 200;
+        final List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            writers.add(new Thread(() -> {
+                for (int i = 1; i <= writes; i++)
+                    av.writePropertyInternal(PropertyIdentifier.presentValue, new Real(i * threads + offset));
+            }));
+        }
+        for (final Thread writer : writers)
+            writer.start();
+        for (final Thread writer : writers)
+            writer.join();
+
+        // Wait until the notifications stop arriving.
+        final long deadline = System.currentTimeMillis() + 5000;
+        int count = -1;
+        while (count != listener.notifs.size() && System.currentTimeMillis() < deadline) {
+            count = listener.notifs.size();
+            Thread.sleep(200);
+        }
+
+        // Whichever write came last, the last notification carries the value that the object was left with.
+        final Map<String, Object> last = listener.notifs.get(listener.notifs.size() - 1);
+        final SequenceOf<PropertyValue> values = (SequenceOf<PropertyValue>) last.get("listOfValues");
+        assertEquals(av.get(PropertyIdentifier.presentValue), values.getBase1(1).getValue());
+    }
+
     @Test
     public void objectCov() throws Exception {
         final AnalogValueObject av = new AnalogValueObject(d1, 0, "av0", 10, EngineeringUnits.amperes, false);
@@ -0,0 +1,121 @@
+package com.serotonin.bacnet4j.obj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.npdu.test.TestNetwork;
+import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
+import com.serotonin.bacnet4j.transport.DefaultTransport;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.Real;
+
+public class CompactPropertyMapTest {
+    private static final PropertyIdentifier PROPRIETARY = PropertyIdentifier.forId(5557);
+
+    @Test
+    public void putGetRemove() {
+        final CompactPropertyMap map = new CompactPropertyMap(ObjectType.analogValue);
+        assertTrue(map.isEmpty());
+        assertNull(map.get(PropertyIdentifier.presentValue));
+
+        assertNull(map.put(PropertyIdentifier.presentValue, new Real(1)));
+        assertEquals(new Real(1), map.put(PropertyIdentifier.presentValue, new Real(2)));
+        assertEquals(new Real(2), map.get(PropertyIdentifier.presentValue));
+        assertTrue(map.containsKey(PropertyIdentifier.presentValue));
+        assertFalse(map.containsKey(PropertyIdentifier.description));
+        assertEquals(1, map.size());
+
+        // A property not defined for the type goes to the overflow.
+        assertNull(map.put(PROPRIETARY, new CharacterString("p")));
+        assertEquals(new CharacterString("p"), map.get(PROPRIETARY));
+        assertEquals(2, map.size());
+
+        assertEquals(new Real(2), map.remove(PropertyIdentifier.presentValue));
+        assertNull(map.remove(PropertyIdentifier.presentValue));
+        assertEquals(new CharacterString("p"), map.remove(PROPRIETARY));
+        assertTrue(map.isEmpty());
+
+        assertNull(map.get("presentValue"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValue() {
+        new CompactPropertyMap(ObjectType.analogValue).put(PropertyIdentifier.presentValue, null);
+    }
+
+    @Test
+    public void sameAsHashMap() {
+        final CompactPropertyMap map = new CompactPropertyMap(ObjectType.analogValue);
+        final Map<PropertyIdentifier, Encodable> expected = new HashMap<>();
+        for (final Map<PropertyIdentifier, Encodable> m : new Map[] { map, expected }) {
+            m.put(PropertyIdentifier.objectName, new CharacterString("av"));
+            m.put(PropertyIdentifier.presentValue, new Real(3));
+            m.put(PropertyIdentifier.units, EngineeringUnits.amperes);
+            m.put(PROPRIETARY, new Real(4));
+        }
+
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.keySet(), map.keySet());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        final CompactPropertyMap map = new CompactPropertyMap(ObjectType.analogValue);
+        map.put(PropertyIdentifier.presentValue, new Real(1));
+        map.put(PropertyIdentifier.description, new CharacterString("d"));
+        map.put(PROPRIETARY, new Real(2));
+
+        final List<PropertyIdentifier> seen = new ArrayList<>();
+        final Iterator<PropertyIdentifier> iter = map.keySet().iterator();
+        while (iter.hasNext()) {
+            final PropertyIdentifier pid = iter.next();
+            seen.add(pid);
+            if (!pid.equals(PropertyIdentifier.description))
+                iter.remove();
+        }
+
+        assertEquals(3, seen.size());
+        // The overflow comes last.
+        assertEquals(PROPRIETARY, seen.get(2));
+        assertEquals(1, map.size());
+        assertEquals(new CharacterString("d"), map.get(PropertyIdentifier.description));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void localDeviceObjects() throws Exception {
+        final LocalDevice d = new LocalDevice(1, new DefaultTransport(new TestNetwork(new TestNetworkMap(), 1, 0)))
+                .withCompactPropertyStorage(true);
+        d.initialize();
+        try {
+            final AnalogValueObject av = new AnalogValueObject(d, 0, "av", 5, EngineeringUnits.amperes, false);
+            assertTrue(av.properties instanceof CompactPropertyMap);
+            assertFalse(d.getDeviceObject().properties instanceof CompactPropertyMap);
+
+            assertEquals(new Real(5), av.readProperty(PropertyIdentifier.presentValue));
+            av.writePropertyInternal(PROPRIETARY, new Real(6));
+            assertEquals(new Real(6), av.readProperty(PROPRIETARY));
+        } finally {
+            d.terminate();
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.serotonin.bacnet4j.obj;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.time.temporal.ChronoField;
 import java.util.Map;
@@ -48,6 +50,7 @@ import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
 import com.serotonin.bacnet4j.type.notificationParameters.ChangeOfReliabilityNotif;
 import com.serotonin.bacnet4j.type.notificationParameters.NotificationParameters;
 import com.serotonin.bacnet4j.type.primitive.Boolean;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
 import com.serotonin.bacnet4j.type.primitive.Date;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.SignedInteger;
@@ -107,6 +110,48 @@ public class DeviceObjectTest extends AbstractTest {
         assertEquals(ErrorCode.invalidArrayIndex, e.getErrorCode());
     }
 
+    @Test
+    public void objectListFollowsChanges() throws Exception {
+        final DeviceObject dev = d1.getDeviceObject();
+        final BACnetArray<ObjectIdentifier> list1 = dev.readProperty(PropertyIdentifier.objectList);
+        assertEquals(8, list1.getCount());
+
+        // Reads without changes share the list.
+        assertTrue(list1 == dev.readProperty(PropertyIdentifier.objectList));
+        assertEquals(new ObjectIdentifier(ObjectType.analogValue, 2),
+                dev.readProperty(PropertyIdentifier.objectList, new UnsignedInteger(4)));
+
+        // Add an object
+        new AnalogValueObject(d1, 3, "av3", 50, EngineeringUnits.amperes, false);
+        final BACnetArray<ObjectIdentifier> list2 = dev.readProperty(PropertyIdentifier.objectList);
+        assertEquals(9, list2.getCount());
+        assertEquals(new ObjectIdentifier(ObjectType.analogValue, 3), list2.getBase1(9));
+
+        // Change an identifier
+        av0.writePropertyInternal(PropertyIdentifier.objectIdentifier,
+                new ObjectIdentifier(ObjectType.analogValue, 10));
+        final BACnetArray<ObjectIdentifier> list3 = dev.readProperty(PropertyIdentifier.objectList);
+        assertEquals(new ObjectIdentifier(ObjectType.analogValue, 10), list3.getBase1(2));
+
+        // Remove an object
+        d1.removeObject(new ObjectIdentifier(ObjectType.binaryValue, 0));
+        final BACnetArray<ObjectIdentifier> list4 = dev.readProperty(PropertyIdentifier.objectList);
+        assertEquals(8, list4.getCount());
+        assertEquals(new ObjectIdentifier(ObjectType.binaryValue, 1), list4.getBase1(5));
+    }
+
+    @Test
+    public void propertyListFollowsChanges() throws Exception {
+        final BACnetArray<PropertyIdentifier> list1 = av0.readProperty(PropertyIdentifier.propertyList);
+        assertTrue(list1 == av0.readProperty(PropertyIdentifier.propertyList));
+        assertFalse(list1.contains(PropertyIdentifier.description));
+
+        av0.writePropertyInternal(PropertyIdentifier.description, new CharacterString("desc"));
+        final BACnetArray<PropertyIdentifier> list2 = av0.readProperty(PropertyIdentifier.propertyList);
+        assertEquals(list1.getCount() + 1, list2.getCount());
+        assertTrue(list2.contains(PropertyIdentifier.description));
+    }
+
     @Test
     public void incrementDatabaseRevision() throws BACnetErrorException {
         av0.setDeletable(true);
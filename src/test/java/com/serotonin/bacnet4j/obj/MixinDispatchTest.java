@@ -0,0 +1,102 @@
+package com.serotonin.bacnet4j.obj;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.ValueSource;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+
+public class MixinDispatchTest {
+    @Test
+    public void dispatch() {
+        // Intercepts present value, but only overrides afterWriteProperty.
+        final AbstractMixin pv = new AbstractMixin(null) {
+            @Override
+            protected PropertyIdentifier[] getInterceptedProperties() {
+                return new PropertyIdentifier[] { PropertyIdentifier.presentValue };
+            }
+
+            @Override
+            protected void afterWriteProperty(final PropertyIdentifier pid, final Encodable oldValue,
+                    final Encodable newValue) {
+                // no op
+            }
+        };
+
+        // Intercepts everything, but only overrides validateProperty.
+        final AbstractMixin all = new AbstractMixin(null) {
+            @Override
+            protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value) {
+                return false;
+            }
+        };
+
+        // Intercepts present value and description.
+        final AbstractMixin desc = new Mixin(PropertyIdentifier.presentValue, PropertyIdentifier.description);
+
+        // Overrides nothing.
+        final AbstractMixin none = new AbstractMixin(null);
+
+        final MixinDispatch dispatch = new MixinDispatch(Arrays.asList(pv, all, desc, none));
+
+        assertArrayEquals(new AbstractMixin[] { desc },
+                dispatch.get(MixinDispatch.BEFORE_READ, PropertyIdentifier.presentValue));
+        assertArrayEquals(new AbstractMixin[] { desc },
+                dispatch.get(MixinDispatch.BEFORE_READ, PropertyIdentifier.description));
+        assertArrayEquals(new AbstractMixin[0], dispatch.get(MixinDispatch.BEFORE_READ, PropertyIdentifier.units));
+
+        // Order of addition is kept.
+        assertArrayEquals(new AbstractMixin[] { all, desc },
+                dispatch.get(MixinDispatch.VALIDATE, PropertyIdentifier.presentValue));
+        assertArrayEquals(new AbstractMixin[] { all },
+                dispatch.get(MixinDispatch.VALIDATE, PropertyIdentifier.units));
+
+        assertArrayEquals(new AbstractMixin[] { desc },
+                dispatch.get(MixinDispatch.WRITE, PropertyIdentifier.description));
+        assertArrayEquals(new AbstractMixin[0], dispatch.get(MixinDispatch.WRITE, PropertyIdentifier.units));
+
+        assertArrayEquals(new AbstractMixin[] { pv, desc },
+                dispatch.get(MixinDispatch.AFTER_WRITE, PropertyIdentifier.presentValue));
+        assertArrayEquals(new AbstractMixin[0], dispatch.get(MixinDispatch.AFTER_WRITE, PropertyIdentifier.units));
+    }
+
+    static class Mixin extends AbstractMixin {
+        private final PropertyIdentifier[] pids;
+
+        Mixin(final PropertyIdentifier... pids) {
+            super(null);
+            this.pids = pids;
+        }
+
+        @Override
+        protected PropertyIdentifier[] getInterceptedProperties() {
+            return pids;
+        }
+
+        @Override
+        protected void beforeReadProperty(final PropertyIdentifier pid) {
+            // no op
+        }
+
+        @Override
+        protected boolean validateProperty(final ValueSource valueSource, final PropertyValue value) {
+            return false;
+        }
+
+        @Override
+        protected boolean writeProperty(final ValueSource valueSource, final PropertyValue value) {
+            return false;
+        }
+
+        @Override
+        protected void afterWriteProperty(final PropertyIdentifier pid, final Encodable oldValue,
+                final Encodable newValue) {
+            // no op
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.serotonin.bacnet4j.service.confirmed;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.service.unconfirmed.UnconfirmedCovNotificationRequest;
+import com.serotonin.bacnet4j.type.constructed.PropertyValue;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.constructed.StatusFlags;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class ConfirmedCovNotificationRequestTest {
+    private final UnsignedInteger processId = new UnsignedInteger(18);
+    private final ObjectIdentifier deviceId = new ObjectIdentifier(ObjectType.device, 4);
+    private final ObjectIdentifier objectId = new ObjectIdentifier(ObjectType.analogValue, 10);
+    private final UnsignedInteger timeRemaining = new UnsignedInteger(60);
+    private final SequenceOf<PropertyValue> values = new SequenceOf<>( //
+            new PropertyValue(PropertyIdentifier.presentValue, new Real(65)), //
+            new PropertyValue(PropertyIdentifier.statusFlags, new StatusFlags(false, false, false, false)));
+
+    @Test
+    public void preEncodedListOfValues() {
+        final byte[] encoded = ConfirmedCovNotificationRequest.encodeListOfValues(values);
+
+        assertArrayEquals(
+                encode(new ConfirmedCovNotificationRequest(processId, deviceId, objectId, timeRemaining, values)),
+                encode(new ConfirmedCovNotificationRequest(processId, deviceId, objectId, timeRemaining, values,
+                        encoded)));
+
+        final ByteQueue expected = new ByteQueue();
+        new UnconfirmedCovNotificationRequest(processId, deviceId, objectId, timeRemaining, values).write(expected);
+        final ByteQueue actual = new ByteQueue();
+        new UnconfirmedCovNotificationRequest(processId, deviceId, objectId, timeRemaining, values, encoded)
+                .write(actual);
+        assertArrayEquals(expected.popAll(), actual.popAll());
+    }
+
+    private static byte[] encode(final ConfirmedCovNotificationRequest req) {
+        final ByteQueue queue = new ByteQueue();
+        req.write(queue);
+        return queue.popAll();
+    }
+}
@@ -1,8 +1,13 @@
 package com.serotonin.bacnet4j.transport;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -12,18 +17,28 @@ import org.junit.Test;
 import org.mockito.InOrder;
 
 import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.ResponseConsumer;
 import com.serotonin.bacnet4j.apdu.APDU;
 import com.serotonin.bacnet4j.apdu.ConfirmedRequest;
 import com.serotonin.bacnet4j.apdu.SegmentACK;
 import com.serotonin.bacnet4j.apdu.Segmentable;
+import com.serotonin.bacnet4j.apdu.SimpleACK;
+import com.serotonin.bacnet4j.enums.MaxApduLength;
 import com.serotonin.bacnet4j.event.DeviceEventHandler;
 import com.serotonin.bacnet4j.exception.BACnetException;
 import com.serotonin.bacnet4j.npdu.NPCI;
 import com.serotonin.bacnet4j.npdu.NPDU;
 import com.serotonin.bacnet4j.npdu.Network;
 import com.serotonin.bacnet4j.service.confirmed.ConfirmedRequestService;
+import com.serotonin.bacnet4j.service.confirmed.DeviceCommunicationControlRequest.EnableDisable;
+import com.serotonin.bacnet4j.service.confirmed.WritePropertyRequest;
 import com.serotonin.bacnet4j.type.constructed.Address;
 import com.serotonin.bacnet4j.type.constructed.ServicesSupported;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.enumerated.Segmentation;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.util.sero.ByteQueue;
 import com.serotonin.bacnet4j.util.sero.ThreadUtils;
 
@@ -77,6 +92,16 @@ public class DefaultTransportTest {
     // Recreation of this issue: https://github.com/infiniteautomation/BACnet4J/issues/7
     @Test
     public void orderSegmentedMessages() throws Exception {
+        orderSegmentedMessages(0);
+    }
+
+    // Segments from one peer must still be handled in order when incoming messages are spread over workers.
+    @Test
+    public void orderSegmentedMessagesWithWorkers() throws Exception {
+        orderSegmentedMessages(4);
+    }
+
+    private static void orderSegmentedMessages(final int workerCount) throws Exception {
         final Network network = mock(Network.class);
         when(network.isThisNetwork(any())).thenReturn(true);
 
@@ -90,6 +115,7 @@ public class DefaultTransportTest {
 
         final DefaultTransport transport = new DefaultTransport(network);
         transport.setLocalDevice(localDevice);
+        transport.setWorkerCount(workerCount);
         transport.initialize();
 
         final Address from = new Address(0, new byte[] { 1 });
@@ -126,6 +152,67 @@ public class DefaultTransportTest {
         inOrder.verify(request).appendServiceData(new ByteQueue(new byte[] { 5 }));
     }
 
+    @Test
+    public void requestWindow() throws Exception {
+        final Network network = mock(Network.class);
+        when(network.isThisNetwork(any())).thenReturn(true);
+        when(network.getMaxApduLength()).thenReturn(MaxApduLength.UP_TO_1476);
+
+        final LocalDevice localDevice = mock(LocalDevice.class);
+        when(localDevice.getClock()).thenReturn(Clock.systemUTC());
+        when(localDevice.getEventHandler()).thenReturn(new DeviceEventHandler());
+        when(localDevice.getCommunicationControlState()).thenReturn(EnableDisable.enable);
+
+        final ServicesSupported servicesSupported = new ServicesSupported();
+        servicesSupported.setAll(true);
+        when(localDevice.getServicesSupported()).thenReturn(servicesSupported);
+
+        final DefaultTransport transport = new DefaultTransport(network);
+        transport.setLocalDevice(localDevice);
+        transport.setMaxOutstandingRequests(2);
+        transport.initialize();
+
+        final Address to = new Address(0, new byte[] { 1 });
+        final WritePropertyRequest request = new WritePropertyRequest(new ObjectIdentifier(ObjectType.device, 1),
+                PropertyIdentifier.description, null, new CharacterString("a"), null);
+
+        // Send more requests than the window allows.
+        for (int i = 0; i < 5; i++)
+            transport.send(to, 1476, Segmentation.segmentedBoth, request, mock(ResponseConsumer.class));
+        ThreadUtils.sleep(100);
+
+        // Only two should have been sent.
+        verify(network, times(2)).sendNPDU(eq(to), any(), any(), anyBoolean(), anyBoolean());
+        assertEquals(2, transport.getRequestWindow(to).getOutstanding());
+        assertEquals(3, transport.getRequestWindow(to).getQueued());
+
+        // Ack the first, which lets the next one go.
+        addIncomingAck(to, 0, transport);
+        ThreadUtils.sleep(100);
+        verify(network, times(3)).sendNPDU(eq(to), any(), any(), anyBoolean(), anyBoolean());
+        assertEquals(2, transport.getRequestWindow(to).getOutstanding());
+        assertEquals(2, transport.getRequestWindow(to).getQueued());
+
+        // The window is dropped once everything has been acked.
+        for (int i = 1; i < 5; i++) {
+            addIncomingAck(to, i, transport);
+            ThreadUtils.sleep(50);
+        }
+        verify(network, times(5)).sendNPDU(eq(to), any(), any(), anyBoolean(), anyBoolean());
+        assertNull(transport.getRequestWindow(to));
+
+        transport.terminate();
+    }
+
+    private static void addIncomingAck(final Address from, final int invokeId, final Transport transport)
+            throws BACnetException {
+        final NPDU npdu = mock(NPDU.class);
+        when(npdu.isNetworkMessage()).thenReturn(false);
+        when(npdu.getFrom()).thenReturn(from);
+        when(npdu.getAPDU(any())).thenReturn(new SimpleACK((byte) invokeId, WritePropertyRequest.TYPE_ID));
+        transport.incoming(npdu);
+    }
+
     private static Segmentable addIncomingSegmentedMessage(final boolean moreFollows, final int windowSize,
             final int sequenceNumber, final Address from, final Transport transport,
             final ConfirmedRequestService service) throws BACnetException {
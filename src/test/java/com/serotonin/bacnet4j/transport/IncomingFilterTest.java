@@ -0,0 +1,101 @@
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.npdu.NPDU;
+import com.serotonin.bacnet4j.type.constructed.Address;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class IncomingFilterTest {
+    private final Address from1 = new Address(0, new byte[] { 1 });
+    private final Address from2 = new Address(0, new byte[] { 2 });
+
+    @Test
+    public void duplicateDiscovery() {
+        final IncomingFilter filter = new IncomingFilter();
+
+        final NPDU whoIs1 = whoIs(from1);
+        assertTrue(filter.admit(whoIs1));
+        // Same message from the same source while the first is pending.
+        assertFalse(filter.admit(whoIs(from1)));
+        // Same message from a different source.
+        assertTrue(filter.admit(whoIs(from2)));
+        // Different message from the same source.
+        assertTrue(filter.admit(iAm(from1, 1)));
+        assertTrue(filter.admit(iAm(from1, 2)));
+        assertFalse(filter.admit(iAm(from1, 2)));
+
+        assertEquals(4, filter.getQueued());
+        assertEquals(2, filter.getDuplicatesDropped());
+        assertEquals(0, filter.getOverflowDropped());
+
+        // Once the first has been taken for handling, the same message can be queued again.
+        filter.release(whoIs1);
+        assertEquals(3, filter.getQueued());
+        assertTrue(filter.admit(whoIs(from1)));
+    }
+
+    @Test
+    public void confirmedRequestsAreNotCoalesced() {
+        final IncomingFilter filter = new IncomingFilter();
+        assertTrue(filter.admit(npdu(from1, 0x0, 0x5, 0x1, 0xC)));
+        assertTrue(filter.admit(npdu(from1, 0x0, 0x5, 0x1, 0xC)));
+        assertEquals(0, filter.getDuplicatesDropped());
+    }
+
+    @Test
+    public void overflow() {
+        final IncomingFilter filter = new IncomingFilter();
+        filter.setCapacity(10);
+
+        // Discovery broadcasts are limited to half.
+        for (int i = 0; i < 5; i++)
+            assertTrue(filter.admit(iAm(from1, i)));
+        assertFalse(filter.admit(iAm(from1, 5)));
+
+        // Other messages can use the rest.
+        for (int i = 0; i < 5; i++)
+            assertTrue(filter.admit(npdu(from1, 0x0, 0x5, i, 0xC)));
+        assertFalse(filter.admit(npdu(from1, 0x0, 0x5, 5, 0xC)));
+        assertEquals(2, filter.getOverflowDropped());
+        assertEquals(10, filter.getQueued());
+
+        final NPDU network = new NPDU(from1, null, 0x1, new ByteQueue(new byte[] { 0, 1 }));
+        assertFalse(filter.admit(network));
+        assertEquals(3, filter.getOverflowDropped());
+    }
+
+    @Test
+    public void transportCounters() throws Exception {
+        final DefaultTransport transport = new DefaultTransport(null);
+        transport.setIncomingCapacity(4);
+        assertEquals(4, transport.getIncomingCapacity());
+
+        transport.incoming(whoIs(from1));
+        transport.incoming(whoIs(from1));
+        transport.incoming(iAm(from1, 1));
+        transport.incoming(iAm(from2, 1));
+        assertEquals(2, transport.getIncomingQueueSize());
+        assertEquals(1, transport.getIncomingDuplicatesDropped());
+        assertEquals(1, transport.getIncomingOverflowDropped());
+    }
+
+    private static NPDU whoIs(final Address from) {
+        return npdu(from, 0x10, 0x08);
+    }
+
+    private static NPDU iAm(final Address from, final int instance) {
+        return npdu(from, 0x10, 0x00, 0xC4, 0x02, 0x00, 0x00, instance);
+    }
+
+    private static NPDU npdu(final Address from, final int... apdu) {
+        final ByteQueue queue = new ByteQueue();
+        for (final int b : apdu)
+            queue.push(b);
+        return new NPDU(from, null, queue);
+    }
+}
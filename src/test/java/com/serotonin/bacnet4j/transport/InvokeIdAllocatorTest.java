@@ -0,0 +1,32 @@
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.type.constructed.Address;
+
+public class InvokeIdAllocatorTest {
+    private final InvokeIdAllocator allocator = new InvokeIdAllocator();
+    private final Address busy = new Address(0, new byte[] { 1 });
+    private final Address idle = new Address(0, new byte[] { 2 });
+
+    @Test
+    public void idlePeersEvicted() {
+        allocator.allocate(busy, null);
+        final int id = allocator.allocate(idle, null);
+        allocator.release(idle, null, id);
+
+        // Idle peers are remembered for a while so that their ids keep rotating.
+        allocator.evictIdle(System.nanoTime());
+        assertEquals(2, allocator.getPeerCount());
+        assertEquals(1, allocator.allocate(idle, null));
+        allocator.release(idle, null, 1);
+
+        // Then forgotten, unless they have ids outstanding.
+        allocator.evictIdle(System.nanoTime() + InvokeIdAllocator.IDLE_TIMEOUT + 1);
+        assertEquals(1, allocator.getPeerCount());
+        assertEquals(1, allocator.getAllocated(busy, null));
+        assertEquals(0, allocator.allocate(idle, null));
+    }
+}
@@ -0,0 +1,78 @@
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.npdu.NPCI.NetworkPriority;
+
+public class PriorityMessageQueueTest {
+    @Test
+    public void priorityOrder() {
+        final PriorityMessageQueue<String> queue = new PriorityMessageQueue<>();
+        queue.add("n1", NetworkPriority.normal);
+        queue.add("u1", NetworkPriority.urgent);
+        queue.add("n2", null);
+        queue.add("l1", NetworkPriority.lifeSafety);
+        queue.add("c1", NetworkPriority.criticalEquipment);
+        queue.add("l2", NetworkPriority.lifeSafety);
+
+        assertEquals(6, queue.size());
+        assertEquals(2, queue.size(NetworkPriority.normal));
+
+        assertEquals(Arrays.asList("l1", "l2", "c1", "u1", "n1", "n2"), pollAll(queue));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void starvationProtection() {
+        final PriorityMessageQueue<String> queue = new PriorityMessageQueue<>(3);
+        queue.add("n1", NetworkPriority.normal);
+        queue.add("n2", NetworkPriority.normal);
+        for (int i = 0; i < 8; i++)
+            queue.add("l" + i, NetworkPriority.lifeSafety);
+
+        // A normal message gets through after every 3 life safety messages.
+        assertEquals(Arrays.asList("l0", "l1", "l2", "n1", "l3", "l4", "l5", "n2", "l6", "l7"), pollAll(queue));
+    }
+
+    @Test
+    public void skipsOnlyCountWhileWaiting() {
+        final PriorityMessageQueue<String> queue = new PriorityMessageQueue<>(2);
+        for (int i = 0; i < 5; i++) {
+            queue.add("l" + i, NetworkPriority.lifeSafety);
+            assertEquals("l" + i, queue.poll());
+        }
+
+        // The normal message was not waiting while the others were sent, so it still has to wait its turn.
+        queue.add("n1", NetworkPriority.normal);
+        queue.add("l5", NetworkPriority.lifeSafety);
+        queue.add("l6", NetworkPriority.lifeSafety);
+        queue.add("l7", NetworkPriority.lifeSafety);
+        assertEquals(Arrays.asList("l5", "l6", "n1", "l7"), pollAll(queue));
+    }
+
+    @Test
+    public void drain() {
+        final PriorityMessageQueue<String> queue = new PriorityMessageQueue<>();
+        queue.add("n1", 0);
+        queue.add("c1", 2);
+        assertEquals(Arrays.asList("c1", "n1"), queue.drain());
+        assertTrue(queue.isEmpty());
+    }
+
+    private static List<String> pollAll(final PriorityMessageQueue<String> queue) {
+        final List<String> result = new ArrayList<>();
+        String s;
+        while ((s = queue.poll()) != null)
+            result.add(s);
+        return result;
+    }
+}
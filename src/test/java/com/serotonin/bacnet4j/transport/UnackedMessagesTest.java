@@ -0,0 +1,120 @@
+package com.serotonin.bacnet4j.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.InvokeIdExhaustedException;
+import com.serotonin.bacnet4j.type.constructed.Address;
+
+import lohbihler.warp.WarpClock;
+
+public class UnackedMessagesTest {
+    private final WarpClock clock = new WarpClock();
+    private final UnackedMessages unackedMessages = new UnackedMessages();
+    private final Address address = new Address(0, new byte[] { 1 });
+
+    @Test
+    public void expiresInDeadlineOrder() throws Exception {
+        final UnackedMessageContext ctx1 = new UnackedMessageContext(clock, 300, 0, null, null);
+        final UnackedMessageContext ctx2 = new UnackedMessageContext(clock, 100, 0, null, null);
+        final UnackedMessageContext ctx3 = new UnackedMessageContext(clock, 200, 0, null, null);
+        unackedMessages.addClient(address, null, ctx1);
+        unackedMessages.addClient(address, null, ctx2);
+        unackedMessages.addClient(address, null, ctx3);
+
+        assertEquals(clock.millis() + 100, unackedMessages.getNextDeadline());
+        assertNull(unackedMessages.pollExpired(clock.millis()));
+
+        clock.plusMillis(250);
+        final long now = clock.millis();
+        assertSame(ctx2, unackedMessages.pollExpired(now).getValue());
+        assertSame(ctx3, unackedMessages.pollExpired(now).getValue());
+        assertNull(unackedMessages.pollExpired(now));
+    }
+
+    @Test
+    public void skipsAckedAndRescheduled() throws Exception {
+        final UnackedMessageContext acked = new UnackedMessageContext(clock, 100, 1, null, null);
+        final UnackedMessageContext retried = new UnackedMessageContext(clock, 100, 1, null, null);
+        final UnackedMessageKey ackedKey = unackedMessages.addClient(address, null, acked);
+        final UnackedMessageKey retriedKey = unackedMessages.addClient(address, null, retried);
+
+        // The first is acked, and so removed.
+        unackedMessages.remove(ackedKey);
+
+        clock.plusMillis(150);
+        Map.Entry<UnackedMessageKey, UnackedMessageContext> e = unackedMessages.pollExpired(clock.millis());
+        assertSame(retriedKey, e.getKey());
+        assertNull(unackedMessages.pollExpired(clock.millis()));
+
+        // Retry the second, giving it a new deadline.
+        retried.retry(100);
+        unackedMessages.reschedule(retriedKey, retried);
+        assertNull(unackedMessages.pollExpired(clock.millis()));
+
+        clock.plusMillis(150);
+        e = unackedMessages.pollExpired(clock.millis());
+        assertSame(retried, e.getValue());
+        assertNull(unackedMessages.pollExpired(clock.millis()));
+    }
+
+    @Test
+    public void invokeIdsPerPeer() throws Exception {
+        final Address other = new Address(0, new byte[] { 2 });
+
+        // Use up all of the ids for the first peer.
+        final UnackedMessageKey[] keys = new UnackedMessageKey[256];
+        final UnackedMessageContext[] ctxs = new UnackedMessageContext[256];
+        for (int i = 0; i < 256; i++) {
+            ctxs[i] = new UnackedMessageContext(clock, 100, 0, null, null);
+            keys[i] = unackedMessages.addClient(address, null, ctxs[i]);
+            assertEquals(i, keys[i].getInvokeId() & 0xff);
+        }
+        assertEquals(256, unackedMessages.getOutstanding(address, null));
+
+        try {
+            unackedMessages.addClient(address, null, new UnackedMessageContext(clock, 100, 0, null, null));
+            fail("InvokeIdExhaustedException should have been thrown");
+        } catch (@SuppressWarnings("unused") final InvokeIdExhaustedException e) {
+            // Expected
+        }
+
+        // Another peer is not affected.
+        assertEquals(0, unackedMessages.addClient(other, null, new UnackedMessageContext(clock, 100, 0, null, null))
+                .getInvokeId());
+
+        // Removing a context does not free its id until it is released, and releasing is idempotent.
+        unackedMessages.remove(keys[7]);
+        assertEquals(256, unackedMessages.getOutstanding(address, null));
+        unackedMessages.release(keys[7], ctxs[7]);
+        unackedMessages.release(keys[7], ctxs[7]);
+        assertEquals(255, unackedMessages.getOutstanding(address, null));
+
+        assertEquals(7, unackedMessages.addClient(address, null, new UnackedMessageContext(clock, 100, 0, null, null))
+                .getInvokeId());
+    }
+
+    @Test
+    public void invokeIdsNotReusedWhenIdle() throws Exception {
+        // One request at a time to the same peer still gets a new id each time.
+        final UnackedMessageContext ctx1 = new UnackedMessageContext(clock, 100, 0, null, null);
+        final UnackedMessageKey key1 = unackedMessages.addClient(address, null, ctx1);
+        unackedMessages.remove(key1);
+        unackedMessages.release(key1, ctx1);
+        assertEquals(0, unackedMessages.getOutstanding(address, null));
+
+        final UnackedMessageContext ctx2 = new UnackedMessageContext(clock, 100, 0, null, null);
+        final UnackedMessageKey key2 = unackedMessages.addClient(address, null, ctx2);
+        unackedMessages.remove(key2);
+        unackedMessages.release(key2, ctx2);
+
+        assertNotEquals(key1.getInvokeId(), key2.getInvokeId());
+    }
+}
@@ -0,0 +1,130 @@
+package com.serotonin.bacnet4j.type;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.type.constructed.DateTime;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult;
+import com.serotonin.bacnet4j.type.constructed.ReadAccessResult.Result;
+import com.serotonin.bacnet4j.type.enumerated.EngineeringUnits;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.Primitive;
+import com.serotonin.bacnet4j.type.primitive.Real;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class EncodableDecodersTest {
+    @Test
+    public void registered() throws BACnetException {
+        assertTrue(EncodableDecoders.isRegistered(Real.class));
+        assertTrue(EncodableDecoders.isRegistered(Primitive.class));
+        assertTrue(EncodableDecoders.isRegistered(DateTime.class));
+        assertTrue(EncodableDecoders.isRegistered(EngineeringUnits.class));
+        assertTrue(EncodableDecoders.isRegistered(Result.class));
+
+        roundTrip(new Real(3.5F), Real.class);
+        roundTrip(new CharacterString("decoder"), CharacterString.class);
+        roundTrip(EngineeringUnits.degreesCelsius, EngineeringUnits.class);
+        roundTrip(new DateTime(1500000000000L), DateTime.class);
+        roundTrip(new Result(PropertyIdentifier.presentValue, null, new Real(1)), Result.class);
+
+        // Primitive is decoded by tag rather than by constructor.
+        final ByteQueue queue = new ByteQueue();
+        new UnsignedInteger(12).write(queue);
+        assertEquals(new UnsignedInteger(12), Encodable.read(queue, Primitive.class));
+    }
+
+    @Test
+    public void reflectiveFallback() throws BACnetException {
+        assertFalse(EncodableDecoders.isRegistered(TestEncodable.class));
+
+        final ByteQueue queue = new ByteQueue();
+        new TestEncodable(new Real(7)).write(queue);
+        assertEquals(new Real(7), Encodable.read(queue, TestEncodable.class).value);
+        assertEquals(0, queue.size());
+
+        // Decoding errors thrown by the constructor are not wrapped.
+        try {
+            Encodable.read(new ByteQueue(), TestEncodable.class);
+            fail("Should have failed");
+        } catch (final BACnetException e) {
+            assertEquals("empty", e.getMessage());
+        }
+    }
+
+    @Test
+    public void register() throws BACnetException {
+        EncodableDecoders.register(RegisteredEncodable.class, queue -> new RegisteredEncodable(queue, true));
+
+        final ByteQueue queue = new ByteQueue();
+        new RegisteredEncodable(new Real(8)).write(queue);
+        final RegisteredEncodable e = Encodable.read(queue, RegisteredEncodable.class);
+        assertEquals(new Real(8), e.value);
+        assertTrue(e.registered);
+    }
+
+    @Test
+    public void runtimeExceptionsWrapped() {
+        try {
+            Encodable.read(new ByteQueue(), ReadAccessResult.class);
+            fail("Should have failed");
+        } catch (final BACnetException e) {
+            // Expected. A buffer underflow is reported as a BACnet exception as with reflection.
+        }
+    }
+
+    private static <T extends Encodable> void roundTrip(final T value, final Class<T> clazz) throws BACnetException {
+        final ByteQueue queue = new ByteQueue();
+        value.write(queue);
+        assertEquals(value, Encodable.read(queue, clazz));
+        assertEquals(0, queue.size());
+    }
+
+    public static class TestEncodable extends Encodable {
+        final Real value;
+
+        public TestEncodable(final Real value) {
+            this.value = value;
+        }
+
+        public TestEncodable(final ByteQueue queue) throws BACnetException {
+            if (queue.size() == 0)
+                throw new BACnetException("empty");
+            value = read(queue, Real.class);
+        }
+
+        @Override
+        public void write(final ByteQueue queue) {
+            value.write(queue);
+        }
+
+        @Override
+        public void write(final ByteQueue queue, final int contextId) {
+            value.write(queue, contextId);
+        }
+    }
+
+    public static class RegisteredEncodable extends TestEncodable {
+        final boolean registered;
+
+        public RegisteredEncodable(final Real value) {
+            super(value);
+            registered = false;
+        }
+
+        public RegisteredEncodable(final ByteQueue queue) throws BACnetException {
+            this(queue, false);
+        }
+
+        RegisteredEncodable(final ByteQueue queue, final boolean registered) throws BACnetException {
+            super(queue);
+            this.registered = registered;
+        }
+    }
+}
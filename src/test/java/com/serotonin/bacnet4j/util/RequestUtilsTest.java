@@ -1,6 +1,8 @@
 package com.serotonin.bacnet4j.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
@@ -8,6 +10,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -24,10 +31,12 @@ import com.serotonin.bacnet4j.apdu.Abort;
 import com.serotonin.bacnet4j.cache.CachePolicies;
 import com.serotonin.bacnet4j.exception.AbortAPDUException;
 import com.serotonin.bacnet4j.exception.BACnetException;
+import com.serotonin.bacnet4j.exception.ErrorAPDUException;
 import com.serotonin.bacnet4j.exception.ServiceTooBigException;
 import com.serotonin.bacnet4j.npdu.test.TestNetwork;
 import com.serotonin.bacnet4j.npdu.test.TestNetworkMap;
 import com.serotonin.bacnet4j.obj.AnalogInputObject;
+import com.serotonin.bacnet4j.obj.AnalogValueObject;
 import com.serotonin.bacnet4j.service.acknowledgement.AcknowledgementService;
 import com.serotonin.bacnet4j.service.acknowledgement.ReadPropertyMultipleAck;
 import com.serotonin.bacnet4j.service.confirmed.ReadPropertyMultipleRequest;
@@ -49,9 +58,11 @@ import com.serotonin.bacnet4j.type.enumerated.ObjectType;
 import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
 import com.serotonin.bacnet4j.type.enumerated.Segmentation;
 import com.serotonin.bacnet4j.type.error.ErrorClassAndCode;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
 import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
 import com.serotonin.bacnet4j.type.primitive.Real;
 import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ThreadUtils;
 
 public class RequestUtilsTest {
     private final TestNetworkMap map = new TestNetworkMap();
@@ -140,6 +151,80 @@ public class RequestUtilsTest {
         }
     }
 
+    /**
+     * Same as repartition, but with several requests in flight at once. The responses complete out of order in other
+     * threads.
+     */
+    @Test
+    public void pipelinedRepartition() throws Exception {
+        final ServicesSupported servicesSupported = new ServicesSupported();
+        servicesSupported.setAll(true);
+
+        final LocalDevice d = Mockito.mock(LocalDevice.class);
+        when(d.getCachePolicies()).thenReturn(new CachePolicies());
+
+        final RemoteDevice rd = new RemoteDevice(d, 123);
+        rd.setDeviceProperty(PropertyIdentifier.protocolServicesSupported, servicesSupported);
+        rd.setDeviceProperty(PropertyIdentifier.segmentationSupported, Segmentation.segmentedBoth);
+        rd.setMaxReadMultipleReferences(200);
+        rd.setMaxReadsInFlight(4);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger exceptionCount = new AtomicInteger();
+        when(d.sendAsync(any(RemoteDevice.class), any(ReadPropertyMultipleRequest.class))).thenAnswer(invocation -> {
+            final ReadPropertyMultipleRequest req = (ReadPropertyMultipleRequest) invocation.getArgument(1);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            final CompletableFuture<AcknowledgementService> future = new CompletableFuture<>();
+            executor.execute(() -> {
+                ThreadUtils.sleep(5 + req.getNumberOfProperties() % 7);
+                inFlight.decrementAndGet();
+                if (req.getNumberOfProperties() > 60) {
+                    exceptionCount.incrementAndGet();
+                    future.completeExceptionally(new ServiceTooBigException("much too big"));
+                    return;
+                }
+
+                final SequenceOf<ReadAccessResult> accessResults = new SequenceOf<>();
+                for (final ReadAccessSpecification spec : req.getListOfReadAccessSpecs()) {
+                    final SequenceOf<Result> results = new SequenceOf<>();
+                    for (final PropertyReference ref : spec.getListOfPropertyReferences()) {
+                        results.add(new Result(ref.getPropertyIdentifier(), ref.getPropertyArrayIndex(),
+                                BinaryPV.active));
+                    }
+                    accessResults.add(new ReadAccessResult(spec.getObjectIdentifier(), results));
+                }
+                future.complete(new ReadPropertyMultipleAck(accessResults));
+            });
+            return future;
+        });
+
+        final PropertyReferences refs = new PropertyReferences();
+        final ObjectIdentifier oid = new ObjectIdentifier(ObjectType.analogInput, 0);
+        for (int i = 0; i < 1000; i++) {
+            refs.add(oid, PropertyIdentifier.forId(i));
+        }
+
+        final AtomicInteger progressCount = new AtomicInteger();
+        final PropertyValues pvs = RequestUtils.readProperties(d, rd, refs,
+                (progress, deviceId, oid2, pid, pin, value) -> {
+                    progressCount.incrementAndGet();
+                    return false;
+                });
+        executor.shutdown();
+
+        assertEquals(1000, pvs.size());
+        assertEquals(1000, progressCount.get());
+        assertTrue(exceptionCount.get() > 0);
+        assertTrue(rd.getMaxReadMultipleReferences() <= 60);
+        assertEquals(4, maxInFlight.get());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(BinaryPV.active, pvs.getNoErrorCheck(oid, PropertyIdentifier.forId(i)));
+        }
+    }
+
     /**
      * Send a request from d1 to d2 for three properties. One exists, the other doesn't, and the third is for an
      * object that doesn't exist, so the RPM will return an error. RequestUtils should then send the requests one
@@ -220,4 +305,48 @@ public class RequestUtilsTest {
         assertEquals(PropertyIdentifier.presentValue, results.get(2).getLeft().getPropertyIdentifier());
         assertEquals(new ErrorClassAndCode(ErrorClass.object, ErrorCode.unknownObject), results.get(2).getRight());
     }
+
+    /**
+     * Same as sendOneAtATimeOnError, but using the asynchronous version, and then a write and read of a single
+     * property.
+     */
+    @Test
+    public void async() throws Exception {
+        final LocalDevice d1 = new LocalDevice(1, new DefaultTransport(new TestNetwork(map, 1, 0))).initialize();
+        final LocalDevice d2 = new LocalDevice(2, new DefaultTransport(new TestNetwork(map, 2, 0))).initialize();
+        final AnalogValueObject av = new AnalogValueObject(d2, 0, "av", 0, EngineeringUnits.noUnits, false);
+        final RemoteDevice rd2 = d1.getRemoteDeviceBlocking(2);
+
+        final List<Pair<ObjectPropertyReference, Encodable>> results = RequestUtils.readPropertiesAsync(d1, rd2,
+                TestUtils.toList( //
+                        new ObjectPropertyReference(av.getId(), PropertyIdentifier.presentValue),
+                        new ObjectPropertyReference(av.getId(), PropertyIdentifier.logDeviceObjectProperty),
+                        new ObjectPropertyReference(new ObjectIdentifier(ObjectType.analogOutput, 0),
+                                PropertyIdentifier.presentValue)),
+                null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, results.size());
+        assertEquals(new Real(0), results.get(0).getRight());
+        assertEquals(new ErrorClassAndCode(ErrorClass.property, ErrorCode.unknownProperty), results.get(1).getRight());
+        assertEquals(new ErrorClassAndCode(ErrorClass.object, ErrorCode.unknownObject), results.get(2).getRight());
+
+        final Encodable description = RequestUtils
+                .writePropertyAsync(d1, rd2, av.getId(), PropertyIdentifier.description, new CharacterString("desc"))
+                .thenCompose(v -> RequestUtils.readPropertyAsync(d1, rd2, av.getId(), PropertyIdentifier.description,
+                        null))
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(new CharacterString("desc"), description);
+
+        // Errors complete the future exceptionally.
+        try {
+            RequestUtils.readPropertyAsync(d1, rd2, new ObjectIdentifier(ObjectType.analogOutput, 0),
+                    PropertyIdentifier.presentValue, null).get(5, TimeUnit.SECONDS);
+            fail("Should have failed");
+        } catch (final ExecutionException e) {
+            assertEquals(ErrorAPDUException.class, e.getCause().getClass());
+        }
+
+        d1.terminate();
+        d2.terminate();
+    }
 }
@@ -0,0 +1,117 @@
+package com.serotonin.bacnet4j.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.serotonin.bacnet4j.LocalDevice;
+import com.serotonin.bacnet4j.RemoteDevice;
+import com.serotonin.bacnet4j.cache.CachePolicies;
+import com.serotonin.bacnet4j.type.Encodable;
+import com.serotonin.bacnet4j.type.constructed.PropertyReference;
+import com.serotonin.bacnet4j.type.constructed.SequenceOf;
+import com.serotonin.bacnet4j.type.enumerated.ObjectType;
+import com.serotonin.bacnet4j.type.enumerated.PropertyIdentifier;
+import com.serotonin.bacnet4j.type.enumerated.Segmentation;
+import com.serotonin.bacnet4j.type.primitive.BitString;
+import com.serotonin.bacnet4j.type.primitive.CharacterString;
+import com.serotonin.bacnet4j.type.primitive.ObjectIdentifier;
+import com.serotonin.bacnet4j.type.primitive.OctetString;
+import com.serotonin.bacnet4j.type.primitive.UnsignedInteger;
+import com.serotonin.bacnet4j.util.sero.ByteQueue;
+
+public class ResponseSizeEstimatorTest {
+    private RemoteDevice rd;
+
+    @Before
+    public void before() {
+        final LocalDevice d = mock(LocalDevice.class);
+        when(d.getCachePolicies()).thenReturn(new CachePolicies());
+
+        rd = new RemoteDevice(d, 123);
+        rd.setDeviceProperty(PropertyIdentifier.maxApduLengthAccepted, new UnsignedInteger(480));
+        rd.setDeviceProperty(PropertyIdentifier.segmentationSupported, Segmentation.noSegmentation);
+        rd.setMaxReadMultipleReferences(200);
+    }
+
+    @Test
+    public void maxResponseSize() {
+        final ResponseSizeEstimator estimator = rd.getResponseSizeEstimator();
+        assertEquals(429, estimator.getMaxResponseSize());
+
+        rd.setDeviceProperty(PropertyIdentifier.segmentationSupported, Segmentation.segmentedBoth);
+        rd.setDeviceProperty(PropertyIdentifier.maxSegmentsAccepted, new UnsignedInteger(4));
+        assertEquals(475 * 4 * 9 / 10, estimator.getMaxResponseSize());
+
+        rd.setDeviceProperty(PropertyIdentifier.maxApduLengthAccepted, null);
+        assertEquals(Integer.MAX_VALUE, estimator.getMaxResponseSize());
+    }
+
+    @Test
+    public void partitionBySize() {
+        // Present values of analog inputs are reals, so the size of each result is known.
+        final PropertyReferences refs = new PropertyReferences();
+        for (int i = 0; i < 100; i++)
+            refs.add(new ObjectIdentifier(ObjectType.analogInput, i), PropertyIdentifier.presentValue);
+
+        // 429 / (7 + 8 + 5) = 21 objects per partition.
+        final List<PropertyReferences> partitions = refs.getPropertiesPartitioned(200, rd.getResponseSizeEstimator());
+        assertEquals(5, partitions.size());
+        assertEquals(21, partitions.get(0).size());
+        assertEquals(16, partitions.get(4).size());
+
+        // The reference count still applies.
+        assertEquals(10, refs.getPropertiesPartitioned(10, rd.getResponseSizeEstimator()).size());
+    }
+
+    @Test
+    public void observedSizes() {
+        final ResponseSizeEstimator estimator = rd.getResponseSizeEstimator();
+        final PropertyReference name = new PropertyReference(PropertyIdentifier.objectName);
+        assertEquals(ResponseSizeEstimator.RESULT_OVERHEAD + ResponseSizeEstimator.DEFAULT_VALUE_SIZE,
+                estimator.estimate(ObjectType.analogInput, name));
+
+        // Learn the size of names.
+        estimator.observe(ObjectType.analogInput, PropertyIdentifier.objectName, null, new CharacterString("ai1"));
+        final int small = estimator.estimate(ObjectType.analogInput, name);
+        assertTrue(small < ResponseSizeEstimator.RESULT_OVERHEAD + ResponseSizeEstimator.DEFAULT_VALUE_SIZE);
+
+        // Larger values are followed immediately.
+        estimator.observe(ObjectType.analogInput, PropertyIdentifier.objectName, null,
+                new CharacterString("A much longer name for an analog input"));
+        assertTrue(estimator.estimate(ObjectType.analogInput, name) > small + 30);
+
+        // Other object types are not affected.
+        assertEquals(ResponseSizeEstimator.RESULT_OVERHEAD + ResponseSizeEstimator.DEFAULT_VALUE_SIZE,
+                estimator.estimate(ObjectType.analogOutput, name));
+    }
+
+    @Test
+    public void sizeOf() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++)
+            sb.append((char) ('a' + i % 26));
+        final String longString = sb.toString();
+
+        final Encodable[] values = { new CharacterString(""), new CharacterString("ai"),
+                new CharacterString("A longer description"), new CharacterString(longString),
+                new CharacterString("Gr\u00fc\u00dfe \u20ac \ud83d\ude00"),
+                new CharacterString(CharacterString.Encodings.ISO_8859_1, "Gr\u00fc\u00dfe"),
+                new OctetString(new byte[] { 1, 2, 3 }), new OctetString(new byte[20]), new BitString(new boolean[0]),
+                new BitString(new boolean[13]),
+                new SequenceOf<>(new CharacterString("a"), new CharacterString("bcdef")),
+                new SequenceOf<>(new ObjectIdentifier(ObjectType.analogInput, 1),
+                        new ObjectIdentifier(ObjectType.device, 123)) };
+        for (final Encodable value : values) {
+            final ByteQueue queue = new ByteQueue();
+            value.write(queue);
+            assertEquals(value.toString(), queue.size(), ResponseSizeEstimator.sizeOf(value));
+        }
+    }
+}
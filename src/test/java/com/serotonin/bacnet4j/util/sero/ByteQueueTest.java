@@ -0,0 +1,98 @@
+package com.serotonin.bacnet4j.util.sero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ByteQueueTest {
+    @Test
+    public void pushAndPop() {
+        final ByteQueue queue = new ByteQueue(2);
+        queue.push(1);
+        queue.pushU2B(0x203);
+        queue.pushU3B(0x40506);
+        queue.pushInt(0x708090a);
+        queue.pushLong(0x0b0c0d0e0f101112L);
+        queue.push(new byte[] { 0x13, 0x14 });
+        assertEquals(20, queue.size());
+        assertEquals("0102030405060708090a0b0c0d0e0f1011121314", queue.toHexString());
+
+        assertEquals(1, queue.popU1B());
+        assertEquals(0x203, queue.popU2B());
+        assertEquals(0x40506, queue.popU3B());
+        assertEquals(0x708090a, queue.popS4B());
+        assertEquals(0x0b0c0d0eL, queue.popU4B());
+        assertEquals(0x0f10, queue.popS2B());
+        assertEquals(4, queue.pop(new byte[10]));
+        assertEquals(0, queue.size());
+
+        // Pushing into an emptied queue reuses the space.
+        queue.push(new byte[15]);
+        assertEquals(15, queue.size());
+    }
+
+    @Test
+    public void markAndReset() {
+        final ByteQueue queue = new ByteQueue("0102030405");
+        queue.pop();
+        queue.mark();
+        queue.pop(2);
+        // Pushing makes room, but keeps the marked content.
+        queue.push(new byte[10]);
+        queue.reset();
+        assertEquals("02030405", queue.toHexString());
+    }
+
+    @Test
+    public void slices() {
+        final ByteQueue queue = new ByteQueue("0102030405060708");
+        queue.pop();
+
+        final ByteQueue slice = queue.slice(1, 3);
+        assertEquals("030405", slice.toHexString());
+        assertSame(queue.array(), slice.array());
+
+        final ByteQueue popped = queue.popSlice(2);
+        assertEquals("0203", popped.toHexString());
+        assertEquals("0405060708", queue.toHexString());
+
+        // Writes copy the content of the writer, and leave the others alone.
+        slice.push(0x11);
+        queue.push(0x12);
+        popped.pop();
+        assertEquals("03040511", slice.toHexString());
+        assertEquals("040506070812", queue.toHexString());
+        assertEquals("03", popped.toHexString());
+    }
+
+    @Test
+    public void prepend() {
+        final ByteQueue queue = new ByteQueue(8);
+        queue.reserveHeadroom(4);
+        queue.push(new byte[] { 5, 6 });
+        final byte[] array = queue.array();
+
+        queue.prependU2B(0x304);
+        queue.prepend((byte) 2);
+        queue.prepend((byte) 1);
+        assertSame(array, queue.array());
+        assertEquals(0, queue.arrayOffset());
+        assertEquals("010203040506", queue.toHexString());
+
+        // Without headroom, the content is moved.
+        queue.prepend(new byte[] { 0 });
+        assertEquals("00010203040506", queue.toHexString());
+        assertArrayEquals(new byte[] { 0, 1, 2, 3, 4, 5, 6 }, queue.popAll());
+    }
+
+    @Test
+    public void equality() {
+        final ByteQueue a = new ByteQueue("00010203");
+        a.pop();
+        final ByteQueue b = new ByteQueue("010203");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+}